@@ -0,0 +1,45 @@
+package io.testoftiramisu.booktour.benchmark;
+
+import io.testoftiramisu.booktour.TourApp;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/** Starts the Tours application on the embedded H2 database for a benchmark trial. */
+public final class BenchmarkApplication {
+  private static final String[] DEFAULT_PROPERTIES = {
+    "server.port=0", "logging.level.root=WARN", "logging.level.io.testoftiramisu.booktour=WARN"
+  };
+
+  private BenchmarkApplication() {}
+
+  /**
+   * Starts the application on a random port, Spring Data REST links need the servlet stack.
+   *
+   * @param properties additional "key=value" properties
+   * @return the started application context
+   */
+  public static ConfigurableApplicationContext start(String... properties) {
+    return start(WebApplicationType.SERVLET, properties);
+  }
+
+  /**
+   * Starts the application on a random port.
+   *
+   * @param type servlet stack, or reactive stack of the "reactive" profile
+   * @param properties additional "key=value" properties
+   * @return the started application context
+   */
+  public static ConfigurableApplicationContext start(
+      WebApplicationType type, String... properties) {
+    return new SpringApplicationBuilder(TourApp.class)
+        .web(type)
+        .properties(
+            Stream.concat(Arrays.stream(DEFAULT_PROPERTIES), Arrays.stream(properties))
+                .toArray(String[]::new))
+        .run();
+  }
+}
@@ -0,0 +1,115 @@
+package io.testoftiramisu.booktour.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a request path log line for concurrent request threads, written by a synchronous file
+ * appender or through the async appender of logback-spring.xml, and the cost of a disabled DEBUG
+ * line built eagerly or with parameters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class LoggingBenchmark {
+  private static final int TOUR_ID = 1;
+
+  @Param({"sync", "async"})
+  private String appender;
+
+  @Param({"8192"})
+  private int queueSize;
+
+  private Logger logger;
+  private Appender<ILoggingEvent> attached;
+  private File file;
+  private Integer[] customers = {1000, 1001, 1002, 1003, 1004, 1005, 1006, 1007};
+
+  @Setup
+  public void configure() throws IOException {
+    LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+    file = File.createTempFile("booktour-logging-benchmark", ".log");
+
+    PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+    encoder.setContext(context);
+    encoder.setPattern("%d{yyyy-MM-dd HH:mm:ss.SSS} %5p [%t] %-40.40logger{39} : %m%n");
+    encoder.start();
+    FileAppender<ILoggingEvent> fileAppender = new FileAppender<>();
+    fileAppender.setContext(context);
+    fileAppender.setFile(file.getAbsolutePath());
+    fileAppender.setEncoder(encoder);
+    fileAppender.start();
+
+    if ("async".equals(appender)) {
+      AsyncAppender async = new AsyncAppender();
+      async.setContext(context);
+      async.setQueueSize(queueSize);
+      async.setDiscardingThreshold(queueSize / 5);
+      async.setNeverBlock(true);
+      async.addAppender(fileAppender);
+      async.start();
+      attached = async;
+    } else {
+      attached = fileAppender;
+    }
+
+    logger = context.getLogger(LoggingBenchmark.class);
+    logger.setAdditive(false);
+    logger.setLevel(Level.INFO);
+    logger.addAppender(attached);
+  }
+
+  @TearDown
+  public void reset() {
+    logger.detachAppender(attached);
+    attached.stop();
+    file.delete();
+  }
+
+  /** An enabled INFO line, as the request path used to log. */
+  @Benchmark
+  public void enabledInfo() {
+    logger.info("Rate tour {} by customers {}", TOUR_ID, customers);
+  }
+
+  /** A disabled DEBUG line whose message is built before the call. */
+  @Benchmark
+  public void disabledDebugEager() {
+    logger.debug("Rate tour {} by customers {}", TOUR_ID, Arrays.asList(customers).toString());
+  }
+
+  /** A disabled DEBUG line whose parameters are only formatted if enabled. */
+  @Benchmark
+  public void disabledDebugParameterized() {
+    logger.debug("Rate tour {} by customers {}", TOUR_ID, customers);
+  }
+}
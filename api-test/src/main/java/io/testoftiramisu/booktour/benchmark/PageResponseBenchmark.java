@@ -0,0 +1,117 @@
+package io.testoftiramisu.booktour.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first byte, time to last byte and bytes on the wire of a page of /tours/{tourId}/ratings
+ * over HTTP, uncompressed and gzip compressed.
+ *
+ * <p>{@code firstByte} stops the clock when the response headers arrive, which Tomcat sends with
+ * the first chunk of the body, the rest of the body is read outside of the measurement. The trial
+ * setup prints the size of the body as sent, the client does not decompress it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageResponseBenchmark {
+  private static final int TOUR_ID = 1;
+
+  @Param({"20", "500", "5000"})
+  private int pageSize;
+
+  @Param({"identity", "gzip"})
+  private String encoding;
+
+  private ConfigurableApplicationContext context;
+  private HttpClient client;
+  private HttpRequest request;
+  private HttpResponse<InputStream> pending;
+
+  @Setup(Level.Trial)
+  public void start() throws IOException, InterruptedException {
+    context = BenchmarkApplication.start(
+            "spring.data.rest.max-page-size=5000", "spring.data.web.pageable.max-page-size=5000");
+    RatingSeeder.seed(context, TOUR_ID, 5000);
+
+    String port = context.getBean(Environment.class).getProperty("local.server.port");
+    request =
+        HttpRequest.newBuilder(
+                URI.create(
+                    "http://localhost:"
+                        + port
+                        + "/tours/"
+                        + TOUR_ID
+                        + "/ratings?page=0&size="
+                        + pageSize))
+            .header("Accept", "application/hal+json")
+            .header("Accept-Encoding", encoding)
+            .GET()
+            .build();
+    client =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    System.out.printf(
+        "%nPage of %d ratings: %d bytes on the wire, Content-Encoding %s%n",
+        pageSize,
+        response.body().length,
+        response.headers().firstValue("Content-Encoding").orElse("identity"));
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    context.close();
+  }
+
+  @Benchmark
+  public HttpResponse<InputStream> firstByte() throws IOException, InterruptedException {
+    pending = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+    return pending;
+  }
+
+  /** Reads the rest of the response of {@code firstByte}, so its connection can be reused. */
+  @TearDown(Level.Invocation)
+  public void drain() throws IOException {
+    if (pending != null) {
+      try (InputStream body = pending.body()) {
+        body.transferTo(OutputStream.nullOutputStream());
+      }
+      pending = null;
+    }
+  }
+
+  @Benchmark
+  public int lastByte() throws IOException, InterruptedException {
+    return client.send(request, HttpResponse.BodyHandlers.ofByteArray()).body().length;
+  }
+}
@@ -0,0 +1,104 @@
+package io.testoftiramisu.booktour.benchmark;
+
+import io.testoftiramisu.booktour.domain.Tour;
+import io.testoftiramisu.booktour.domain.TourRating;
+import io.testoftiramisu.booktour.repository.TourRatingRepository;
+import io.testoftiramisu.booktour.repository.TourRepository;
+import io.testoftiramisu.booktour.service.BulkRatingResult;
+import io.testoftiramisu.booktour.service.TourRatingAggregateService;
+import io.testoftiramisu.booktour.service.TourRatingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rating a tour for many customers: one JPA save per customer, as rateMany used to do, against
+ * the JDBC batched inserts of {@link TourRatingService#bulkRate}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateManyBenchmark {
+  private static final int TOUR_ID = 1;
+  private static final int FIRST_CUSTOMER = 1_000_000;
+
+  @Param({"100", "1000", "5000"})
+  private int customers;
+
+  @Param({"500"})
+  private int batchSize;
+
+  private ConfigurableApplicationContext context;
+  private TourRatingService service;
+  private TourRatingRepository tourRatingRepository;
+  private TourRepository tourRepository;
+  private TransactionTemplate transactionTemplate;
+  private int nextCustomer = FIRST_CUSTOMER;
+
+  @Setup(Level.Trial)
+  public void start() {
+    context = BenchmarkApplication.start("booktour.ratings.batch-size=" + batchSize);
+    service = context.getBean(TourRatingService.class);
+    tourRatingRepository = context.getBean(TourRatingRepository.class);
+    tourRepository = context.getBean(TourRepository.class);
+    transactionTemplate = context.getBean(TransactionTemplate.class);
+  }
+
+  /** Removes the benchmark ratings so every iteration writes into a table of the same size. */
+  @TearDown(Level.Iteration)
+  public void cleanUp() {
+    context
+        .getBean(JdbcTemplate.class)
+        .update("delete from tour_rating where customer_id >= ?", FIRST_CUSTOMER);
+    context.getBean(TourRatingAggregateService.class).rebuild(TOUR_ID);
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    context.close();
+  }
+
+  @Benchmark
+  public void perRowSave() {
+    Integer[] ids = nextCustomers();
+    transactionTemplate.execute(
+        status -> {
+          Tour tour = tourRepository.findById(TOUR_ID).get();
+          for (Integer id : ids) {
+            tourRatingRepository.save(new TourRating(tour, id, 5));
+          }
+          return null;
+        });
+  }
+
+  @Benchmark
+  public BulkRatingResult batchedInsert() {
+    return service.bulkRate(TOUR_ID, 5, nextCustomers());
+  }
+
+  private Integer[] nextCustomers() {
+    Integer[] ids = new Integer[customers];
+    for (int i = 0; i < customers; i++) {
+      ids[i] = nextCustomer++;
+    }
+    return ids;
+  }
+}
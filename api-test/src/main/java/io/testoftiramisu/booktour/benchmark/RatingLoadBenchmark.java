@@ -0,0 +1,121 @@
+package io.testoftiramisu.booktour.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test of /tours/{tourId}/ratings reads and writes over HTTP, with the default Tomcat worker
+ * pool against virtual threads and against the reactive stack.
+ *
+ * <p>Each JMH thread is one client waiting for its response, so {@code -t} sets the concurrency,
+ * the throughput mode reports requests per second and the sample time mode the p99 latency. The
+ * virtual threads mode needs Java 21: {@code -Djmh.args="RatingLoadBenchmark -t 400 -p
+ * stack=platform,virtual,reactive"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(200)
+@Fork(1)
+public class RatingLoadBenchmark {
+  private static final int TOUR_ID = 1;
+
+  @Param({"platform", "virtual", "reactive"})
+  private String stack;
+
+  @Param({"10000"})
+  private int ratings;
+
+  private ConfigurableApplicationContext context;
+  private HttpClient client;
+  private URI ratingsUri;
+  private URI pageUri;
+  private final AtomicInteger nextCustomer =
+      new AtomicInteger(RatingSeeder.FIRST_BENCHMARK_CUSTOMER);
+
+  @Setup(Level.Trial)
+  public void start() {
+    switch (stack) {
+      case "virtual":
+        context = BenchmarkApplication.start("spring.profiles.active=virtual-threads");
+        break;
+      case "reactive":
+        context =
+            BenchmarkApplication.start(
+                WebApplicationType.REACTIVE, "spring.profiles.active=reactive");
+        break;
+      default:
+        context = BenchmarkApplication.start();
+    }
+    RatingSeeder.seed(context, TOUR_ID, ratings);
+
+    String port = context.getBean(Environment.class).getProperty("local.server.port");
+    ratingsUri = URI.create("http://localhost:" + port + "/tours/" + TOUR_ID + "/ratings");
+    pageUri = URI.create(ratingsUri + "?page=3&size=20");
+    client =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+  }
+
+  @TearDown(Level.Iteration)
+  public void cleanUp() {
+    RatingSeeder.removeBenchmarkRatings(context);
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    context.close();
+  }
+
+  @Benchmark
+  public int readPage() throws IOException, InterruptedException {
+    return send(HttpRequest.newBuilder(pageUri).GET().build());
+  }
+
+  @Benchmark
+  public int createRating() throws IOException, InterruptedException {
+    String body =
+        "{\"score\":4,\"comment\":\"load test\",\"customerId\":" + nextCustomer.getAndIncrement() + "}";
+    return send(
+        HttpRequest.newBuilder(ratingsUri)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build());
+  }
+
+  private int send(HttpRequest request) throws IOException, InterruptedException {
+    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+    if (response.statusCode() >= 300) {
+      throw new IllegalStateException(request.uri() + " answered " + response.statusCode());
+    }
+    return response.statusCode();
+  }
+}
@@ -0,0 +1,49 @@
+package io.testoftiramisu.booktour.benchmark;
+
+import io.testoftiramisu.booktour.service.TourRatingService;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/** Seeds a tour with a fixed volume of ratings before a benchmark trial. */
+final class RatingSeeder {
+  /** Customers of the seeded ratings, above the customers of the V2 migration. */
+  static final int FIRST_SEEDED_CUSTOMER = 10_000_000;
+
+  /** Customers created by the benchmarks themselves, removed after every iteration. */
+  static final int FIRST_BENCHMARK_CUSTOMER = 100_000_000;
+
+  private static final int CHUNK = 10_000;
+
+  private RatingSeeder() {}
+
+  /**
+   * Rates a tour with the same score for consecutive customers, one batched transaction per chunk.
+   *
+   * @param context started application
+   * @param tourId tour to rate
+   * @param ratings number of ratings
+   */
+  static void seed(ConfigurableApplicationContext context, int tourId, int ratings) {
+    TourRatingService service = context.getBean(TourRatingService.class);
+    for (int first = 0; first < ratings; first += CHUNK) {
+      Integer[] customers = new Integer[Math.min(CHUNK, ratings - first)];
+      for (int i = 0; i < customers.length; i++) {
+        customers[i] = FIRST_SEEDED_CUSTOMER + first + i;
+      }
+      service.bulkRate(tourId, 1 + (first / CHUNK) % 5, customers);
+    }
+  }
+
+  /**
+   * Deletes the ratings written by the benchmark methods, so every iteration starts from the seeded
+   * volume.
+   *
+   * @param context started application
+   * @return number of deleted ratings
+   */
+  static int removeBenchmarkRatings(ConfigurableApplicationContext context) {
+    return context
+        .getBean(JdbcTemplate.class)
+        .update("delete from tour_rating where customer_id >= ?", FIRST_BENCHMARK_CUSTOMER);
+  }
+}
@@ -0,0 +1,110 @@
+package io.testoftiramisu.booktour.benchmark;
+
+import io.testoftiramisu.booktour.repository.RatingView;
+import io.testoftiramisu.booktour.service.TourRatingAggregateService;
+import io.testoftiramisu.booktour.service.TourRatingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of {@link TourRatingService} on a tour seeded with a growing number of ratings, so the
+ * cost of reads and writes can be followed as the rating table grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TourRatingServiceBenchmark {
+  private static final int TOUR_ID = 1;
+  private static final int PAGE_SIZE = 20;
+
+  @Param({"1000", "100000", "1000000"})
+  private int ratings;
+
+  @Param({"10"})
+  private int customersPerRateMany;
+
+  private ConfigurableApplicationContext context;
+  private TourRatingService service;
+  private int nextCustomer = RatingSeeder.FIRST_BENCHMARK_CUSTOMER;
+  private PageRequest lastPage;
+  private Integer middleId;
+
+  @Setup(Level.Trial)
+  public void start() {
+    context = BenchmarkApplication.start();
+    service = context.getBean(TourRatingService.class);
+    RatingSeeder.seed(context, TOUR_ID, ratings);
+
+    long total = service.countRatings(TOUR_ID);
+    lastPage = PageRequest.of((int) ((total - 1) / PAGE_SIZE), PAGE_SIZE);
+    PageRequest middlePage = PageRequest.of((int) (total / 2 / PAGE_SIZE), PAGE_SIZE);
+    middleId = service.lookupRatings(TOUR_ID, middlePage).getContent().get(0).getId();
+  }
+
+  /** Removes the ratings created by the write benchmarks and repairs the tour aggregate. */
+  @TearDown(Level.Iteration)
+  public void cleanUp() {
+    if (RatingSeeder.removeBenchmarkRatings(context) > 0) {
+      context.getBean(TourRatingAggregateService.class).rebuild(TOUR_ID);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    context.close();
+  }
+
+  @Benchmark
+  public void createNew() {
+    service.createNew(TOUR_ID, nextCustomer++, 4, "benchmark");
+  }
+
+  @Benchmark
+  public void rateMany() {
+    Integer[] customers = new Integer[customersPerRateMany];
+    for (int i = 0; i < customers.length; i++) {
+      customers[i] = nextCustomer++;
+    }
+    service.rateMany(TOUR_ID, 3, customers);
+  }
+
+  @Benchmark
+  public Double getAverageScore() {
+    return service.getAverageScore(TOUR_ID);
+  }
+
+  @Benchmark
+  public Page<RatingView> lookupRatingsFirstPage() {
+    return service.lookupRatings(TOUR_ID, PageRequest.of(0, PAGE_SIZE));
+  }
+
+  @Benchmark
+  public Page<RatingView> lookupRatingsLastPage() {
+    return service.lookupRatings(TOUR_ID, lastPage);
+  }
+
+  @Benchmark
+  public Slice<RatingView> lookupRatingsAfterMiddle() {
+    return service.lookupRatingsAfter(TOUR_ID, middleId, PAGE_SIZE);
+  }
+}
@@ -0,0 +1,264 @@
+package io.testoftiramisu.booktour.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.testoftiramisu.booktour.domain.Region;
+import io.testoftiramisu.booktour.domain.RegionConverter;
+import io.testoftiramisu.booktour.repository.RatingView;
+import io.testoftiramisu.booktour.repository.TourRepository;
+import io.testoftiramisu.booktour.web.RatingAssembler;
+import io.testoftiramisu.booktour.web.RatingController;
+import io.testoftiramisu.booktour.web.RatingDto;
+import io.testoftiramisu.booktour.web.RatingRecordPage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.rest.webmvc.support.RepositoryEntityLinks;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.PagedModel;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+/**
+ * Web layer hot paths that do not touch the database: building rating representations, rendering
+ * them as HAL with the mapper of the rating endpoints, and converting regions.
+ *
+ * <p>{@code assemblePage} builds the links of a page from URIs resolved once per request, {@code
+ * assemblePageWithLinkBuilders} with a link builder per rating, as the assembler used to: {@code
+ * -p pageSize=1000} compares them on a large page.
+ *
+ * <p>The {@code PagedModel} and {@code RecordPage} benchmarks encode and decode the same page as
+ * HAL JSON and as the compact application/cbor representation, the trial setup prints their sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WebBenchmark {
+  @Param({"20", "1000"})
+  private int pageSize;
+
+  private ConfigurableApplicationContext context;
+  private RatingAssembler assembler;
+  private RepositoryEntityLinks entityLinks;
+  private ObjectMapper halMapper;
+  private ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+  private JavaType pagedModelType;
+  private RegionConverter regionConverter = new RegionConverter();
+  private RatingView view = new View(42, 1, 1234, 5, "Great tour, would book again");
+  private List<RatingView> views;
+  private RatingDto rating;
+  private PagedModel<RatingDto> page;
+  private RatingRecordPage records;
+  private byte[] pageJson;
+  private byte[] recordsCbor;
+  private int nextRegion;
+
+  @Setup(Level.Trial)
+  public void start() throws IOException {
+    context = BenchmarkApplication.start();
+    assembler = context.getBean(RatingAssembler.class);
+    entityLinks = context.getBean(RepositoryEntityLinks.class);
+    halMapper = halMapper(context);
+
+    Request request = new Request();
+    request.bind();
+    rating = assembler.toModel(view);
+    views = new ArrayList<>(pageSize);
+    for (int i = 0; i < pageSize; i++) {
+      views.add(new View(i, 1, 1000 + i, i % 6, "comment " + i));
+    }
+    List<RatingDto> content = new ArrayList<>(pageSize);
+    views.forEach(view -> content.add(assembler.toModel(view)));
+    page =
+        new PagedModel<>(content, new PagedModel.PageMetadata(pageSize, 3, pageSize * 10L, 10));
+    request.unbind();
+
+    records =
+        RatingRecordPage.of(new PageImpl<>(views, PageRequest.of(3, pageSize), pageSize * 10L));
+    pageJson = halMapper.writeValueAsBytes(page);
+    recordsCbor = cborMapper.writeValueAsBytes(records);
+    pagedModelType =
+        halMapper.getTypeFactory().constructParametricType(PagedModel.class, RatingDto.class);
+    System.out.printf(
+        "%nPage of %d ratings: %d bytes of HAL JSON, %d bytes of CBOR%n",
+        pageSize, pageJson.length, recordsCbor.length);
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    context.close();
+  }
+
+  @Benchmark
+  public RatingDto assemblerToModel(Request request) {
+    return assembler.toModel(view);
+  }
+
+  @Benchmark
+  public List<RatingDto> assemblePage(Request request) {
+    request.bind();
+    List<RatingDto> content = new ArrayList<>(views.size());
+    for (RatingView rating : views) {
+      content.add(assembler.toModel(rating));
+    }
+    return content;
+  }
+
+  @Benchmark
+  public List<RatingDto> assemblePageWithLinkBuilders(Request request) {
+    request.bind();
+    List<RatingDto> content = new ArrayList<>(views.size());
+    for (RatingView rating : views) {
+      RatingDto dto =
+          new RatingDto(rating.getScore(), rating.getComment(), rating.getCustomerId());
+      dto.add(linkTo(methodOn(RatingController.class).getRating(rating.getId(), null)).withSelfRel());
+      dto.add(
+          entityLinks.linkToItemResource(TourRepository.class, rating.getTourId()).withRel("tour"));
+      content.add(dto);
+    }
+    return content;
+  }
+
+  @Benchmark
+  public String serializeRatingDto() throws JsonProcessingException {
+    return halMapper.writeValueAsString(rating);
+  }
+
+  @Benchmark
+  public String serializePagedModel() throws JsonProcessingException {
+    return halMapper.writeValueAsString(page);
+  }
+
+  @Benchmark
+  public byte[] serializeRecordPage() throws JsonProcessingException {
+    return cborMapper.writeValueAsBytes(records);
+  }
+
+  @Benchmark
+  public PagedModel<RatingDto> deserializePagedModel() throws IOException {
+    return halMapper.readValue(pageJson, pagedModelType);
+  }
+
+  @Benchmark
+  public RatingRecordPage deserializeRecordPage() throws IOException {
+    return cborMapper.readValue(recordsCbor, RatingRecordPage.class);
+  }
+
+  @Benchmark
+  public Region regionFromColumn() {
+    Region[] regions = Region.values();
+    return regionConverter.convertToEntityAttribute(
+        regions[nextRegion++ % regions.length].getLabel());
+  }
+
+  @Benchmark
+  public String regionToColumn() {
+    Region[] regions = Region.values();
+    return regionConverter.convertToDatabaseColumn(regions[nextRegion++ % regions.length]);
+  }
+
+  /** The object mapper the MVC endpoints render HAL responses with. */
+  private static ObjectMapper halMapper(ConfigurableApplicationContext context) {
+    return context
+        .getBean("requestMappingHandlerAdapter", RequestMappingHandlerAdapter.class)
+        .getMessageConverters()
+        .stream()
+        .filter(c -> c instanceof AbstractJackson2HttpMessageConverter)
+        .filter(c -> c.canWrite(RepresentationModel.class, MediaTypes.HAL_JSON))
+        .map(c -> ((AbstractJackson2HttpMessageConverter) c).getObjectMapper())
+        .findFirst()
+        .orElseThrow(() -> new IllegalStateException("No HAL message converter"));
+  }
+
+  /**
+   * Current request of a benchmark thread, links are built relative to it. Page benchmarks bind a
+   * new one per page, like the requests of a listing.
+   */
+  @State(Scope.Thread)
+  public static class Request {
+    @Setup(Level.Trial)
+    public void bind() {
+      MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ratings");
+      request.setServerName("localhost");
+      request.setServerPort(8080);
+      RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @TearDown(Level.Trial)
+    public void unbind() {
+      RequestContextHolder.resetRequestAttributes();
+    }
+  }
+
+  /** Rating projection as read from the database. */
+  private static class View implements RatingView {
+    private final Integer id;
+    private final Integer tourId;
+    private final Integer customerId;
+    private final Integer score;
+    private final String comment;
+
+    View(Integer id, Integer tourId, Integer customerId, Integer score, String comment) {
+      this.id = id;
+      this.tourId = tourId;
+      this.customerId = customerId;
+      this.score = score;
+      this.comment = comment;
+    }
+
+    @Override
+    public Integer getId() {
+      return id;
+    }
+
+    @Override
+    public Integer getTourId() {
+      return tourId;
+    }
+
+    @Override
+    public Integer getCustomerId() {
+      return customerId;
+    }
+
+    @Override
+    public Integer getScore() {
+      return score;
+    }
+
+    @Override
+    public String getComment() {
+      return comment;
+    }
+  }
+}
@@ -2,7 +2,9 @@ package io.testoftiramisu.booktour;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 import springfox.documentation.builders.RequestHandlerSelectors;
 import springfox.documentation.service.ApiInfo;
 import springfox.documentation.service.Contact;
@@ -15,7 +17,6 @@ import java.util.ArrayList;
 import static springfox.documentation.builders.PathSelectors.any;
 
 @SpringBootApplication
-@EnableSwagger2WebMvc
 public class TourApp {
 
   @Bean
@@ -37,6 +38,12 @@ public class TourApp {
                 new ArrayList<>()));
   }
 
+  /** Swagger documents the Spring MVC endpoints, it is not set up on the reactive stack. */
+  @Configuration
+  @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+  @EnableSwagger2WebMvc
+  static class SwaggerConfiguration {}
+
   public static void main(String[] args) {
     SpringApplication.run(TourApp.class, args);
   }
@@ -0,0 +1,106 @@
+package io.testoftiramisu.booktour.domain;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Committed rating change read from the outbox, published to downstream systems.
+ *
+ * <p>The identifier is unique across the shards, each one numbers its outbox from its index times
+ * booktour.datasource.shard.id-range. Consumers can ignore a message delivered again by skipping
+ * the identifiers they already processed, not by comparing them, since a rebalanced tour moves to
+ * the range of another shard.
+ */
+public class RatingOutboxMessage {
+  private final long id;
+  private final TourRatingEvent.Type type;
+  private final int tourId;
+  private final int customerId;
+  private final int score;
+  private final int previousScore;
+  private final Instant createdAt;
+
+  /**
+   * Create a RatingOutboxMessage.
+   *
+   * @param id identifier of the outbox row
+   * @param event the committed change
+   * @param createdAt time of the change
+   */
+  public RatingOutboxMessage(long id, TourRatingEvent event, Instant createdAt) {
+    this.id = id;
+    this.type = event.getType();
+    this.tourId = event.getTourId();
+    this.customerId = event.getCustomerId();
+    this.score = event.getScore();
+    this.previousScore = event.getPreviousScore();
+    this.createdAt = createdAt;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public TourRatingEvent.Type getType() {
+    return type;
+  }
+
+  public int getTourId() {
+    return tourId;
+  }
+
+  public int getCustomerId() {
+    return customerId;
+  }
+
+  public int getScore() {
+    return score;
+  }
+
+  public int getPreviousScore() {
+    return previousScore;
+  }
+
+  public Instant getCreatedAt() {
+    return createdAt;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    RatingOutboxMessage that = (RatingOutboxMessage) o;
+    return id == that.id
+        && tourId == that.tourId
+        && customerId == that.customerId
+        && score == that.score
+        && previousScore == that.previousScore
+        && type == that.type
+        && createdAt.equals(that.createdAt);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(id, type, tourId, customerId, score, previousScore, createdAt);
+  }
+
+  @Override
+  public String toString() {
+    return "RatingOutboxMessage{"
+        + "id="
+        + id
+        + ", type="
+        + type
+        + ", tourId="
+        + tourId
+        + ", customerId="
+        + customerId
+        + ", score="
+        + score
+        + ", previousScore="
+        + previousScore
+        + ", createdAt="
+        + createdAt
+        + '}';
+  }
+}
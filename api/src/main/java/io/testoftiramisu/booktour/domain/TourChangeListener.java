@@ -0,0 +1,39 @@
+package io.testoftiramisu.booktour.domain;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * JPA entity listener publishing a {@link TourChangedEvent} for every written Tour or TourPackage.
+ *
+ * <p>Instantiated by Hibernate through the Spring bean container.
+ */
+public class TourChangeListener {
+  private ApplicationEventPublisher publisher;
+
+  @Autowired
+  public TourChangeListener(ApplicationEventPublisher publisher) {
+    this.publisher = publisher;
+  }
+
+  /**
+   * Publishes the change of an entity.
+   *
+   * @param entity the written Tour or TourPackage
+   */
+  @PostPersist
+  @PostUpdate
+  @PostRemove
+  public void changed(Object entity) {
+    if (entity instanceof Tour) {
+      publisher.publishEvent(new TourChangedEvent(Tour.class, ((Tour) entity).getId()));
+    } else if (entity instanceof TourPackage) {
+      publisher.publishEvent(
+          new TourChangedEvent(TourPackage.class, ((TourPackage) entity).getCode()));
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package io.testoftiramisu.booktour.domain;
+
+import java.util.Objects;
+
+/** Signals that a {@link Tour} or a {@link TourPackage} was created, updated or deleted. */
+public class TourChangedEvent {
+  private final Class<?> type;
+  private final Object id;
+
+  /**
+   * Create a TourChangedEvent.
+   *
+   * @param type the class of the changed entity, Tour or TourPackage
+   * @param id the identifier of the changed entity
+   */
+  public TourChangedEvent(Class<?> type, Object id) {
+    this.type = type;
+    this.id = id;
+  }
+
+  public Class<?> getType() {
+    return type;
+  }
+
+  public Object getId() {
+    return id;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    TourChangedEvent that = (TourChangedEvent) o;
+    return Objects.equals(type, that.type) && Objects.equals(id, that.id);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(type, id);
+  }
+
+  @Override
+  public String toString() {
+    return "TourChangedEvent{" + "type=" + type.getSimpleName() + ", id=" + id + '}';
+  }
+}
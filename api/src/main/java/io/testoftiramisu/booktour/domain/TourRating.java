@@ -2,6 +2,7 @@ package io.testoftiramisu.booktour.domain;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
@@ -18,7 +19,7 @@ public class TourRating {
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private Integer id;
 
-  @ManyToOne
+  @ManyToOne(fetch = FetchType.LAZY, optional = false)
   @JoinColumn(name = "tour_id")
   private Tour tour;
 
@@ -67,7 +68,7 @@ public class TourRating {
    * @param score provided user score
    * @return comment based on provided score
    */
-  private String toComment(Integer score) {
+  static String toComment(Integer score) {
     switch (score) {
       case 1:
         return "Terrible";
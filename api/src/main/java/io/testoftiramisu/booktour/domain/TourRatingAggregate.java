@@ -0,0 +1,267 @@
+package io.testoftiramisu.booktour.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Running statistics of all the Ratings of a Tour.
+ *
+ * <p>Kept up to date on every rating write, so reading an average does not need to load the
+ * ratings themselves.
+ */
+@Entity
+@Table(name = "tour_rating_aggregate")
+public class TourRatingAggregate {
+  public static final int MIN_SCORE = 0;
+  public static final int MAX_SCORE = 5;
+
+  @Id
+  @Column(name = "tour_id")
+  private Integer tourId;
+
+  @Column(name = "rating_count")
+  private long count;
+
+  @Column(name = "score_sum")
+  private long sum;
+
+  @Column(name = "min_score")
+  private Integer minScore;
+
+  @Column(name = "max_score")
+  private Integer maxScore;
+
+  @Column(name = "score_0")
+  private long score0;
+
+  @Column(name = "score_1")
+  private long score1;
+
+  @Column(name = "score_2")
+  private long score2;
+
+  @Column(name = "score_3")
+  private long score3;
+
+  @Column(name = "score_4")
+  private long score4;
+
+  @Column(name = "score_5")
+  private long score5;
+
+  protected TourRatingAggregate() {}
+
+  /**
+   * Create an empty aggregate.
+   *
+   * @param tourId the tour identifier.
+   */
+  public TourRatingAggregate(Integer tourId) {
+    this.tourId = tourId;
+  }
+
+  /**
+   * Account for a new rating.
+   *
+   * @param score score of the rating
+   * @throws IllegalArgumentException if the score is out of range
+   */
+  public void add(int score) {
+    addAll(score, 1);
+  }
+
+  /**
+   * Account for several new ratings with the same score.
+   *
+   * @param score score of the ratings
+   * @param ratings number of ratings
+   * @throws IllegalArgumentException if the score is out of range
+   */
+  public void addAll(int score, long ratings) {
+    increment(score, ratings);
+  }
+
+  /**
+   * Account for a removed rating.
+   *
+   * @param score score of the removed rating
+   * @throws IllegalArgumentException if the score is out of range
+   */
+  public void remove(int score) {
+    increment(score, -1);
+  }
+
+  /**
+   * Account for a rating whose score has changed.
+   *
+   * @param oldScore previous score of the rating
+   * @param newScore new score of the rating
+   * @throws IllegalArgumentException if a score is out of range
+   */
+  public void replace(int oldScore, int newScore) {
+    if (oldScore != newScore) {
+      remove(oldScore);
+      add(newScore);
+    }
+  }
+
+  /**
+   * Checks whether both aggregates hold the same statistics.
+   *
+   * @param other aggregate to compare with
+   * @return true if count, sum, min, max and histogram are equal
+   */
+  public boolean sameStatistics(TourRatingAggregate other) {
+    return count == other.count
+        && sum == other.sum
+        && Objects.equals(minScore, other.minScore)
+        && Objects.equals(maxScore, other.maxScore)
+        && Arrays.equals(getHistogram(), other.getHistogram());
+  }
+
+  /**
+   * Overwrites the statistics with the ones of another aggregate.
+   *
+   * @param other aggregate to copy from
+   */
+  public void copyStatistics(TourRatingAggregate other) {
+    long[] histogram = other.getHistogram();
+    for (int score = MIN_SCORE; score <= MAX_SCORE; score++) {
+      setBucket(score, histogram[score]);
+    }
+    count = other.count;
+    sum = other.sum;
+    minScore = other.minScore;
+    maxScore = other.maxScore;
+  }
+
+  private void increment(int score, long delta) {
+    long bucket = getBucket(score) + delta;
+    if (bucket < 0) {
+      throw new IllegalStateException("No rating with score " + score + " for tour " + tourId);
+    }
+    setBucket(score, bucket);
+    count += delta;
+    sum += delta * score;
+    updateMinMax();
+  }
+
+  private void updateMinMax() {
+    minScore = null;
+    maxScore = null;
+    for (int score = MIN_SCORE; score <= MAX_SCORE; score++) {
+      if (getBucket(score) > 0) {
+        if (minScore == null) {
+          minScore = score;
+        }
+        maxScore = score;
+      }
+    }
+  }
+
+  private long getBucket(int score) {
+    switch (score) {
+      case 0:
+        return score0;
+      case 1:
+        return score1;
+      case 2:
+        return score2;
+      case 3:
+        return score3;
+      case 4:
+        return score4;
+      case 5:
+        return score5;
+      default:
+        throw new IllegalArgumentException(
+            "Score " + score + " is not between " + MIN_SCORE + " and " + MAX_SCORE);
+    }
+  }
+
+  private void setBucket(int score, long value) {
+    switch (score) {
+      case 0:
+        score0 = value;
+        break;
+      case 1:
+        score1 = value;
+        break;
+      case 2:
+        score2 = value;
+        break;
+      case 3:
+        score3 = value;
+        break;
+      case 4:
+        score4 = value;
+        break;
+      case 5:
+        score5 = value;
+        break;
+      default:
+        throw new IllegalArgumentException(
+            "Score " + score + " is not between " + MIN_SCORE + " and " + MAX_SCORE);
+    }
+  }
+
+  public Integer getTourId() {
+    return tourId;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getSum() {
+    return sum;
+  }
+
+  public Integer getMinScore() {
+    return minScore;
+  }
+
+  public Integer getMaxScore() {
+    return maxScore;
+  }
+
+  /**
+   * Number of ratings per score.
+   *
+   * @return copy of the histogram, indexed by score
+   */
+  public long[] getHistogram() {
+    return new long[] {score0, score1, score2, score3, score4, score5};
+  }
+
+  /**
+   * Average score of the tour.
+   *
+   * @return average score, null if the tour has no ratings
+   */
+  public Double getAverage() {
+    return count == 0 ? null : (double) sum / count;
+  }
+
+  @Override
+  public String toString() {
+    return "TourRatingAggregate{"
+        + "tourId="
+        + tourId
+        + ", count="
+        + count
+        + ", sum="
+        + sum
+        + ", minScore="
+        + minScore
+        + ", maxScore="
+        + maxScore
+        + ", histogram="
+        + Arrays.toString(getHistogram())
+        + '}';
+  }
+}
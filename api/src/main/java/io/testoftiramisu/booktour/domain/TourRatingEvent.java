@@ -0,0 +1,126 @@
+package io.testoftiramisu.booktour.domain;
+
+import java.util.Objects;
+
+/** Signals that the rating of a {@link Tour} by a customer was created, updated or deleted. */
+public class TourRatingEvent {
+  /** Kind of change of the rating. */
+  public enum Type {
+    CREATED,
+    UPDATED,
+    DELETED
+  }
+
+  private final Type type;
+  private final int tourId;
+  private final int customerId;
+  private final int score;
+  private final int previousScore;
+
+  /**
+   * Create a TourRatingEvent.
+   *
+   * @param type kind of change
+   * @param tourId the identifier of the rated tour
+   * @param customerId the identifier of the customer
+   * @param score score of the rating, the deleted one for a deletion
+   * @param previousScore score before an update, -1 otherwise
+   */
+  public TourRatingEvent(Type type, int tourId, int customerId, int score, int previousScore) {
+    this.type = type;
+    this.tourId = tourId;
+    this.customerId = customerId;
+    this.score = score;
+    this.previousScore = previousScore;
+  }
+
+  /**
+   * Signals a created rating.
+   *
+   * @param tourId the identifier of the rated tour
+   * @param customerId the identifier of the customer
+   * @param score score of the rating
+   * @return the event
+   */
+  public static TourRatingEvent created(int tourId, int customerId, int score) {
+    return new TourRatingEvent(Type.CREATED, tourId, customerId, score, -1);
+  }
+
+  /**
+   * Signals an updated rating.
+   *
+   * @param tourId the identifier of the rated tour
+   * @param customerId the identifier of the customer
+   * @param previousScore score before the update
+   * @param score score after the update
+   * @return the event
+   */
+  public static TourRatingEvent updated(int tourId, int customerId, int previousScore, int score) {
+    return new TourRatingEvent(Type.UPDATED, tourId, customerId, score, previousScore);
+  }
+
+  /**
+   * Signals a deleted rating.
+   *
+   * @param tourId the identifier of the rated tour
+   * @param customerId the identifier of the customer
+   * @param score score of the deleted rating
+   * @return the event
+   */
+  public static TourRatingEvent deleted(int tourId, int customerId, int score) {
+    return new TourRatingEvent(Type.DELETED, tourId, customerId, score, -1);
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public int getTourId() {
+    return tourId;
+  }
+
+  public int getCustomerId() {
+    return customerId;
+  }
+
+  public int getScore() {
+    return score;
+  }
+
+  public int getPreviousScore() {
+    return previousScore;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    TourRatingEvent that = (TourRatingEvent) o;
+    return type == that.type
+        && tourId == that.tourId
+        && customerId == that.customerId
+        && score == that.score
+        && previousScore == that.previousScore;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(type, tourId, customerId, score, previousScore);
+  }
+
+  @Override
+  public String toString() {
+    return "TourRatingEvent{"
+        + "type="
+        + type
+        + ", tourId="
+        + tourId
+        + ", customerId="
+        + customerId
+        + ", score="
+        + score
+        + ", previousScore="
+        + previousScore
+        + '}';
+  }
+}
@@ -0,0 +1,101 @@
+package io.testoftiramisu.booktour.domain;
+
+import io.testoftiramisu.booktour.repository.RatingView;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Row of the tour_rating table, as read and written by the reactive stack and by the single
+ * statement writes of {@link io.testoftiramisu.booktour.repository.TourRatingKeyRepository}.
+ *
+ * <p>Unlike {@link TourRating} it holds the tour identifier instead of the tour, R2DBC does not
+ * load relations.
+ */
+@Table("tour_rating")
+public class TourRatingRow implements RatingView {
+  @Id private Integer id;
+
+  private Integer tourId;
+
+  private Integer customerId;
+
+  private Integer score;
+
+  private String comment;
+
+  protected TourRatingRow() {}
+
+  /**
+   * Create a new rating row, its identifier is generated on insert.
+   *
+   * @param tourId the tour identifier.
+   * @param customerId the customer identifier.
+   * @param score Integer score (0-5)
+   * @param comment Optional comment from the customer
+   */
+  public TourRatingRow(Integer tourId, Integer customerId, Integer score, String comment) {
+    this.tourId = tourId;
+    this.customerId = customerId;
+    this.score = score;
+    this.comment = comment;
+  }
+
+  /**
+   * Create a rating row read from the database.
+   *
+   * @param id the rating identifier.
+   * @param tourId the tour identifier.
+   * @param customerId the customer identifier.
+   * @param score Integer score (0-5)
+   * @param comment Optional comment from the customer
+   */
+  public TourRatingRow(
+      Integer id, Integer tourId, Integer customerId, Integer score, String comment) {
+    this(tourId, customerId, score, comment);
+    this.id = id;
+  }
+
+  /**
+   * Create a new rating row with a comment generated from the score.
+   *
+   * @param tourId the tour identifier.
+   * @param customerId the customer identifier.
+   * @param score Integer score (0-5)
+   */
+  public TourRatingRow(Integer tourId, Integer customerId, Integer score) {
+    this(tourId, customerId, score, TourRating.toComment(score));
+  }
+
+  @Override
+  public Integer getId() {
+    return id;
+  }
+
+  @Override
+  public Integer getTourId() {
+    return tourId;
+  }
+
+  @Override
+  public Integer getCustomerId() {
+    return customerId;
+  }
+
+  @Override
+  public Integer getScore() {
+    return score;
+  }
+
+  @Override
+  public String getComment() {
+    return comment;
+  }
+
+  public void setScore(Integer score) {
+    this.score = score;
+  }
+
+  public void setComment(String comment) {
+    this.comment = comment;
+  }
+}
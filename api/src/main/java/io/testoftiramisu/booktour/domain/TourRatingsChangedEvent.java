@@ -0,0 +1,39 @@
+package io.testoftiramisu.booktour.domain;
+
+import java.util.Objects;
+
+/** Signals that ratings of a {@link Tour} were created, updated or deleted. */
+public class TourRatingsChangedEvent {
+  private final int tourId;
+
+  /**
+   * Create a TourRatingsChangedEvent.
+   *
+   * @param tourId the identifier of the rated tour
+   */
+  public TourRatingsChangedEvent(int tourId) {
+    this.tourId = tourId;
+  }
+
+  public int getTourId() {
+    return tourId;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    TourRatingsChangedEvent that = (TourRatingsChangedEvent) o;
+    return tourId == that.tourId;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(tourId);
+  }
+
+  @Override
+  public String toString() {
+    return "TourRatingsChangedEvent{" + "tourId=" + tourId + '}';
+  }
+}
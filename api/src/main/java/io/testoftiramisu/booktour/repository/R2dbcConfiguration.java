@@ -0,0 +1,103 @@
+package io.testoftiramisu.booktour.repository;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan.Filter;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.r2dbc.config.AbstractR2dbcConfiguration;
+import org.springframework.data.r2dbc.connectionfactory.R2dbcTransactionManager;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+
+/**
+ * R2DBC access to the ratings for the "reactive" profile, see application-reactive.properties.
+ *
+ * <p>Connects to the same database as the JDBC data source, which still creates the schema and
+ * serves the JPA repositories.
+ */
+@Configuration
+@Profile("reactive")
+@EnableR2dbcRepositories(
+    basePackageClasses = ReactiveTourRatingRepository.class,
+    includeFilters = @Filter(type = FilterType.ASSIGNABLE_TYPE, classes = R2dbcRepository.class))
+public class R2dbcConfiguration extends AbstractR2dbcConfiguration {
+  private String url;
+  private String username;
+  private String password;
+  private int maxSize;
+  private Duration maxAcquireTime;
+
+  /**
+   * Constructs R2dbcConfiguration.
+   *
+   * @param url R2DBC url of the database
+   * @param username database user, the one of the JDBC data source by default
+   * @param password password of the database user
+   * @param maxSize maximum number of pooled connections
+   * @param maxAcquireTime maximum time to wait for a pooled connection
+   */
+  public R2dbcConfiguration(
+      @Value("${booktour.r2dbc.url}") String url,
+      @Value("${booktour.r2dbc.username:${spring.datasource.username:sa}}") String username,
+      @Value("${booktour.r2dbc.password:${spring.datasource.password:}}") String password,
+      @Value("${booktour.r2dbc.pool.max-size:20}") int maxSize,
+      @Value("${booktour.r2dbc.pool.max-acquire-time:5s}") Duration maxAcquireTime) {
+    this.url = url;
+    this.username = username;
+    this.password = password;
+    this.maxSize = maxSize;
+    this.maxAcquireTime = maxAcquireTime;
+  }
+
+  /**
+   * Pooled connections to the database.
+   *
+   * <p>The embedded H2 driver blocks the calling thread, so acquired connections are handed over on
+   * the bounded elastic scheduler instead of on the thread releasing them, which would otherwise
+   * run every waiting request in turn.
+   *
+   * @return R2DBC connection pool
+   */
+  @Override
+  @Bean
+  public ConnectionFactory connectionFactory() {
+    return new ConnectionPool(
+        ConnectionPoolConfiguration.builder(
+                ConnectionFactories.get(
+                    ConnectionFactoryOptions.parse(url)
+                        .mutate()
+                        .option(ConnectionFactoryOptions.USER, username)
+                        .option(ConnectionFactoryOptions.PASSWORD, password)
+                        .build()))
+            .initialSize(Math.min(10, maxSize))
+            .maxSize(maxSize)
+            .maxAcquireTime(maxAcquireTime)
+            .customizer(pool -> pool.acquisitionScheduler(Schedulers.boundedElastic()))
+            .build());
+  }
+
+  /**
+   * Transactions of the reactive rating writes.
+   *
+   * <p>The transaction manager is not a bean, so {@code @Transactional} keeps resolving to the JPA
+   * one.
+   *
+   * @param connectionFactory pooled R2DBC connections
+   * @return operator running a publisher in a transaction
+   */
+  @Bean
+  public TransactionalOperator reactiveTransactionalOperator(ConnectionFactory connectionFactory) {
+    return TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+  }
+}
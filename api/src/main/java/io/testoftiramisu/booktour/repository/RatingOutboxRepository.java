@@ -0,0 +1,100 @@
+package io.testoftiramisu.booktour.repository;
+
+import io.testoftiramisu.booktour.domain.RatingOutboxMessage;
+import io.testoftiramisu.booktour.domain.TourRatingEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * JDBC access to the rating_outbox table, in the transaction and on the shard of the caller.
+ *
+ * <p>Rows are written in JDBC batches and read in the order of their identifiers.
+ */
+@Repository
+public class RatingOutboxRepository {
+  private static final String INSERT_SQL =
+      "insert into rating_outbox (type, tour_id, customer_id, score, previous_score, created_at)"
+          + " values (?, ?, ?, ?, ?, ?)";
+  private static final String SELECT_SQL =
+      "select id, type, tour_id, customer_id, score, previous_score, created_at"
+          + " from rating_outbox order by id limit ?";
+  private static final String DELETE_SQL = "delete from rating_outbox where id = ?";
+
+  private static final RowMapper<RatingOutboxMessage> ROW_MAPPER =
+      (rs, rowNum) ->
+          new RatingOutboxMessage(
+              rs.getLong("id"),
+              new TourRatingEvent(
+                  TourRatingEvent.Type.valueOf(rs.getString("type")),
+                  rs.getInt("tour_id"),
+                  rs.getInt("customer_id"),
+                  rs.getInt("score"),
+                  rs.getInt("previous_score")),
+              rs.getTimestamp("created_at").toInstant());
+
+  private JdbcTemplate jdbcTemplate;
+
+  /**
+   * Constructs RatingOutboxRepository.
+   *
+   * @param jdbcTemplate JDBC template sharing the JPA transaction
+   */
+  @Autowired
+  public RatingOutboxRepository(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  /**
+   * Inserts rating changes in one JDBC batch.
+   *
+   * @param events the changes, in the order of their identifiers
+   * @param createdAt time of the changes
+   */
+  public void insertAll(List<TourRatingEvent> events, Instant createdAt) {
+    Timestamp timestamp = Timestamp.from(createdAt);
+    jdbcTemplate.batchUpdate(
+        INSERT_SQL,
+        events.stream()
+            .map(
+                event ->
+                    new Object[] {
+                      event.getType().name(),
+                      event.getTourId(),
+                      event.getCustomerId(),
+                      event.getScore(),
+                      event.getPreviousScore(),
+                      timestamp
+                    })
+            .collect(Collectors.toList()));
+  }
+
+  /**
+   * Reads the oldest rating changes.
+   *
+   * @param limit maximum number of changes
+   * @return the changes in the order of their identifiers
+   */
+  public List<RatingOutboxMessage> findOldest(int limit) {
+    return jdbcTemplate.query(SELECT_SQL, ROW_MAPPER, limit);
+  }
+
+  /**
+   * Deletes rating changes by identifier, leaving the ones committed since they were read.
+   *
+   * @param messages the changes to delete
+   */
+  public void deleteAll(List<RatingOutboxMessage> messages) {
+    jdbcTemplate.batchUpdate(
+        DELETE_SQL,
+        messages.stream()
+            .map(message -> new Object[] {message.getId()})
+            .collect(Collectors.toList()));
+  }
+}
@@ -0,0 +1,15 @@
+package io.testoftiramisu.booktour.repository;
+
+/** Columns of a rating, read without loading the rating entity or its tour. */
+public interface RatingView {
+
+  Integer getId();
+
+  Integer getTourId();
+
+  Integer getCustomerId();
+
+  Integer getScore();
+
+  String getComment();
+}
@@ -0,0 +1,173 @@
+package io.testoftiramisu.booktour.repository;
+
+import io.testoftiramisu.booktour.domain.TourRatingRow;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of {@link TourRatingRepository}, on R2DBC for the "reactive" profile.
+ *
+ * <p>Rows are emitted as the database returns them and on demand, so a slow client slows down the
+ * query instead of buffering its result. The tour_rating_aggregate row of a tour is updated in
+ * place by a single statement, without reading it first.
+ *
+ * <p>Like {@link TourRatingKeyRepositoryImpl}, ratings are updated and deleted through an H2 data
+ * change delta table selected from a derived table, which returns the rating as it was before the
+ * change. The row stays locked until the transaction ends, so concurrent changes of a rating each
+ * read the score the previous one left.
+ */
+public interface ReactiveTourRatingRepository extends R2dbcRepository<TourRatingRow, Integer> {
+
+  /**
+   * Lookup a page of the ratings of a tour, ordered by identifier.
+   *
+   * @param tourId tour identifier
+   * @param limit maximum number of ratings
+   * @param offset number of ratings to skip
+   * @return {@link Flux} of the ratings
+   */
+  @Query(
+      "select * from tour_rating where tour_id = :tourId order by id limit :limit offset :offset")
+  Flux<TourRatingRow> findByTourId(int tourId, int limit, long offset);
+
+  /**
+   * Lookup a page of the ratings of all tours, ordered by identifier.
+   *
+   * @param limit maximum number of ratings
+   * @param offset number of ratings to skip
+   * @return {@link Flux} of the ratings
+   */
+  @Query("select * from tour_rating order by id limit :limit offset :offset")
+  Flux<TourRatingRow> findPage(int limit, long offset);
+
+  /**
+   * Stream every rating, ordered by identifier.
+   *
+   * @return {@link Flux} of all the ratings
+   */
+  @Query("select * from tour_rating order by id")
+  Flux<TourRatingRow> streamAll();
+
+  /**
+   * Replaces the score and the comment of a rating.
+   *
+   * @param tourId tour identifier
+   * @param customerId customer identifier
+   * @param score new score
+   * @param comment new comment
+   * @return the rating before the update, empty if not found
+   */
+  @Query(
+      "select id, tour_id, customer_id, score, comment from ("
+          + "select id, tour_id, customer_id, score, comment from old table ("
+          + "update tour_rating set score = :score, comment = :comment"
+          + " where tour_id = :tourId and customer_id = :customerId))")
+  Mono<TourRatingRow> updateRating(int tourId, int customerId, Integer score, String comment);
+
+  /**
+   * Replaces the score and the comment of a rating, when given.
+   *
+   * @param tourId tour identifier
+   * @param customerId customer identifier
+   * @param score new score, unchanged if null
+   * @param comment new comment, unchanged if null
+   * @return the rating before the update, empty if not found
+   */
+  @Query(
+      "select id, tour_id, customer_id, score, comment from ("
+          + "select id, tour_id, customer_id, score, comment from old table ("
+          + "update tour_rating set score = coalesce(:score, score),"
+          + " comment = coalesce(:comment, comment)"
+          + " where tour_id = :tourId and customer_id = :customerId))")
+  Mono<TourRatingRow> updateSomeOfRating(
+      int tourId, int customerId, Integer score, String comment);
+
+  /**
+   * Deletes a rating.
+   *
+   * @param tourId tour identifier
+   * @param customerId customer identifier
+   * @return the deleted rating, empty if not found
+   */
+  @Query(
+      "select id, tour_id, customer_id, score, comment from ("
+          + "select id, tour_id, customer_id, score, comment from old table ("
+          + "delete from tour_rating where tour_id = :tourId and customer_id = :customerId))")
+  Mono<TourRatingRow> deleteRating(int tourId, int customerId);
+
+  /**
+   * Lookup the identifier of a tour, to verify it exists.
+   *
+   * @param tourId tour identifier
+   * @return the identifier if the tour exists, empty otherwise
+   */
+  @Query("select id from tour where id = :tourId")
+  Mono<Long> findTourId(int tourId);
+
+  /**
+   * Reads the average score of a tour from its rating aggregate.
+   *
+   * @param tourId tour identifier
+   * @return the average score, empty if the tour has no ratings
+   */
+  @Query(
+      "select cast(score_sum as double) / rating_count from tour_rating_aggregate"
+          + " where tour_id = :tourId and rating_count > 0")
+  Mono<Double> findAverageScore(int tourId);
+
+  /**
+   * Creates the empty aggregate of a tour.
+   *
+   * @param tourId tour identifier
+   * @return number of inserted rows
+   */
+  @Modifying
+  @Query(
+      "insert into tour_rating_aggregate (tour_id, rating_count, score_sum,"
+          + " score_0, score_1, score_2, score_3, score_4, score_5)"
+          + " values (:tourId, 0, 0, 0, 0, 0, 0, 0, 0)")
+  Mono<Integer> createAggregate(int tourId);
+
+  /**
+   * Adds ratings with the same score to the aggregate of a tour, or removes them if negative.
+   *
+   * @param tourId tour identifier
+   * @param score score of the ratings
+   * @param ratings number of added ratings, negative for removed ones
+   * @return number of updated rows, 0 if the tour has no aggregate yet
+   */
+  @Modifying
+  @Query(
+      "update tour_rating_aggregate set"
+          + " rating_count = rating_count + :ratings,"
+          + " score_sum = score_sum + :score * :ratings,"
+          + " score_0 = score_0 + case when :score = 0 then :ratings else 0 end,"
+          + " score_1 = score_1 + case when :score = 1 then :ratings else 0 end,"
+          + " score_2 = score_2 + case when :score = 2 then :ratings else 0 end,"
+          + " score_3 = score_3 + case when :score = 3 then :ratings else 0 end,"
+          + " score_4 = score_4 + case when :score = 4 then :ratings else 0 end,"
+          + " score_5 = score_5 + case when :score = 5 then :ratings else 0 end"
+          + " where tour_id = :tourId")
+  Mono<Integer> addToAggregate(int tourId, int score, long ratings);
+
+  /**
+   * Recomputes the lowest and highest score of the aggregate of a tour from its histogram.
+   *
+   * @param tourId tour identifier
+   * @return number of updated rows
+   */
+  @Modifying
+  @Query(
+      "update tour_rating_aggregate set"
+          + " min_score = case when score_0 > 0 then 0 when score_1 > 0 then 1"
+          + " when score_2 > 0 then 2 when score_3 > 0 then 3 when score_4 > 0 then 4"
+          + " when score_5 > 0 then 5 end,"
+          + " max_score = case when score_5 > 0 then 5 when score_4 > 0 then 4"
+          + " when score_3 > 0 then 3 when score_2 > 0 then 2 when score_1 > 0 then 1"
+          + " when score_0 > 0 then 0 end"
+          + " where tour_id = :tourId")
+  Mono<Integer> updateAggregateBounds(int tourId);
+}
@@ -0,0 +1,127 @@
+package io.testoftiramisu.booktour.repository;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.testoftiramisu.booktour.repository.ReplicaRoutingDataSource.Replica;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas of the database, enabled by listing their JDBC urls in
+ * booktour.datasource.replicas.
+ *
+ * <p>The spring.datasource properties keep configuring the primary, which serves the writes, the
+ * Flyway migrations and whatever runs outside of a read-only transaction. The replicas share its
+ * credentials.
+ *
+ * <p>The connection pools are not beans: Spring Boot initializes the single data source bean of the
+ * application whenever another data source bean is created, which the routing one depends on.
+ */
+@Configuration
+@ConditionalOnProperty("booktour.datasource.replicas")
+public class ReadReplicaConfiguration implements DisposableBean {
+  private String[] urls;
+  private Duration maxLag;
+  private Duration heartbeatInterval;
+  private int maxSize;
+  private Duration connectionTimeout;
+  private ReplicaRoutingDataSource routing;
+
+  /**
+   * Constructs ReadReplicaConfiguration.
+   *
+   * @param urls comma-separated JDBC urls of the replicas
+   * @param maxLag maximum lag of a replica serving reads
+   * @param heartbeatInterval time between two heartbeats
+   * @param maxSize maximum number of pooled connections per replica
+   * @param connectionTimeout maximum time to wait for a replica connection before reading from the
+   *     primary
+   */
+  public ReadReplicaConfiguration(
+      @Value("${booktour.datasource.replicas}") String[] urls,
+      @Value("${booktour.datasource.replica.max-lag:5s}") Duration maxLag,
+      @Value("${booktour.datasource.replica.heartbeat-interval:1s}") Duration heartbeatInterval,
+      @Value("${booktour.datasource.replica.pool.max-size:10}") int maxSize,
+      @Value("${booktour.datasource.replica.pool.connection-timeout:1s}")
+          Duration connectionTimeout) {
+    this.urls = urls;
+    this.maxLag = maxLag;
+    this.heartbeatInterval = heartbeatInterval;
+    this.maxSize = maxSize;
+    this.connectionTimeout = connectionTimeout;
+  }
+
+  /**
+   * Data source of JPA, JdbcTemplate and Flyway, routing a connection to the primary or to a
+   * replica at its first statement.
+   *
+   * <p>The primary pool is configured as the single one would be, by spring.datasource.hikari. A
+   * replica pool does not fail the start when its replica is down, the heartbeat keeps it out of
+   * the routing until it is back.
+   *
+   * @param properties spring.datasource properties
+   * @param environment environment of the spring.datasource.hikari properties
+   * @param registry registry of the pool and replica metrics
+   * @return lazy proxy of the routing data source
+   */
+  @Bean
+  public DataSource dataSource(
+      DataSourceProperties properties, Environment environment, MeterRegistry registry) {
+    HikariDataSource primary =
+        properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+    primary.setMetricRegistry(registry);
+
+    List<Replica> replicas = new ArrayList<>(urls.length);
+    for (int i = 0; i < urls.length; i++) {
+      HikariConfig config = new HikariConfig();
+      config.setPoolName("replica-" + (i + 1));
+      config.setJdbcUrl(urls[i].trim());
+      config.setUsername(properties.determineUsername());
+      config.setPassword(properties.determinePassword());
+      config.setMaximumPoolSize(maxSize);
+      config.setConnectionTimeout(connectionTimeout.toMillis());
+      config.setInitializationFailTimeout(-1);
+      config.setReadOnly(true);
+      config.setMetricRegistry(registry);
+      replicas.add(new Replica(config.getPoolName(), new HikariDataSource(config)));
+    }
+    routing = new ReplicaRoutingDataSource(primary, replicas, maxLag, Clock.systemUTC(), registry);
+    return new LazyConnectionDataSourceProxy(routing);
+  }
+
+  /**
+   * Lag measurement of the replicas.
+   *
+   * @param dataSource data source of the application, created first
+   * @return heartbeat of the replicas
+   */
+  @Bean
+  public ReplicaHeartbeat replicaHeartbeat(DataSource dataSource) {
+    return new ReplicaHeartbeat(
+        routing.getPrimary(), routing.getReplicas(), heartbeatInterval, Clock.systemUTC());
+  }
+
+  /** Closes the connection pools, once the beans using them are destroyed. */
+  @Override
+  public void destroy() {
+    if (routing != null) {
+      routing.close();
+    }
+  }
+}
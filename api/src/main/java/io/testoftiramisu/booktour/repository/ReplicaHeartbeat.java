@@ -0,0 +1,102 @@
+package io.testoftiramisu.booktour.repository;
+
+import io.testoftiramisu.booktour.repository.ReplicaRoutingDataSource.Replica;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how far the read replicas are replicated.
+ *
+ * <p>Every interval, the current time is written to the replication_heartbeat table of the primary,
+ * then read back from every replica: a replica holding the beat written at a time holds every
+ * change committed before it. A replica that cannot be read is unavailable until the next beat.
+ */
+@Slf4j
+public class ReplicaHeartbeat implements SmartLifecycle {
+  private static final String WRITE_SQL = "update replication_heartbeat set beat = ? where id = 1";
+  private static final String READ_SQL = "select beat from replication_heartbeat where id = 1";
+
+  private JdbcTemplate primary;
+  private List<Replica> replicas;
+  private Duration interval;
+  private Clock clock;
+  private ScheduledExecutorService executor;
+
+  /**
+   * Constructs ReplicaHeartbeat.
+   *
+   * @param primary data source of the primary database
+   * @param replicas read replicas of the primary
+   * @param interval time between two beats
+   * @param clock clock of the beats
+   */
+  public ReplicaHeartbeat(
+      DataSource primary, List<Replica> replicas, Duration interval, Clock clock) {
+    this.primary = new JdbcTemplate(primary);
+    this.replicas = replicas;
+    this.interval = interval;
+    this.clock = clock;
+  }
+
+  /** Writes a beat on the primary and reads the last replicated one from every replica. */
+  void beat() {
+    try {
+      primary.update(WRITE_SQL, clock.millis());
+    } catch (DataAccessException ex) {
+      log.warn("Heartbeat not written on the primary: {}", ex.getMessage());
+    }
+    for (Replica replica : replicas) {
+      try {
+        Long beat = new JdbcTemplate(replica.getDataSource()).queryForObject(READ_SQL, Long.class);
+        replica.replicated(Instant.ofEpochMilli(beat));
+      } catch (DataAccessException ex) {
+        if (replica.isReplicatedSince(Instant.MIN)) {
+          log.warn("Replica {} unavailable: {}", replica.getName(), ex.getMessage());
+        }
+        replica.unavailable();
+      }
+    }
+  }
+
+  @Override
+  public void start() {
+    if (executor != null) {
+      return;
+    }
+    executor =
+        Executors.newSingleThreadScheduledExecutor(
+            task -> {
+              Thread thread = new Thread(task, "replica-heartbeat");
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.scheduleWithFixedDelay(
+        this::beat, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    log.info("Replica heartbeat started, every {} on {} replicas", interval, replicas.size());
+  }
+
+  @Override
+  public void stop() {
+    if (executor == null) {
+      return;
+    }
+    executor.shutdownNow();
+    executor = null;
+  }
+
+  @Override
+  public boolean isRunning() {
+    return executor != null;
+  }
+}
@@ -0,0 +1,270 @@
+package io.testoftiramisu.booktour.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Data source sending the read-only transactions marked with {@link #readFromReplica} to read
+ * replicas and everything else to the primary.
+ *
+ * <p>A replica serves a marked transaction while its last replicated heartbeat, see {@link
+ * ReplicaHeartbeat}, is no older than the maximum lag, nor older than the changes the transaction
+ * asked for. Such replicas take turns. With none of them, or when a replica refuses a connection,
+ * the transaction reads from the primary.
+ *
+ * <p>The JPA session of a transaction served by a replica only reads the second-level and query
+ * caches, {@link CacheMode#GET}, so entities a replica lags on are not cached for the primary
+ * reads.
+ *
+ * <p>The replica is chosen when a connection is requested, so this data source has to be wrapped in
+ * a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: a JPA transaction
+ * requests its connection before it is marked read-only.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+  static final String LAG = "booktour.datasource.replica.lag";
+  static final String FALLBACKS = "booktour.datasource.replica.fallbacks";
+
+  private static final Object CHANGES_SINCE = new Object();
+
+  private DataSource primary;
+  private List<Replica> replicas;
+  private Duration maxLag;
+  private Clock clock;
+  private Counter fallbacks;
+  private AtomicInteger next = new AtomicInteger();
+
+  /**
+   * Constructs ReplicaRoutingDataSource.
+   *
+   * @param primary data source of the primary database
+   * @param replicas read replicas of the primary
+   * @param maxLag maximum lag of a replica serving reads
+   * @param clock clock of the lag
+   * @param registry registry of the replica metrics
+   */
+  public ReplicaRoutingDataSource(
+      DataSource primary,
+      List<Replica> replicas,
+      Duration maxLag,
+      Clock clock,
+      MeterRegistry registry) {
+    this.primary = primary;
+    this.replicas = replicas;
+    this.maxLag = maxLag;
+    this.clock = clock;
+    for (Replica replica : replicas) {
+      Gauge.builder(LAG, replica, r -> r.lag(clock.instant()))
+          .description("Age of the last heartbeat read from a replica, NaN while unavailable")
+          .baseUnit("seconds")
+          .tag("replica", replica.getName())
+          .register(registry);
+    }
+    fallbacks =
+        Counter.builder(FALLBACKS)
+            .description("Read-only connections taken from the primary, no replica being usable")
+            .register(registry);
+  }
+
+  /**
+   * Lets a replica within the maximum lag serve the current read-only transaction.
+   *
+   * <p>Has to be called before the first statement of the transaction, and has no effect outside
+   * of a transaction or without replicas.
+   */
+  public static void readFromReplica() {
+    readFromReplica(Instant.MIN);
+  }
+
+  /**
+   * Lets a replica serve the current read-only transaction if the changes committed up to a point
+   * in time are visible on it. Called again, the latest point in time is kept.
+   *
+   * <p>Has to be called before the first statement of the transaction, and has no effect outside
+   * of a transaction or without replicas.
+   *
+   * @param since time after which the changes to read were committed
+   */
+  public static void readFromReplica(Instant since) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      return;
+    }
+    Instant current = (Instant) TransactionSynchronizationManager.getResource(CHANGES_SINCE);
+    if (current == null) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+              TransactionSynchronizationManager.unbindResourceIfPossible(CHANGES_SINCE);
+            }
+          });
+    } else if (current.isBefore(since)) {
+      TransactionSynchronizationManager.unbindResource(CHANGES_SINCE);
+    } else {
+      return;
+    }
+    TransactionSynchronizationManager.bindResource(CHANGES_SINCE, since);
+  }
+
+  /**
+   * Data source of the primary database.
+   *
+   * @return the primary
+   */
+  public DataSource getPrimary() {
+    return primary;
+  }
+
+  /**
+   * Read replicas of the primary.
+   *
+   * @return the replicas, in order
+   */
+  public List<Replica> getReplicas() {
+    return replicas;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+        || !TransactionSynchronizationManager.hasResource(CHANGES_SINCE)) {
+      return primary.getConnection();
+    }
+    Replica replica = select();
+    if (replica != null) {
+      try {
+        Connection connection = replica.getDataSource().getConnection();
+        onlyReadCaches();
+        return connection;
+      } catch (SQLException ex) {
+        log.warn("Replica {} refused a connection, reading from the primary", replica.getName());
+        replica.unavailable();
+      }
+    }
+    fallbacks.increment();
+    return primary.getConnection();
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    throw new UnsupportedOperationException("Connections use the credentials of the pools");
+  }
+
+  /** Closes the connection pools of the primary and of the replicas. */
+  @Override
+  public void close() {
+    close(primary);
+    replicas.forEach(replica -> close(replica.getDataSource()));
+  }
+
+  private static void close(DataSource dataSource) {
+    if (dataSource instanceof HikariDataSource) {
+      ((HikariDataSource) dataSource).close();
+    }
+  }
+
+  /** Stops the JPA sessions of the current transaction from putting what they load in caches. */
+  private static void onlyReadCaches() {
+    for (Object resource : TransactionSynchronizationManager.getResourceMap().values()) {
+      if (resource instanceof EntityManagerHolder) {
+        ((EntityManagerHolder) resource)
+            .getEntityManager()
+            .unwrap(Session.class)
+            .setCacheMode(CacheMode.GET);
+      }
+    }
+  }
+
+  /**
+   * Next replica in turn that is recent enough for the current transaction.
+   *
+   * @return the replica, null if none is
+   */
+  private Replica select() {
+    Instant oldest = clock.instant().minus(maxLag);
+    Instant since = (Instant) TransactionSynchronizationManager.getResource(CHANGES_SINCE);
+    if (since.isAfter(oldest)) {
+      oldest = since;
+    }
+    int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+    for (int i = 0; i < replicas.size(); i++) {
+      Replica replica = replicas.get((start + i) % replicas.size());
+      if (replica.isReplicatedSince(oldest)) {
+        return replica;
+      }
+    }
+    return null;
+  }
+
+  /** A read replica and how far it is replicated, as last seen by the heartbeat. */
+  public static class Replica {
+    private final String name;
+    private final DataSource dataSource;
+    private volatile Instant replicatedUntil;
+
+    /**
+     * Constructs Replica, unavailable until its first heartbeat is read.
+     *
+     * @param name name of the replica in logs and metrics
+     * @param dataSource pooled connections to the replica
+     */
+    public Replica(String name, DataSource dataSource) {
+      this.name = name;
+      this.dataSource = dataSource;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public DataSource getDataSource() {
+      return dataSource;
+    }
+
+    /**
+     * Records the last heartbeat read from the replica.
+     *
+     * @param beat time the heartbeat was written on the primary
+     */
+    void replicated(Instant beat) {
+      replicatedUntil = beat;
+    }
+
+    /** Stops reading from the replica until its next heartbeat is read. */
+    void unavailable() {
+      replicatedUntil = null;
+    }
+
+    boolean isReplicatedSince(Instant time) {
+      Instant until = replicatedUntil;
+      return until != null && !until.isBefore(time);
+    }
+
+    private double lag(Instant now) {
+      Instant until = replicatedUntil;
+      if (until == null) {
+        return Double.NaN;
+      }
+      return Math.max(0, Duration.between(until, now).toMillis()) / 1e3;
+    }
+  }
+}
@@ -0,0 +1,11 @@
+package io.testoftiramisu.booktour.repository;
+
+/** Number of ratings of a tour with a given score. */
+public interface ScoreCount {
+
+  Integer getTourId();
+
+  Integer getScore();
+
+  Long getTotal();
+}
@@ -0,0 +1,221 @@
+package io.testoftiramisu.booktour.repository;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of binary records in memory-mapped segment files.
+ *
+ * <p>Records are numbered from 1 in order of appending. A segment is a file of a fixed size named
+ * after the number of its first record, holding a header then, for each record, its length, the
+ * CRC32 of its content and its content. The first zero length ends the records of a segment. A
+ * record that does not fit in the current segment starts a new one.
+ *
+ * <p>The records of the last segment that follow a torn or corrupt one, as left by a crash, are
+ * dropped when the log is opened. Corruption in an earlier segment fails the opening. CRC checks of
+ * the records can be turned off to replay faster, leaving only their length to detect a torn write.
+ *
+ * <p>Appended records reach the disk when the operating system writes the mapped pages back, or
+ * when the log is synced.
+ */
+@Slf4j
+public class SegmentLog implements Closeable {
+  private static final int MAGIC = 0x4254524c;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 8;
+  private static final int RECORD_HEADER_SIZE = 8;
+  private static final String SUFFIX = ".seg";
+
+  private Path directory;
+  private int segmentSize;
+  private boolean verifyCrc;
+  private FileChannel channel;
+  private MappedByteBuffer segment;
+  private long next;
+
+  /**
+   * Constructs SegmentLog, to be opened before appending.
+   *
+   * @param directory directory of the segment files, created if needed
+   * @param segmentSize size of a segment file in bytes
+   * @param verifyCrc whether opening the log checks the CRC of the records
+   */
+  public SegmentLog(Path directory, int segmentSize, boolean verifyCrc) {
+    if (segmentSize <= HEADER_SIZE + RECORD_HEADER_SIZE) {
+      throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+    }
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.verifyCrc = verifyCrc;
+  }
+
+  /**
+   * Replays the records following a given one, then positions the log after the last record.
+   *
+   * <p>Segments holding only earlier records are not read.
+   *
+   * @param after number of the last record not to replay, 0 to replay them all
+   * @param records consumer of the content of the replayed records, valid during the call only
+   * @return number of the last record of the log, 0 if it is empty
+   * @throws IOException if a segment cannot be read, or is corrupt and not the last one
+   */
+  public synchronized long open(long after, Consumer<ByteBuffer> records) throws IOException {
+    Files.createDirectories(directory);
+    List<Long> bases = segments();
+    if (bases.isEmpty()) {
+      next = 1;
+      roll();
+      return 0;
+    }
+    for (int i = 0; i < bases.size(); i++) {
+      long base = bases.get(i);
+      boolean last = i == bases.size() - 1;
+      if (!last && bases.get(i + 1) <= after + 1) {
+        continue;
+      }
+      channel =
+          FileChannel.open(path(base), StandardOpenOption.READ, StandardOpenOption.WRITE);
+      segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+      if (segment.getInt() != MAGIC || segment.getInt() != VERSION) {
+        throw new IOException("Not a segment of version " + VERSION + ": " + path(base));
+      }
+      next = base;
+      while (read(records, after)) {
+        next++;
+      }
+      if (!last) {
+        if (next != bases.get(i + 1)) {
+          throw new IOException(
+              "Corrupt segment " + path(base) + " at record " + next + " of " + bases.get(i + 1));
+        }
+        channel.close();
+      } else if (segment.remaining() >= Integer.BYTES && segment.getInt(segment.position()) != 0) {
+        log.warn("Dropping the torn records of {} from record {}", path(base), next);
+        int tail = segment.position();
+        while (segment.hasRemaining()) {
+          segment.put((byte) 0);
+        }
+        segment.position(tail);
+      }
+    }
+    return next - 1;
+  }
+
+  /**
+   * Appends a record.
+   *
+   * @param content content of the record, consumed
+   * @return number of the record
+   * @throws IOException if a new segment cannot be created
+   * @throws IllegalArgumentException if the record does not fit in a segment
+   */
+  public synchronized long append(ByteBuffer content) throws IOException {
+    int length = content.remaining();
+    if (length == 0 || length > segmentSize - HEADER_SIZE - RECORD_HEADER_SIZE) {
+      throw new IllegalArgumentException("Record of " + length + " bytes");
+    }
+    if (segment.remaining() < RECORD_HEADER_SIZE + length) {
+      roll();
+    }
+    CRC32 crc = new CRC32();
+    crc.update(content.duplicate());
+    int start = segment.position();
+    segment.position(start + Integer.BYTES);
+    segment.putInt((int) crc.getValue());
+    segment.put(content);
+    // the length comes last, a record is not seen before it is complete
+    segment.putInt(start, length);
+    return next++;
+  }
+
+  /** Writes the appended records of the current segment to the disk. */
+  public synchronized void sync() {
+    if (segment != null) {
+      segment.force();
+    }
+  }
+
+  /** Syncs and closes the current segment. */
+  @Override
+  public synchronized void close() throws IOException {
+    if (channel != null) {
+      sync();
+      channel.close();
+      channel = null;
+      segment = null;
+    }
+  }
+
+  /**
+   * Reads the next record of the current segment.
+   *
+   * @return false at the end of the records of the segment, or at a torn or corrupt record
+   */
+  private boolean read(Consumer<ByteBuffer> records, long after) {
+    int start = segment.position();
+    if (segment.remaining() < RECORD_HEADER_SIZE) {
+      return false;
+    }
+    int length = segment.getInt(start);
+    if (length <= 0 || length > segment.remaining() - RECORD_HEADER_SIZE) {
+      return false;
+    }
+    ByteBuffer content = segment.duplicate();
+    content.position(start + RECORD_HEADER_SIZE).limit(start + RECORD_HEADER_SIZE + length);
+    if (verifyCrc) {
+      CRC32 crc = new CRC32();
+      crc.update(content.duplicate());
+      if ((int) crc.getValue() != segment.getInt(start + Integer.BYTES)) {
+        return false;
+      }
+    }
+    if (next > after) {
+      records.accept(content.asReadOnlyBuffer());
+    }
+    segment.position(start + RECORD_HEADER_SIZE + length);
+    return true;
+  }
+
+  /** Syncs the current segment and starts a new one with the next record. */
+  private void roll() throws IOException {
+    close();
+    channel =
+        FileChannel.open(
+            path(next),
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    segment.putInt(MAGIC).putInt(VERSION);
+    log.info("Started segment {}", path(next));
+  }
+
+  private List<Long> segments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .map(file -> file.getFileName().toString())
+          .filter(name -> name.endsWith(SUFFIX))
+          .map(name -> Long.parseLong(name.substring(0, name.length() - SUFFIX.length())))
+          .sorted()
+          .collect(Collectors.toCollection(ArrayList::new));
+    }
+  }
+
+  private Path path(long base) {
+    return directory.resolve(String.format("%020d%s", base, SUFFIX));
+  }
+}
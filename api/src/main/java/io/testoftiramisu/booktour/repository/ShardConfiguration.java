@@ -0,0 +1,140 @@
+package io.testoftiramisu.booktour.repository;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Shards of the ratings, enabled by listing the JDBC urls of the shards besides the
+ * spring.datasource one in booktour.datasource.shards. See {@link TourRatingShards} for the
+ * partitioning.
+ *
+ * <p>Every shard holds the whole schema and the tours, which are reference data: Flyway migrates
+ * the extra shards at startup like the spring.datasource one. A shard migrated for the first time
+ * starts without ratings, and numbers its ratings from its index times
+ * booktour.datasource.shard.id-range, so a rating identifier is unique across the shards and a
+ * rating keeps it when moved to another shard. The rows of its rating outbox are numbered from the
+ * same value, so an outbox identifier is unique across the shards too.
+ *
+ * <p>Cannot be combined with read replicas, both define the data source of the application. The
+ * connection pools are not beans, see {@link ReadReplicaConfiguration}.
+ */
+@Configuration
+@ConditionalOnProperty("booktour.datasource.shards")
+@Slf4j
+public class ShardConfiguration implements DisposableBean {
+  private static final String OUTBOX_VERSION = "6";
+
+  private String[] urls;
+  private long idRange;
+  private int maxSize;
+  private ShardRoutingDataSource routing;
+
+  /**
+   * Constructs ShardConfiguration.
+   *
+   * @param urls comma-separated JDBC urls of the shards besides the spring.datasource one
+   * @param idRange number of rating identifiers of a shard
+   * @param maxSize maximum number of pooled connections per extra shard
+   */
+  public ShardConfiguration(
+      @Value("${booktour.datasource.shards}") String[] urls,
+      @Value("${booktour.datasource.shard.id-range:100000000}") long idRange,
+      @Value("${booktour.datasource.shard.pool.max-size:10}") int maxSize) {
+    this.urls = urls;
+    this.idRange = idRange;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Data source of JPA, JdbcTemplate and Flyway, routing a connection to a shard at its first
+   * statement.
+   *
+   * <p>Shard 0 is configured as the single data source would be, by spring.datasource.hikari. The
+   * extra shards share its credentials.
+   *
+   * @param properties spring.datasource properties
+   * @param environment environment of the spring.datasource.hikari properties
+   * @param registry registry of the pool metrics
+   * @return lazy proxy of the routing data source
+   */
+  @Bean
+  public DataSource dataSource(
+      DataSourceProperties properties, Environment environment, MeterRegistry registry) {
+    HikariDataSource home =
+        properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(home));
+    home.setMetricRegistry(registry);
+
+    List<DataSource> shards = new ArrayList<>(urls.length + 1);
+    shards.add(home);
+    for (int i = 1; i <= urls.length; i++) {
+      HikariConfig config = new HikariConfig();
+      config.setPoolName("shard-" + i);
+      config.setJdbcUrl(urls[i - 1].trim());
+      config.setUsername(properties.determineUsername());
+      config.setPassword(properties.determinePassword());
+      config.setMaximumPoolSize(maxSize);
+      config.setMetricRegistry(registry);
+      HikariDataSource shard = new HikariDataSource(config);
+      shards.add(shard);
+      migrate(i, shard);
+    }
+    routing = new ShardRoutingDataSource(shards);
+    return new LazyConnectionDataSourceProxy(routing);
+  }
+
+  /**
+   * Migrates an extra shard, removing the sample ratings from a new one and numbering its ratings
+   * and outbox rows in its range.
+   *
+   * @param index index of the shard
+   * @param shard data source of the shard
+   */
+  private void migrate(int index, DataSource shard) {
+    Flyway flyway = Flyway.configure().dataSource(shard).load();
+    boolean created = flyway.info().applied().length == 0;
+    boolean outboxCreated =
+        Arrays.stream(flyway.info().pending())
+            .anyMatch(migration -> OUTBOX_VERSION.equals(migration.getVersion().getVersion()));
+    flyway.migrate();
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(shard);
+    if (created) {
+      log.info("Shard {} created, its ratings are numbered from {}", index, index * idRange + 1);
+      jdbcTemplate.update("delete from tour_rating_aggregate");
+      jdbcTemplate.update("delete from tour_rating");
+      jdbcTemplate.execute(
+          "alter table tour_rating alter column id restart with " + (index * idRange + 1));
+    }
+    if (outboxCreated) {
+      jdbcTemplate.execute(
+          "alter table rating_outbox alter column id restart with " + (index * idRange + 1));
+    }
+  }
+
+  /** Closes the connection pools, once the beans using them are destroyed. */
+  @Override
+  public void destroy() {
+    if (routing != null) {
+      routing.close();
+    }
+  }
+}
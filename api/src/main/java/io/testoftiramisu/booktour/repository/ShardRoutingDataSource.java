@@ -0,0 +1,63 @@
+package io.testoftiramisu.booktour.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data source sending a transaction to the shard it is routed to by {@link TourRatingShards}, and
+ * everything else to shard 0.
+ *
+ * <p>The shard is chosen when a connection is requested, so this data source has to be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: a JPA transaction
+ * requests its connection before it is routed.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+  private List<DataSource> shards;
+
+  /**
+   * Constructs ShardRoutingDataSource.
+   *
+   * @param shards data sources of the shards, by index
+   */
+  public ShardRoutingDataSource(List<DataSource> shards) {
+    this.shards = shards;
+    Map<Object, Object> targets = new HashMap<>();
+    for (int i = 0; i < shards.size(); i++) {
+      targets.put(i, shards.get(i));
+    }
+    setTargetDataSources(targets);
+    setDefaultTargetDataSource(shards.get(0));
+    setLenientFallback(false);
+    afterPropertiesSet();
+  }
+
+  /**
+   * Data sources of the shards.
+   *
+   * @return the shards, by index
+   */
+  public List<DataSource> getShards() {
+    return shards;
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    return TourRatingShards.currentShard();
+  }
+
+  /** Closes the connection pools of the shards. */
+  @Override
+  public void close() {
+    for (DataSource shard : shards) {
+      if (shard instanceof HikariDataSource) {
+        ((HikariDataSource) shard).close();
+      }
+    }
+  }
+}
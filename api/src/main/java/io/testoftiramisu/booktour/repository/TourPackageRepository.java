@@ -1,18 +1,23 @@
 package io.testoftiramisu.booktour.repository;
 
 import io.testoftiramisu.booktour.domain.TourPackage;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.data.rest.core.annotation.RestResource;
 
+import javax.persistence.QueryHint;
 import java.util.Optional;
 
-/** Tour Package Repository Interface. */
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+
+/** Tour Package Repository Interface, backed by the second-level cache. */
 @RepositoryRestResource(collectionResourceRel = "packages", path = "packages")
 public interface TourPackageRepository extends CrudRepository<TourPackage, String> {
 
   /** Finds {@link TourPackage} by proved name. */
+  @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
   Optional<TourPackage> findByName(@Param("name") String name);
 
   @Override
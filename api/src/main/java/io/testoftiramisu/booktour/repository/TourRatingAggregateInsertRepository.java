@@ -0,0 +1,15 @@
+package io.testoftiramisu.booktour.repository;
+
+/** Creation of the empty rating aggregate of a tour, before it is locked. */
+public interface TourRatingAggregateInsertRepository {
+
+  /**
+   * Inserts an empty aggregate for a tour that has none, if the tour exists.
+   *
+   * <p>Once it returns, the aggregate exists and can be locked: a concurrent transaction that
+   * inserted it first has committed.
+   *
+   * @param tourId tour identifier
+   */
+  void insertIfAbsent(Integer tourId);
+}
@@ -0,0 +1,44 @@
+package io.testoftiramisu.booktour.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * JDBC implementation of {@link TourRatingAggregateInsertRepository}.
+ *
+ * <p>The MERGE waits for a transaction that inserted the same aggregate and did not commit yet,
+ * then fails on the duplicate key, which is ignored: the statement alone fails, the transaction
+ * goes on and locks the committed aggregate.
+ */
+public class TourRatingAggregateInsertRepositoryImpl
+    implements TourRatingAggregateInsertRepository {
+  private static final String MERGE_SQL =
+      "merge into tour_rating_aggregate a"
+          + " using (select id from tour where id = ?) t"
+          + " on (a.tour_id = t.id)"
+          + " when not matched then insert (tour_id, rating_count, score_sum,"
+          + " score_0, score_1, score_2, score_3, score_4, score_5)"
+          + " values (t.id, 0, 0, 0, 0, 0, 0, 0, 0)";
+
+  private JdbcTemplate jdbcTemplate;
+
+  /**
+   * Constructs TourRatingAggregateInsertRepositoryImpl.
+   *
+   * @param jdbcTemplate JDBC template sharing the JPA transaction
+   */
+  @Autowired
+  public TourRatingAggregateInsertRepositoryImpl(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Override
+  public void insertIfAbsent(Integer tourId) {
+    try {
+      jdbcTemplate.update(MERGE_SQL, tourId);
+    } catch (DuplicateKeyException ex) {
+      // inserted by a concurrent transaction, committed by now
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package io.testoftiramisu.booktour.repository;
+
+import io.testoftiramisu.booktour.domain.TourRatingAggregate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+
+import javax.persistence.LockModeType;
+import java.util.Optional;
+
+/** Tour Rating Aggregate Repository Interface. */
+@RepositoryRestResource(exported = false)
+public interface TourRatingAggregateRepository
+    extends JpaRepository<TourRatingAggregate, Integer>, TourRatingAggregateInsertRepository {
+
+  /**
+   * Lookup the aggregate of a tour and lock it until the end of the transaction.
+   *
+   * @param tourId tour identifier
+   * @return the aggregate if the tour has one
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select a from TourRatingAggregate a where a.tourId = ?1")
+  Optional<TourRatingAggregate> findForUpdate(Integer tourId);
+}
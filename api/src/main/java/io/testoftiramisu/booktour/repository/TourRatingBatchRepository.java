@@ -0,0 +1,23 @@
+package io.testoftiramisu.booktour.repository;
+
+import io.testoftiramisu.booktour.domain.TourRating;
+
+import java.util.List;
+
+/** Batched writes of Tour Ratings, bypassing the per-entity persistence of JPA. */
+public interface TourRatingBatchRepository {
+
+  /**
+   * Inserts the ratings of a tour in JDBC batches.
+   *
+   * <p>Ratings whose customer already rated the tour, or that appear twice in the list, are not
+   * inserted and are reported instead of failing the whole batch.
+   *
+   * @param tourId tour identifier of all the ratings
+   * @param ratings ratings to insert
+   * @return ratings which were not inserted because of the (tour_id, customer_id) constraint
+   * @throws org.springframework.dao.InvalidDataAccessApiUsageException if a rating has no customer
+   *     or no score
+   */
+  List<TourRating> insertAll(Integer tourId, List<TourRating> ratings);
+}
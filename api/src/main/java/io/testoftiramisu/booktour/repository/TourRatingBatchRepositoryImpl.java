@@ -0,0 +1,134 @@
+package io.testoftiramisu.booktour.repository;
+
+import io.testoftiramisu.booktour.domain.TourRating;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/** JDBC implementation of {@link TourRatingBatchRepository}. */
+@Slf4j
+public class TourRatingBatchRepositoryImpl implements TourRatingBatchRepository {
+  private static final String INSERT_SQL =
+      "insert into tour_rating (tour_id, customer_id, score, comment) values (?, ?, ?, ?)";
+  private static final String UNIQUE_VIOLATION = "23505";
+
+  private JdbcTemplate jdbcTemplate;
+  private int batchSize;
+
+  /**
+   * Constructs TourRatingBatchRepositoryImpl.
+   *
+   * @param jdbcTemplate JDBC template sharing the JPA transaction
+   * @param batchSize number of ratings written per JDBC batch
+   */
+  @Autowired
+  public TourRatingBatchRepositoryImpl(
+      JdbcTemplate jdbcTemplate,
+      @Value("${booktour.ratings.batch-size:500}") int batchSize) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  public List<TourRating> insertAll(Integer tourId, List<TourRating> ratings) {
+    for (TourRating rating : ratings) {
+      if (rating.getCustomerId() == null || rating.getScore() == null) {
+        throw new IllegalArgumentException(
+            "Rating of tour " + tourId + " without a customer or a score: " + rating);
+      }
+    }
+    List<TourRating> conflicts = new ArrayList<>();
+    Set<Integer> seen = new HashSet<>();
+    for (int from = 0; from < ratings.size(); from += batchSize) {
+      List<TourRating> chunk = ratings.subList(from, Math.min(from + batchSize, ratings.size()));
+      List<TourRating> batch = new ArrayList<>(chunk.size());
+      for (TourRating rating : chunk) {
+        if (!seen.add(rating.getCustomerId())) {
+          conflicts.add(rating);
+        } else {
+          batch.add(rating);
+        }
+      }
+      conflicts.addAll(insertBatch(tourId, batch));
+    }
+    return conflicts;
+  }
+
+  /**
+   * Inserts a batch of ratings in one JDBC round trip.
+   *
+   * <p>The rows that failed are found from the batch update counts, the batch goes on with the
+   * other rows. They are retried one at a time to tell a customer who already rated the tour from
+   * any other failure. If the driver stops at the first failure instead, the rest of the batch is
+   * retried the same way.
+   *
+   * @param tourId tour identifier
+   * @param batch ratings to insert
+   * @return ratings rejected by the unique constraint
+   */
+  private List<TourRating> insertBatch(Integer tourId, List<TourRating> batch) {
+    if (batch.isEmpty()) {
+      return new ArrayList<>();
+    }
+    return jdbcTemplate.execute(
+        (Connection connection) -> {
+          List<TourRating> conflicts = new ArrayList<>();
+          try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+            for (TourRating rating : batch) {
+              bind(statement, tourId, rating);
+              statement.addBatch();
+            }
+            try {
+              statement.executeBatch();
+            } catch (BatchUpdateException ex) {
+              int[] counts = ex.getUpdateCounts();
+              for (int i = 0; i < batch.size(); i++) {
+                if (i >= counts.length || counts[i] == Statement.EXECUTE_FAILED) {
+                  insertOne(connection, tourId, batch.get(i), conflicts);
+                }
+              }
+              log.debug("Batch insert for tour {} had {} conflicts", tourId, conflicts.size());
+            }
+          }
+          return conflicts;
+        });
+  }
+
+  private void insertOne(
+      Connection connection, Integer tourId, TourRating rating, List<TourRating> conflicts)
+      throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+      bind(statement, tourId, rating);
+      statement.executeUpdate();
+    } catch (SQLException ex) {
+      if (!UNIQUE_VIOLATION.equals(ex.getSQLState())) {
+        throw ex;
+      }
+      conflicts.add(rating);
+    }
+  }
+
+  private void bind(PreparedStatement statement, Integer tourId, TourRating rating)
+      throws SQLException {
+    statement.setInt(1, tourId);
+    statement.setInt(2, rating.getCustomerId());
+    statement.setInt(3, rating.getScore());
+    if (rating.getComment() == null) {
+      statement.setNull(4, Types.VARCHAR);
+    } else {
+      statement.setString(4, rating.getComment());
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package io.testoftiramisu.booktour.repository;
+
+import io.testoftiramisu.booktour.domain.TourRatingRow;
+
+import java.util.Optional;
+
+/**
+ * Writes of a Tour Rating by its natural key (tour_id, customer_id), each in a single SQL
+ * statement.
+ *
+ * <p>Neither the tour nor the rating is loaded first. A missing tour or rating shows up as a
+ * statement that affects no row.
+ */
+public interface TourRatingKeyRepository {
+
+  /**
+   * Inserts a rating, if its tour exists.
+   *
+   * @param tourId tour identifier
+   * @param customerId customer identifier
+   * @param score score of the rating
+   * @param comment comment of the rating, may be null
+   * @return true if inserted, false if there is no such tour
+   * @throws org.springframework.dao.DataIntegrityViolationException if the customer already
+   *     rated the tour
+   */
+  boolean insertRating(Integer tourId, Integer customerId, Integer score, String comment);
+
+  /**
+   * Replaces the score and comment of a rating.
+   *
+   * @param tourId tour identifier
+   * @param customerId customer identifier
+   * @param score new score
+   * @param comment new comment, null removes it
+   * @return the rating as it was before the update, empty if the customer did not rate the tour
+   */
+  Optional<TourRatingRow> updateRating(
+      Integer tourId, Integer customerId, Integer score, String comment);
+
+  /**
+   * Updates the score or the comment of a rating, a null value keeps the current one.
+   *
+   * @param tourId tour identifier
+   * @param customerId customer identifier
+   * @param score new score, may be null
+   * @param comment new comment, may be null
+   * @return the rating as it was before the update, empty if the customer did not rate the tour
+   */
+  Optional<TourRatingRow> updateSomeOfRating(
+      Integer tourId, Integer customerId, Integer score, String comment);
+
+  /**
+   * Replaces the score and comment of a rating, or inserts it if the customer did not rate the
+   * tour yet, with a MERGE.
+   *
+   * @param tourId tour identifier
+   * @param customerId customer identifier
+   * @param score score of the rating
+   * @param comment comment of the rating, null removes it
+   * @return the rating as it was before the merge, empty if it was inserted or there is no such
+   *     tour
+   */
+  Optional<TourRatingRow> mergeRating(
+      Integer tourId, Integer customerId, Integer score, String comment);
+
+  /**
+   * Deletes a rating.
+   *
+   * @param tourId tour identifier
+   * @param customerId customer identifier
+   * @return the deleted rating, empty if the customer did not rate the tour
+   */
+  Optional<TourRatingRow> deleteRating(Integer tourId, Integer customerId);
+}
@@ -0,0 +1,129 @@
+package io.testoftiramisu.booktour.repository;
+
+import io.testoftiramisu.booktour.domain.TourRatingRow;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Types;
+import java.util.Optional;
+
+/**
+ * JDBC implementation of {@link TourRatingKeyRepository}.
+ *
+ * <p>Updates, merges and deletes are wrapped in an H2 data change delta table, {@code select ...
+ * from old table (update ...)}, which returns the affected rows as they were before the change in
+ * the same round trip. The rating aggregates need the previous score.
+ *
+ * <p>H2 1.4.200 loses the first update or merge of a table run through a delta table selected from
+ * directly, so the delta table is selected from a derived table, which runs it once.
+ */
+public class TourRatingKeyRepositoryImpl implements TourRatingKeyRepository {
+  private static final String COLUMNS = "select id, tour_id, customer_id, score, comment";
+
+  private static final String INSERT_SQL =
+      "insert into tour_rating (tour_id, customer_id, score, comment)"
+          + " select id, ?, ?, ? from tour where id = ?";
+
+  private static final String UPDATE_SQL =
+      oldRows(
+          "update tour_rating set score = ?, comment = ?"
+              + " where tour_id = ? and customer_id = ?");
+
+  private static final String UPDATE_SOME_SQL =
+      oldRows(
+          "update tour_rating set score = coalesce(?, score), comment = coalesce(?, comment)"
+              + " where tour_id = ? and customer_id = ?");
+
+  private static final String MERGE_SQL =
+      oldRows(
+          "merge into tour_rating r"
+              + " using (select id from tour where id = ?) t"
+              + " on (r.tour_id = t.id and r.customer_id = ?)"
+              + " when matched then update set score = ?, comment = ?"
+              + " when not matched then insert (tour_id, customer_id, score, comment)"
+              + " values (t.id, ?, ?, ?)");
+
+  private static final String DELETE_SQL =
+      oldRows("delete from tour_rating where tour_id = ? and customer_id = ?");
+
+  private static final int[] CHANGE_TYPES = {
+    Types.INTEGER, Types.VARCHAR, Types.INTEGER, Types.INTEGER
+  };
+
+  private static final RowMapper<TourRatingRow> ROW_MAPPER =
+      (rs, rowNum) ->
+          new TourRatingRow(
+              rs.getInt("id"),
+              rs.getInt("tour_id"),
+              rs.getInt("customer_id"),
+              rs.getObject("score", Integer.class),
+              rs.getString("comment"));
+
+  private JdbcTemplate jdbcTemplate;
+
+  /**
+   * Constructs TourRatingKeyRepositoryImpl.
+   *
+   * @param jdbcTemplate JDBC template sharing the JPA transaction
+   */
+  @Autowired
+  public TourRatingKeyRepositoryImpl(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Override
+  public boolean insertRating(Integer tourId, Integer customerId, Integer score, String comment) {
+    return jdbcTemplate.update(
+            INSERT_SQL,
+            new Object[] {customerId, score, comment, tourId},
+            new int[] {Types.INTEGER, Types.INTEGER, Types.VARCHAR, Types.INTEGER})
+        > 0;
+  }
+
+  @Override
+  public Optional<TourRatingRow> updateRating(
+      Integer tourId, Integer customerId, Integer score, String comment) {
+    return change(UPDATE_SQL, new Object[] {score, comment, tourId, customerId}, CHANGE_TYPES);
+  }
+
+  @Override
+  public Optional<TourRatingRow> updateSomeOfRating(
+      Integer tourId, Integer customerId, Integer score, String comment) {
+    return change(
+        UPDATE_SOME_SQL, new Object[] {score, comment, tourId, customerId}, CHANGE_TYPES);
+  }
+
+  @Override
+  public Optional<TourRatingRow> mergeRating(
+      Integer tourId, Integer customerId, Integer score, String comment) {
+    return change(
+        MERGE_SQL,
+        new Object[] {tourId, customerId, score, comment, customerId, score, comment},
+        new int[] {
+          Types.INTEGER,
+          Types.INTEGER,
+          Types.INTEGER,
+          Types.VARCHAR,
+          Types.INTEGER,
+          Types.INTEGER,
+          Types.VARCHAR
+        });
+  }
+
+  @Override
+  public Optional<TourRatingRow> deleteRating(Integer tourId, Integer customerId) {
+    return change(
+        DELETE_SQL, new Object[] {tourId, customerId}, new int[] {Types.INTEGER, Types.INTEGER});
+  }
+
+  /** Selects the rows of a change as they were before it. */
+  private static String oldRows(String change) {
+    return COLUMNS + " from (" + COLUMNS + " from old table (" + change + "))";
+  }
+
+  /** Runs a change by natural key, which affects one row at most. */
+  private Optional<TourRatingRow> change(String sql, Object[] args, int[] argTypes) {
+    return jdbcTemplate.query(sql, args, argTypes, ROW_MAPPER).stream().findFirst();
+  }
+}
@@ -3,15 +3,30 @@ package io.testoftiramisu.booktour.repository;
 import io.testoftiramisu.booktour.domain.TourRating;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 /** Tour Rating Repository Interface. */
 @RepositoryRestResource(exported = false)
-public interface TourRatingRepository extends JpaRepository<TourRating, Integer> {
+public interface TourRatingRepository
+    extends JpaRepository<TourRating, Integer>,
+        TourRatingBatchRepository,
+        TourRatingKeyRepository {
+  /** Selects the {@link RatingView} columns, reading the tour id from the foreign key. */
+  String RATING_VIEW =
+      "select r.id as id, r.tour.id as tourId, r.customerId as customerId, r.score as score,"
+          + " r.comment as comment from TourRating r";
 
   /**
    * Lookup all the TourRatings for a tour.
@@ -22,13 +37,58 @@ public interface TourRatingRepository extends JpaRepository<TourRating, Integer>
   List<TourRating> findByTourId(Integer tourId);
 
   /**
-   * Lookup a page of TourRatings for a tour.
+   * Lookup a page of the rating columns of a tour.
    *
    * @param tourId tourId is the tour Identifier
    * @param pageable details for the desired page
-   * @return a Page of any found TourRatings
+   * @return a Page of any found ratings
+   */
+  @Query(
+      value = RATING_VIEW + " where r.tour.id = ?1",
+      countQuery = "select count(r) from TourRating r where r.tour.id = ?1")
+  Page<RatingView> findViewsByTourId(Integer tourId, Pageable pageable);
+
+  /**
+   * Lookup the rating columns of a tour that follow a given rating, seeking on (tour_id, id).
+   *
+   * <p>Unlike an offset page, the cost of a slice does not depend on how deep it is, and no count
+   * query is issued.
+   *
+   * @param tourId tour identifier
+   * @param id identifier of the last rating already seen
+   * @param pageable size of the desired slice, the page number is ignored
+   * @return a Slice of the following ratings, ordered by identifier
+   */
+  @Query(RATING_VIEW + " where r.tour.id = ?1 and r.id > ?2 order by r.id")
+  Slice<RatingView> findViewsByTourIdAfter(Integer tourId, Integer id, Pageable pageable);
+
+  /**
+   * Lookup a page of the rating columns of all tours.
+   *
+   * @param pageable details for the desired page
+   * @return a Page of any found ratings
+   */
+  @Query(value = RATING_VIEW, countQuery = "select count(r) from TourRating r")
+  Page<RatingView> findAllViews(Pageable pageable);
+
+  /**
+   * Lookup the columns of a rating.
+   *
+   * @param id rating identifier
+   * @return the rating if found, empty otherwise
+   */
+  @Query(RATING_VIEW + " where r.id = ?1")
+  Optional<RatingView> findViewById(Integer id);
+
+  /**
+   * Lookup the columns of the rating of a tour by a customer.
+   *
+   * @param tourId tour identifier
+   * @param customerId customer identifier
+   * @return the rating if found, empty otherwise
    */
-  Page<TourRating> findByTourId(Integer tourId, Pageable pageable);
+  @Query(RATING_VIEW + " where r.tour.id = ?1 and r.customerId = ?2")
+  Optional<RatingView> findViewByTourIdAndCustomerId(Integer tourId, Integer customerId);
 
   /**
    * Lookup a TourRating by the TourId and Customer Id
@@ -38,4 +98,41 @@ public interface TourRatingRepository extends JpaRepository<TourRating, Integer>
    * @return TourRating if found, null otherwise.
    */
   Optional<TourRating> findByTourIdAndCustomerId(Integer tourId, Integer customerId);
+
+  /**
+   * Count the ratings of a tour per score.
+   *
+   * @param tourId tour identifier
+   * @return number of ratings for each score given to the tour
+   */
+  @Query(
+      "select r.tour.id as tourId, r.score as score, count(r) as total from TourRating r"
+          + " where r.tour.id = ?1 group by r.tour.id, r.score")
+  List<ScoreCount> countScoresByTourId(Integer tourId);
+
+  /**
+   * Count the ratings of every tour per score.
+   *
+   * @return number of ratings for each tour and score
+   */
+  @Query(
+      "select r.tour.id as tourId, r.score as score, count(r) as total from TourRating r"
+          + " group by r.tour.id, r.score")
+  List<ScoreCount> countScores();
+
+  /**
+   * Stream the columns of every rating, ordered by identifier.
+   *
+   * <p>Rows are fetched from the database in batches of the fetch size and are not attached to the
+   * persistence context, so memory stays bounded however many ratings there are. The stream must
+   * be consumed within a transaction and closed.
+   *
+   * @return {@link Stream} of all the ratings
+   */
+  @QueryHints({
+    @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+    @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  @Query(RATING_VIEW + " order by r.id")
+  Stream<RatingView> streamAll();
 }
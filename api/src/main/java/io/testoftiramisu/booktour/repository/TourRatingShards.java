@@ -0,0 +1,236 @@
+package io.testoftiramisu.booktour.repository;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Hash partitioning of the ratings of the tours across the shards listed in
+ * booktour.datasource.shards, shard 0 being the spring.datasource database.
+ *
+ * <p>The ratings and the rating aggregate of a tour live in one shard, chosen by hashing the tour
+ * identifier. A transaction reads and writes the shard it is routed to, see {@link
+ * ShardRoutingDataSource}, shard 0 if it is not routed. Reads across all tours run on every shard
+ * in parallel, one read-only transaction each.
+ *
+ * <p>Without shards, routing has no effect and reads across all tours run in the current
+ * transaction.
+ */
+@Component
+public class TourRatingShards implements DisposableBean {
+  private static final Object SHARD = new Object();
+
+  private int count;
+  private TransactionTemplate readOnly;
+  private ExecutorService executor;
+
+  /**
+   * Constructs TourRatingShards.
+   *
+   * @param urls comma-separated JDBC urls of the shards besides the spring.datasource one
+   * @param gatherThreads maximum number of shards read at the same time
+   * @param transactionManager manager of the transactions reading a shard
+   */
+  @Autowired
+  public TourRatingShards(
+      @Value("${booktour.datasource.shards:}") String[] urls,
+      @Value("${booktour.datasource.shard.gather-threads:16}") int gatherThreads,
+      PlatformTransactionManager transactionManager) {
+    this(urls.length + 1, gatherThreads, transactionManager);
+  }
+
+  /**
+   * Constructs TourRatingShards.
+   *
+   * @param count number of shards
+   * @param gatherThreads maximum number of shards read at the same time
+   * @param transactionManager manager of the transactions reading a shard
+   */
+  public TourRatingShards(
+      int count, int gatherThreads, PlatformTransactionManager transactionManager) {
+    this.count = count;
+    readOnly = new TransactionTemplate(transactionManager);
+    readOnly.setReadOnly(true);
+    readOnly.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    if (count > 1) {
+      AtomicInteger threads = new AtomicInteger();
+      executor =
+          Executors.newFixedThreadPool(
+              gatherThreads,
+              task -> {
+                Thread thread = new Thread(task, "shard-gather-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+  }
+
+  /**
+   * Number of shards, 1 without sharding.
+   *
+   * @return the number of shards
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Shard holding the ratings of a tour.
+   *
+   * @param tourId tour identifier
+   * @return index of the shard
+   */
+  public int shardOf(int tourId) {
+    // murmur3 finalizer, consecutive tour identifiers spread over all the shards
+    int hash = tourId;
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return Math.floorMod(hash, count);
+  }
+
+  /**
+   * Routes the current transaction to the shard holding the ratings of a tour.
+   *
+   * @param tourId tour identifier
+   * @throws IllegalStateException if the transaction is routed to another shard
+   */
+  public void routeTour(int tourId) {
+    routeShard(shardOf(tourId));
+  }
+
+  /**
+   * Routes the current transaction to a shard.
+   *
+   * <p>Has to be called before the first statement of the transaction, and has no effect outside
+   * of a transaction or without shards.
+   *
+   * @param shard index of the shard
+   * @throws IllegalStateException if the transaction is routed to another shard
+   */
+  public void routeShard(int shard) {
+    if (count == 1 || !TransactionSynchronizationManager.isSynchronizationActive()) {
+      return;
+    }
+    Integer current = (Integer) TransactionSynchronizationManager.getResource(SHARD);
+    if (current != null) {
+      if (current != shard) {
+        throw new IllegalStateException(
+            "Transaction routed to shard " + current + " cannot use shard " + shard);
+      }
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronizationAdapter() {
+          @Override
+          public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(SHARD);
+          }
+        });
+    TransactionSynchronizationManager.bindResource(SHARD, shard);
+  }
+
+  /**
+   * Shard the current transaction is routed to.
+   *
+   * @return index of the shard, 0 if the transaction is not routed
+   */
+  static int currentShard() {
+    Integer shard = (Integer) TransactionSynchronizationManager.getResource(SHARD);
+    return shard == null ? 0 : shard;
+  }
+
+  /**
+   * Reads every shard in parallel, in a read-only transaction routed to it.
+   *
+   * <p>Without shards, reads in the current transaction instead.
+   *
+   * @param read reads a shard
+   * @param <T> type of what is read
+   * @return what was read, by shard
+   */
+  public <T> List<T> onEachShard(Supplier<T> read) {
+    List<T> results = new ArrayList<>(count);
+    if (count == 1) {
+      results.add(read.get());
+      return results;
+    }
+    List<Future<T>> futures = new ArrayList<>(count);
+    for (int shard = 0; shard < count; shard++) {
+      int routed = shard;
+      futures.add(executor.submit(() -> inShard(routed, read)));
+    }
+    try {
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException ex) {
+      futures.forEach(future -> future.cancel(true));
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while reading the shards", ex);
+    } catch (ExecutionException ex) {
+      futures.forEach(future -> future.cancel(true));
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      throw new IllegalStateException("Shard read failed", ex.getCause());
+    }
+    return results;
+  }
+
+  /**
+   * Reads one shard after the other, in a read-only transaction routed to it, on the current
+   * thread.
+   *
+   * <p>Without shards, reads in the current transaction instead.
+   *
+   * @param read reads a shard
+   */
+  public void forEachShard(Runnable read) {
+    if (count == 1) {
+      read.run();
+      return;
+    }
+    for (int shard = 0; shard < count; shard++) {
+      inShard(
+          shard,
+          () -> {
+            read.run();
+            return null;
+          });
+    }
+  }
+
+  private <T> T inShard(int shard, Supplier<T> read) {
+    return readOnly.execute(
+        status -> {
+          routeShard(shard);
+          return read.get();
+        });
+  }
+
+  /** Stops the threads reading the shards. */
+  @Override
+  public void destroy() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+}
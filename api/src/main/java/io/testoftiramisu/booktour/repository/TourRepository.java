@@ -3,37 +3,59 @@ package io.testoftiramisu.booktour.repository;
 import io.testoftiramisu.booktour.domain.Difficulty;
 import io.testoftiramisu.booktour.domain.Region;
 import io.testoftiramisu.booktour.domain.Tour;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RestResource;
 
+import javax.persistence.QueryHint;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-/** Tour Repository Interface. */
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+
+/**
+ * Tour Repository Interface.
+ *
+ * <p>Tours are cached in the second-level cache, and the results of the finders in the query
+ * cache.
+ */
 public interface TourRepository extends PagingAndSortingRepository<Tour, Integer> {
+  @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
   List<Tour> findByTourPackageCode(@Param("code") String code, Pageable pageable);
 
+  @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
   Optional<Tour> findByPrice(Integer price);
 
+  @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
   Collection<Tour> findByDifficulty(Difficulty difficulty);
 
+  @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
   List<Tour> findByRegion(Region region);
 
+  @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
   List<Tour> findByTourPackageCodeAndRegion(String code, Region region);
 
+  @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
   List<Tour> findByPriceLessThan(Integer maxPrice);
 
+  @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
   List<Tour> findByKeywordsContains(String keyword);
 
+  @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
   @Query(
       "Select t from Tour t where t.tourPackage.code = ?1 "
           + " and t.difficulty = ?2 and t.region = ?3 and t.price <= ?4")
   List<Tour> lookupTour(String code, Difficulty difficulty, Region region, Integer maxPrice);
 
+  @Override
+  @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+  Page<Tour> findAll(Pageable pageable);
+
   @Override
   @RestResource(exported = false)
   <S extends Tour> S save(S s);
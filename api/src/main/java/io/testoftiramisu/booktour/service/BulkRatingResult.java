@@ -0,0 +1,32 @@
+package io.testoftiramisu.booktour.service;
+
+import java.util.List;
+
+/** Outcome of rating a tour for many customers at once. */
+public class BulkRatingResult {
+  private List<Integer> created;
+  private List<Integer> conflicts;
+
+  /**
+   * Constructs BulkRatingResult.
+   *
+   * @param created customers whose rating was created
+   * @param conflicts customers who had already rated the tour
+   */
+  public BulkRatingResult(List<Integer> created, List<Integer> conflicts) {
+    this.created = created;
+    this.conflicts = conflicts;
+  }
+
+  public List<Integer> getCreated() {
+    return created;
+  }
+
+  public List<Integer> getConflicts() {
+    return conflicts;
+  }
+
+  public boolean hasConflicts() {
+    return !conflicts.isEmpty();
+  }
+}
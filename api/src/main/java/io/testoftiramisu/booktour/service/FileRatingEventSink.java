@@ -0,0 +1,59 @@
+package io.testoftiramisu.booktour.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.testoftiramisu.booktour.domain.RatingOutboxMessage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends the relayed rating changes to a file, one JSON object per line.
+ *
+ * <p>Each batch is appended in one write and synced before it is acknowledged, a batch published
+ * again after a failure is appended again.
+ */
+public class FileRatingEventSink implements RatingEventSink {
+  private Path file;
+  private ObjectMapper objectMapper;
+
+  /**
+   * Constructs FileRatingEventSink.
+   *
+   * @param file file to append to, created with its directory if needed
+   * @param objectMapper JSON mapper
+   */
+  public FileRatingEventSink(Path file, ObjectMapper objectMapper) {
+    this.file = file;
+    this.objectMapper = objectMapper;
+  }
+
+  @Override
+  public void publish(List<RatingOutboxMessage> messages) {
+    StringBuilder lines = new StringBuilder();
+    try {
+      for (RatingOutboxMessage message : messages) {
+        lines.append(objectMapper.writeValueAsString(message)).append('\n');
+      }
+      Path directory = file.toAbsolutePath().getParent();
+      if (directory != null) {
+        Files.createDirectories(directory);
+      }
+      try (OutputStream output =
+          Files.newOutputStream(
+              file,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.APPEND,
+              StandardOpenOption.SYNC)) {
+        output.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Rating changes not written to " + file, ex);
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package io.testoftiramisu.booktour.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Times every public method of the services and every repository query.
+ *
+ * <p>Service calls are recorded as {@value #SERVICE_TIMER} tagged by class and method, calls of the
+ * repositories of io.testoftiramisu.booktour.repository as {@value #REPOSITORY_TIMER} tagged by
+ * repository and method, both with the simple name of the exception thrown, if any. The aspect
+ * runs outside of the transaction, so a service timer includes the commit. Percentiles are
+ * configured in application.properties.
+ *
+ * <p>Methods returning a publisher are not timed: they return before any work is done, the reactive
+ * endpoints are timed by http.server.requests instead.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class MethodTimingAspect {
+  static final String SERVICE_TIMER = "booktour.service";
+  static final String REPOSITORY_TIMER = "booktour.repository";
+
+  private MeterRegistry registry;
+
+  @Autowired
+  public MethodTimingAspect(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  /**
+   * Times a public method of a service.
+   *
+   * @param call the service call
+   * @return result of the call
+   * @throws Throwable exception of the call
+   */
+  @Around(
+      "execution(public * io.testoftiramisu.booktour.service.*Service.*(..))"
+          + " && !execution(org.reactivestreams.Publisher+ *(..))")
+  public Object timeService(ProceedingJoinPoint call) throws Throwable {
+    return time(
+        call, SERVICE_TIMER, "class", call.getSignature().getDeclaringType().getSimpleName());
+  }
+
+  /**
+   * Times a method of a Spring Data repository of this application, inherited methods included.
+   *
+   * @param call the repository call
+   * @return result of the call
+   * @throws Throwable exception of the call
+   */
+  @Around(
+      "execution(* io.testoftiramisu.booktour.repository..*+.*(..))"
+          + " && target(org.springframework.data.repository.Repository)"
+          + " && !execution(org.reactivestreams.Publisher+ *(..))")
+  public Object timeRepository(ProceedingJoinPoint call) throws Throwable {
+    return time(call, REPOSITORY_TIMER, "repository", repositoryName(call.getTarget()));
+  }
+
+  private Object time(ProceedingJoinPoint call, String name, String typeTag, String type)
+      throws Throwable {
+    Timer.Sample sample = Timer.start(registry);
+    String exception = "none";
+    try {
+      return call.proceed();
+    } catch (Throwable ex) {
+      exception = ex.getClass().getSimpleName();
+      throw ex;
+    } finally {
+      sample.stop(
+          Timer.builder(name)
+              .tag(typeTag, type)
+              .tag("method", call.getSignature().getName())
+              .tag("exception", exception)
+              .register(registry));
+    }
+  }
+
+  /** Name of the repository interface a Spring Data proxy implements. */
+  private static String repositoryName(Object repository) {
+    return Arrays.stream(repository.getClass().getInterfaces())
+        .filter(Repository.class::isAssignableFrom)
+        .map(Class::getSimpleName)
+        .findFirst()
+        .orElse(repository.getClass().getSimpleName());
+  }
+}
@@ -0,0 +1,491 @@
+package io.testoftiramisu.booktour.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.testoftiramisu.booktour.domain.TourRatingAggregate;
+import io.testoftiramisu.booktour.domain.TourRatingEvent;
+import io.testoftiramisu.booktour.repository.SegmentLog;
+import io.testoftiramisu.booktour.repository.TourRatingAggregateRepository;
+import io.testoftiramisu.booktour.repository.TourRatingShards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Optional append-only log of the committed rating changes, an audit trail kept out of the
+ * database.
+ *
+ * <p>When enabled, every committed {@link TourRatingEvent} is appended to a {@link SegmentLog} as a
+ * record of 19 bytes: type, time in milliseconds, tour, customer, score and previous score, without
+ * the comment. The log derives the score statistics of every tour from the events, and writes them
+ * to a snapshot every booktour.ratings.event-log.snapshot-every events and when stopped. Starting
+ * loads the last snapshot and replays the events that follow it, without querying the ratings.
+ *
+ * <p>The events of a transaction are appended in the order the transactions commit: each one takes
+ * a sequence number before its commit, while it still holds the rating aggregates of its tours, and
+ * its events wait after the commit for the transactions numbered before it.
+ *
+ * <p>The fsync policy decides when the records reach the disk: after every event ("always"), every
+ * fsync-interval ("interval"), or when the operating system writes the pages back ("never"). Events
+ * not synced are lost by a crash of the host, not by a crash of the application alone.
+ *
+ * <p>The first start, without a segment, takes the rating aggregates of every shard as a baseline
+ * the events then apply to, kept in a file of its own. The statistics match the rating aggregates
+ * as long as this instance is the only writer. They are an audit of the aggregates, {@link
+ * #lookup(int)} is not read by the application.
+ */
+@Component
+@Slf4j
+public class RatingEventLog implements SmartLifecycle {
+  static final String APPENDED = "booktour.ratings.event-log.appended";
+  static final String FAILED = "booktour.ratings.event-log.failed";
+
+  private static final int SNAPSHOT_MAGIC = 0x42545253;
+  private static final int SNAPSHOT_VERSION = 1;
+  private static final String SNAPSHOT = "snapshot.bin";
+  private static final String BASELINE = "baseline.bin";
+  private static final int RECORD_SIZE = 19;
+
+  /** When the appended events are written to the disk. */
+  public enum Fsync {
+    ALWAYS,
+    INTERVAL,
+    NEVER
+  }
+
+  private boolean enabled;
+  private Path directory;
+  private DataSize segmentSize;
+  private boolean verifyCrc;
+  private Fsync fsync;
+  private Duration fsyncInterval;
+  private long snapshotEvery;
+  private Supplier<List<TourRatingAggregate>> baseline;
+  private Clock clock;
+  private Counter appended;
+  private Counter failed;
+  private final Map<Integer, TourRatingAggregate> tours = new HashMap<>();
+  private SegmentLog segments;
+  private long last;
+  private long sinceSnapshot;
+  private final AtomicLong sequenced = new AtomicLong();
+  private long released;
+  private final Map<Long, List<TourRatingEvent>> committed = new HashMap<>();
+  private ScheduledExecutorService syncer;
+  private volatile boolean running;
+
+  /**
+   * Constructs RatingEventLog.
+   *
+   * @param aggregateRepository Tour Rating Aggregate Repository, read once as the baseline
+   * @param shards shards of the ratings
+   * @param registry registry of the log metrics
+   * @param enabled whether the rating changes are logged
+   * @param directory directory of the segments and of the snapshot
+   * @param segmentSize size of a segment file
+   * @param verifyCrc whether the CRC of the replayed events is checked
+   * @param fsync when the events are written to the disk
+   * @param fsyncInterval time between two writes with the interval policy
+   * @param snapshotEvery number of events between two snapshots
+   */
+  @Autowired
+  public RatingEventLog(
+      TourRatingAggregateRepository aggregateRepository,
+      TourRatingShards shards,
+      MeterRegistry registry,
+      @Value("${booktour.ratings.event-log.enabled:false}") boolean enabled,
+      @Value("${booktour.ratings.event-log.directory:data/rating-events}") Path directory,
+      @Value("${booktour.ratings.event-log.segment-size:64MB}") DataSize segmentSize,
+      @Value("${booktour.ratings.event-log.verify-crc:true}") boolean verifyCrc,
+      @Value("${booktour.ratings.event-log.fsync:interval}") Fsync fsync,
+      @Value("${booktour.ratings.event-log.fsync-interval:1s}") Duration fsyncInterval,
+      @Value("${booktour.ratings.event-log.snapshot-every:100000}") long snapshotEvery) {
+    this(
+        registry,
+        enabled,
+        directory,
+        segmentSize,
+        verifyCrc,
+        fsync,
+        fsyncInterval,
+        snapshotEvery,
+        () ->
+            shards.onEachShard(aggregateRepository::findAll).stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList()),
+        Clock.systemUTC());
+  }
+
+  RatingEventLog(
+      MeterRegistry registry,
+      boolean enabled,
+      Path directory,
+      DataSize segmentSize,
+      boolean verifyCrc,
+      Fsync fsync,
+      Duration fsyncInterval,
+      long snapshotEvery,
+      Supplier<List<TourRatingAggregate>> baseline,
+      Clock clock) {
+    this.enabled = enabled;
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.verifyCrc = verifyCrc;
+    this.fsync = fsync;
+    this.fsyncInterval = fsyncInterval;
+    this.snapshotEvery = snapshotEvery;
+    this.baseline = baseline;
+    this.clock = clock;
+    appended =
+        Counter.builder(APPENDED)
+            .description("Rating changes appended to the log")
+            .register(registry);
+    failed =
+        Counter.builder(FAILED)
+            .description("Committed rating changes that could not be logged")
+            .register(registry);
+  }
+
+  /**
+   * Score statistics of a tour derived from the logged events.
+   *
+   * @param tourId tour identifier
+   * @return copy of the statistics, empty if no event of the tour was logged
+   */
+  public synchronized Optional<TourRatingAggregate> lookup(int tourId) {
+    TourRatingAggregate statistics = tours.get(tourId);
+    if (statistics == null) {
+      return Optional.empty();
+    }
+    TourRatingAggregate copy = new TourRatingAggregate(tourId);
+    copy.copyStatistics(statistics);
+    return Optional.of(copy);
+  }
+
+  /**
+   * Adds a rating change to the events of the current transaction, appended once it commits, or
+   * appends it at once outside of a transaction.
+   *
+   * @param event the change
+   */
+  @EventListener
+  public void record(TourRatingEvent event) {
+    if (!running) {
+      return;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      release(sequenced.getAndIncrement(), Collections.singletonList(event));
+      return;
+    }
+    PendingEvents pending =
+        TransactionSynchronizationManager.getSynchronizations().stream()
+            .filter(synchronization -> synchronization instanceof PendingEvents)
+            .map(PendingEvents.class::cast)
+            .findFirst()
+            .orElse(null);
+    if (pending == null) {
+      pending = new PendingEvents();
+      TransactionSynchronizationManager.registerSynchronization(pending);
+    }
+    pending.events.add(event);
+  }
+
+  /**
+   * Appends the events of a transaction and of the transactions after it that already completed,
+   * once the transactions before it completed.
+   */
+  private synchronized void release(long sequence, List<TourRatingEvent> events) {
+    if (!running) {
+      return;
+    }
+    committed.put(sequence, events);
+    List<TourRatingEvent> next;
+    while ((next = committed.remove(released)) != null) {
+      released++;
+      next.forEach(this::append);
+    }
+  }
+
+  private void append(TourRatingEvent event) {
+    ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    record
+        .put((byte) event.getType().ordinal())
+        .putLong(clock.millis())
+        .putInt(event.getTourId())
+        .putInt(event.getCustomerId())
+        .put((byte) event.getScore())
+        .put((byte) event.getPreviousScore())
+        .flip();
+    try {
+      last = segments.append(record);
+      apply(event.getType(), event.getTourId(), event.getScore(), event.getPreviousScore());
+      if (fsync == Fsync.ALWAYS) {
+        segments.sync();
+      }
+      if (++sinceSnapshot >= snapshotEvery) {
+        snapshot();
+      }
+      appended.increment();
+    } catch (IOException | RuntimeException ex) {
+      failed.increment();
+      log.error("Rating change not logged: {}", event, ex);
+    }
+  }
+
+  @Override
+  public synchronized void start() {
+    if (!enabled || running) {
+      return;
+    }
+    long started = System.nanoTime();
+    try {
+      long snapshotted = load(SNAPSHOT);
+      if (snapshotted == 0) {
+        load(BASELINE);
+      }
+      segments = new SegmentLog(directory, Math.toIntExact(segmentSize.toBytes()), verifyCrc);
+      last = segments.open(snapshotted, this::replay);
+      sinceSnapshot = last - snapshotted;
+      if (last == 0 && Files.notExists(directory.resolve(BASELINE))) {
+        tours.clear();
+        for (TourRatingAggregate aggregate : baseline.get()) {
+          TourRatingAggregate statistics = new TourRatingAggregate(aggregate.getTourId());
+          statistics.copyStatistics(aggregate);
+          tours.put(statistics.getTourId(), statistics);
+        }
+        write(BASELINE);
+        log.info("Rating event log starts from the aggregates of {} tours", tours.size());
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Rating event log cannot be opened in " + directory, ex);
+    }
+    log.info(
+        "Rating event log replayed to event {} for {} tours in {} ms",
+        last,
+        tours.size(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    if (fsync == Fsync.INTERVAL) {
+      syncer =
+          Executors.newSingleThreadScheduledExecutor(
+              task -> {
+                Thread thread = new Thread(task, "rating-event-log-sync");
+                thread.setDaemon(true);
+                return thread;
+              });
+      long interval = fsyncInterval.toMillis();
+      syncer.scheduleWithFixedDelay(segments::sync, interval, interval, TimeUnit.MILLISECONDS);
+    }
+    sequenced.set(0);
+    released = 0;
+    committed.clear();
+    running = true;
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    if (syncer != null) {
+      syncer.shutdownNow();
+      syncer = null;
+    }
+    try {
+      snapshot();
+      segments.close();
+    } catch (IOException ex) {
+      log.error("Rating event log not closed cleanly, the next start replays it", ex);
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  /** Starts before and stops after the rating write-behind, whose drained ratings are logged. */
+  @Override
+  public int getPhase() {
+    return Integer.MAX_VALUE - 3;
+  }
+
+  private void replay(ByteBuffer record) {
+    TourRatingEvent.Type type = TourRatingEvent.Type.values()[record.get()];
+    record.getLong();
+    int tourId = record.getInt();
+    record.getInt();
+    apply(type, tourId, record.get(), record.get());
+  }
+
+  /**
+   * Accounts for an event, a rating missing from the statistics, created before a log without
+   * baseline, is not removed.
+   */
+  private void apply(TourRatingEvent.Type type, int tourId, int score, int previousScore) {
+    TourRatingAggregate statistics = tours.computeIfAbsent(tourId, TourRatingAggregate::new);
+    long[] histogram = statistics.getHistogram();
+    switch (type) {
+      case CREATED:
+        statistics.add(score);
+        break;
+      case UPDATED:
+        if (histogram[previousScore] > 0) {
+          statistics.replace(previousScore, score);
+        } else {
+          statistics.add(score);
+        }
+        break;
+      case DELETED:
+        if (histogram[score] > 0) {
+          statistics.remove(score);
+        }
+        break;
+    }
+  }
+
+  private void snapshot() throws IOException {
+    segments.sync();
+    write(SNAPSHOT);
+    sinceSnapshot = 0;
+    log.debug("Rating event log snapshot at event {}", last);
+  }
+
+  /**
+   * Writes the statistics of every tour and the last event they account for, replacing the
+   * previous file once synced.
+   */
+  private void write(String file) throws IOException {
+    Path temporary = directory.resolve(file + ".tmp");
+    try (FileChannel channel =
+        FileChannel.open(
+            temporary,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      CheckedOutputStream checked =
+          new CheckedOutputStream(Channels.newOutputStream(channel), new CRC32());
+      DataOutputStream output = new DataOutputStream(checked);
+      output.writeInt(SNAPSHOT_MAGIC);
+      output.writeInt(SNAPSHOT_VERSION);
+      output.writeLong(last);
+      output.writeInt(tours.size());
+      for (TourRatingAggregate statistics : tours.values()) {
+        output.writeInt(statistics.getTourId());
+        for (long ratings : statistics.getHistogram()) {
+          output.writeLong(ratings);
+        }
+      }
+      output.writeInt((int) checked.getChecksum().getValue());
+      output.flush();
+      channel.force(true);
+    }
+    Files.move(
+        temporary,
+        directory.resolve(file),
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Loads the statistics of a snapshot, or of the baseline.
+   *
+   * @return last event accounted for by the file, 0 without a valid file
+   */
+  private long load(String file) throws IOException {
+    tours.clear();
+    Path path = directory.resolve(file);
+    CheckedInputStream checked;
+    try {
+      checked = new CheckedInputStream(Files.newInputStream(path), new CRC32());
+    } catch (NoSuchFileException ex) {
+      return 0;
+    }
+    try (DataInputStream input = new DataInputStream(checked)) {
+      if (input.readInt() != SNAPSHOT_MAGIC || input.readInt() != SNAPSHOT_VERSION) {
+        throw new IOException("Not a snapshot of version " + SNAPSHOT_VERSION);
+      }
+      long snapshotted = input.readLong();
+      int count = input.readInt();
+      Map<Integer, TourRatingAggregate> loaded = new HashMap<>(count * 2);
+      for (int i = 0; i < count; i++) {
+        TourRatingAggregate statistics = new TourRatingAggregate(input.readInt());
+        for (int score = TourRatingAggregate.MIN_SCORE;
+            score <= TourRatingAggregate.MAX_SCORE;
+            score++) {
+          long ratings = input.readLong();
+          if (ratings > 0) {
+            statistics.addAll(score, ratings);
+          }
+        }
+        loaded.put(statistics.getTourId(), statistics);
+      }
+      int expected = (int) checked.getChecksum().getValue();
+      if (input.readInt() != expected) {
+        throw new IOException("Snapshot checksum mismatch");
+      }
+      tours.putAll(loaded);
+      return snapshotted;
+    } catch (IOException ex) {
+      log.warn("Ignoring the rating event log file {}: {}", path, ex.getMessage());
+      return 0;
+    }
+  }
+
+  /**
+   * Rating changes of a transaction, numbered before it commits and appended after it completed.
+   */
+  private class PendingEvents extends TransactionSynchronizationAdapter {
+    private final List<TourRatingEvent> events = new ArrayList<>();
+    private long sequence = -1;
+
+    @Override
+    public void beforeCommit(boolean readOnly) {
+      sequence = sequenced.getAndIncrement();
+    }
+
+    /** A transaction rolled back after its numbering releases no event, not to hold the next. */
+    @Override
+    public void afterCompletion(int status) {
+      if (sequence >= 0) {
+        release(sequence, status == STATUS_COMMITTED ? events : Collections.emptyList());
+      }
+    }
+  }
+}
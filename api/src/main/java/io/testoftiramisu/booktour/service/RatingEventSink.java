@@ -0,0 +1,22 @@
+package io.testoftiramisu.booktour.service;
+
+import io.testoftiramisu.booktour.domain.RatingOutboxMessage;
+
+import java.util.List;
+
+/**
+ * Destination of the rating changes relayed from the outbox by {@link RatingOutboxRelay}.
+ *
+ * <p>A sink bean replaces the default {@link FileRatingEventSink}.
+ */
+public interface RatingEventSink {
+  /**
+   * Publishes a batch of rating changes.
+   *
+   * <p>The batch is published again by the next poll if this method throws, including the changes
+   * it already published: consumers receive every change at least once.
+   *
+   * @param messages the changes, in the order they were committed for each tour
+   */
+  void publish(List<RatingOutboxMessage> messages);
+}
@@ -0,0 +1,75 @@
+package io.testoftiramisu.booktour.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/** Business counters of the rating writes and lookups. */
+@Component
+public class RatingMetrics {
+  static final String CREATED = "booktour.ratings.created";
+  static final String CONFLICTS = "booktour.ratings.conflicts";
+  static final String NOT_FOUND = "booktour.ratings.not.found";
+
+  private Counter created;
+  private Counter conflicts;
+  private Counter notFound;
+
+  /**
+   * Constructs RatingMetrics.
+   *
+   * @param registry registry of the counters
+   */
+  @Autowired
+  public RatingMetrics(MeterRegistry registry) {
+    created =
+        Counter.builder(CREATED)
+            .description("Ratings created, one at a time or in bulk")
+            .register(registry);
+    conflicts =
+        Counter.builder(CONFLICTS)
+            .description("Ratings rejected because the customer already rated the tour")
+            .register(registry);
+    notFound =
+        Counter.builder(NOT_FOUND)
+            .description("Requests for a tour or rating that does not exist")
+            .register(registry);
+  }
+
+  /**
+   * Counts created ratings once the current transaction commits, at once outside of a transaction,
+   * so the ratings of a rolled back transaction are not counted.
+   *
+   * @param ratings number of created ratings
+   */
+  public void created(long ratings) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      created.increment(ratings);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronizationAdapter() {
+          @Override
+          public void afterCommit() {
+            created.increment(ratings);
+          }
+        });
+  }
+
+  /**
+   * Counts rejected duplicate ratings.
+   *
+   * @param ratings number of rejected ratings
+   */
+  public void conflicts(long ratings) {
+    conflicts.increment(ratings);
+  }
+
+  /** Counts a lookup of a missing tour or rating. */
+  public void notFound() {
+    notFound.increment();
+  }
+}
@@ -0,0 +1,90 @@
+package io.testoftiramisu.booktour.service;
+
+import io.testoftiramisu.booktour.domain.TourRatingEvent;
+import io.testoftiramisu.booktour.repository.RatingOutboxRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Optional transactional outbox of the rating changes, relayed by {@link RatingOutboxRelay}.
+ *
+ * <p>When enabled, the {@link TourRatingEvent}s published in a transaction are collected and
+ * inserted into the rating_outbox table in one JDBC batch just before the transaction commits: a
+ * change is in the outbox if and only if it is committed, on the shard of its tour.
+ *
+ * <p>Only the changes made through {@link TourRatingService} are written: {@link
+ * ReactiveTourRatingService} publishes no event, its R2DBC transactions have no synchronization to
+ * write the outbox in.
+ */
+@Component
+public class RatingOutbox {
+  private RatingOutboxRepository outboxRepository;
+  private boolean enabled;
+  private Clock clock;
+
+  /**
+   * Constructs RatingOutbox.
+   *
+   * @param outboxRepository Rating Outbox Repository
+   * @param enabled whether the rating changes are written to the outbox
+   */
+  @Autowired
+  public RatingOutbox(
+      RatingOutboxRepository outboxRepository,
+      @Value("${booktour.ratings.outbox.enabled:false}") boolean enabled) {
+    this(outboxRepository, enabled, Clock.systemUTC());
+  }
+
+  RatingOutbox(RatingOutboxRepository outboxRepository, boolean enabled, Clock clock) {
+    this.outboxRepository = outboxRepository;
+    this.enabled = enabled;
+    this.clock = clock;
+  }
+
+  /**
+   * Adds a rating change to the outbox of the current transaction, or writes it at once outside of
+   * a transaction.
+   *
+   * @param event the change
+   */
+  @EventListener
+  public void record(TourRatingEvent event) {
+    if (!enabled) {
+      return;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      outboxRepository.insertAll(Collections.singletonList(event), clock.instant());
+      return;
+    }
+    PendingEvents pending =
+        TransactionSynchronizationManager.getSynchronizations().stream()
+            .filter(synchronization -> synchronization instanceof PendingEvents)
+            .map(PendingEvents.class::cast)
+            .findFirst()
+            .orElse(null);
+    if (pending == null) {
+      pending = new PendingEvents();
+      TransactionSynchronizationManager.registerSynchronization(pending);
+    }
+    pending.events.add(event);
+  }
+
+  /** Rating changes of a transaction, written to the outbox before it commits. */
+  private class PendingEvents extends TransactionSynchronizationAdapter {
+    private final List<TourRatingEvent> events = new ArrayList<>();
+
+    @Override
+    public void beforeCommit(boolean readOnly) {
+      outboxRepository.insertAll(events, clock.instant());
+    }
+  }
+}
@@ -0,0 +1,225 @@
+package io.testoftiramisu.booktour.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.testoftiramisu.booktour.domain.RatingOutboxMessage;
+import io.testoftiramisu.booktour.repository.RatingOutboxRepository;
+import io.testoftiramisu.booktour.repository.TourRatingShards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Publishes the rating changes of the outbox, see {@link RatingOutbox}, to a {@link
+ * RatingEventSink}.
+ *
+ * <p>Every poll interval, the outbox of each shard is read in batches in the order of its
+ * identifiers. A batch is deleted once the sink published it, so a change is delivered at least
+ * once: again if the sink fails or the application stops before the batch is deleted. A failed
+ * batch stops the poll of its shard, the changes that follow it wait for the next poll.
+ *
+ * <p>The changes of a tour are published in the order they were committed: they are in the outbox
+ * of one shard, and the writes of a tour wait for each other on its rating aggregate. The order
+ * holds with one relay per database, so the relay is off unless
+ * booktour.ratings.outbox.relay.enabled is set on a single instance.
+ */
+@Component
+@Slf4j
+public class RatingOutboxRelay implements SmartLifecycle {
+  static final String RELAYED = "booktour.ratings.outbox.relayed";
+  static final String FAILED = "booktour.ratings.outbox.failed";
+
+  private RatingOutboxRepository outboxRepository;
+  private TransactionTemplate transactionTemplate;
+  private TourRatingShards shards;
+  private RatingEventSink sink;
+  private boolean enabled;
+  private int batchSize;
+  private Duration pollInterval;
+  private Counter relayed;
+  private Counter failed;
+  private ScheduledExecutorService executor;
+
+  /**
+   * Constructs RatingOutboxRelay.
+   *
+   * @param outboxRepository Rating Outbox Repository
+   * @param transactionTemplate template of the transactions on a shard
+   * @param shards shards of the ratings
+   * @param sinks sink bean, if any
+   * @param objectMapper JSON mapper of the default file sink
+   * @param registry registry of the relay metrics
+   * @param outbox whether the rating changes are written to the outbox
+   * @param relay whether this instance relays the outbox
+   * @param file file of the default sink
+   * @param batchSize maximum number of changes published at once
+   * @param pollInterval time between two polls of the outbox
+   */
+  @Autowired
+  public RatingOutboxRelay(
+      RatingOutboxRepository outboxRepository,
+      TransactionTemplate transactionTemplate,
+      TourRatingShards shards,
+      ObjectProvider<RatingEventSink> sinks,
+      ObjectMapper objectMapper,
+      MeterRegistry registry,
+      @Value("${booktour.ratings.outbox.enabled:false}") boolean outbox,
+      @Value("${booktour.ratings.outbox.relay.enabled:false}") boolean relay,
+      @Value("${booktour.ratings.outbox.file:data/rating-outbox.ndjson}") Path file,
+      @Value("${booktour.ratings.outbox.batch-size:500}") int batchSize,
+      @Value("${booktour.ratings.outbox.poll-interval:1s}") Duration pollInterval) {
+    this(
+        outboxRepository,
+        transactionTemplate,
+        shards,
+        sinks.getIfAvailable(() -> new FileRatingEventSink(file, objectMapper)),
+        registry,
+        outbox && relay,
+        batchSize,
+        pollInterval);
+  }
+
+  RatingOutboxRelay(
+      RatingOutboxRepository outboxRepository,
+      TransactionTemplate transactionTemplate,
+      TourRatingShards shards,
+      RatingEventSink sink,
+      MeterRegistry registry,
+      boolean enabled,
+      int batchSize,
+      Duration pollInterval) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Outbox batch size must be positive: " + batchSize);
+    }
+    this.outboxRepository = outboxRepository;
+    this.transactionTemplate = transactionTemplate;
+    this.shards = shards;
+    this.sink = sink;
+    this.enabled = enabled;
+    this.batchSize = batchSize;
+    this.pollInterval = pollInterval;
+    relayed =
+        Counter.builder(RELAYED)
+            .description("Rating changes published from the outbox")
+            .register(registry);
+    failed =
+        Counter.builder(FAILED)
+            .description("Batches of rating changes the sink failed to publish")
+            .register(registry);
+  }
+
+  /**
+   * Publishes the rating changes of the outbox of every shard.
+   *
+   * @return number of published changes
+   */
+  public int relay() {
+    int published = 0;
+    for (int shard = 0; shard < shards.getCount(); shard++) {
+      published += relay(shard);
+    }
+    return published;
+  }
+
+  private int relay(int shard) {
+    int published = 0;
+    while (true) {
+      List<RatingOutboxMessage> batch =
+          inShard(shard, () -> outboxRepository.findOldest(batchSize));
+      if (batch.isEmpty()) {
+        return published;
+      }
+      try {
+        sink.publish(batch);
+      } catch (RuntimeException ex) {
+        failed.increment();
+        log.warn(
+            "Rating changes from {} of shard {} not published, retrying at the next poll",
+            batch.get(0).getId(),
+            shard,
+            ex);
+        return published;
+      }
+      inShard(
+          shard,
+          () -> {
+            outboxRepository.deleteAll(batch);
+            return null;
+          });
+      relayed.increment(batch.size());
+      published += batch.size();
+      if (batch.size() < batchSize) {
+        return published;
+      }
+    }
+  }
+
+  private void poll() {
+    try {
+      relay();
+    } catch (RuntimeException ex) {
+      log.warn("Rating outbox not relayed: {}", ex.getMessage());
+    }
+  }
+
+  private <T> T inShard(int shard, Supplier<T> work) {
+    return transactionTemplate.execute(
+        status -> {
+          shards.routeShard(shard);
+          return work.get();
+        });
+  }
+
+  @Override
+  public void start() {
+    if (!enabled || executor != null) {
+      return;
+    }
+    executor =
+        Executors.newSingleThreadScheduledExecutor(
+            task -> {
+              Thread thread = new Thread(task, "rating-outbox-relay");
+              thread.setDaemon(true);
+              return thread;
+            });
+    long interval = pollInterval.toMillis();
+    executor.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+    log.info("Rating outbox relay started, batches of {} every {}", batchSize, pollInterval);
+  }
+
+  /** Lets the current poll finish, its batch is published again at the next start otherwise. */
+  @Override
+  public void stop() {
+    if (executor == null) {
+      return;
+    }
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(pollInterval.toMillis() + 10_000, TimeUnit.MILLISECONDS)) {
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException ex) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    executor = null;
+  }
+
+  @Override
+  public boolean isRunning() {
+    return executor != null;
+  }
+}
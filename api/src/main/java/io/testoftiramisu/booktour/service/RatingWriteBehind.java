@@ -0,0 +1,269 @@
+package io.testoftiramisu.booktour.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.testoftiramisu.booktour.domain.TourRating;
+import io.testoftiramisu.booktour.repository.TourRatingShards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional write-behind mode of single rating creation.
+ *
+ * <p>When enabled, ratings are put in a bounded in-memory queue and a background writer commits
+ * them in groups, once a group is full or its time window elapsed, in one transaction per shard
+ * through {@link TourRatingService#createMany}. If a group fails, its tours are retried one
+ * transaction each, so one deleted tour does not lose the ratings of the others. Only committed
+ * transactions are timed. A full queue rejects new ratings, and stopping the application drains
+ * the queue before the database is closed.
+ *
+ * <p>Accepted ratings are not durable until committed: a crash loses the queued ones.
+ */
+@Component
+@Slf4j
+public class RatingWriteBehind implements SmartLifecycle {
+  static final String QUEUE_DEPTH = "booktour.ratings.write-behind.queue.depth";
+  static final String COMMIT = "booktour.ratings.write-behind.commit";
+  static final String REJECTED = "booktour.ratings.write-behind.rejected";
+  static final String FAILED = "booktour.ratings.write-behind.failed";
+
+  private TourRatingService tourRatingService;
+  private TransactionTemplate transactionTemplate;
+  private TourRatingShards shards;
+  private boolean enabled;
+  private int batchSize;
+  private Duration window;
+  private Duration drainTimeout;
+  private BlockingQueue<PendingRating> queue;
+  private Timer commitTimer;
+  private Counter rejected;
+  private Counter failed;
+  private volatile boolean running;
+  private Thread writer;
+
+  /**
+   * Constructs RatingWriteBehind.
+   *
+   * @param tourRatingService Tour Rating Service
+   * @param transactionTemplate template of the group transactions
+   * @param shards shards of the ratings
+   * @param registry registry of the queue metrics
+   * @param enabled whether single ratings are written behind
+   * @param capacity maximum number of queued ratings
+   * @param batchSize maximum number of ratings per group
+   * @param window maximum time a group waits for more ratings
+   * @param drainTimeout maximum time to drain the queue on shutdown
+   */
+  @Autowired
+  public RatingWriteBehind(
+      TourRatingService tourRatingService,
+      TransactionTemplate transactionTemplate,
+      TourRatingShards shards,
+      MeterRegistry registry,
+      @Value("${booktour.ratings.write-behind.enabled:false}") boolean enabled,
+      @Value("${booktour.ratings.write-behind.capacity:10000}") int capacity,
+      @Value("${booktour.ratings.write-behind.batch-size:500}") int batchSize,
+      @Value("${booktour.ratings.write-behind.window:50ms}") Duration window,
+      @Value("${booktour.ratings.write-behind.drain-timeout:30s}") Duration drainTimeout) {
+    this.tourRatingService = tourRatingService;
+    this.transactionTemplate = transactionTemplate;
+    this.shards = shards;
+    this.enabled = enabled;
+    this.batchSize = batchSize;
+    this.window = window;
+    this.drainTimeout = drainTimeout;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    Gauge.builder(QUEUE_DEPTH, queue, BlockingQueue::size)
+        .description("Ratings waiting to be written")
+        .register(registry);
+    commitTimer =
+        Timer.builder(COMMIT).description("Commit of a group of ratings").register(registry);
+    rejected =
+        Counter.builder(REJECTED)
+            .description("Ratings rejected because the queue was full")
+            .register(registry);
+    failed =
+        Counter.builder(FAILED)
+            .description("Queued ratings that could not be written")
+            .register(registry);
+  }
+
+  /**
+   * Whether single ratings are written behind.
+   *
+   * @return true if the write-behind mode is enabled
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Queues a rating of an existing tour.
+   *
+   * @param tourId tour identifier
+   * @param customerId customer identifier
+   * @param score score of the tour rating
+   * @param comment additional comment
+   * @throws IllegalArgumentException if there is no customer or no score
+   * @throws java.util.NoSuchElementException if no Tour found
+   * @throws RejectedExecutionException if the queue is full or the writer stopped
+   */
+  public void enqueue(int tourId, Integer customerId, Integer score, String comment) {
+    if (customerId == null || score == null) {
+      throw new IllegalArgumentException("A rating needs a customer and a score");
+    }
+    tourRatingService.verifyTour(tourId);
+    if (!running) {
+      throw new RejectedExecutionException("Rating writer is not running");
+    }
+    if (!queue.offer(
+        new PendingRating(tourId, new TourRating(null, customerId, score, comment)))) {
+      rejected.increment();
+      throw new RejectedExecutionException("Rating queue is full, retry later");
+    }
+  }
+
+  @Override
+  public void start() {
+    if (!enabled || running) {
+      return;
+    }
+    running = true;
+    writer = new Thread(this::drain, "rating-write-behind");
+    writer.start();
+    log.info("Rating write-behind started, group of {} within {}", batchSize, window);
+  }
+
+  @Override
+  public void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    try {
+      writer.join(drainTimeout.toMillis());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    if (writer.isAlive()) {
+      writer.interrupt();
+      log.warn("Rating write-behind stopped with {} ratings not written", queue.size());
+    } else {
+      log.info("Rating write-behind drained and stopped");
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  /** Starts before and stops after the embedded web server, so no request finds it stopped. */
+  @Override
+  public int getPhase() {
+    return Integer.MAX_VALUE - 2;
+  }
+
+  /** Writes groups of ratings until stopped and the queue is empty. */
+  private void drain() {
+    List<PendingRating> group = new ArrayList<>(batchSize);
+    try {
+      while (running || !queue.isEmpty()) {
+        PendingRating first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        group.add(first);
+        long deadline = System.nanoTime() + window.toNanos();
+        while (group.size() < batchSize) {
+          long remaining = deadline - System.nanoTime();
+          // once stopped, drain what is queued without waiting for more
+          PendingRating next =
+              running && remaining > 0
+                  ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                  : queue.poll();
+          if (next == null) {
+            break;
+          }
+          group.add(next);
+        }
+        write(group);
+        group.clear();
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Commits a group in one transaction per shard, or tour by tour if the group fails.
+   *
+   * <p>Customers who already rated a tour, in the database or earlier in the group, are counted as
+   * conflicts by {@link TourRatingService#createMany} and skipped.
+   *
+   * @param group queued ratings
+   */
+  void write(List<PendingRating> group) {
+    Map<Integer, Map<Integer, List<TourRating>>> byShard = new TreeMap<>();
+    for (PendingRating pending : group) {
+      byShard
+          .computeIfAbsent(shards.shardOf(pending.tourId), s -> new LinkedHashMap<>())
+          .computeIfAbsent(pending.tourId, t -> new ArrayList<>())
+          .add(pending.rating);
+    }
+    byShard.values().forEach(this::write);
+  }
+
+  private void write(Map<Integer, List<TourRating>> byTour) {
+    try {
+      Timer.Sample sample = Timer.start();
+      transactionTemplate.execute(
+          status -> {
+            byTour.forEach(tourRatingService::createMany);
+            return null;
+          });
+      sample.stop(commitTimer);
+    } catch (RuntimeException groupFailure) {
+      log.warn("Group of {} tours failed, writing tour by tour", byTour.size(), groupFailure);
+      byTour.forEach(
+          (tourId, ratings) -> {
+            try {
+              Timer.Sample sample = Timer.start();
+              tourRatingService.createMany(tourId, ratings);
+              sample.stop(commitTimer);
+            } catch (RuntimeException ex) {
+              failed.increment(ratings.size());
+              log.error("Lost {} ratings of tour {}", ratings.size(), tourId, ex);
+            }
+          });
+    }
+  }
+
+  /** A rating waiting to be written. */
+  static class PendingRating {
+    private final int tourId;
+    private final TourRating rating;
+
+    PendingRating(int tourId, TourRating rating) {
+      this.tourId = tourId;
+      this.rating = rating;
+    }
+  }
+}
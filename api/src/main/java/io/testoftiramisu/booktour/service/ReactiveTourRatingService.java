@@ -0,0 +1,272 @@
+package io.testoftiramisu.booktour.service;
+
+import io.testoftiramisu.booktour.domain.TourRatingRow;
+import io.testoftiramisu.booktour.repository.ReactiveTourRatingRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Reactive counterpart of {@link TourRatingService}, on R2DBC for the "reactive" profile.
+ *
+ * <p>Nothing blocks: every method returns a publisher that runs its statements once subscribed,
+ * and rating writes update the tour rating aggregate in the same transaction. A rating without
+ * score is not counted in the aggregate. The writes publish
+ * no {@link io.testoftiramisu.booktour.domain.TourRatingEvent}, so neither the outbox nor the
+ * event log see the changes of the reactive profile.
+ */
+@Service
+@Profile("reactive")
+@Slf4j
+public class ReactiveTourRatingService {
+  private ReactiveTourRatingRepository repository;
+  private TransactionalOperator transactionalOperator;
+  private RatingMetrics ratingMetrics;
+
+  /**
+   * Constructs ReactiveTourRatingService.
+   *
+   * @param repository Reactive Tour Rating Repository
+   * @param transactionalOperator operator of the R2DBC transactions
+   * @param ratingMetrics Rating Metrics
+   */
+  @Autowired
+  public ReactiveTourRatingService(
+      ReactiveTourRatingRepository repository,
+      TransactionalOperator transactionalOperator,
+      RatingMetrics ratingMetrics) {
+    this.repository = repository;
+    this.transactionalOperator = transactionalOperator;
+    this.ratingMetrics = ratingMetrics;
+  }
+
+  /**
+   * Creates a new Tour Rating in the database.
+   *
+   * @param tourId tour identifier
+   * @param customerId customer identifier
+   * @param score score of the tour rating
+   * @param comment additional comment
+   * @return the created rating, or an error if no Tour found or the customer already rated it
+   */
+  public Mono<TourRatingRow> createNew(
+      int tourId, Integer customerId, Integer score, String comment) {
+    log.debug("Create Rating for tour {} of customers {}", tourId, customerId);
+    return verifyTour(tourId)
+        .then(
+            repository
+                .save(new TourRatingRow(tourId, customerId, score, comment))
+                .doOnError(DataIntegrityViolationException.class, ex -> ratingMetrics.conflicts(1)))
+        .flatMap(saved -> added(tourId, score, 1).thenReturn(saved))
+        .doOnSuccess(saved -> ratingMetrics.created(1))
+        .as(transactionalOperator::transactional);
+  }
+
+  /**
+   * Service for many customers to give the same score for a service.
+   *
+   * @param tourId tour identifier
+   * @param score tour score
+   * @param customers array of customer ids
+   * @return completion, or an error if no Tour found or a customer already rated it, no rating is
+   *     created then
+   */
+  public Mono<Void> rateMany(int tourId, int score, Integer[] customers) {
+    log.debug("Rate tour {} by customers {}", tourId, customers);
+    return verifyTour(tourId)
+        .thenMany(
+            Flux.fromArray(customers)
+                .concatMap(
+                    customer ->
+                        repository.save(new TourRatingRow(tourId, customer, score))))
+        .count()
+        .doOnError(DataIntegrityViolationException.class, ex -> ratingMetrics.conflicts(1))
+        .flatMap(created -> added(tourId, score, created).thenReturn(created))
+        .doOnSuccess(ratingMetrics::created)
+        .as(transactionalOperator::transactional)
+        .then();
+  }
+
+  /**
+   * Gets a page of all Tour Ratings, ordered by identifier.
+   *
+   * @param page page number, from 0
+   * @param size number of ratings per page
+   * @return {@link Flux} of ratings
+   */
+  public Flux<TourRatingRow> lookupAll(int page, int size) {
+    log.debug("Lookup all Ratings, page {} of {}", page, size);
+    return repository.findPage(size, (long) page * size);
+  }
+
+  /**
+   * Streams every Tour Rating, ordered by identifier, as fast as the subscriber requests them.
+   *
+   * @return {@link Flux} of all the ratings
+   */
+  public Flux<TourRatingRow> exportAll() {
+    log.debug("Export all Ratings");
+    return repository.streamAll();
+  }
+
+  /**
+   * Gets a rating by id.
+   *
+   * @param id rating identifier
+   * @return the rating, empty if not found
+   */
+  public Mono<TourRatingRow> lookupRatingById(int id) {
+    log.debug("Lookup Rating {}", id);
+    return repository.findById(id);
+  }
+
+  /**
+   * Gets a page of tour ratings for a tour, ordered by identifier.
+   *
+   * @param tourId tour identifier
+   * @param page page number, from 0
+   * @param size number of ratings per page
+   * @return {@link Flux} of ratings, or an error if no Tour found
+   */
+  public Flux<TourRatingRow> lookupRatings(int tourId, int page, int size) {
+    log.debug("Lookup Rating for tour {}", tourId);
+    return verifyTour(tourId).thenMany(repository.findByTourId(tourId, size, (long) page * size));
+  }
+
+  /**
+   * Updates all of the elements of a Tour Rating.
+   *
+   * @param tourId tour identifier
+   * @param customerId customer identifier
+   * @param score score of the tour rating
+   * @param comment additional comment
+   * @return the updated rating, or an error if no Tour Rating found
+   */
+  public Mono<TourRatingRow> update(int tourId, int customerId, Integer score, String comment) {
+    log.debug("Update all of Rating for tour {} of customers {}", tourId, customerId);
+    return repository
+        .updateRating(tourId, customerId, score, comment)
+        .switchIfEmpty(notFound(tourId, customerId))
+        .flatMap(
+            old ->
+                changed(tourId, old.getScore(), score)
+                    .thenReturn(new TourRatingRow(old.getId(), tourId, customerId, score, comment)))
+        .as(transactionalOperator::transactional);
+  }
+
+  /**
+   * Update some of the elements of a Tour Rating.
+   *
+   * @param tourId tour identifier
+   * @param customerId customer identifier
+   * @param score score of the tour rating, unchanged if null
+   * @param comment additional comment, unchanged if null
+   * @return the updated rating, or an error if no Tour Rating found
+   */
+  public Mono<TourRatingRow> updateSome(
+      int tourId, int customerId, Integer score, String comment) {
+    log.debug("Update some of Rating for tour {} of customers {}", tourId, customerId);
+    return repository
+        .updateSomeOfRating(tourId, customerId, score, comment)
+        .switchIfEmpty(notFound(tourId, customerId))
+        .flatMap(
+            old -> {
+              TourRatingRow updated =
+                  new TourRatingRow(
+                      old.getId(),
+                      tourId,
+                      customerId,
+                      score != null ? score : old.getScore(),
+                      comment != null ? comment : old.getComment());
+              return changed(tourId, old.getScore(), updated.getScore()).thenReturn(updated);
+            })
+        .as(transactionalOperator::transactional);
+  }
+
+  /**
+   * Delete a Tour Rating.
+   *
+   * @param tourId tour identifier
+   * @param customerId customer identifier
+   * @return completion, or an error if no Tour Rating found
+   */
+  public Mono<Void> delete(int tourId, int customerId) {
+    log.debug("Delete Rating for tour {} and customer {}", tourId, customerId);
+    return repository
+        .deleteRating(tourId, customerId)
+        .switchIfEmpty(notFound(tourId, customerId))
+        .flatMap(old -> added(tourId, old.getScore(), -1))
+        .as(transactionalOperator::transactional);
+  }
+
+  /**
+   * Get the average score of a tour from its rating aggregate.
+   *
+   * @param tourId tour identifier
+   * @return average score, empty if the tour has no ratings, or an error if no Tour found
+   */
+  public Mono<Double> getAverageScore(int tourId) {
+    log.debug("Get average score of tour {}", tourId);
+    return verifyTour(tourId).then(repository.findAverageScore(tourId));
+  }
+
+  /**
+   * Verify a Tour exists.
+   *
+   * @param tourId tour identifier
+   * @return completion, or a {@link NoSuchElementException} if no Tour found
+   */
+  public Mono<Void> verifyTour(int tourId) {
+    return repository
+        .findTourId(tourId)
+        .switchIfEmpty(
+            Mono.error(() -> new NoSuchElementException("Tour does not exist " + tourId)))
+        .then();
+  }
+
+  private static Mono<TourRatingRow> notFound(int tourId, int customerId) {
+    return Mono.error(
+        () ->
+            new NoSuchElementException(
+                "Tour-Rating pair for request(" + tourId + " for customer" + customerId));
+  }
+
+  private Mono<Void> changed(int tourId, Integer oldScore, Integer newScore) {
+    if (Objects.equals(oldScore, newScore)) {
+      return Mono.empty();
+    }
+    return added(tourId, oldScore, -1).then(added(tourId, newScore, 1));
+  }
+
+  /**
+   * Accounts for added, or removed if negative, ratings with the same score of a tour.
+   *
+   * <p>The first rating of a tour creates its aggregate, a concurrent creation is not an error.
+   * Ratings without score are not counted.
+   */
+  private Mono<Void> added(int tourId, Integer score, long ratings) {
+    if (score == null) {
+      return Mono.empty();
+    }
+    return repository
+        .addToAggregate(tourId, score, ratings)
+        .flatMap(
+            updated ->
+                updated > 0
+                    ? Mono.just(updated)
+                    : repository
+                        .createAggregate(tourId)
+                        .onErrorResume(DataIntegrityViolationException.class, ex -> Mono.just(0))
+                        .then(repository.addToAggregate(tourId, score, ratings)))
+        .then(repository.updateAggregateBounds(tourId))
+        .then();
+  }
+}
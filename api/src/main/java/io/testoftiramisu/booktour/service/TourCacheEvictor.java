@@ -0,0 +1,41 @@
+package io.testoftiramisu.booktour.service;
+
+import io.testoftiramisu.booktour.domain.TourChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Evicts changed tours and packages from the second-level cache, and drops the cached finder
+ * results, once the change is committed.
+ *
+ * <p>Hibernate already keeps the entity regions consistent for writes it performs, the explicit
+ * eviction guarantees that no cached query result outlives a committed admin change.
+ */
+@Component
+@Slf4j
+public class TourCacheEvictor {
+  private EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  public TourCacheEvictor(EntityManagerFactory entityManagerFactory) {
+    this.entityManagerFactory = entityManagerFactory;
+  }
+
+  /**
+   * Evicts a changed entity and the cached query results.
+   *
+   * @param event the committed change
+   */
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void evict(TourChangedEvent event) {
+    log.info("Evict {} from the second-level cache", event);
+    entityManagerFactory.getCache().evict(event.getType(), event.getId());
+    entityManagerFactory.unwrap(SessionFactory.class).getCache().evictDefaultQueryRegion();
+  }
+}
@@ -0,0 +1,71 @@
+package io.testoftiramisu.booktour.service;
+
+import io.testoftiramisu.booktour.domain.Difficulty;
+import io.testoftiramisu.booktour.domain.Region;
+
+/** Criteria of a tour search, every criterion is optional and all given ones must match. */
+public class TourFilter {
+  private String packageCode;
+  private Difficulty difficulty;
+  private Region region;
+  private Integer minPrice;
+  private Integer maxPrice;
+
+  /**
+   * Constructs TourFilter.
+   *
+   * @param packageCode code of the tour package, null for any
+   * @param difficulty difficulty, null for any
+   * @param region region, null for any
+   * @param minPrice lowest price, inclusive, null for no lower bound
+   * @param maxPrice highest price, inclusive, null for no upper bound
+   */
+  public TourFilter(
+      String packageCode,
+      Difficulty difficulty,
+      Region region,
+      Integer minPrice,
+      Integer maxPrice) {
+    this.packageCode = packageCode;
+    this.difficulty = difficulty;
+    this.region = region;
+    this.minPrice = minPrice;
+    this.maxPrice = maxPrice;
+  }
+
+  public String getPackageCode() {
+    return packageCode;
+  }
+
+  public Difficulty getDifficulty() {
+    return difficulty;
+  }
+
+  public Region getRegion() {
+    return region;
+  }
+
+  public Integer getMinPrice() {
+    return minPrice;
+  }
+
+  public Integer getMaxPrice() {
+    return maxPrice;
+  }
+
+  @Override
+  public String toString() {
+    return "TourFilter{"
+        + "packageCode="
+        + packageCode
+        + ", difficulty="
+        + difficulty
+        + ", region="
+        + region
+        + ", minPrice="
+        + minPrice
+        + ", maxPrice="
+        + maxPrice
+        + '}';
+  }
+}
@@ -0,0 +1,184 @@
+package io.testoftiramisu.booktour.service;
+
+import io.testoftiramisu.booktour.domain.TourRatingAggregate;
+import io.testoftiramisu.booktour.repository.ScoreCount;
+import io.testoftiramisu.booktour.repository.TourRatingAggregateRepository;
+import io.testoftiramisu.booktour.repository.TourRatingRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Tour Rating Aggregate Service.
+ *
+ * <p>Maintains the {@link TourRatingAggregate} of every tour in the same transaction as the
+ * rating writes of {@link TourRatingService}.
+ */
+@Service
+@Transactional
+@Slf4j
+public class TourRatingAggregateService {
+  private TourRatingAggregateRepository aggregateRepository;
+  private TourRatingRepository tourRatingRepository;
+
+  /**
+   * Constructs TourRatingAggregateService.
+   *
+   * @param aggregateRepository Tour Rating Aggregate Repository
+   * @param tourRatingRepository Tour Rating Repository
+   */
+  @Autowired
+  public TourRatingAggregateService(
+      TourRatingAggregateRepository aggregateRepository,
+      TourRatingRepository tourRatingRepository) {
+    this.aggregateRepository = aggregateRepository;
+    this.tourRatingRepository = tourRatingRepository;
+  }
+
+  /**
+   * Accounts for new ratings of a tour.
+   *
+   * @param tourId tour identifier
+   * @param score score of the new ratings
+   * @param ratings number of new ratings
+   */
+  public void added(int tourId, int score, long ratings) {
+    TourRatingAggregate aggregate = lockAggregate(tourId);
+    aggregate.addAll(score, ratings);
+    aggregateRepository.save(aggregate);
+  }
+
+  /**
+   * Accounts for a new rating of a tour.
+   *
+   * @param tourId tour identifier
+   * @param score score of the new rating
+   */
+  public void added(int tourId, int score) {
+    added(tourId, score, 1);
+  }
+
+  /**
+   * Accounts for a changed score of a tour rating.
+   *
+   * @param tourId tour identifier
+   * @param oldScore previous score of the rating
+   * @param newScore new score of the rating
+   */
+  public void changed(int tourId, int oldScore, int newScore) {
+    if (oldScore != newScore) {
+      TourRatingAggregate aggregate = lockAggregate(tourId);
+      aggregate.replace(oldScore, newScore);
+      aggregateRepository.save(aggregate);
+    }
+  }
+
+  /**
+   * Accounts for a deleted rating of a tour.
+   *
+   * @param tourId tour identifier
+   * @param score score of the deleted rating
+   */
+  public void removed(int tourId, int score) {
+    TourRatingAggregate aggregate = lockAggregate(tourId);
+    aggregate.remove(score);
+    aggregateRepository.save(aggregate);
+  }
+
+  /**
+   * Gets the average score of a tour.
+   *
+   * @param tourId tour identifier
+   * @return average score, null if the tour has no ratings
+   */
+  public Double getAverageScore(int tourId) {
+    return aggregateRepository
+        .findById(tourId)
+        .map(TourRatingAggregate::getAverage)
+        .orElse(null);
+  }
+
+  /**
+   * Gets the aggregate of a tour.
+   *
+   * @param tourId tour identifier
+   * @return {@link Optional} of the aggregate, empty if the tour was never rated
+   */
+  public Optional<TourRatingAggregate> lookup(int tourId) {
+    return aggregateRepository.findById(tourId);
+  }
+
+  /**
+   * Recomputes the aggregate of a tour from its ratings.
+   *
+   * @param tourId tour identifier
+   * @return the rebuilt aggregate
+   */
+  public TourRatingAggregate rebuild(int tourId) {
+    log.info("Rebuild rating aggregate of tour {}", tourId);
+    TourRatingAggregate expected = new TourRatingAggregate(tourId);
+    tourRatingRepository
+        .countScoresByTourId(tourId)
+        .forEach(c -> expected.addAll(c.getScore(), c.getTotal()));
+
+    TourRatingAggregate aggregate = lockAggregate(tourId);
+    aggregate.copyStatistics(expected);
+    return aggregateRepository.save(aggregate);
+  }
+
+  /**
+   * Recomputes the aggregates of all tours from their ratings and repairs those that drifted.
+   *
+   * @return number of repaired aggregates
+   */
+  public int verifyAll() {
+    log.info("Verify all rating aggregates");
+    Map<Integer, TourRatingAggregate> expected = new HashMap<>();
+    for (ScoreCount c : tourRatingRepository.countScores()) {
+      expected
+          .computeIfAbsent(c.getTourId(), TourRatingAggregate::new)
+          .addAll(c.getScore(), c.getTotal());
+    }
+
+    int repaired = 0;
+    List<TourRatingAggregate> stored = aggregateRepository.findAll();
+    for (TourRatingAggregate aggregate : stored) {
+      TourRatingAggregate actual =
+          expected.getOrDefault(
+              aggregate.getTourId(), new TourRatingAggregate(aggregate.getTourId()));
+      expected.remove(aggregate.getTourId());
+      if (!aggregate.sameStatistics(actual)) {
+        log.warn("Repair drifted rating aggregate {}, expected {}", aggregate, actual);
+        aggregate.copyStatistics(actual);
+        aggregateRepository.save(aggregate);
+        repaired++;
+      }
+    }
+    for (TourRatingAggregate missing : expected.values()) {
+      log.warn("Create missing rating aggregate {}", missing);
+      aggregateRepository.save(missing);
+      repaired++;
+    }
+    return repaired;
+  }
+
+  /**
+   * Lookup the aggregate of a tour for update, inserting an empty one first if the tour has none,
+   * so that concurrent first ratings of a tour wait for each other.
+   *
+   * @param tourId tour identifier
+   * @return locked aggregate, new if the tour does not exist
+   */
+  private TourRatingAggregate lockAggregate(int tourId) {
+    aggregateRepository.insertIfAbsent(tourId);
+    return aggregateRepository
+        .findForUpdate(tourId)
+        .orElseGet(() -> new TourRatingAggregate(tourId));
+  }
+}
@@ -0,0 +1,152 @@
+package io.testoftiramisu.booktour.service;
+
+import io.testoftiramisu.booktour.domain.TourRatingsChangedEvent;
+import io.testoftiramisu.booktour.repository.TourRatingShards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Moves the ratings of the tours to the shard they hash to, after shards were added or removed,
+ * see {@link TourRatingShards}.
+ *
+ * <p>A tour is moved in three transactions: its ratings are copied to its shard, where its
+ * aggregate is rebuilt, then deleted from the shard they were in. Ratings keep their identifiers. A
+ * customer who rated the tour on its new shard in the meantime keeps that rating. Rebalancing again
+ * after a failure resumes where it stopped.
+ *
+ * <p>With booktour.datasource.shard.rebalance-on-start, the shards are rebalanced once the
+ * application is started.
+ */
+@Service
+@Slf4j
+public class TourRatingRebalancer {
+  private static final String TOURS_SQL =
+      "select tour_id from tour_rating union select tour_id from tour_rating_aggregate";
+  private static final String SELECT_SQL =
+      "select id, tour_id, customer_id, score, comment from tour_rating where tour_id = ?";
+  private static final String COPY_SQL =
+      "insert into tour_rating (id, tour_id, customer_id, score, comment)"
+          + " select ?, ?, ?, ?, ? from dual where not exists"
+          + " (select 1 from tour_rating where tour_id = ? and customer_id = ?)";
+  private static final String DELETE_RATINGS_SQL = "delete from tour_rating where tour_id = ?";
+  private static final String DELETE_AGGREGATE_SQL =
+      "delete from tour_rating_aggregate where tour_id = ?";
+
+  private TourRatingShards shards;
+  private TourRatingAggregateService aggregateService;
+  private JdbcTemplate jdbcTemplate;
+  private TransactionTemplate transactionTemplate;
+  private ApplicationEventPublisher publisher;
+  private boolean onStart;
+
+  /**
+   * Constructs TourRatingRebalancer.
+   *
+   * @param shards shards of the ratings
+   * @param aggregateService Tour Rating Aggregate Service
+   * @param jdbcTemplate JDBC template of the routed data source
+   * @param transactionTemplate template of the transactions on a shard
+   * @param publisher publisher of the rating changes
+   * @param onStart whether to rebalance once the application is started
+   */
+  @Autowired
+  public TourRatingRebalancer(
+      TourRatingShards shards,
+      TourRatingAggregateService aggregateService,
+      JdbcTemplate jdbcTemplate,
+      TransactionTemplate transactionTemplate,
+      ApplicationEventPublisher publisher,
+      @Value("${booktour.datasource.shard.rebalance-on-start:false}") boolean onStart) {
+    this.shards = shards;
+    this.aggregateService = aggregateService;
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = transactionTemplate;
+    this.publisher = publisher;
+    this.onStart = onStart;
+  }
+
+  /**
+   * Moves the ratings of every tour that is not on its shard.
+   *
+   * @return number of moved tours
+   */
+  public int rebalance() {
+    log.info("Rebalance ratings across {} shards", shards.getCount());
+    int moved = 0;
+    for (int shard = 0; shard < shards.getCount(); shard++) {
+      int source = shard;
+      List<Integer> tours =
+          inShard(source, () -> jdbcTemplate.queryForList(TOURS_SQL, Integer.class));
+      for (int tourId : tours) {
+        if (shards.shardOf(tourId) != source) {
+          move(tourId, source, shards.shardOf(tourId));
+          moved++;
+        }
+      }
+    }
+    log.info("Moved the ratings of {} tours", moved);
+    return moved;
+  }
+
+  /** Rebalances the shards once the application is started, if asked to. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebalanceOnStart() {
+    if (onStart) {
+      rebalance();
+    }
+  }
+
+  private void move(int tourId, int source, int target) {
+    List<Object[]> ratings =
+        inShard(
+            source,
+            () ->
+                jdbcTemplate.query(
+                    SELECT_SQL,
+                    (rs, rowNum) ->
+                        new Object[] {
+                          rs.getObject(1),
+                          rs.getObject(2),
+                          rs.getObject(3),
+                          rs.getObject(4),
+                          rs.getObject(5),
+                          rs.getObject(2),
+                          rs.getObject(3)
+                        },
+                    tourId));
+    log.info(
+        "Move {} ratings of tour {} from shard {} to {}", ratings.size(), tourId, source, target);
+    inShard(
+        target,
+        () -> {
+          jdbcTemplate.batchUpdate(COPY_SQL, ratings);
+          aggregateService.rebuild(tourId);
+          publisher.publishEvent(new TourRatingsChangedEvent(tourId));
+          return null;
+        });
+    inShard(
+        source,
+        () -> {
+          jdbcTemplate.update(DELETE_RATINGS_SQL, tourId);
+          return jdbcTemplate.update(DELETE_AGGREGATE_SQL, tourId);
+        });
+  }
+
+  private <T> T inShard(int shard, Supplier<T> work) {
+    return transactionTemplate.execute(
+        status -> {
+          shards.routeShard(shard);
+          return work.get();
+        });
+  }
+}
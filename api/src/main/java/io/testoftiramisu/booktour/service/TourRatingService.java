@@ -2,40 +2,109 @@ package io.testoftiramisu.booktour.service;
 
 import io.testoftiramisu.booktour.domain.Tour;
 import io.testoftiramisu.booktour.domain.TourRating;
+import io.testoftiramisu.booktour.domain.TourRatingAggregate;
+import io.testoftiramisu.booktour.domain.TourRatingEvent;
+import io.testoftiramisu.booktour.domain.TourRatingRow;
+import io.testoftiramisu.booktour.domain.TourRatingsChangedEvent;
+import io.testoftiramisu.booktour.repository.RatingView;
+import io.testoftiramisu.booktour.repository.ReplicaRoutingDataSource;
 import io.testoftiramisu.booktour.repository.TourRatingRepository;
+import io.testoftiramisu.booktour.repository.TourRatingShards;
 import io.testoftiramisu.booktour.repository.TourRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.support.MutableSortDefinition;
+import org.springframework.beans.support.PropertyComparator;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
-import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-/** Tour Rating Service. */
+/**
+ * Tour Rating Service.
+ *
+ * <p>Every rating write publishes a {@link TourRatingsChangedEvent}, which versions the cached
+ * representations of the ratings of the tour once committed, and a {@link TourRatingEvent} per
+ * changed rating, see {@link RatingEventLog} and {@link RatingOutbox}.
+ *
+ * <p>Single ratings are created, updated and deleted by their tour and customer in one statement,
+ * without loading the tour or the rating first.
+ *
+ * <p>Lookups of ratings run in read-only transactions, which they let a read replica serve, see
+ * {@link ReplicaRoutingDataSource}. The lookups of a tour read the changes of its ratings committed
+ * by this instance, older replicas are skipped.
+ *
+ * <p>With shards, see {@link TourRatingShards}, the methods of a tour run on the shard of its
+ * ratings, and the lookups of all ratings gather the ratings of every shard.
+ */
 @Service
 @Transactional
 @Slf4j
 public class TourRatingService {
+  /** Deepest rating, offset plus page size, a page of all the ratings reaches with shards. */
+  public static final int MAX_SHARDED_PAGE_DEPTH = 10_000;
+
   private TourRatingRepository tourRatingRepository;
   private TourRepository tourRepository;
+  private TourRatingAggregateService aggregateService;
+  private RatingMetrics ratingMetrics;
+  private ApplicationEventPublisher publisher;
+  private TourRatingVersions versions;
+  private TourRatingShards shards;
+  private boolean upsert;
 
   /**
    * Constructs TourRatingService.
    *
    * @param tourRatingRepository Tour Rating Repository
    * @param tourRepository Tour Repository
+   * @param aggregateService Tour Rating Aggregate Service
+   * @param ratingMetrics Rating Metrics
+   * @param publisher publisher of the rating changes
+   * @param versions versions of the ratings of the tours
+   * @param shards shards of the ratings
+   * @param upsert whether {@link #update} creates the ratings it does not find
    */
   @Autowired
   public TourRatingService(
-      TourRatingRepository tourRatingRepository, TourRepository tourRepository) {
+      TourRatingRepository tourRatingRepository,
+      TourRepository tourRepository,
+      TourRatingAggregateService aggregateService,
+      RatingMetrics ratingMetrics,
+      ApplicationEventPublisher publisher,
+      TourRatingVersions versions,
+      TourRatingShards shards,
+      @Value("${booktour.ratings.upsert.enabled:false}") boolean upsert) {
     this.tourRatingRepository = tourRatingRepository;
     this.tourRepository = tourRepository;
+    this.aggregateService = aggregateService;
+    this.ratingMetrics = ratingMetrics;
+    this.publisher = publisher;
+    this.versions = versions;
+    this.shards = shards;
+    this.upsert = upsert;
   }
 
   /**
@@ -49,8 +118,22 @@ public class TourRatingService {
    */
   public void createNew(int tourId, Integer customerId, Integer score, String comment)
       throws NoSuchElementException {
-    log.info("Create Rating for tour {} of customers {}", tourId, customerId);
-    tourRatingRepository.save(new TourRating(verifyTour(tourId), customerId, score, comment));
+    log.debug("Create Rating for tour {} of customers {}", tourId, customerId);
+    shards.routeTour(tourId);
+    boolean inserted;
+    try {
+      inserted = tourRatingRepository.insertRating(tourId, customerId, score, comment);
+    } catch (DataIntegrityViolationException ex) {
+      ratingMetrics.conflicts(1);
+      throw ex;
+    }
+    if (!inserted) {
+      throw new NoSuchElementException("Tour does not exist " + tourId);
+    }
+    aggregateService.added(tourId, score);
+    publisher.publishEvent(new TourRatingsChangedEvent(tourId));
+    publisher.publishEvent(TourRatingEvent.created(tourId, customerId, score));
+    ratingMetrics.created(1);
   }
 
   /**
@@ -58,20 +141,100 @@ public class TourRatingService {
    *
    * @return {@link List} of TourRatings
    */
+  @Transactional(readOnly = true)
   public List<TourRating> lookupAll() {
-    log.info("Lookup all Ratings");
-    return tourRatingRepository.findAll();
+    log.debug("Lookup all Ratings");
+    ReplicaRoutingDataSource.readFromReplica();
+    return shards.onEachShard(tourRatingRepository::findAll).stream()
+        .flatMap(List::stream)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Gets a page of all Tour Ratings, without loading their tours.
+   *
+   * <p>With shards, the page is merged from the ratings up to the end of the page in every shard,
+   * ordered as requested then by identifier, so a deep page reads more than its size. Pages ending
+   * beyond {@link #MAX_SHARDED_PAGE_DEPTH} are refused, {@link #exportAll} reads all the ratings.
+   *
+   * @param pageable page parameters to determine which elements to fetch
+   * @return {@link Page} of ratings
+   * @throws IllegalArgumentException if the page ends beyond the maximum depth with shards
+   */
+  @Transactional(readOnly = true)
+  public Page<RatingView> lookupAll(Pageable pageable) {
+    log.debug("Lookup all Ratings, page {}", pageable);
+    ReplicaRoutingDataSource.readFromReplica();
+    if (shards.getCount() == 1) {
+      return tourRatingRepository.findAllViews(pageable);
+    }
+    long depth = pageable.getOffset() + pageable.getPageSize();
+    if (depth > MAX_SHARDED_PAGE_DEPTH) {
+      throw new IllegalArgumentException(
+          "Pages of all the ratings end at " + MAX_SHARDED_PAGE_DEPTH + " ratings at most");
+    }
+    Sort sort = pageable.getSort().and(Sort.by("id"));
+    Pageable head = PageRequest.of(0, (int) depth, sort);
+    List<Page<RatingView>> pages =
+        shards.onEachShard(() -> tourRatingRepository.findAllViews(head));
+    Comparator<RatingView> order = null;
+    for (Sort.Order o : sort) {
+      Comparator<RatingView> property =
+          new PropertyComparator<>(
+              new MutableSortDefinition(o.getProperty(), o.isIgnoreCase(), o.isAscending()));
+      order = order == null ? property : order.thenComparing(property);
+    }
+    List<RatingView> content =
+        pages.stream()
+            .flatMap(page -> page.getContent().stream())
+            .sorted(order)
+            .skip(pageable.getOffset())
+            .limit(pageable.getPageSize())
+            .collect(Collectors.toList());
+    return new PageImpl<>(
+        content, pageable, pages.stream().mapToLong(Page::getTotalElements).sum());
+  }
+
+  /**
+   * Passes every Tour Rating to a consumer, one at a time, without holding them in memory.
+   *
+   * <p>Ratings are passed by identifier, shard after shard.
+   *
+   * @param consumer consumer of the ratings
+   * @return number of consumed ratings
+   */
+  @Transactional(readOnly = true)
+  public long exportAll(Consumer<RatingView> consumer) {
+    log.debug("Export all Ratings");
+    ReplicaRoutingDataSource.readFromReplica();
+    long[] exported = {0};
+    shards.forEachShard(
+        () -> {
+          try (Stream<RatingView> ratings = tourRatingRepository.streamAll()) {
+            Iterator<RatingView> iterator = ratings.iterator();
+            while (iterator.hasNext()) {
+              consumer.accept(iterator.next());
+              exported[0]++;
+            }
+          }
+        });
+    return exported[0];
   }
 
   /**
    * Gets a ratings by id.
    *
    * @param id rating identifier
-   * @return {@link Optional} of TourRatings
+   * @return {@link Optional} of the rating
    */
-  public Optional<TourRating> lookupRatingById(int id) {
-    log.info("Lookup Rating for tour {}", id);
-    return tourRatingRepository.findById(id);
+  @Transactional(readOnly = true)
+  public Optional<RatingView> lookupRatingById(int id) {
+    log.debug("Lookup Rating for tour {}", id);
+    ReplicaRoutingDataSource.readFromReplica();
+    return shards.onEachShard(() -> tourRatingRepository.findViewById(id)).stream()
+        .filter(Optional::isPresent)
+        .map(Optional::get)
+        .findFirst();
   }
 
   /**
@@ -79,31 +242,110 @@ public class TourRatingService {
    *
    * @param tourId tour identifier
    * @param pageable page parameters to determine which elements to fetch
-   * @return {@link Page} of TourRatings
+   * @return {@link Page} of ratings
    * @throws NoSuchElementException if no Tour found.
    */
-  public Page<TourRating> lookupRatings(int tourId, Pageable pageable)
+  @Transactional(readOnly = true)
+  public Page<RatingView> lookupRatings(int tourId, Pageable pageable)
       throws NoSuchElementException {
-    log.info("Lookup Rating for tour {}", tourId);
-    return tourRatingRepository.findByTourId(verifyTour(tourId).getId(), pageable);
+    log.debug("Lookup Rating for tour {}", tourId);
+    shards.routeTour(tourId);
+    readChangesOf(tourId);
+    return tourRatingRepository.findViewsByTourId(verifyTour(tourId).getId(), pageable);
   }
 
   /**
-   * Updates all of the elements of a Tour Rating.
+   * Lookup a slice of Ratings for a tour, following a given rating.
    *
    * @param tourId tour identifier
+   * @param afterId identifier of the last rating already seen, null for the first slice
+   * @param size maximum number of ratings
+   * @return Slice of ratings ordered by identifier
+   * @throws NoSuchElementException if no Tour found
+   */
+  @Transactional(readOnly = true)
+  public Slice<RatingView> lookupRatingsAfter(int tourId, Integer afterId, int size)
+      throws NoSuchElementException {
+    log.debug("Lookup Rating for tour {} after rating {}", tourId, afterId);
+    shards.routeTour(tourId);
+    readChangesOf(tourId);
+    return tourRatingRepository.findViewsByTourIdAfter(
+        verifyTour(tourId).getId(), afterId == null ? 0 : afterId, PageRequest.of(0, size));
+  }
+
+  /**
+   * Counts the Ratings of a tour from its aggregate, without scanning the ratings.
+   *
+   * @param tourId tour identifier
+   * @return number of ratings of the tour
+   */
+  @Transactional(readOnly = true)
+  public long countRatings(int tourId) {
+    shards.routeTour(tourId);
+    readChangesOf(tourId);
+    return aggregateService.lookup(tourId).map(TourRatingAggregate::getCount).orElse(0L);
+  }
+
+  /**
+   * Updates all of the elements of a Tour Rating, or creates it in upsert mode.
+   *
+   * @param tourId tour identifier
+   * @param customerId customer identifier
+   * @param score score of the tour rating
+   * @param comment additional comment
+   * @return the updated rating
+   * @throws NoSuchElementException if no TourRating found, or in upsert mode no Tour found
+   * @throws IllegalArgumentException if there is no score
+   */
+  public RatingView update(int tourId, Integer customerId, Integer score, String comment)
+      throws NoSuchElementException {
+    requireScore(score);
+    if (upsert) {
+      return upsert(tourId, customerId, score, comment);
+    }
+    log.debug("Update all of Rating for tour {} of customers {}", tourId, customerId);
+    shards.routeTour(tourId);
+    TourRatingRow rating =
+        tourRatingRepository
+            .updateRating(tourId, customerId, score, comment)
+            .orElseThrow(() -> notRated(tourId, customerId));
+    return changed(rating, score, comment);
+  }
+
+  /**
+   * Updates all of the elements of a Tour Rating, or creates it if the customer did not rate the
+   * tour yet.
+   *
+   * <p>Replacing a rating costs a single MERGE statement, creating one also reads back its
+   * generated identifier.
+   *
+   * @param tourId tour identifier
+   * @param customerId customer identifier
    * @param score score of the tour rating
    * @param comment additional comment
-   * @return Tour Rating Domain Object
+   * @return the updated or created rating
    * @throws NoSuchElementException if no Tour found
+   * @throws IllegalArgumentException if there is no score
    */
-  public TourRating update(int tourId, Integer customerId, Integer score, String comment)
+  public RatingView upsert(int tourId, Integer customerId, Integer score, String comment)
       throws NoSuchElementException {
-    log.info("Update all of Rating for tour {} of customers {}", tourId, customerId);
-    TourRating rating = verifyTourRating(tourId, customerId);
-    rating.setScore(score);
-    rating.setComment(comment);
-    return tourRatingRepository.save(rating);
+    requireScore(score);
+    log.debug("Upsert Rating for tour {} of customers {}", tourId, customerId);
+    shards.routeTour(tourId);
+    Optional<TourRatingRow> replaced =
+        tourRatingRepository.mergeRating(tourId, customerId, score, comment);
+    if (replaced.isPresent()) {
+      return changed(replaced.get(), score, comment);
+    }
+    RatingView created =
+        tourRatingRepository
+            .findViewByTourIdAndCustomerId(tourId, customerId)
+            .orElseThrow(() -> new NoSuchElementException("Tour does not exist " + tourId));
+    aggregateService.added(tourId, score);
+    publisher.publishEvent(new TourRatingsChangedEvent(tourId));
+    publisher.publishEvent(TourRatingEvent.created(tourId, customerId, score));
+    ratingMetrics.created(1);
+    return created;
   }
 
   /**
@@ -113,20 +355,52 @@ public class TourRatingService {
    * @param customerId customer identifier
    * @param score score of the tour rating
    * @param comment additional comment
-   * @return Tour Rating Domain Object
-   * @throws NoSuchElementException if no Tour found.
+   * @return the updated rating
+   * @throws NoSuchElementException if no TourRating found.
    */
-  public TourRating updateSome(int tourId, Integer customerId, Integer score, String comment)
+  public RatingView updateSome(int tourId, Integer customerId, Integer score, String comment)
       throws NoSuchElementException {
-    log.info("Update some of Rating for tour {} of customers {}", tourId, customerId);
-    TourRating rating = verifyTourRating(tourId, customerId);
-    if (score != null) {
-      rating.setScore(score);
+    log.debug("Update some of Rating for tour {} of customers {}", tourId, customerId);
+    shards.routeTour(tourId);
+    TourRatingRow rating =
+        tourRatingRepository
+            .updateSomeOfRating(tourId, customerId, score, comment)
+            .orElseThrow(() -> notRated(tourId, customerId));
+    return changed(
+        rating,
+        score == null ? rating.getScore() : score,
+        comment == null ? rating.getComment() : comment);
+  }
+
+  /**
+   * Accounts for the new score and comment of an updated rating.
+   *
+   * <p>A rating stored without a score, which the aggregate does not count, is counted as created
+   * once it gets one.
+   *
+   * @param rating the rating as it was before the update, changed in place
+   * @param score new score, null if the rating still has none
+   * @param comment new comment
+   * @return the updated rating
+   */
+  private RatingView changed(TourRatingRow rating, Integer score, String comment) {
+    Integer oldScore = rating.getScore();
+    rating.setScore(score);
+    rating.setComment(comment);
+    publisher.publishEvent(new TourRatingsChangedEvent(rating.getTourId()));
+    if (score == null) {
+      return rating;
     }
-    if (comment != null) {
-      rating.setComment(comment);
+    if (oldScore == null) {
+      aggregateService.added(rating.getTourId(), score);
+      publisher.publishEvent(
+          TourRatingEvent.created(rating.getTourId(), rating.getCustomerId(), score));
+      return rating;
     }
-    return tourRatingRepository.save(rating);
+    aggregateService.changed(rating.getTourId(), oldScore, score);
+    publisher.publishEvent(
+        TourRatingEvent.updated(rating.getTourId(), rating.getCustomerId(), oldScore, score));
+    return rating;
   }
 
   /**
@@ -134,25 +408,34 @@ public class TourRatingService {
    *
    * @param tourId tour identifier
    * @param customerId customer identifier
-   * @throws NoSuchElementException if no Tour found.
+   * @throws NoSuchElementException if no TourRating found.
    */
   public void delete(int tourId, Integer customerId) throws NoSuchElementException {
-    log.info("Delete Rating for tour {} and customer {}", tourId, customerId);
-    TourRating rating = verifyTourRating(tourId, customerId);
-    tourRatingRepository.delete(rating);
+    log.debug("Delete Rating for tour {} and customer {}", tourId, customerId);
+    shards.routeTour(tourId);
+    TourRatingRow rating =
+        tourRatingRepository
+            .deleteRating(tourId, customerId)
+            .orElseThrow(() -> notRated(tourId, customerId));
+    publisher.publishEvent(new TourRatingsChangedEvent(tourId));
+    if (rating.getScore() != null) {
+      aggregateService.removed(tourId, rating.getScore());
+      publisher.publishEvent(TourRatingEvent.deleted(tourId, customerId, rating.getScore()));
+    }
   }
   /**
-   * Get the average score of a tour.
+   * Get the average score of a tour from its rating aggregate.
    *
    * @param tourId tour identifier
-   * @return average score as a Double.
+   * @return average score as a Double, null if the tour has no ratings.
    * @throws NoSuchElementException exception
    */
+  @Transactional(readOnly = true)
   public Double getAverageScore(int tourId) throws NoSuchElementException {
-    log.info("Get average score of tour {}", tourId);
-    List<TourRating> ratings = tourRatingRepository.findByTourId(verifyTour(tourId).getId());
-    OptionalDouble average = ratings.stream().mapToInt(TourRating::getScore).average();
-    return average.isPresent() ? average.getAsDouble() : null;
+    log.debug("Get average score of tour {}", tourId);
+    shards.routeTour(tourId);
+    readChangesOf(tourId);
+    return aggregateService.getAverageScore(verifyTour(tourId).getId());
   }
   /**
    * Service for many customers to give the same score for a service
@@ -160,27 +443,97 @@ public class TourRatingService {
    * @param tourId tour identifier
    * @param score tour score
    * @param customers array of customer ids
+   * @throws DataIntegrityViolationException if a customer already rated the tour, no rating is
+   *     created then
    */
   public void rateMany(int tourId, int score, Integer[] customers) {
-    log.info("Rate tour {} by customers {}", tourId, Arrays.asList(customers).toString());
-    Tour tour = tourRepository.findById(tourId).orElseThrow(NoSuchElementException::new);
+    BulkRatingResult result = bulkRate(tourId, score, customers);
+    if (result.hasConflicts()) {
+      throw new DataIntegrityViolationException(
+          "Tour " + tourId + " already rated by customers " + result.getConflicts());
+    }
+  }
+
+  /**
+   * Service for many customers to give the same score for a service, skipping the customers who
+   * already rated it.
+   *
+   * @param tourId tour identifier
+   * @param score tour score
+   * @param customers array of customer ids
+   * @return created and conflicting customers
+   * @throws NoSuchElementException if no Tour found
+   */
+  public BulkRatingResult bulkRate(int tourId, int score, Integer[] customers)
+      throws NoSuchElementException {
+    log.debug("Rate tour {} by customers {}", tourId, customers);
+    shards.routeTour(tourId);
+    Tour tour = verifyTour(tourId);
+    List<TourRating> ratings = new ArrayList<>(customers.length);
+    for (Integer customer : customers) {
+      ratings.add(new TourRating(tour, customer, score));
+    }
+    return createMany(tour, ratings);
+  }
 
-    Arrays.stream(customers)
-        .forEach(
-            (c) -> {
-              log.debug("Attempt to create Tour Rating for customer {}", c);
-              tourRatingRepository.save(new TourRating(tour, c, score));
-            });
+  /**
+   * Creates many Tour Ratings in JDBC batches.
+   *
+   * <p>Ratings of customers who already rated the tour are reported as conflicts and do not abort
+   * the others.
+   *
+   * @param tourId tour identifier
+   * @param ratings ratings to create, their tour is set by this method
+   * @return created and conflicting customers
+   * @throws NoSuchElementException if no Tour found
+   * @throws IllegalArgumentException if a rating has no customer or no score
+   */
+  public BulkRatingResult createMany(int tourId, List<TourRating> ratings)
+      throws NoSuchElementException {
+    log.debug("Create {} Ratings for tour {}", ratings.size(), tourId);
+    shards.routeTour(tourId);
+    return createMany(verifyTour(tourId), ratings);
+  }
+
+  private BulkRatingResult createMany(Tour tour, List<TourRating> ratings) {
+    for (TourRating rating : ratings) {
+      if (rating.getCustomerId() == null || rating.getScore() == null) {
+        throw new IllegalArgumentException("Rating without a customer or a score: " + rating);
+      }
+      rating.setTour(tour);
+    }
+    List<TourRating> conflicts = tourRatingRepository.insertAll(tour.getId(), ratings);
+
+    Set<TourRating> rejected = Collections.newSetFromMap(new IdentityHashMap<>());
+    rejected.addAll(conflicts);
+    List<Integer> created = new ArrayList<>(ratings.size() - conflicts.size());
+    Map<Integer, Long> scores = new HashMap<>();
+    for (TourRating rating : ratings) {
+      if (!rejected.contains(rating)) {
+        created.add(rating.getCustomerId());
+        scores.merge(rating.getScore(), 1L, Long::sum);
+        publisher.publishEvent(
+            TourRatingEvent.created(tour.getId(), rating.getCustomerId(), rating.getScore()));
+      }
+    }
+    scores.forEach((score, count) -> aggregateService.added(tour.getId(), score, count));
+    if (!created.isEmpty()) {
+      publisher.publishEvent(new TourRatingsChangedEvent(tour.getId()));
+    }
+    ratingMetrics.created(created.size());
+    ratingMetrics.conflicts(conflicts.size());
+    return new BulkRatingResult(
+        created, conflicts.stream().map(TourRating::getCustomerId).collect(Collectors.toList()));
   }
 
   /**
-   * Verify and return the Tour given a tourId.
+   * Verify and return the Tour given a tourId, usually from the second-level cache.
    *
    * @param tourId tour identifier
    * @return the found Tour
    * @throws NoSuchElementException if no Tour found
    */
-  private Tour verifyTour(int tourId) throws NoSuchElementException {
+  public Tour verifyTour(int tourId) throws NoSuchElementException {
     return tourRepository
         .findById(tourId)
         .orElseThrow(() -> new NoSuchElementException("Tour does not exist " + tourId));
@@ -195,11 +548,31 @@ public class TourRatingService {
    * @throws NoSuchElementException if no TourRating found
    */
   TourRating verifyTourRating(int tourId, int customerId) throws NoSuchElementException {
+    shards.routeTour(tourId);
     return tourRatingRepository
         .findByTourIdAndCustomerId(tourId, customerId)
-        .orElseThrow(
-            () ->
-                new NoSuchElementException(
-                    "Tour-Rating pair for request(" + tourId + " for customer" + customerId));
+        .orElseThrow(() -> notRated(tourId, customerId));
+  }
+
+  /**
+   * Keeps the current read-only transaction off the replicas that may miss the last committed
+   * change of the ratings of a tour, known to the second by its version.
+   *
+   * @param tourId tour identifier
+   */
+  private void readChangesOf(int tourId) {
+    ReplicaRoutingDataSource.readFromReplica(
+        versions.current(tourId).getLastModified().plusSeconds(1));
+  }
+
+  private static void requireScore(Integer score) {
+    if (score == null) {
+      throw new IllegalArgumentException("A rating needs a score");
+    }
+  }
+
+  private static NoSuchElementException notRated(int tourId, int customerId) {
+    return new NoSuchElementException(
+        "Tour-Rating pair for request(" + tourId + " for customer" + customerId);
   }
 }
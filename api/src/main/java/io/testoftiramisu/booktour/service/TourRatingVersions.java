@@ -0,0 +1,113 @@
+package io.testoftiramisu.booktour.service;
+
+import io.testoftiramisu.booktour.domain.Tour;
+import io.testoftiramisu.booktour.domain.TourChangedEvent;
+import io.testoftiramisu.booktour.domain.TourRatingsChangedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Version of the ratings of every tour, the validator of their cached representations.
+ *
+ * <p>The version of a tour is bumped once a rating write through {@link TourRatingService}, or a
+ * change of the tour itself, is committed. Versions live in memory and start over with a new epoch
+ * on every start, so a validator never survives a restart. Writes through another instance are not
+ * seen.
+ */
+@Component
+public class TourRatingVersions {
+  private final ConcurrentMap<Integer, Version> versions = new ConcurrentHashMap<>();
+  private final Clock clock;
+  private final String epoch;
+  private final Version initial;
+
+  public TourRatingVersions() {
+    this(Clock.systemUTC());
+  }
+
+  TourRatingVersions(Clock clock) {
+    this.clock = clock;
+    Instant started = clock.instant();
+    this.epoch = Long.toString(started.toEpochMilli(), Character.MAX_RADIX);
+    this.initial = new Version(0, started.truncatedTo(ChronoUnit.SECONDS));
+  }
+
+  /**
+   * Current version of the ratings of a tour.
+   *
+   * @param tourId tour identifier
+   * @return the version, the initial one if the ratings did not change since the start
+   */
+  public Version current(int tourId) {
+    return versions.getOrDefault(tourId, initial);
+  }
+
+  /**
+   * Strong entity tag of the ratings of a tour at a version.
+   *
+   * @param tourId tour identifier
+   * @param version version of the ratings
+   * @return quoted entity tag
+   */
+  public String eTag(int tourId, Version version) {
+    return "\"" + epoch + "-" + tourId + "-" + version.getNumber() + "\"";
+  }
+
+  /**
+   * Bumps the version of a tour once its changed ratings are committed.
+   *
+   * @param event the committed change
+   */
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void changed(TourRatingsChangedEvent event) {
+    bump(event.getTourId());
+  }
+
+  /**
+   * Bumps the version of a changed or deleted tour, whose ratings go with it.
+   *
+   * @param event the committed change
+   */
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void tourChanged(TourChangedEvent event) {
+    if (event.getType() == Tour.class) {
+      bump((Integer) event.getId());
+    }
+  }
+
+  private void bump(int tourId) {
+    Instant modified = clock.instant().truncatedTo(ChronoUnit.SECONDS);
+    versions.merge(
+        tourId, new Version(initial.number + 1, modified), (old, ignored) -> old.next(modified));
+  }
+
+  /** Version number of the ratings of a tour and time of their last change, to the second. */
+  public static class Version {
+    private final long number;
+    private final Instant lastModified;
+
+    Version(long number, Instant lastModified) {
+      this.number = number;
+      this.lastModified = lastModified;
+    }
+
+    public long getNumber() {
+      return number;
+    }
+
+    public Instant getLastModified() {
+      return lastModified;
+    }
+
+    private Version next(Instant modified) {
+      return new Version(number + 1, modified.isAfter(lastModified) ? modified : lastModified);
+    }
+  }
+}
@@ -0,0 +1,208 @@
+package io.testoftiramisu.booktour.service;
+
+import io.testoftiramisu.booktour.domain.Difficulty;
+import io.testoftiramisu.booktour.domain.Region;
+import io.testoftiramisu.booktour.domain.Tour;
+import io.testoftiramisu.booktour.domain.TourChangedEvent;
+import io.testoftiramisu.booktour.repository.TourRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory index of the tour catalog answering multi-attribute filters without the database.
+ *
+ * <p>Each tour gets a position in an immutable snapshot. The snapshot keeps one bitset of positions
+ * per difficulty, region and package code, and the positions sorted by price, so a filter is the
+ * intersection of at most four bitsets. The snapshot is rebuilt from the database on the first
+ * search following a committed {@link TourChangedEvent}, or once it is older than its maximum age
+ * to pick up changes made outside of the application.
+ */
+@Component
+@Slf4j
+public class TourSearchIndex {
+  private TourRepository tourRepository;
+  private Duration maxAge;
+  private volatile Snapshot snapshot;
+  private final AtomicBoolean stale = new AtomicBoolean(true);
+
+  /**
+   * Constructs TourSearchIndex.
+   *
+   * @param tourRepository Tour Repository
+   * @param maxAge age after which the index is rebuilt even without a change
+   */
+  @Autowired
+  public TourSearchIndex(
+      TourRepository tourRepository,
+      @Value("${booktour.tours.index.max-age:30m}") Duration maxAge) {
+    this.tourRepository = tourRepository;
+    this.maxAge = maxAge;
+  }
+
+  /**
+   * Finds the tours matching all the criteria of a filter.
+   *
+   * @param filter search criteria
+   * @return matching tours ordered by identifier
+   */
+  public List<Tour> search(TourFilter filter) {
+    return current().search(filter);
+  }
+
+  /**
+   * Marks the index stale once a tour or package change is committed.
+   *
+   * @param event the committed change
+   */
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void tourChanged(TourChangedEvent event) {
+    log.debug("Tour search index is stale after {}", event);
+    stale.set(true);
+  }
+
+  /** Builds the index before the first search. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void warmUp() {
+    current();
+  }
+
+  private Snapshot current() {
+    Snapshot current = snapshot;
+    if (current != null && current.isOlderThan(maxAge)) {
+      stale.set(true);
+    }
+    // without a snapshot yet, wait for the first rebuild, which may already run on another thread
+    if (stale.get() || current == null) {
+      synchronized (this) {
+        // clear the flag before reading, so a change committed meanwhile triggers another rebuild,
+        // and set it again if the read fails, so the next search retries
+        if (stale.compareAndSet(true, false) || snapshot == null) {
+          try {
+            List<Tour> tours = new ArrayList<>();
+            tourRepository.findAll().forEach(tours::add);
+            snapshot = new Snapshot(tours);
+            log.info("Tour search index rebuilt with {} tours", tours.size());
+          } catch (RuntimeException ex) {
+            stale.set(true);
+            throw ex;
+          }
+        }
+      }
+    }
+    return snapshot;
+  }
+
+  /** Immutable index of the tours at one point in time. */
+  static class Snapshot {
+    private final long builtAt = System.nanoTime();
+    private final Tour[] tours;
+    private final Map<Difficulty, BitSet> byDifficulty = new EnumMap<>(Difficulty.class);
+    private final Map<Region, BitSet> byRegion = new EnumMap<>(Region.class);
+    private final Map<String, BitSet> byPackageCode = new HashMap<>();
+    private final int[] sortedPrices;
+    private final int[] positionsByPrice;
+
+    Snapshot(List<Tour> catalog) {
+      tours = catalog.toArray(new Tour[0]);
+      Arrays.sort(tours, Comparator.comparing(Tour::getId));
+
+      List<Integer> priced = new ArrayList<>();
+      for (int position = 0; position < tours.length; position++) {
+        Tour tour = tours[position];
+        if (tour.getDifficulty() != null) {
+          byDifficulty.computeIfAbsent(tour.getDifficulty(), d -> new BitSet()).set(position);
+        }
+        if (tour.getRegion() != null) {
+          byRegion.computeIfAbsent(tour.getRegion(), r -> new BitSet()).set(position);
+        }
+        if (tour.getTourPackage() != null) {
+          // reads the identifier only, a lazy package is not loaded
+          byPackageCode
+              .computeIfAbsent(tour.getTourPackage().getCode(), c -> new BitSet())
+              .set(position);
+        }
+        if (tour.getPrice() != null) {
+          priced.add(position);
+        }
+      }
+      priced.sort(Comparator.comparing(position -> tours[position].getPrice()));
+      positionsByPrice = priced.stream().mapToInt(Integer::intValue).toArray();
+      sortedPrices = priced.stream().mapToInt(position -> tours[position].getPrice()).toArray();
+    }
+
+    boolean isOlderThan(Duration age) {
+      return System.nanoTime() - builtAt > age.toNanos();
+    }
+
+    List<Tour> search(TourFilter filter) {
+      BitSet matches = new BitSet(tours.length);
+      matches.set(0, tours.length);
+      if (filter.getDifficulty() != null) {
+        matches.and(byDifficulty.getOrDefault(filter.getDifficulty(), new BitSet()));
+      }
+      if (filter.getRegion() != null) {
+        matches.and(byRegion.getOrDefault(filter.getRegion(), new BitSet()));
+      }
+      if (filter.getPackageCode() != null) {
+        matches.and(byPackageCode.getOrDefault(filter.getPackageCode(), new BitSet()));
+      }
+      if (filter.getMinPrice() != null || filter.getMaxPrice() != null) {
+        matches.and(priceRange(filter.getMinPrice(), filter.getMaxPrice()));
+      }
+      if (matches.isEmpty()) {
+        return Collections.emptyList();
+      }
+      List<Tour> found = new ArrayList<>(matches.cardinality());
+      for (int position = matches.nextSetBit(0);
+          position >= 0;
+          position = matches.nextSetBit(position + 1)) {
+        found.add(tours[position]);
+      }
+      return found;
+    }
+
+    /** Positions of the tours priced between both bounds, inclusive. */
+    private BitSet priceRange(Integer minPrice, Integer maxPrice) {
+      int from = minPrice == null ? 0 : firstIndexAbove(minPrice - 1L);
+      int to = maxPrice == null ? sortedPrices.length : firstIndexAbove(maxPrice);
+      BitSet range = new BitSet(tours.length);
+      for (int i = from; i < to; i++) {
+        range.set(positionsByPrice[i]);
+      }
+      return range;
+    }
+
+    /** Index of the first sorted price strictly greater than a bound. */
+    private int firstIndexAbove(long bound) {
+      int low = 0;
+      int high = sortedPrices.length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (sortedPrices[middle] <= bound) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+  }
+}
@@ -0,0 +1,248 @@
+package io.testoftiramisu.booktour.service;
+
+import io.testoftiramisu.booktour.domain.Tour;
+import io.testoftiramisu.booktour.domain.TourChangedEvent;
+import io.testoftiramisu.booktour.repository.TourRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index of the tour texts, ranking tours against free text queries.
+ *
+ * <p>Title, keywords, blurb, bullets and description are split into lower case terms. Each term
+ * maps to a posting list of the tours containing it, with a term frequency weighted by the field
+ * it was found in, so a match in the title outranks a match deep in the description. Queries are
+ * ranked with BM25. A committed {@link TourChangedEvent} reindexes the changed tour only.
+ */
+@Component
+@Slf4j
+public class TourTextIndex {
+  static final float TITLE_WEIGHT = 3f;
+  static final float KEYWORDS_WEIGHT = 2f;
+  static final float TEXT_WEIGHT = 1f;
+  private static final float K1 = 1.2f;
+  private static final float B = 0.75f;
+  private static final Set<String> STOP_WORDS =
+      new HashSet<>(
+          Arrays.asList(
+              "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is", "it",
+              "of", "on", "or", "the", "to", "with", "you", "your"));
+
+  private TourRepository tourRepository;
+  private final Map<String, Map<Integer, Float>> postings = new HashMap<>();
+  private final Map<Integer, Document> documents = new HashMap<>();
+  private double totalLength;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  @Autowired
+  public TourTextIndex(TourRepository tourRepository) {
+    this.tourRepository = tourRepository;
+  }
+
+  /**
+   * Ranks the tours matching any term of a query.
+   *
+   * @param query free text
+   * @param limit maximum number of hits
+   * @return hits by decreasing score, empty if the query has no searchable term
+   */
+  public List<Hit> search(String query, int limit) {
+    Set<String> terms = new LinkedHashSet<>(tokenize(query));
+    lock.readLock().lock();
+    try {
+      if (terms.isEmpty() || documents.isEmpty()) {
+        return Collections.emptyList();
+      }
+      double averageLength = totalLength / documents.size();
+      Map<Integer, Double> scores = new HashMap<>();
+      for (String term : terms) {
+        Map<Integer, Float> posting = postings.get(term);
+        if (posting == null) {
+          continue;
+        }
+        double idf =
+            Math.log(1 + (documents.size() - posting.size() + 0.5) / (posting.size() + 0.5));
+        for (Map.Entry<Integer, Float> entry : posting.entrySet()) {
+          float frequency = entry.getValue();
+          double norm = K1 * (1 - B + B * documents.get(entry.getKey()).length / averageLength);
+          scores.merge(
+              entry.getKey(), idf * frequency * (K1 + 1) / (frequency + norm), Double::sum);
+        }
+      }
+      List<Hit> hits = new ArrayList<>(scores.size());
+      scores.forEach((tourId, score) -> hits.add(new Hit(tourId, score)));
+      hits.sort(Hit.BY_RANK);
+      return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Adds a tour to the index, or replaces its previous version.
+   *
+   * @param tour the tour
+   */
+  public void index(Tour tour) {
+    Document document = new Document(tour);
+    lock.writeLock().lock();
+    try {
+      removeDocument(tour.getId());
+      document.frequencies.forEach(
+          (term, frequency) ->
+              postings.computeIfAbsent(term, t -> new HashMap<>()).put(tour.getId(), frequency));
+      documents.put(tour.getId(), document);
+      totalLength += document.length;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes a tour from the index.
+   *
+   * @param tourId tour identifier
+   */
+  public void remove(Integer tourId) {
+    lock.writeLock().lock();
+    try {
+      removeDocument(tourId);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Reindexes a tour once its change is committed.
+   *
+   * @param event the committed change
+   */
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void tourChanged(TourChangedEvent event) {
+    if (event.getType() != Tour.class) {
+      return;
+    }
+    Integer tourId = (Integer) event.getId();
+    log.debug("Reindex tour {}", tourId);
+    tourRepository.findById(tourId).ifPresentOrElse(this::index, () -> remove(tourId));
+  }
+
+  /** Indexes the whole catalog before the first search. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuild() {
+    lock.writeLock().lock();
+    try {
+      postings.clear();
+      documents.clear();
+      totalLength = 0;
+      tourRepository.findAll().forEach(this::index);
+      log.info(
+          "Tour text index built with {} tours and {} terms", documents.size(), postings.size());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void removeDocument(Integer tourId) {
+    Document previous = documents.remove(tourId);
+    if (previous == null) {
+      return;
+    }
+    totalLength -= previous.length;
+    for (String term : previous.frequencies.keySet()) {
+      Map<Integer, Float> posting = postings.get(term);
+      posting.remove(tourId);
+      if (posting.isEmpty()) {
+        postings.remove(term);
+      }
+    }
+  }
+
+  /**
+   * Splits a text into lower case terms, dropping stop words.
+   *
+   * @param text any text, may be null
+   * @return terms in order of appearance
+   */
+  static List<String> tokenize(String text) {
+    if (text == null) {
+      return Collections.emptyList();
+    }
+    List<String> terms = new ArrayList<>();
+    for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+      if (!token.isEmpty() && !STOP_WORDS.contains(token)) {
+        terms.add(token);
+      }
+    }
+    return terms;
+  }
+
+  /** Weighted term frequencies of one tour. */
+  private static class Document {
+    private final Map<String, Float> frequencies = new HashMap<>();
+    private float length;
+
+    Document(Tour tour) {
+      add(tour.getTitle(), TITLE_WEIGHT);
+      add(tour.getKeywords(), KEYWORDS_WEIGHT);
+      add(tour.getBlurb(), TEXT_WEIGHT);
+      add(tour.getBullets(), TEXT_WEIGHT);
+      add(tour.getDescription(), TEXT_WEIGHT);
+    }
+
+    private void add(String text, float weight) {
+      for (String term : tokenize(text)) {
+        frequencies.merge(term, weight, Float::sum);
+        length += weight;
+      }
+    }
+  }
+
+  /** A tour matching a query, with its relevance score. */
+  public static class Hit {
+    static final Comparator<Hit> BY_RANK =
+        Comparator.comparingDouble(Hit::getScore)
+            .reversed()
+            .thenComparing(Hit::getTourId);
+
+    private final Integer tourId;
+    private final double score;
+
+    Hit(Integer tourId, double score) {
+      this.tourId = tourId;
+      this.score = score;
+    }
+
+    public Integer getTourId() {
+      return tourId;
+    }
+
+    public double getScore() {
+      return score;
+    }
+
+    @Override
+    public String toString() {
+      return "Hit{tourId=" + tourId + ", score=" + score + '}';
+    }
+  }
+}
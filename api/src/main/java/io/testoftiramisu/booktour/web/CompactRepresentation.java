@@ -0,0 +1,52 @@
+package io.testoftiramisu.booktour.web;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Content negotiation of the compact application/cbor representation of ratings, pages and
+ * averages, see {@link RatingRecord}.
+ *
+ * <p>Only clients preferring it to the other types they accept, by quality then by order, receive
+ * it. Clients accepting anything, or JSON first, keep receiving HAL JSON.
+ */
+final class CompactRepresentation {
+
+  private CompactRepresentation() {}
+
+  /**
+   * Whether a client prefers the compact representation.
+   *
+   * @param accept Accept header of the request, may be null
+   * @return true if application/cbor is the first of the accepted types by quality
+   */
+  static boolean preferred(String accept) {
+    if (accept == null || !accept.contains(MediaType.APPLICATION_CBOR_VALUE)) {
+      return false;
+    }
+    List<MediaType> accepted = MediaType.parseMediaTypes(accept);
+    MediaType.sortByQualityValue(accepted);
+    return accepted.get(0).equalsTypeAndSubtype(MediaType.APPLICATION_CBOR);
+  }
+
+  /**
+   * Response with the representation preferred by the client, varying by Accept.
+   *
+   * @param accept Accept header of the request, may be null
+   * @param model supplier of the HAL representation
+   * @param compact supplier of the compact representation
+   * @return 200 with either representation
+   */
+  static ResponseEntity<Object> negotiate(
+      String accept, Supplier<Object> model, Supplier<Object> compact) {
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT);
+    if (preferred(accept)) {
+      return response.contentType(MediaType.APPLICATION_CBOR).body(compact.get());
+    }
+    return response.body(model.get());
+  }
+}
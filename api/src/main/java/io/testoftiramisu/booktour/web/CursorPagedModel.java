@@ -0,0 +1,61 @@
+package io.testoftiramisu.booktour.web;
+
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.Link;
+
+/**
+ * Collection of resources paginated with continuation tokens instead of page numbers.
+ *
+ * <p>The {@code next} link carries the token of the following slice. The total is only present
+ * when it was requested.
+ *
+ * @param <T> type of the resources
+ */
+public class CursorPagedModel<T> extends CollectionModel<T> {
+  private CursorMetadata page;
+
+  protected CursorPagedModel() {
+    this.page = null;
+  }
+
+  /**
+   * Constructs CursorPagedModel.
+   *
+   * @param content resources of the slice
+   * @param page metadata of the slice
+   * @param links links of the slice
+   */
+  public CursorPagedModel(Iterable<T> content, CursorMetadata page, Link... links) {
+    super(content, links);
+    this.page = page;
+  }
+
+  public CursorMetadata getPage() {
+    return page;
+  }
+
+  /** Metadata of a slice. */
+  public static class CursorMetadata {
+    private long size;
+    private Long totalElements;
+
+    /**
+     * Constructs CursorMetadata.
+     *
+     * @param size requested size of the slice
+     * @param totalElements total number of elements, null if not requested
+     */
+    public CursorMetadata(long size, Long totalElements) {
+      this.size = size;
+      this.totalElements = totalElements;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public Long getTotalElements() {
+      return totalElements;
+    }
+  }
+}
@@ -1,19 +1,28 @@
 package io.testoftiramisu.booktour.web;
 
-import io.testoftiramisu.booktour.domain.TourRating;
+import io.testoftiramisu.booktour.repository.RatingView;
 import io.testoftiramisu.booktour.repository.TourRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.rest.webmvc.support.RepositoryEntityLinks;
-import org.springframework.hateoas.Link;
 import org.springframework.hateoas.server.mvc.RepresentationModelAssemblerSupport;
-import org.springframework.hateoas.server.mvc.WebMvcLinkBuilder;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 
-/** Rating Assembler, convert TourRating to a Hateoas Supported Rating class */
+/**
+ * Rating Assembler, convert rating projections, read or returned by the writes, to a Hateoas
+ * Supported Rating class.
+ *
+ * <p>The URIs of the rating and tour collections are resolved once per request, and the links of
+ * every rating appended to them, see {@link RatingLinks}.
+ */
 @Component
-public class RatingAssembler extends RepresentationModelAssemblerSupport<TourRating, RatingDto> {
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class RatingAssembler extends RepresentationModelAssemblerSupport<RatingView, RatingDto> {
+
+  private static final String LINKS_ATTRIBUTE = RatingLinks.class.getName();
 
   // Helper to fetch Spring Data Rest Repository links.
   private RepositoryEntityLinks entityLinks;
@@ -26,24 +35,35 @@ public class RatingAssembler extends RepresentationModelAssemblerSupport<TourRat
   /**
    * Generates "self", "rating" and tour links.
    *
-   * @param tourRating Tour Rating Entity
+   * @param rating rating projection
    */
   @Override
-  public RatingDto toModel(TourRating tourRating) {
-    RatingDto rating =
-        new RatingDto(tourRating.getScore(), tourRating.getComment(), tourRating.getCustomerId());
-
-    // "self" : ".../ratings/{ratingId}"
-    WebMvcLinkBuilder ratingLink =
-        linkTo(methodOn(RatingController.class).getRating(tourRating.getId()));
-    rating.add(ratingLink.withSelfRel());
-
-    // "tour" : ".../tours/{tourId}"
-    Link tourLink =
-        entityLinks.linkToItemResource(TourRepository.class, tourRating.getTour().getId());
-    rating.add(tourLink.withRel("tour"));
-    return rating;
+  public RatingDto toModel(RatingView rating) {
+    RatingDto model = new RatingDto(rating.getScore(), rating.getComment(), rating.getCustomerId());
+    RatingLinks links = links();
+    model.add(links.self(rating.getId()));
+    model.add(links.tour(rating.getTourId()));
+    return model;
   }
 
+  /** Links of the current request, resolved on its first rating. */
+  private RatingLinks links() {
+    RequestAttributes request = RequestContextHolder.getRequestAttributes();
+    if (request == null) {
+      return resolveLinks();
+    }
+    RatingLinks links =
+        (RatingLinks) request.getAttribute(LINKS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    if (links == null) {
+      links = resolveLinks();
+      request.setAttribute(LINKS_ATTRIBUTE, links, RequestAttributes.SCOPE_REQUEST);
+    }
+    return links;
+  }
 
+  private RatingLinks resolveLinks() {
+    return new RatingLinks(
+        linkTo(RatingController.class).toUri().toString(),
+        entityLinks.linkFor(TourRepository.class).toUri().toString());
+  }
 }
@@ -0,0 +1,64 @@
+package io.testoftiramisu.booktour.web;
+
+import io.testoftiramisu.booktour.service.TourRatingVersions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Duration;
+
+/**
+ * HTTP caching of the ratings of a tour.
+ *
+ * <p>Responses carry a weak ETag and the Last-Modified time of the ratings from {@link
+ * TourRatingVersions}, and a Cache-Control header letting clients keep them for max-age, then
+ * revalidate them. The ETag is weak because gzip compressed and uncompressed responses differ byte
+ * for byte, and Tomcat leaves responses with a strong ETag uncompressed. A conditional GET of an
+ * unchanged representation is answered with 304 before the database is queried.
+ *
+ * <p>The JSON and the application/cbor representations of the same ratings have distinct ETags, and
+ * responses vary by Accept.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class RatingCacheControl {
+  private TourRatingVersions versions;
+  private String cacheControl;
+
+  /**
+   * Constructs RatingCacheControl.
+   *
+   * @param versions versions of the ratings of the tours
+   * @param maxAge time clients may use a response before revalidating it
+   */
+  @Autowired
+  public RatingCacheControl(
+      TourRatingVersions versions,
+      @Value("${booktour.ratings.cache-control.max-age:0s}") Duration maxAge) {
+    this.versions = versions;
+    this.cacheControl = CacheControl.maxAge(maxAge).mustRevalidate().getHeaderValue();
+  }
+
+  /**
+   * Sets the validators and the Cache-Control header of a response with ratings of a tour, and
+   * checks whether the client already has them.
+   *
+   * @param tourId tour identifier
+   * @param request the current request and response
+   * @return true if the response is 304 Not Modified and needs no body
+   */
+  public boolean notModified(int tourId, ServletWebRequest request) {
+    TourRatingVersions.Version version = versions.current(tourId);
+    String eTag = "W/" + versions.eTag(tourId, version);
+    if (CompactRepresentation.preferred(request.getHeader(HttpHeaders.ACCEPT))) {
+      eTag = eTag.substring(0, eTag.length() - 1) + "-cbor\"";
+    }
+    request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+    request.getResponse().setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    return request.checkNotModified(eTag, version.getLastModified().toEpochMilli());
+  }
+}
@@ -1,42 +1,117 @@
 package io.testoftiramisu.booktour.web;
 
+import io.testoftiramisu.booktour.repository.RatingView;
+import io.testoftiramisu.booktour.service.RatingMetrics;
 import io.testoftiramisu.booktour.service.TourRatingService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.hateoas.CollectionModel;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.NoSuchElementException;
 
 /** Rating Controller. */
 @RestController
 @RequestMapping(path = "/ratings")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class RatingController {
+  private static final MediaType NDJSON_MEDIA_TYPE =
+      MediaType.valueOf(TourRatingController.APPLICATION_NDJSON);
+
   private TourRatingService tourRatingService;
   private RatingAssembler ratingAssembler;
+  private RatingExport ratingExport;
+  private RatingMetrics ratingMetrics;
 
   @Autowired
-  public RatingController(TourRatingService tourRatingService, RatingAssembler ratingAssembler) {
+  public RatingController(
+      TourRatingService tourRatingService,
+      RatingAssembler ratingAssembler,
+      RatingExport ratingExport,
+      RatingMetrics ratingMetrics) {
     this.tourRatingService = tourRatingService;
     this.ratingAssembler = ratingAssembler;
+    this.ratingExport = ratingExport;
+    this.ratingMetrics = ratingMetrics;
   }
 
+  /**
+   * Returns a page of all the ratings.
+   *
+   * @param pageable pageable object
+   * @param pagedResourcesAssembler rating Assembler
+   * @param accept Accept header of the request
+   * @return HATEOAS enabled page of ratings streamed as HAL, or a {@link RatingRecordPage} if
+   *     application/cbor is preferred
+   */
   @GetMapping
-  public CollectionModel<RatingDto> getAll() {
-    return ratingAssembler.toCollectionModel(tourRatingService.lookupAll());
+  public ResponseEntity<Object> getAll(
+      Pageable pageable,
+      PagedResourcesAssembler<RatingView> pagedResourcesAssembler,
+      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+    Page<RatingView> page = tourRatingService.lookupAll(pageable);
+    return CompactRepresentation.negotiate(
+        accept,
+        () -> new RatingPageStream(pagedResourcesAssembler.toModel(page, ratingAssembler)),
+        () -> RatingRecordPage.of(page));
+  }
+
+  /**
+   * Streams all the ratings, as newline delimited JSON if accepted and as a JSON array otherwise.
+   *
+   * @param accept Accept header of the request
+   * @param response response the ratings are written to
+   * @throws IOException if the ratings cannot be written
+   */
+  @GetMapping(
+      path = "/export",
+      produces = {TourRatingController.APPLICATION_NDJSON, MediaType.APPLICATION_JSON_VALUE})
+  public void exportAll(
+      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+      HttpServletResponse response)
+      throws IOException {
+    boolean ndjson =
+        accept != null
+            && MediaType.parseMediaTypes(accept).stream()
+                .anyMatch(type -> type.equalsTypeAndSubtype(NDJSON_MEDIA_TYPE));
+    response.setContentType(
+        ndjson ? TourRatingController.APPLICATION_NDJSON : MediaType.APPLICATION_JSON_VALUE);
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    ratingExport.export(response.getOutputStream(), ndjson);
   }
 
+  /**
+   * Returns a rating.
+   *
+   * @param id rating identifier
+   * @param accept Accept header of the request
+   * @return HATEOAS enabled rating, or a {@link RatingRecord} if application/cbor is preferred
+   */
   @GetMapping("/{id}")
-  public RatingDto getRating(@PathVariable("id") Integer id) {
-    return ratingAssembler.toModel(
+  public ResponseEntity<Object> getRating(
+      @PathVariable("id") Integer id,
+      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+    RatingView rating =
         tourRatingService
             .lookupRatingById(id)
-            .orElseThrow(() -> new NoSuchElementException("Rating " + id + " not found")));
+            .orElseThrow(() -> new NoSuchElementException("Rating " + id + " not found"));
+    return CompactRepresentation.negotiate(
+        accept, () -> ratingAssembler.toModel(rating), () -> RatingRecord.of(rating));
   }
 
   /**
@@ -48,6 +123,19 @@ public class RatingController {
   @ResponseStatus(HttpStatus.NOT_FOUND)
   @ExceptionHandler(NoSuchElementException.class)
   public String return400(NoSuchElementException ex) {
+    ratingMetrics.notFound();
+    return ex.getMessage();
+  }
+
+  /**
+   * Exception handler if IllegalArgumentException is thrown in this Controller.
+   *
+   * @param ex exception
+   * @return Error message String
+   */
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  @ExceptionHandler(IllegalArgumentException.class)
+  public String returnBadRequest(IllegalArgumentException ex) {
     return ex.getMessage();
   }
 }
@@ -0,0 +1,64 @@
+package io.testoftiramisu.booktour.web;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token of the keyset pagination of tour ratings.
+ *
+ * <p>The token carries the tour and the identifier of the last rating of a slice, so the next
+ * slice seeks on (tour_id, id) instead of skipping an offset. Clients must not rely on its
+ * content.
+ */
+final class RatingCursor {
+  private static final String VERSION = "r1";
+  private static final String SEPARATOR = ":";
+
+  private RatingCursor() {}
+
+  /**
+   * Encodes the position following a rating.
+   *
+   * @param tourId tour identifier
+   * @param lastId identifier of the last rating of a slice
+   * @return opaque token
+   */
+  static String encode(int tourId, int lastId) {
+    String position = VERSION + SEPARATOR + tourId + SEPARATOR + lastId;
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(position.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decodes a token of a tour.
+   *
+   * @param tourId tour identifier the token must belong to
+   * @param token opaque token, empty for the first slice
+   * @return identifier of the last rating already seen, null for the first slice
+   * @throws IllegalArgumentException if the token is malformed or belongs to another tour
+   */
+  static Integer decode(int tourId, String token) {
+    if (token == null || token.isEmpty()) {
+      return null;
+    }
+    String[] position;
+    try {
+      position =
+          new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)
+              .split(SEPARATOR);
+    } catch (IllegalArgumentException ex) {
+      throw new IllegalArgumentException("Invalid cursor " + token);
+    }
+    if (position.length != 3
+        || !VERSION.equals(position[0])
+        || !String.valueOf(tourId).equals(position[1])) {
+      throw new IllegalArgumentException("Invalid cursor " + token);
+    }
+    try {
+      return Integer.valueOf(position[2]);
+    } catch (NumberFormatException ex) {
+      throw new IllegalArgumentException("Invalid cursor " + token);
+    }
+  }
+}
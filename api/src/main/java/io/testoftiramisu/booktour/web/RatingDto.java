@@ -1,6 +1,7 @@
 package io.testoftiramisu.booktour.web;
 
 import org.springframework.hateoas.RepresentationModel;
+import org.springframework.hateoas.server.core.Relation;
 
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
@@ -8,8 +9,15 @@ import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 
 /** Data Transfer Object for Tour's Rating. */
+@Relation(value = "ratingDto", collectionRelation = RatingDto.COLLECTION_RELATION)
 public class RatingDto extends RepresentationModel<RatingDto> {
+  /** Relation of the ratings embedded in pages, the one HAL derived from the class name. */
+  static final String COLLECTION_RELATION = "ratingDtoes";
 
+  /** Validation group of a whole rating, as created or replaced, where the score is required. */
+  public interface Complete {}
+
+  @NotNull(groups = Complete.class)
   @Min(0)
   @Max(5)
   private Integer score;
@@ -19,6 +27,8 @@ public class RatingDto extends RepresentationModel<RatingDto> {
 
   @NotNull private Integer customerId;
 
+  private Integer tourId;
+
   /**
    * Constructor to fully initialize the RatingDto
    *
@@ -46,6 +56,10 @@ public class RatingDto extends RepresentationModel<RatingDto> {
     return customerId;
   }
 
+  public Integer getTourId() {
+    return tourId;
+  }
+
   public void setScore(Integer score) {
     this.score = score;
   }
@@ -57,4 +71,8 @@ public class RatingDto extends RepresentationModel<RatingDto> {
   public void setCustomerId(Integer customerId) {
     this.customerId = customerId;
   }
+
+  public void setTourId(Integer tourId) {
+    this.tourId = tourId;
+  }
 }
@@ -0,0 +1,94 @@
+package io.testoftiramisu.booktour.web;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.testoftiramisu.booktour.repository.RatingView;
+import io.testoftiramisu.booktour.service.TourRatingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes every rating to an output stream as a JSON array or as newline delimited JSON.
+ *
+ * <p>Ratings are written one at a time while they are read from the database, so memory stays
+ * constant whatever the number of ratings. Records carry the identifiers of the rating and of its
+ * tour instead of HATEOAS links, and leave out the missing customer, score and comment like the
+ * other JSON responses.
+ */
+@Component
+@Slf4j
+public class RatingExport {
+  private TourRatingService tourRatingService;
+  private ObjectMapper objectMapper;
+
+  /**
+   * Constructs RatingExport.
+   *
+   * @param tourRatingService Tour Rating Service
+   * @param objectMapper JSON mapper
+   */
+  @Autowired
+  public RatingExport(TourRatingService tourRatingService, ObjectMapper objectMapper) {
+    this.tourRatingService = tourRatingService;
+    this.objectMapper = objectMapper;
+  }
+
+  /**
+   * Writes all the ratings.
+   *
+   * @param output stream to write to, left open
+   * @param ndjson true for one JSON object per line, false for a JSON array
+   * @throws IOException if the output cannot be written
+   */
+  public void export(OutputStream output, boolean ndjson) throws IOException {
+    JsonGenerator generator = objectMapper.getFactory().createGenerator(output);
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    generator.setRootValueSeparator(null);
+    if (!ndjson) {
+      generator.writeStartArray();
+    }
+    long exported;
+    try {
+      exported =
+          tourRatingService.exportAll(
+              rating -> {
+                try {
+                  write(generator, rating);
+                  if (ndjson) {
+                    generator.writeRaw('\n');
+                  }
+                } catch (IOException ex) {
+                  throw new UncheckedIOException(ex);
+                }
+              });
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+    if (!ndjson) {
+      generator.writeEndArray();
+    }
+    generator.close();
+    log.info("Exported {} ratings", exported);
+  }
+
+  private static void write(JsonGenerator generator, RatingView rating) throws IOException {
+    generator.writeStartObject();
+    generator.writeNumberField("id", rating.getId());
+    generator.writeNumberField("tourId", rating.getTourId());
+    if (rating.getCustomerId() != null) {
+      generator.writeNumberField("customerId", rating.getCustomerId());
+    }
+    if (rating.getScore() != null) {
+      generator.writeNumberField("score", rating.getScore());
+    }
+    if (rating.getComment() != null && !rating.getComment().isEmpty()) {
+      generator.writeStringField("comment", rating.getComment());
+    }
+    generator.writeEndObject();
+  }
+}
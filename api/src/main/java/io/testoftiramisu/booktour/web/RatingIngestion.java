@@ -0,0 +1,267 @@
+package io.testoftiramisu.booktour.web;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.testoftiramisu.booktour.domain.TourRating;
+import io.testoftiramisu.booktour.service.TourRatingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import javax.validation.groups.Default;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Ingests a stream of newline delimited JSON {@link RatingDto} records for a tour.
+ *
+ * <p>Records are parsed, validated and persisted in chunks, each chunk in its own transaction, so
+ * memory stays bounded whatever the size of the stream. One result line is written per input line
+ * as soon as its chunk is persisted, followed by a summary line.
+ */
+@Component
+@Slf4j
+public class RatingIngestion {
+  static final String CREATED = "CREATED";
+  static final String CONFLICT = "CONFLICT";
+  static final String INVALID = "INVALID";
+
+  private TourRatingService tourRatingService;
+  private Validator validator;
+  private ObjectMapper objectMapper;
+  private ObjectReader ratingReader;
+  private int chunkSize;
+
+  /**
+   * Constructs RatingIngestion.
+   *
+   * @param tourRatingService Tour Rating Service
+   * @param validator bean validator of the rating records
+   * @param objectMapper JSON mapper
+   * @param chunkSize number of records persisted per transaction
+   */
+  @Autowired
+  public RatingIngestion(
+      TourRatingService tourRatingService,
+      Validator validator,
+      ObjectMapper objectMapper,
+      @Value("${booktour.ratings.ingest.chunk-size:1000}") int chunkSize) {
+    this.tourRatingService = tourRatingService;
+    this.validator = validator;
+    this.objectMapper = objectMapper;
+    this.ratingReader = objectMapper.readerFor(RatingDto.class);
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Reads rating records from the input and writes a result line for each of them to the output.
+   *
+   * @param tourId tour identifier, records may repeat it in their tourId field
+   * @param input newline delimited JSON rating records
+   * @param output newline delimited JSON results
+   * @throws IOException if the input cannot be read or the output written
+   */
+  public void ingest(int tourId, InputStream input, OutputStream output) throws IOException {
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    JsonGenerator generator = objectMapper.getFactory().createGenerator(output);
+    generator.setRootValueSeparator(null);
+    Summary summary = new Summary();
+    Chunk chunk = new Chunk();
+
+    String line;
+    long lineNumber = 0;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+      parse(tourId, lineNumber, line, chunk);
+      if (chunk.size() >= chunkSize) {
+        persist(tourId, chunk, generator, summary);
+      }
+    }
+    persist(tourId, chunk, generator, summary);
+
+    generator.writeObject(summary);
+    generator.writeRaw('\n');
+    generator.flush();
+    log.info("Ingested ratings for tour {}: {}", tourId, summary);
+  }
+
+  /** Parses and validates a line, then adds the record or its error to the chunk. */
+  private void parse(int tourId, long lineNumber, String line, Chunk chunk) {
+    RatingDto rating;
+    try {
+      rating = ratingReader.readValue(line);
+    } catch (JsonProcessingException ex) {
+      chunk.reject(lineNumber, "Malformed JSON: " + ex.getOriginalMessage());
+      return;
+    } catch (IOException ex) {
+      chunk.reject(lineNumber, ex.getMessage());
+      return;
+    }
+    Set<ConstraintViolation<RatingDto>> violations =
+        validator.validate(rating, Default.class, RatingDto.Complete.class);
+    if (!violations.isEmpty()) {
+      chunk.reject(
+          lineNumber,
+          violations.stream()
+              .map(v -> v.getPropertyPath() + " " + v.getMessage())
+              .sorted()
+              .collect(Collectors.joining(", ")));
+    } else if (rating.getTourId() != null && rating.getTourId() != tourId) {
+      chunk.reject(lineNumber, "tourId " + rating.getTourId() + " does not match tour " + tourId);
+    } else if (!chunk.accept(lineNumber, rating)) {
+      chunk.reject(
+          lineNumber, "customerId " + rating.getCustomerId() + " is repeated in the same chunk");
+    }
+  }
+
+  /** Persists the valid records of the chunk, then writes the results of all its lines. */
+  private void persist(int tourId, Chunk chunk, JsonGenerator generator, Summary summary)
+      throws IOException {
+    if (chunk.size() == 0) {
+      return;
+    }
+    List<TourRating> ratings = new ArrayList<>(chunk.size());
+    for (RatingDto r : chunk.records.values()) {
+      ratings.add(new TourRating(null, r.getCustomerId(), r.getScore(), r.getComment()));
+    }
+    Set<Integer> conflicts =
+        ratings.isEmpty()
+            ? Collections.emptySet()
+            : new HashSet<>(tourRatingService.createMany(tourId, ratings).getConflicts());
+
+    for (Map.Entry<Long, Object> entry : chunk.lines.entrySet()) {
+      LineResult result;
+      if (entry.getValue() instanceof RatingDto) {
+        Integer customerId = ((RatingDto) entry.getValue()).getCustomerId();
+        String status = conflicts.contains(customerId) ? CONFLICT : CREATED;
+        result = new LineResult(entry.getKey(), customerId, status, null);
+      } else {
+        result = new LineResult(entry.getKey(), null, INVALID, (String) entry.getValue());
+      }
+      summary.count(result.getStatus());
+      generator.writeObject(result);
+      generator.writeRaw('\n');
+    }
+    generator.flush();
+    chunk.clear();
+  }
+
+  /** Lines waiting to be persisted: a valid record or an error message, by line number. */
+  private static class Chunk {
+    private final Map<Long, Object> lines = new LinkedHashMap<>();
+    private final Map<Long, RatingDto> records = new LinkedHashMap<>();
+    private final Set<Integer> customers = new HashSet<>();
+
+    boolean accept(long lineNumber, RatingDto rating) {
+      if (!customers.add(rating.getCustomerId())) {
+        return false;
+      }
+      lines.put(lineNumber, rating);
+      records.put(lineNumber, rating);
+      return true;
+    }
+
+    void reject(long lineNumber, String error) {
+      lines.put(lineNumber, error);
+    }
+
+    int size() {
+      return lines.size();
+    }
+
+    void clear() {
+      lines.clear();
+      records.clear();
+      customers.clear();
+    }
+  }
+
+  /** Result of one input line. */
+  public static class LineResult {
+    private long line;
+    private Integer customerId;
+    private String status;
+    private String message;
+
+    LineResult(long line, Integer customerId, String status, String message) {
+      this.line = line;
+      this.customerId = customerId;
+      this.status = status;
+      this.message = message;
+    }
+
+    public long getLine() {
+      return line;
+    }
+
+    public Integer getCustomerId() {
+      return customerId;
+    }
+
+    public String getStatus() {
+      return status;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+  }
+
+  /** Totals of a whole stream, written as its last line. */
+  public static class Summary {
+    private long created;
+    private long conflicts;
+    private long invalid;
+
+    void count(String status) {
+      switch (status) {
+        case CREATED:
+          created++;
+          break;
+        case CONFLICT:
+          conflicts++;
+          break;
+        default:
+          invalid++;
+      }
+    }
+
+    public long getCreated() {
+      return created;
+    }
+
+    public long getConflicts() {
+      return conflicts;
+    }
+
+    public long getInvalid() {
+      return invalid;
+    }
+
+    @Override
+    public String toString() {
+      return "created=" + created + ", conflicts=" + conflicts + ", invalid=" + invalid;
+    }
+  }
+}
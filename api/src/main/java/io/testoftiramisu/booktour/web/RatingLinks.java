@@ -0,0 +1,44 @@
+package io.testoftiramisu.booktour.web;
+
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
+
+/**
+ * "self" and "tour" links of ratings, built by appending identifiers to the URIs of the rating and
+ * tour collections, which are resolved once instead of once per rating.
+ */
+class RatingLinks {
+  private final String ratingsUri;
+  private final String toursUri;
+
+  /**
+   * Create RatingLinks.
+   *
+   * @param ratingsUri URI of the ratings, without a trailing slash
+   * @param toursUri URI of the tours, without a trailing slash
+   */
+  RatingLinks(String ratingsUri, String toursUri) {
+    this.ratingsUri = ratingsUri;
+    this.toursUri = toursUri;
+  }
+
+  /**
+   * Link to a rating.
+   *
+   * @param ratingId rating identifier
+   * @return "self" link, ".../ratings/{ratingId}"
+   */
+  Link self(Integer ratingId) {
+    return new Link(ratingsUri + "/" + ratingId, IanaLinkRelations.SELF);
+  }
+
+  /**
+   * Link to the rated tour.
+   *
+   * @param tourId tour identifier
+   * @return "tour" link, ".../tours/{tourId}"
+   */
+  Link tour(Integer tourId) {
+    return new Link(toursUri + "/" + tourId, "tour");
+  }
+}
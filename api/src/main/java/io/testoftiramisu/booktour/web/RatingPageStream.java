@@ -0,0 +1,24 @@
+package io.testoftiramisu.booktour.web;
+
+import org.springframework.hateoas.PagedModel;
+
+/**
+ * Response body of a page of ratings that is written as HAL JSON while it is serialized, see
+ * {@link RatingPageStreamConverter}.
+ */
+public class RatingPageStream {
+  private final PagedModel<RatingDto> model;
+
+  /**
+   * Create RatingPageStream.
+   *
+   * @param model assembled page of ratings
+   */
+  RatingPageStream(PagedModel<RatingDto> model) {
+    this.model = model;
+  }
+
+  PagedModel<RatingDto> getModel() {
+    return model;
+  }
+}
@@ -0,0 +1,112 @@
+package io.testoftiramisu.booktour.web;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.PagedModel;
+import org.springframework.hateoas.mediatype.hal.HalMediaTypeConfiguration;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Writes pages of ratings as HAL JSON, the same document the HAL message converter renders, one
+ * rating at a time.
+ *
+ * <p>The response is flushed every flush-every ratings, so the first chunk of a large page, gzip
+ * compressed or not, leaves before the rest is rendered. The ratings, then the links and metadata
+ * of the page, are serialized by a copy of the JSON mapper configured for HAL like the one of the
+ * HAL message converter.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class RatingPageStreamConverter extends AbstractHttpMessageConverter<RatingPageStream> {
+  private ObjectMapper objectMapper;
+  private ObjectWriter writer;
+  private int flushEvery;
+
+  /**
+   * Constructs RatingPageStreamConverter.
+   *
+   * @param objectMapper JSON mapper
+   * @param hal configuration of the HAL JSON mapper
+   * @param flushEvery number of ratings written between flushes of the response
+   */
+  @Autowired
+  public RatingPageStreamConverter(
+      ObjectMapper objectMapper,
+      HalMediaTypeConfiguration hal,
+      @Value("${booktour.ratings.stream.flush-every:100}") int flushEvery) {
+    super(MediaTypes.HAL_JSON, MediaType.APPLICATION_JSON);
+    if (flushEvery < 1) {
+      throw new IllegalArgumentException("booktour.ratings.stream.flush-every must be positive");
+    }
+    this.objectMapper = hal.configureObjectMapper(objectMapper.copy());
+    this.writer = this.objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    this.flushEvery = flushEvery;
+  }
+
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return RatingPageStream.class == clazz;
+  }
+
+  @Override
+  protected boolean canRead(MediaType mediaType) {
+    return false;
+  }
+
+  @Override
+  protected RatingPageStream readInternal(
+      Class<? extends RatingPageStream> clazz, HttpInputMessage inputMessage) {
+    throw new HttpMessageNotReadableException("Pages of ratings are not read", inputMessage);
+  }
+
+  @Override
+  protected void writeInternal(RatingPageStream stream, HttpOutputMessage outputMessage)
+      throws IOException {
+    PagedModel<RatingDto> model = stream.getModel();
+    JsonGenerator generator = objectMapper.getFactory().createGenerator(outputMessage.getBody());
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    generator.writeStartObject();
+    if (!model.getContent().isEmpty()) {
+      generator.writeObjectFieldStart("_embedded");
+      generator.writeArrayFieldStart(RatingDto.COLLECTION_RELATION);
+      int written = 0;
+      for (RatingDto rating : model.getContent()) {
+        writer.writeValue(generator, rating);
+        if (++written % flushEvery == 0) {
+          generator.flush();
+        }
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }
+    // the links and metadata of the page, as rendered without its content
+    JsonNode rest =
+        objectMapper.valueToTree(
+            new PagedModel<>(Collections.emptyList(), model.getMetadata(), model.getLinks()));
+    Iterator<Map.Entry<String, JsonNode>> fields = rest.fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      generator.writeFieldName(field.getKey());
+      writer.writeValue(generator, field.getValue());
+    }
+    generator.writeEndObject();
+    generator.close();
+  }
+}
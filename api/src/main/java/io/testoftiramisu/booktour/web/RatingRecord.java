@@ -0,0 +1,81 @@
+package io.testoftiramisu.booktour.web;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import io.testoftiramisu.booktour.repository.RatingView;
+
+/**
+ * Rating of the compact application/cbor representation, for service to service calls.
+ *
+ * <p>Carries the identifiers of the rating and of its tour instead of HATEOAS links, like the
+ * records of {@link RatingExport}.
+ */
+@JsonPropertyOrder({"id", "tourId", "customerId", "score", "comment"})
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class RatingRecord {
+  private final Integer id;
+  private final Integer tourId;
+  private final Integer customerId;
+  private final Integer score;
+  private final String comment;
+
+  /**
+   * Constructs RatingRecord.
+   *
+   * @param id rating identifier
+   * @param tourId tour identifier
+   * @param customerId customer identifier
+   * @param score score of the rating
+   * @param comment additional comment, left out if empty
+   */
+  @JsonCreator
+  public RatingRecord(
+      @JsonProperty("id") Integer id,
+      @JsonProperty("tourId") Integer tourId,
+      @JsonProperty("customerId") Integer customerId,
+      @JsonProperty("score") Integer score,
+      @JsonProperty("comment") String comment) {
+    this.id = id;
+    this.tourId = tourId;
+    this.customerId = customerId;
+    this.score = score;
+    this.comment = comment;
+  }
+
+  /**
+   * Converts a rating projection.
+   *
+   * @param rating rating projection
+   * @return the rating record
+   */
+  public static RatingRecord of(RatingView rating) {
+    return new RatingRecord(
+        rating.getId(),
+        rating.getTourId(),
+        rating.getCustomerId(),
+        rating.getScore(),
+        rating.getComment());
+  }
+
+  public Integer getId() {
+    return id;
+  }
+
+  public Integer getTourId() {
+    return tourId;
+  }
+
+  public Integer getCustomerId() {
+    return customerId;
+  }
+
+  public Integer getScore() {
+    return score;
+  }
+
+  public String getComment() {
+    return comment;
+  }
+}
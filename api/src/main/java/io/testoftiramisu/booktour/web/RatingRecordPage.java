@@ -0,0 +1,56 @@
+package io.testoftiramisu.booktour.web;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.testoftiramisu.booktour.repository.RatingView;
+import org.springframework.data.domain.Page;
+import org.springframework.hateoas.PagedModel.PageMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Page of ratings of the compact application/cbor representation, with the page metadata of the
+ * HAL representation and without its links.
+ */
+public class RatingRecordPage {
+  private final List<RatingRecord> ratings;
+  private final PageMetadata page;
+
+  /**
+   * Constructs RatingRecordPage.
+   *
+   * @param ratings ratings of the page
+   * @param page number, size and totals of the page
+   */
+  @JsonCreator
+  public RatingRecordPage(
+      @JsonProperty("ratings") List<RatingRecord> ratings,
+      @JsonProperty("page") PageMetadata page) {
+    this.ratings = ratings;
+    this.page = page;
+  }
+
+  /**
+   * Converts a page of rating projections.
+   *
+   * @param page page of ratings
+   * @return the page of rating records
+   */
+  public static RatingRecordPage of(Page<RatingView> page) {
+    List<RatingRecord> ratings = new ArrayList<>(page.getNumberOfElements());
+    page.forEach(rating -> ratings.add(RatingRecord.of(rating)));
+    return new RatingRecordPage(
+        ratings,
+        new PageMetadata(
+            page.getSize(), page.getNumber(), page.getTotalElements(), page.getTotalPages()));
+  }
+
+  public List<RatingRecord> getRatings() {
+    return ratings;
+  }
+
+  public PageMetadata getPage() {
+    return page;
+  }
+}
@@ -0,0 +1,49 @@
+package io.testoftiramisu.booktour.web;
+
+import io.testoftiramisu.booktour.repository.RatingView;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Rating Assembler of the reactive stack, with the same "self" and "tour" links as {@link
+ * RatingAssembler}.
+ *
+ * <p>Links are concatenated to the base URI of the request, which is resolved once per request
+ * instead of once per rating.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRatingAssembler {
+
+  /**
+   * Resolves the links of a request from its base URI, honoring the forwarded headers.
+   *
+   * @param request the current request
+   * @return links relative to the scheme, host and port of the request
+   */
+  RatingLinks links(ServerHttpRequest request) {
+    String baseUri =
+        UriComponentsBuilder.fromHttpRequest(request)
+            .replacePath(null)
+            .replaceQuery(null)
+            .build()
+            .toUriString();
+    return new RatingLinks(baseUri + "/ratings", baseUri + "/tours");
+  }
+
+  /**
+   * Generates "self" and "tour" links.
+   *
+   * @param rating rating projection
+   * @param links links of the request
+   * @return rating data transfer object
+   */
+  RatingDto toModel(RatingView rating, RatingLinks links) {
+    RatingDto dto = new RatingDto(rating.getScore(), rating.getComment(), rating.getCustomerId());
+    dto.add(links.self(rating.getId()));
+    dto.add(links.tour(rating.getTourId()));
+    return dto;
+  }
+}
@@ -0,0 +1,115 @@
+package io.testoftiramisu.booktour.web;
+
+import io.testoftiramisu.booktour.repository.RatingView;
+import io.testoftiramisu.booktour.service.RatingMetrics;
+import io.testoftiramisu.booktour.service.ReactiveTourRatingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Rating Controller of the reactive stack, the WebFlux counterpart of {@link RatingController} for
+ * the "reactive" profile.
+ */
+@RestController
+@RequestMapping(path = "/ratings")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRatingController {
+  private ReactiveTourRatingService tourRatingService;
+  private ReactiveRatingAssembler ratingAssembler;
+  private RatingMetrics ratingMetrics;
+
+  @Autowired
+  public ReactiveRatingController(
+      ReactiveTourRatingService tourRatingService,
+      ReactiveRatingAssembler ratingAssembler,
+      RatingMetrics ratingMetrics) {
+    this.tourRatingService = tourRatingService;
+    this.ratingAssembler = ratingAssembler;
+    this.ratingMetrics = ratingMetrics;
+  }
+
+  /**
+   * Streams a page of all the ratings, ordered by identifier.
+   *
+   * @param page page number, from 0
+   * @param size number of ratings per page
+   * @param request the current request, base of the links
+   * @return {@link Flux} of ratings
+   */
+  @GetMapping(
+      produces = {MediaType.APPLICATION_JSON_VALUE, TourRatingController.APPLICATION_NDJSON})
+  public Flux<RatingDto> getAll(
+      @RequestParam(value = "page", defaultValue = "0") int page,
+      @RequestParam(value = "size", defaultValue = "20") int size,
+      ServerHttpRequest request) {
+    if (page < 0 || size < 1) {
+      throw new IllegalArgumentException("Page must not be negative and size must be positive");
+    }
+    RatingLinks links = ratingAssembler.links(request);
+    return tourRatingService
+        .lookupAll(page, Math.min(size, ReactiveTourRatingController.MAX_PAGE_SIZE))
+        .map(rating -> ratingAssembler.toModel(rating, links));
+  }
+
+  /**
+   * Streams all the ratings, as newline delimited JSON if accepted and as a JSON array otherwise.
+   *
+   * <p>Records carry the identifiers of the rating and of its tour instead of HATEOAS links, like
+   * {@link RatingExport}.
+   *
+   * @return {@link Flux} of all the ratings
+   */
+  @GetMapping(
+      path = "/export",
+      produces = {TourRatingController.APPLICATION_NDJSON, MediaType.APPLICATION_JSON_VALUE})
+  public Flux<RatingView> exportAll() {
+    return tourRatingService.exportAll().cast(RatingView.class);
+  }
+
+  @GetMapping("/{id}")
+  public Mono<RatingDto> getRating(@PathVariable("id") Integer id, ServerHttpRequest request) {
+    return tourRatingService
+        .lookupRatingById(id)
+        .switchIfEmpty(Mono.error(() -> new NoSuchElementException("Rating " + id + " not found")))
+        .map(rating -> ratingAssembler.toModel(rating, ratingAssembler.links(request)));
+  }
+
+  /**
+   * Exception handler if NoSuchElementException is thrown in this Controller
+   *
+   * @param ex exception
+   * @return Error message String.
+   */
+  @ResponseStatus(HttpStatus.NOT_FOUND)
+  @ExceptionHandler(NoSuchElementException.class)
+  public String return400(NoSuchElementException ex) {
+    ratingMetrics.notFound();
+    return ex.getMessage();
+  }
+
+  /**
+   * Exception handler if IllegalArgumentException is thrown in this Controller.
+   *
+   * @param ex exception
+   * @return Error message String
+   */
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  @ExceptionHandler(IllegalArgumentException.class)
+  public String returnBadRequest(IllegalArgumentException ex) {
+    return ex.getMessage();
+  }
+}
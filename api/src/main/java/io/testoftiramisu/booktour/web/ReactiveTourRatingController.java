@@ -0,0 +1,228 @@
+package io.testoftiramisu.booktour.web;
+
+import io.testoftiramisu.booktour.service.RatingMetrics;
+import io.testoftiramisu.booktour.service.ReactiveTourRatingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.groups.Default;
+import java.util.AbstractMap;
+import java.util.NoSuchElementException;
+
+/**
+ * Tour Rating Controller of the reactive stack, the WebFlux counterpart of {@link
+ * TourRatingController} for the "reactive" profile.
+ *
+ * <p>Pages of ratings are streamed as they are read, as a JSON array or as newline delimited JSON
+ * if accepted, and the database is only read as fast as the client consumes them.
+ */
+@RestController
+@RequestMapping(path = "/tours/{tourId}/ratings")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Slf4j
+public class ReactiveTourRatingController {
+  static final int MAX_PAGE_SIZE = 2000;
+
+  private ReactiveTourRatingService tourRatingService;
+  private ReactiveRatingAssembler ratingAssembler;
+  private RatingMetrics ratingMetrics;
+
+  @Autowired
+  public ReactiveTourRatingController(
+      ReactiveTourRatingService tourRatingService,
+      ReactiveRatingAssembler ratingAssembler,
+      RatingMetrics ratingMetrics) {
+    this.tourRatingService = tourRatingService;
+    this.ratingAssembler = ratingAssembler;
+    this.ratingMetrics = ratingMetrics;
+  }
+
+  /**
+   * Creates a Tour Rating.
+   *
+   * @param tourId tour identifier
+   * @param ratingDto tour rating data transfer object
+   * @return completion once created
+   */
+  @PostMapping
+  @ResponseStatus(HttpStatus.CREATED)
+  public Mono<Void> createTourRating(
+      @PathVariable(value = "tourId") int tourId,
+      @RequestBody @Validated({Default.class, RatingDto.Complete.class}) RatingDto ratingDto) {
+    log.debug("POST tours/{}/ratings", tourId);
+    return tourRatingService
+        .createNew(tourId, ratingDto.getCustomerId(), ratingDto.getScore(), ratingDto.getComment())
+        .then();
+  }
+
+  /**
+   * Creates Several Tour Ratings for one tour, score and several customers.
+   *
+   * @param tourId tour identifier
+   * @param score tour score
+   * @param customers customers ids
+   * @return completion once created
+   */
+  @PostMapping("/{score}")
+  @ResponseStatus(HttpStatus.CREATED)
+  public Mono<Void> createManyTourRatings(
+      @PathVariable(value = "tourId") int tourId,
+      @PathVariable(value = "score") int score,
+      @RequestParam("customers") Integer[] customers) {
+    log.debug("POST /tours/{}/ratings/{}", tourId, score);
+    return tourRatingService.rateMany(tourId, score, customers);
+  }
+
+  /**
+   * Streams a page of ratings for a tour, ordered by identifier.
+   *
+   * @param tourId tour identifier
+   * @param page page number, from 0
+   * @param size number of ratings per page, at most {@value #MAX_PAGE_SIZE}
+   * @param request the current request, base of the links
+   * @return {@link Flux} of ratings
+   */
+  @GetMapping(
+      produces = {MediaType.APPLICATION_JSON_VALUE, TourRatingController.APPLICATION_NDJSON})
+  public Flux<RatingDto> getAllRatingsForTour(
+      @PathVariable(value = "tourId") int tourId,
+      @RequestParam(value = "page", defaultValue = "0") int page,
+      @RequestParam(value = "size", defaultValue = "20") int size,
+      ServerHttpRequest request) {
+    log.debug("GET tours/{}/ratings", tourId);
+    if (page < 0 || size < 1) {
+      throw new IllegalArgumentException("Page must not be negative and size must be positive");
+    }
+    RatingLinks links = ratingAssembler.links(request);
+    return tourRatingService
+        .lookupRatings(tourId, page, Math.min(size, MAX_PAGE_SIZE))
+        .map(rating -> ratingAssembler.toModel(rating, links));
+  }
+
+  /**
+   * Calculates the average Score of a Tour.
+   *
+   * @param tourId tour identifier
+   * @return Tuple of "average" and the average value
+   */
+  @GetMapping("/average")
+  public Mono<AbstractMap.SimpleEntry<String, Double>> getAverage(
+      @PathVariable(value = "tourId") int tourId) {
+    log.debug("GET tours/{}/ratings/average", tourId);
+    return tourRatingService
+        .getAverageScore(tourId)
+        .map(average -> new AbstractMap.SimpleEntry<>("average", average))
+        .defaultIfEmpty(new AbstractMap.SimpleEntry<>("average", null));
+  }
+
+  /**
+   * Updates score and comment of a Tour Rating.
+   *
+   * @param tourId tour identifier
+   * @param ratingDto tour rating data transfer object
+   * @param request the current request, base of the links
+   * @return The modified Rating DTO
+   */
+  @PutMapping
+  public Mono<RatingDto> updateWithPut(
+      @PathVariable(value = "tourId") int tourId,
+      @RequestBody @Validated({Default.class, RatingDto.Complete.class}) RatingDto ratingDto,
+      ServerHttpRequest request) {
+    log.debug("PUT tours/{}/ratings", tourId);
+    return tourRatingService
+        .update(tourId, ratingDto.getCustomerId(), ratingDto.getScore(), ratingDto.getComment())
+        .map(rating -> ratingAssembler.toModel(rating, ratingAssembler.links(request)));
+  }
+
+  /**
+   * Updates score or comment of a Tour Rating.
+   *
+   * @param tourId tour identifier
+   * @param ratingDto tour rating data transfer object
+   * @param request the current request, base of the links
+   * @return The modified Rating DTO
+   */
+  @PatchMapping
+  public Mono<RatingDto> updateWithPatch(
+      @PathVariable(value = "tourId") int tourId,
+      @RequestBody @Validated RatingDto ratingDto,
+      ServerHttpRequest request) {
+    log.debug("PATCH tours/{}/ratings", tourId);
+    return tourRatingService
+        .updateSome(
+            tourId, ratingDto.getCustomerId(), ratingDto.getScore(), ratingDto.getComment())
+        .map(rating -> ratingAssembler.toModel(rating, ratingAssembler.links(request)));
+  }
+
+  /**
+   * Deletes a Rating of a tour made by a customer.
+   *
+   * @param tourId tour identifier
+   * @param customerId customer identifier
+   * @return completion once deleted
+   */
+  @DeleteMapping("/{customerId}")
+  public Mono<Void> delete(
+      @PathVariable(value = "tourId") int tourId,
+      @PathVariable(value = "customerId") int customerId) {
+    log.debug("DELETE tours/{}/ratings/{}", tourId, customerId);
+    return tourRatingService.delete(tourId, customerId);
+  }
+
+  /**
+   * Exception handler if NoSuchElementException is thrown in this Controller.
+   *
+   * @param ex exception
+   * @return Error message String
+   */
+  @ResponseStatus(HttpStatus.NOT_FOUND)
+  @ExceptionHandler(NoSuchElementException.class)
+  public String return400(NoSuchElementException ex) {
+    ratingMetrics.notFound();
+    return ex.getMessage();
+  }
+
+  /**
+   * Exception handler if IllegalArgumentException is thrown in this Controller.
+   *
+   * @param ex exception
+   * @return Error message String
+   */
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  @ExceptionHandler(IllegalArgumentException.class)
+  public String returnBadRequest(IllegalArgumentException ex) {
+    return ex.getMessage();
+  }
+
+  /**
+   * Exception handler if a customer already rated the tour.
+   *
+   * @param ex exception
+   * @return Error message String
+   */
+  @ResponseStatus(HttpStatus.CONFLICT)
+  @ExceptionHandler(DataIntegrityViolationException.class)
+  public String returnConflict(DataIntegrityViolationException ex) {
+    return ex.getMessage();
+  }
+}
@@ -0,0 +1,51 @@
+package io.testoftiramisu.booktour.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.hateoas.mediatype.MessageResolver;
+import org.springframework.hateoas.mediatype.hal.CurieProvider;
+import org.springframework.hateoas.mediatype.hal.Jackson2HalModule;
+import org.springframework.hateoas.server.core.DefaultLinkRelationProvider;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.util.MimeType;
+
+import java.util.Arrays;
+
+/** WebFlux setup of the reactive stack. */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWebConfiguration {
+  private static final MediaType NDJSON_MEDIA_TYPE =
+      MediaType.valueOf(TourRatingController.APPLICATION_NDJSON);
+
+  /**
+   * Encodes JSON with HAL links, as the servlet stack does, and encodes a {@link
+   * reactor.core.publisher.Flux} as newline delimited JSON, one line flushed per element. Spring
+   * 5.2 only streams application/stream+json.
+   *
+   * @param objectMapper JSON mapper of the application
+   * @return customizer of the JSON encoder
+   */
+  @Bean
+  public CodecCustomizer halJsonCodecCustomizer(ObjectMapper objectMapper) {
+    ObjectMapper halMapper = objectMapper.copy();
+    halMapper.registerModule(new Jackson2HalModule());
+    halMapper.setHandlerInstantiator(
+        new Jackson2HalModule.HalHandlerInstantiator(
+            new DefaultLinkRelationProvider(), CurieProvider.NONE, MessageResolver.DEFAULTS_ONLY));
+    Jackson2JsonEncoder encoder =
+        new Jackson2JsonEncoder(
+            halMapper,
+            MediaType.APPLICATION_JSON,
+            new MimeType("application", "*+json"),
+            MediaType.APPLICATION_STREAM_JSON,
+            NDJSON_MEDIA_TYPE);
+    encoder.setStreamingMediaTypes(
+        Arrays.asList(MediaType.APPLICATION_STREAM_JSON, NDJSON_MEDIA_TYPE));
+    return configurer -> configurer.defaultCodecs().jackson2JsonEncoder(encoder);
+  }
+}
@@ -1,14 +1,21 @@
 package io.testoftiramisu.booktour.web;
 
-import io.testoftiramisu.booktour.domain.TourRating;
+import io.testoftiramisu.booktour.repository.RatingView;
+import io.testoftiramisu.booktour.service.BulkRatingResult;
+import io.testoftiramisu.booktour.service.RatingMetrics;
+import io.testoftiramisu.booktour.service.RatingWriteBehind;
 import io.testoftiramisu.booktour.service.TourRatingService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PagedResourcesAssembler;
-import org.springframework.hateoas.PagedModel;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -22,40 +29,76 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.groups.Default;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 
 /** Tour Rating Controller. */
 @RestController
 @RequestMapping(path = "/tours/{tourId}/ratings")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @Slf4j
 public class TourRatingController {
+  static final String APPLICATION_NDJSON = "application/x-ndjson";
+  static final int MAX_CURSOR_PAGE_SIZE = 2000;
+
   private TourRatingService tourRatingService;
   private RatingAssembler ratingAssembler;
+  private RatingIngestion ratingIngestion;
+  private RatingMetrics ratingMetrics;
+  private RatingWriteBehind ratingWriteBehind;
+  private RatingCacheControl ratingCacheControl;
 
   @Autowired
   public TourRatingController(
-      TourRatingService tourRatingService, RatingAssembler ratingAssembler) {
+      TourRatingService tourRatingService,
+      RatingAssembler ratingAssembler,
+      RatingIngestion ratingIngestion,
+      RatingMetrics ratingMetrics,
+      RatingWriteBehind ratingWriteBehind,
+      RatingCacheControl ratingCacheControl) {
     this.tourRatingService = tourRatingService;
     this.ratingAssembler = ratingAssembler;
+    this.ratingIngestion = ratingIngestion;
+    this.ratingMetrics = ratingMetrics;
+    this.ratingWriteBehind = ratingWriteBehind;
+    this.ratingCacheControl = ratingCacheControl;
   }
 
   protected TourRatingController() {}
 
   /**
-   * Creates a Tour Rating.
+   * Creates a Tour Rating, or queues it in write-behind mode.
    *
    * @param tourId tour identifier
    * @param ratingDto tour rating data transfer object
+   * @return 201 once created, 202 once queued
    */
   @PostMapping
-  @ResponseStatus(HttpStatus.CREATED)
-  public void createTourRating(
-      @PathVariable(value = "tourId") int tourId, @RequestBody @Validated RatingDto ratingDto) {
-    log.info("POST tours/{}/ratings", tourId);
+  public ResponseEntity<Void> createTourRating(
+      @PathVariable(value = "tourId") int tourId,
+      @RequestBody @Validated({Default.class, RatingDto.Complete.class}) RatingDto ratingDto) {
+    log.debug("POST tours/{}/ratings", tourId);
+    if (ratingWriteBehind.isEnabled()) {
+      ratingWriteBehind.enqueue(
+          tourId, ratingDto.getCustomerId(), ratingDto.getScore(), ratingDto.getComment());
+      return ResponseEntity.accepted().build();
+    }
     tourRatingService.createNew(
         tourId, ratingDto.getCustomerId(), ratingDto.getScore(), ratingDto.getComment());
+    return ResponseEntity.status(HttpStatus.CREATED).build();
   }
 
   /**
@@ -71,43 +114,155 @@ public class TourRatingController {
       @PathVariable(value = "tourId") int tourId,
       @PathVariable(value = "score") int score,
       @RequestParam("customers") Integer[] customers) {
-    log.info("POST /tours/{}/ratings/{}", tourId, score);
+    log.debug("POST /tours/{}/ratings/{}", tourId, score);
     tourRatingService.rateMany(tourId, score, customers);
   }
 
+  /**
+   * Creates Several Tour Ratings for one tour and score, skipping customers who already rated it.
+   *
+   * @param tourId tour identifier
+   * @param score tour score
+   * @param customers customers ids
+   * @return created and conflicting customers
+   */
+  @PostMapping("/{score}/bulk")
+  public BulkRatingResult bulkRate(
+      @PathVariable(value = "tourId") int tourId,
+      @PathVariable(value = "score") int score,
+      @RequestParam("customers") Integer[] customers) {
+    log.debug("POST /tours/{}/ratings/{}/bulk", tourId, score);
+    return tourRatingService.bulkRate(tourId, score, customers);
+  }
+
+  /**
+   * Creates Tour Ratings from a stream of newline delimited JSON rating records.
+   *
+   * <p>Records are persisted in chunks while the body is read, and a result line is streamed back
+   * for each of them.
+   *
+   * @param tourId tour identifier
+   * @param request request with the application/x-ndjson body
+   * @param response response with one application/x-ndjson result per record
+   * @throws IOException if the body cannot be read or the results written
+   */
+  @PostMapping(consumes = APPLICATION_NDJSON, produces = APPLICATION_NDJSON)
+  public void ingestTourRatings(
+      @PathVariable(value = "tourId") int tourId,
+      HttpServletRequest request,
+      HttpServletResponse response)
+      throws IOException {
+    log.debug("POST tours/{}/ratings (ndjson)", tourId);
+    tourRatingService.verifyTour(tourId);
+    response.setContentType(APPLICATION_NDJSON);
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    ratingIngestion.ingest(tourId, request.getInputStream(), response.getOutputStream());
+  }
+
   /**
    * Returns pageable ratings for a tour.
    *
    * @param tourId tour identifier
    * @param pageable pageable object
    * @param pagedResourcesAssembler rating Assembler
-   * @return HATEOAS enabled page of ratings
+   * @param request the current request, for its conditional and Accept headers
+   * @return HATEOAS enabled page of ratings streamed as HAL, or a {@link RatingRecordPage} if
+   *     application/cbor is preferred, null if not modified
    */
   @GetMapping
-  public PagedModel<RatingDto> getAllRatingsForTour(
+  public ResponseEntity<Object> getAllRatingsForTour(
       @PathVariable(value = "tourId") int tourId,
       Pageable pageable,
-      PagedResourcesAssembler<TourRating> pagedResourcesAssembler) {
-    log.info("GET POST tours/{}/ratings", tourId);
-    Page<TourRating> tourRatingPage = tourRatingService.lookupRatings(tourId, pageable);
-    return pagedResourcesAssembler.toModel(tourRatingPage, ratingAssembler);
+      PagedResourcesAssembler<RatingView> pagedResourcesAssembler,
+      ServletWebRequest request) {
+    log.debug("GET POST tours/{}/ratings", tourId);
+    if (ratingCacheControl.notModified(tourId, request)) {
+      return null;
+    }
+    Page<RatingView> tourRatingPage = tourRatingService.lookupRatings(tourId, pageable);
+    return CompactRepresentation.negotiate(
+        request.getHeader(HttpHeaders.ACCEPT),
+        () ->
+            new RatingPageStream(
+                pagedResourcesAssembler.toModel(tourRatingPage, ratingAssembler)),
+        () -> RatingRecordPage.of(tourRatingPage));
+  }
+
+  /**
+   * Returns a slice of ratings for a tour, following the rating identified by a cursor.
+   *
+   * <p>Each slice seeks on (tour_id, id) so it costs the same whatever its depth. The total is
+   * read from the rating aggregate of the tour, and only if requested.
+   *
+   * @param tourId tour identifier
+   * @param cursor continuation token from a previous next link, empty for the first slice
+   * @param size maximum number of ratings of the slice
+   * @param count whether to include the total number of ratings
+   * @param request the current request, for its conditional headers
+   * @return HATEOAS enabled slice of ratings, null if not modified
+   */
+  @GetMapping(params = "cursor")
+  public CursorPagedModel<RatingDto> getRatingsForTourAfter(
+      @PathVariable(value = "tourId") int tourId,
+      @RequestParam(value = "cursor") String cursor,
+      @RequestParam(value = "size", defaultValue = "20") int size,
+      @RequestParam(value = "count", defaultValue = "false") boolean count,
+      ServletWebRequest request) {
+    log.debug("GET tours/{}/ratings?cursor={}", tourId, cursor);
+    if (size < 1) {
+      throw new IllegalArgumentException("Size must be positive");
+    }
+    if (ratingCacheControl.notModified(tourId, request)) {
+      return null;
+    }
+    int limit = Math.min(size, MAX_CURSOR_PAGE_SIZE);
+    Slice<RatingView> slice =
+        tourRatingService.lookupRatingsAfter(tourId, RatingCursor.decode(tourId, cursor), limit);
+
+    List<RatingDto> ratings = new ArrayList<>(slice.getNumberOfElements());
+    slice.forEach(rating -> ratings.add(ratingAssembler.toModel(rating)));
+    Long total = count ? tourRatingService.countRatings(tourId) : null;
+    CursorPagedModel<RatingDto> model =
+        new CursorPagedModel<>(ratings, new CursorPagedModel.CursorMetadata(limit, total));
+
+    model.add(
+        linkTo(methodOn(TourRatingController.class)
+                .getRatingsForTourAfter(tourId, cursor, limit, count, null))
+            .withSelfRel());
+    if (slice.hasNext()) {
+      RatingView last = slice.getContent().get(slice.getNumberOfElements() - 1);
+      String next = RatingCursor.encode(tourId, last.getId());
+      model.add(
+          linkTo(methodOn(TourRatingController.class)
+                  .getRatingsForTourAfter(tourId, next, limit, count, null))
+              .withRel(IanaLinkRelations.NEXT));
+    }
+    return model;
   }
 
   /**
    * Calculates the average Score of a Tour.
    *
    * @param tourId tour identifier
-   * @return Tuple of "average" and the average value
+   * @param request the current request, for its conditional and Accept headers
+   * @return Tuple of "average" and the average value, as JSON or application/cbor, null if not
+   *     modified
    */
   @GetMapping("/average")
-  public AbstractMap.SimpleEntry<String, Double> getAverage(
-      @PathVariable(value = "tourId") int tourId) {
-    log.info("GET POST tours/{}/ratings/average", tourId);
-    return new AbstractMap.SimpleEntry<>("average", tourRatingService.getAverageScore(tourId));
+  public ResponseEntity<Object> getAverage(
+      @PathVariable(value = "tourId") int tourId, ServletWebRequest request) {
+    log.debug("GET POST tours/{}/ratings/average", tourId);
+    if (ratingCacheControl.notModified(tourId, request)) {
+      return null;
+    }
+    AbstractMap.SimpleEntry<String, Double> average =
+        new AbstractMap.SimpleEntry<>("average", tourRatingService.getAverageScore(tourId));
+    return CompactRepresentation.negotiate(
+        request.getHeader(HttpHeaders.ACCEPT), () -> average, () -> average);
   }
 
   /**
-   * Updates score and comment of a Tour Rating.
+   * Updates score and comment of a Tour Rating, or creates it if booktour.ratings.upsert.enabled.
    *
    * @param tourId tour identifier
    * @param ratingDto tour rating data transfer object
@@ -115,8 +270,9 @@ public class TourRatingController {
    */
   @PutMapping
   public RatingDto updateWithPut(
-      @PathVariable(value = "tourId") int tourId, @RequestBody @Validated RatingDto ratingDto) {
-    log.info("PUT POST tours/{}/ratings", tourId);
+      @PathVariable(value = "tourId") int tourId,
+      @RequestBody @Validated({Default.class, RatingDto.Complete.class}) RatingDto ratingDto) {
+    log.debug("PUT POST tours/{}/ratings", tourId);
     return toDto(
         tourRatingService.update(
             tourId, ratingDto.getCustomerId(), ratingDto.getScore(), ratingDto.getComment()));
@@ -131,7 +287,7 @@ public class TourRatingController {
   @PatchMapping
   public RatingDto updateWithPatch(
       @PathVariable(value = "tourId") int tourId, @RequestBody @Validated RatingDto ratingDto) {
-    log.info("PATCH POST tours/{}/ratings", tourId);
+    log.debug("PATCH POST tours/{}/ratings", tourId);
     return toDto(
         tourRatingService.updateSome(
             tourId, ratingDto.getCustomerId(), ratingDto.getScore(), ratingDto.getComment()));
@@ -147,18 +303,18 @@ public class TourRatingController {
   public void delete(
       @PathVariable(value = "tourId") int tourId,
       @PathVariable(value = "customerId") int customerId) {
-    log.info("PUT POST tours/{}/ratings/{}", tourId, customerId);
+    log.debug("PUT POST tours/{}/ratings/{}", tourId, customerId);
     tourRatingService.delete(tourId, customerId);
   }
 
   /**
-   * Converts the TourRating entity to a RatingDto.
+   * Converts the rating columns to a RatingDto.
    *
-   * @param tourRating tour rating object
+   * @param rating tour rating columns
    * @return RatingDto tour rating data transfer object
    */
-  private RatingDto toDto(TourRating tourRating) {
-    return ratingAssembler.toModel(tourRating);
+  private RatingDto toDto(RatingView rating) {
+    return ratingAssembler.toModel(rating);
   }
 
   /**
@@ -170,6 +326,31 @@ public class TourRatingController {
   @ResponseStatus(HttpStatus.NOT_FOUND)
   @ExceptionHandler(NoSuchElementException.class)
   public String return400(NoSuchElementException ex) {
+    ratingMetrics.notFound();
+    return ex.getMessage();
+  }
+
+  /**
+   * Exception handler if IllegalArgumentException is thrown in this Controller.
+   *
+   * @param ex exception
+   * @return Error message String
+   */
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  @ExceptionHandler(IllegalArgumentException.class)
+  public String returnBadRequest(IllegalArgumentException ex) {
+    return ex.getMessage();
+  }
+
+  /**
+   * Exception handler if the write-behind queue rejects a rating.
+   *
+   * @param ex exception
+   * @return Error message String
+   */
+  @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+  @ExceptionHandler(RejectedExecutionException.class)
+  public String returnTooManyRequests(RejectedExecutionException ex) {
     return ex.getMessage();
   }
 }
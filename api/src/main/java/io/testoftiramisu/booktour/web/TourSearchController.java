@@ -0,0 +1,122 @@
+package io.testoftiramisu.booktour.web;
+
+import io.testoftiramisu.booktour.domain.Difficulty;
+import io.testoftiramisu.booktour.domain.Region;
+import io.testoftiramisu.booktour.repository.TourRepository;
+import io.testoftiramisu.booktour.service.TourFilter;
+import io.testoftiramisu.booktour.service.TourSearchIndex;
+import io.testoftiramisu.booktour.service.TourTextIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.rest.webmvc.PersistentEntityResource;
+import org.springframework.data.rest.webmvc.PersistentEntityResourceAssembler;
+import org.springframework.data.rest.webmvc.RepositoryRestController;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/** Tour Search Controller, searches the tour catalog through the in-memory indexes. */
+@RepositoryRestController
+@Slf4j
+public class TourSearchController {
+  static final int MAX_SEARCH_SIZE = 100;
+
+  private TourSearchIndex tourSearchIndex;
+  private TourTextIndex tourTextIndex;
+  private TourRepository tourRepository;
+
+  /**
+   * Constructs TourSearchController.
+   *
+   * @param tourSearchIndex Tour Search Index
+   * @param tourTextIndex Tour Text Index
+   * @param tourRepository Tour Repository
+   */
+  @Autowired
+  public TourSearchController(
+      TourSearchIndex tourSearchIndex,
+      TourTextIndex tourTextIndex,
+      TourRepository tourRepository) {
+    this.tourSearchIndex = tourSearchIndex;
+    this.tourTextIndex = tourTextIndex;
+    this.tourRepository = tourRepository;
+  }
+
+  /**
+   * Finds the tours whose texts best match a free text query.
+   *
+   * @param q query, any of its terms may match
+   * @param size maximum number of tours, at most {@value #MAX_SEARCH_SIZE}
+   * @param assembler Spring Data REST resource assembler
+   * @return the matching tours, most relevant first
+   */
+  @GetMapping(value = "/tours/search", params = "q")
+  public ResponseEntity<CollectionModel<PersistentEntityResource>> search(
+      @RequestParam("q") String q,
+      @RequestParam(value = "size", defaultValue = "20") int size,
+      PersistentEntityResourceAssembler assembler) {
+    log.debug("GET /tours/search?q={}", q);
+    if (size < 1 || size > MAX_SEARCH_SIZE) {
+      throw new IllegalArgumentException(
+          "size must be between 1 and " + MAX_SEARCH_SIZE + ", was " + size);
+    }
+    // tours are read one by one from the second-level cache, in rank order
+    List<PersistentEntityResource> tours =
+        tourTextIndex.search(q, size).stream()
+            .map(hit -> tourRepository.findById(hit.getTourId()))
+            .flatMap(Optional::stream)
+            .map(assembler::toModel)
+            .collect(Collectors.toList());
+    return ResponseEntity.ok(new CollectionModel<>(tours));
+  }
+
+  /**
+   * Finds the tours matching all the given criteria, in any combination.
+   *
+   * @param code tour package code
+   * @param difficulty difficulty
+   * @param region region
+   * @param minPrice lowest price, inclusive
+   * @param maxPrice highest price, inclusive
+   * @param assembler Spring Data REST resource assembler
+   * @return the matching tours, rendered as by the tour repository resources
+   */
+  @GetMapping("/tours/filter")
+  public ResponseEntity<CollectionModel<PersistentEntityResource>> filter(
+      @RequestParam(value = "code", required = false) String code,
+      @RequestParam(value = "difficulty", required = false) Difficulty difficulty,
+      @RequestParam(value = "region", required = false) Region region,
+      @RequestParam(value = "minPrice", required = false) Integer minPrice,
+      @RequestParam(value = "maxPrice", required = false) Integer maxPrice,
+      PersistentEntityResourceAssembler assembler) {
+    TourFilter filter = new TourFilter(code, difficulty, region, minPrice, maxPrice);
+    log.debug("GET /tours/filter {}", filter);
+    List<PersistentEntityResource> tours =
+        tourSearchIndex.search(filter).stream()
+            .map(assembler::toModel)
+            .collect(Collectors.toList());
+    return ResponseEntity.ok(new CollectionModel<>(tours));
+  }
+
+  /**
+   * Exception handler if IllegalArgumentException is thrown in this Controller.
+   *
+   * @param ex exception
+   * @return Error message String
+   */
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  @ExceptionHandler(IllegalArgumentException.class)
+  @ResponseBody
+  public String returnBadRequest(IllegalArgumentException ex) {
+    return ex.getMessage();
+  }
+}
@@ -0,0 +1,62 @@
+package io.testoftiramisu.booktour.web;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the Tomcat request handlers, and so the services they call, on virtual threads.
+ *
+ * <p>Enabled with {@code booktour.threads.virtual=true}, see
+ * application-virtual-threads.properties. Virtual threads need Java 21 or newer at runtime, the
+ * executor is looked up reflectively so the application still builds for Java 11. With one thread
+ * per request, the JDBC pool becomes the limit of concurrent database work and is sized by the
+ * profile.
+ */
+@Configuration
+@ConditionalOnProperty(name = "booktour.threads.virtual", havingValue = "true")
+@Slf4j
+public class VirtualThreadConfiguration {
+
+  /**
+   * Replaces the Tomcat worker pool with a virtual thread per request.
+   *
+   * @return customizer of the Tomcat protocol handler
+   */
+  @Bean
+  public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+    ExecutorService executor = newVirtualThreadPerTaskExecutor();
+    log.info("Tomcat requests run on virtual threads");
+    return protocolHandler -> protocolHandler.setExecutor(executor);
+  }
+
+  /**
+   * Creates an executor starting a new virtual thread for each task.
+   *
+   * @return the executor
+   * @throws IllegalStateException if the running JDK has no virtual threads
+   */
+  static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (NoSuchMethodException | IllegalAccessException ex) {
+      throw new IllegalStateException(
+          "booktour.threads.virtual needs Java 21 or newer, running on "
+              + System.getProperty("java.version"),
+          ex);
+    } catch (InvocationTargetException ex) {
+      // preview feature of Java 19 and 20 not enabled
+      throw new IllegalStateException(
+          "booktour.threads.virtual needs Java 21, or --enable-preview on Java 19 and 20: "
+              + ex.getCause().getMessage(),
+          ex.getCause());
+    }
+  }
+}
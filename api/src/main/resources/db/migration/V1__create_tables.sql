@@ -29,3 +29,19 @@ create TABLE tour_rating (
 
 alter table tour_rating add FOREIGN KEY (tour_id) REFERENCES tour(id);
 alter table tour_rating add UNIQUE MyConstraint (tour_id, customer_id);
+create INDEX tour_rating_tour_id_id ON tour_rating (tour_id, id);
+
+create TABLE tour_rating_aggregate (
+    tour_id BIGINT PRIMARY KEY,
+    rating_count BIGINT NOT NULL,
+    score_sum BIGINT NOT NULL,
+    min_score INT,
+    max_score INT,
+    score_0 BIGINT NOT NULL,
+    score_1 BIGINT NOT NULL,
+    score_2 BIGINT NOT NULL,
+    score_3 BIGINT NOT NULL,
+    score_4 BIGINT NOT NULL,
+    score_5 BIGINT NOT NULL);
+
+alter table tour_rating_aggregate add FOREIGN KEY (tour_id) REFERENCES tour(id);
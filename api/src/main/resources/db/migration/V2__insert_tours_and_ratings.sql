@@ -412,3 +412,14 @@ insert into tour  (tour_package_code, title, description, blurb, bullets, diffic
   (1, 4, 5, 'I loved it'),
   (2, 100, 5, 'I really thought it could have been better');
 
+
+  insert into tour_rating_aggregate (tour_id, rating_count, score_sum, min_score, max_score,
+    score_0, score_1, score_2, score_3, score_4, score_5)
+  select tour_id, count(*), sum(score), min(score), max(score),
+    sum(case when score = 0 then 1 else 0 end),
+    sum(case when score = 1 then 1 else 0 end),
+    sum(case when score = 2 then 1 else 0 end),
+    sum(case when score = 3 then 1 else 0 end),
+    sum(case when score = 4 then 1 else 0 end),
+    sum(case when score = 5 then 1 else 0 end)
+  from tour_rating group by tour_id;
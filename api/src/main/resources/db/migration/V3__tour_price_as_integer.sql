@@ -0,0 +1,2 @@
+-- Tour.price is an Integer and the price finders compare it numerically.
+alter table tour alter column price INT NOT NULL;
@@ -0,0 +1,10 @@
+-- Indexes of the TourRepository and TourPackageRepository finders.
+-- (tour_package_code, region, difficulty, price) serves lookupTour, the package code finders can
+-- also use the index of the tour_package_code foreign key.
+create INDEX tour_package_code_region_difficulty_price ON tour (tour_package_code, region, difficulty, price);
+create INDEX tour_region ON tour (region);
+create INDEX tour_difficulty ON tour (difficulty);
+create INDEX tour_price ON tour (price);
+create INDEX tour_package_name ON tour_package (name);
+-- Every rating belongs to a tour, the rating finders filter on tour_id without joining tour.
+alter table tour_rating alter column tour_id BIGINT NOT NULL;
@@ -0,0 +1,7 @@
+-- Heartbeat written on the primary and read back from the read replicas to measure their lag, see
+-- ReplicaHeartbeat. beat is the epoch millisecond of the last write.
+create table replication_heartbeat (
+  id INT NOT NULL PRIMARY KEY,
+  beat BIGINT NOT NULL
+);
+insert into replication_heartbeat (id, beat) values (1, 0);
@@ -0,0 +1,11 @@
+-- Committed rating changes waiting to be relayed to downstream systems, see RatingOutbox. A row is
+-- inserted in the transaction of the change and deleted once published.
+create table rating_outbox (
+  id BIGINT AUTO_INCREMENT PRIMARY KEY,
+  type VARCHAR(7) NOT NULL,
+  tour_id BIGINT NOT NULL,
+  customer_id BIGINT NOT NULL,
+  score INT NOT NULL,
+  previous_score INT NOT NULL,
+  created_at TIMESTAMP NOT NULL
+);
@@ -0,0 +1,89 @@
+package io.testoftiramisu.booktour.domain;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TourRatingAggregateTest {
+  private static final int TOUR_ID = 1;
+
+  @Test
+  public void emptyAggregateHasNoAverage() {
+    TourRatingAggregate aggregate = new TourRatingAggregate(TOUR_ID);
+
+    assertThat(aggregate.getCount()).isZero();
+    assertThat(aggregate.getAverage()).isNull();
+    assertThat(aggregate.getMinScore()).isNull();
+    assertThat(aggregate.getMaxScore()).isNull();
+  }
+
+  @Test
+  public void addKeepsStatistics() {
+    TourRatingAggregate aggregate = new TourRatingAggregate(TOUR_ID);
+    aggregate.add(2);
+    aggregate.add(5);
+    aggregate.addAll(4, 2);
+
+    assertThat(aggregate.getCount()).isEqualTo(4);
+    assertThat(aggregate.getSum()).isEqualTo(15);
+    assertThat(aggregate.getAverage()).isEqualTo(3.75);
+    assertThat(aggregate.getMinScore()).isEqualTo(2);
+    assertThat(aggregate.getMaxScore()).isEqualTo(5);
+    assertThat(aggregate.getHistogram()).containsExactly(0, 0, 1, 0, 2, 1);
+  }
+
+  @Test
+  public void removeUpdatesMinAndMax() {
+    TourRatingAggregate aggregate = new TourRatingAggregate(TOUR_ID);
+    aggregate.add(1);
+    aggregate.add(3);
+    aggregate.add(5);
+
+    aggregate.remove(1);
+    aggregate.remove(5);
+
+    assertThat(aggregate.getCount()).isEqualTo(1);
+    assertThat(aggregate.getMinScore()).isEqualTo(3);
+    assertThat(aggregate.getMaxScore()).isEqualTo(3);
+  }
+
+  @Test
+  public void replaceMovesRatingToNewScore() {
+    TourRatingAggregate aggregate = new TourRatingAggregate(TOUR_ID);
+    aggregate.add(1);
+
+    aggregate.replace(1, 4);
+
+    assertThat(aggregate.getCount()).isEqualTo(1);
+    assertThat(aggregate.getAverage()).isEqualTo(4.0);
+    assertThat(aggregate.getHistogram()).containsExactly(0, 0, 0, 0, 1, 0);
+  }
+
+  @Test
+  public void rejectsScoreOutOfRange() {
+    TourRatingAggregate aggregate = new TourRatingAggregate(TOUR_ID);
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> aggregate.add(10));
+  }
+
+  @Test
+  public void rejectsRemovalOfMissingScore() {
+    TourRatingAggregate aggregate = new TourRatingAggregate(TOUR_ID);
+    aggregate.add(3);
+
+    Assertions.assertThrows(IllegalStateException.class, () -> aggregate.remove(2));
+  }
+
+  @Test
+  public void copyStatistics() {
+    TourRatingAggregate source = new TourRatingAggregate(TOUR_ID);
+    source.add(2);
+    source.add(3);
+    TourRatingAggregate target = new TourRatingAggregate(TOUR_ID);
+
+    assertThat(target.sameStatistics(source)).isFalse();
+    target.copyStatistics(source);
+    assertThat(target.sameStatistics(source)).isTrue();
+  }
+}
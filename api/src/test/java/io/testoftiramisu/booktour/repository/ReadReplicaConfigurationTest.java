@@ -0,0 +1,155 @@
+package io.testoftiramisu.booktour.repository;
+
+import io.testoftiramisu.booktour.TourApp;
+import io.testoftiramisu.booktour.service.TourRatingService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Routing of the rating lookups to a replica, with two H2 databases standing in for a primary and
+ * its replica.
+ *
+ * <p>Nothing replicates between them: the replica is migrated on its own, holds a comment of its
+ * own, and its heartbeat is set by each test before the heartbeat reads it.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(
+    classes = TourApp.class,
+    properties = {
+      "booktour.datasource.replicas=" + ReadReplicaConfigurationTest.REPLICA_URL,
+      "booktour.datasource.replica.heartbeat-interval=1h"
+    })
+public class ReadReplicaConfigurationTest {
+  static final String REPLICA_URL = "jdbc:h2:mem:booktour-replica;DB_CLOSE_DELAY=-1";
+  private static final String PRIMARY_COMMENT = "I loved it";
+  private static final String REPLICA_COMMENT = "Read from the replica";
+  private static final String COMMENT_SQL =
+      "select comment from tour_rating where tour_id = ? and customer_id = ?";
+
+  private static JdbcTemplate replica;
+
+  @Autowired private TourRatingService service;
+
+  @Autowired private ReplicaHeartbeat heartbeat;
+
+  @Autowired private DataSource dataSource;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  private JdbcTemplate primary;
+  private int ratingId;
+
+  @BeforeAll
+  public static void migrateReplica() {
+    DriverManagerDataSource dataSource = new DriverManagerDataSource(REPLICA_URL, "sa", "");
+    Flyway.configure().dataSource(dataSource).load().migrate();
+    replica = new JdbcTemplate(dataSource);
+    replica.update(
+        "update tour_rating set comment = ? where tour_id = 1 and customer_id = 4",
+        REPLICA_COMMENT);
+  }
+
+  @BeforeEach
+  public void setUp() throws SQLException {
+    primary = new JdbcTemplate(dataSource.unwrap(ReplicaRoutingDataSource.class).getPrimary());
+    ratingId =
+        primary.queryForObject(
+            "select id from tour_rating where tour_id = 1 and customer_id = 4", Integer.class);
+  }
+
+  @Test
+  @DisplayName("Read-only lookups read a replica within the maximum lag.")
+  public void readOnlyLookupsReadTheReplica() {
+    replicateUntil(Instant.now());
+
+    assertThat(service.lookupRatingById(ratingId).get().getComment()).isEqualTo(REPLICA_COMMENT);
+    assertThat(primary.queryForObject("select beat from replication_heartbeat", Long.class))
+        .as("heartbeat written on the primary")
+        .isPositive();
+  }
+
+  @Test
+  @DisplayName("Read-only transactions not marked for a replica read the primary.")
+  public void unmarkedReadOnlyTransactionsReadThePrimary() {
+    replicateUntil(Instant.now());
+    TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+    readOnly.setReadOnly(true);
+    JdbcTemplate routed = new JdbcTemplate(dataSource);
+
+    String comment =
+        readOnly.execute(status -> routed.queryForObject(COMMENT_SQL, String.class, 1, 4));
+    assertThat(comment).isEqualTo(PRIMARY_COMMENT);
+  }
+
+  @Test
+  @DisplayName("Lookups read the primary while the replica lags.")
+  public void laggingReplicaFallsBackToThePrimary() {
+    replicateUntil(Instant.now().minusSeconds(60));
+
+    assertThat(service.lookupRatingById(ratingId).get().getComment()).isEqualTo(PRIMARY_COMMENT);
+  }
+
+  @Test
+  @DisplayName("Lookups read the primary while the replica cannot be read.")
+  public void unavailableReplicaFallsBackToThePrimary() {
+    replicateUntil(Instant.now());
+    replica.execute("alter table replication_heartbeat rename to replication_heartbeat_off");
+    try {
+      heartbeat.beat();
+
+      assertThat(service.lookupRatingById(ratingId).get().getComment())
+          .isEqualTo(PRIMARY_COMMENT);
+    } finally {
+      replica.execute("alter table replication_heartbeat_off rename to replication_heartbeat");
+    }
+  }
+
+  @Test
+  @DisplayName("Writes go to the primary, whose changes the lookups of the tour wait for.")
+  public void changesOfATourAreReadFromThePrimaryUntilReplicated() {
+    replicateUntil(Instant.now());
+    service.updateSome(2, 100, null, "Written on the primary");
+    try {
+      assertThat(primary.queryForObject(COMMENT_SQL, String.class, 2, 100))
+          .isEqualTo("Written on the primary");
+      assertThat(replica.queryForObject(COMMENT_SQL, String.class, 2, 100))
+          .isEqualTo("I really thought it could have been better");
+
+      assertThat(service.lookupRatings(2, PageRequest.of(0, 5)))
+          .extracting(RatingView::getComment)
+          .containsExactly("Written on the primary");
+
+      // a replica past the change would have it, this one only shows it serves the lookup
+      replicateUntil(Instant.now().plusSeconds(2));
+      assertThat(service.lookupRatings(2, PageRequest.of(0, 5)))
+          .extracting(RatingView::getComment)
+          .containsExactly("I really thought it could have been better");
+    } finally {
+      service.updateSome(2, 100, null, "I really thought it could have been better");
+    }
+  }
+
+  /** Sets the heartbeat replicated so far and lets the heartbeat read it. */
+  private void replicateUntil(Instant beat) {
+    replica.update("update replication_heartbeat set beat = ?", beat.toEpochMilli());
+    heartbeat.beat();
+  }
+}
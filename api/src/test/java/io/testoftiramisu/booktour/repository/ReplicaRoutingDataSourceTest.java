@@ -0,0 +1,175 @@
+package io.testoftiramisu.booktour.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.testoftiramisu.booktour.repository.ReplicaRoutingDataSource.Replica;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ReplicaRoutingDataSourceTest {
+  private static final Instant NOW = Instant.parse("2020-01-15T10:00:00Z");
+  private static final Duration MAX_LAG = Duration.ofSeconds(5);
+
+  @Mock private DataSource primaryMock;
+  @Mock private DataSource firstMock;
+  @Mock private DataSource secondMock;
+  @Mock private Connection primaryConnection;
+  @Mock private Connection firstConnection;
+  @Mock private Connection secondConnection;
+
+  private Replica first;
+  private Replica second;
+  private SimpleMeterRegistry registry;
+  private ReplicaRoutingDataSource routing;
+
+  @BeforeEach
+  public void setUp() throws SQLException {
+    lenient().when(primaryMock.getConnection()).thenReturn(primaryConnection);
+    lenient().when(firstMock.getConnection()).thenReturn(firstConnection);
+    lenient().when(secondMock.getConnection()).thenReturn(secondConnection);
+    first = new Replica("replica-1", firstMock);
+    second = new Replica("replica-2", secondMock);
+    registry = new SimpleMeterRegistry();
+    routing =
+        new ReplicaRoutingDataSource(
+            primaryMock,
+            Arrays.asList(first, second),
+            MAX_LAG,
+            Clock.fixed(NOW, ZoneOffset.UTC),
+            registry);
+    TransactionSynchronizationManager.initSynchronization();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    TransactionSynchronizationManager.getSynchronizations()
+        .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+    TransactionSynchronizationManager.clear();
+  }
+
+  @Test
+  public void readWriteTransactionsUseThePrimary() throws SQLException {
+    first.replicated(NOW);
+    second.replicated(NOW);
+
+    assertThat(routing.getConnection()).isSameAs(primaryConnection);
+    assertThat(fallbacks()).isZero();
+  }
+
+  @Test
+  public void unmarkedReadOnlyTransactionsUseThePrimary() throws SQLException {
+    first.replicated(NOW);
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+    assertThat(routing.getConnection()).isSameAs(primaryConnection);
+    assertThat(fallbacks()).isZero();
+  }
+
+  @Test
+  public void sessionsReadingAReplicaOnlyReadTheCaches() throws SQLException {
+    EntityManager entityManager = mock(EntityManager.class);
+    Session session = mock(Session.class);
+    when(entityManager.unwrap(Session.class)).thenReturn(session);
+    Object entityManagerFactory = new Object();
+    TransactionSynchronizationManager.bindResource(
+        entityManagerFactory, new EntityManagerHolder(entityManager));
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    ReplicaRoutingDataSource.readFromReplica();
+
+    first.replicated(NOW.minusSeconds(6));
+    assertThat(routing.getConnection()).isSameAs(primaryConnection);
+    verify(session, never()).setCacheMode(any());
+
+    first.replicated(NOW);
+    assertThat(routing.getConnection()).isSameAs(firstConnection);
+    verify(session).setCacheMode(CacheMode.GET);
+  }
+
+  @Test
+  public void replicasTakeTurns() throws SQLException {
+    first.replicated(NOW);
+    second.replicated(NOW.minus(MAX_LAG));
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    ReplicaRoutingDataSource.readFromReplica();
+
+    assertThat(routing.getConnection()).isSameAs(firstConnection);
+    assertThat(routing.getConnection()).isSameAs(secondConnection);
+    assertThat(routing.getConnection()).isSameAs(firstConnection);
+    assertThat(lag("replica-2")).isEqualTo(5.0);
+  }
+
+  @Test
+  public void laggingReplicasFallBackToThePrimary() throws SQLException {
+    first.replicated(NOW.minusSeconds(6));
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    ReplicaRoutingDataSource.readFromReplica();
+
+    assertThat(routing.getConnection()).isSameAs(primaryConnection);
+    assertThat(fallbacks()).isEqualTo(1);
+    assertThat(lag("replica-1")).isEqualTo(6.0);
+    assertThat(lag("replica-2")).isNaN();
+  }
+
+  @Test
+  public void refusedConnectionFallsBackToThePrimary() throws SQLException {
+    first.replicated(NOW);
+    when(firstMock.getConnection()).thenThrow(new SQLException("Connection is not available"));
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    ReplicaRoutingDataSource.readFromReplica();
+
+    assertThat(routing.getConnection()).isSameAs(primaryConnection);
+    assertThat(first.isReplicatedSince(Instant.MIN)).as("unavailable until next beat").isFalse();
+    assertThat(fallbacks()).isEqualTo(1);
+  }
+
+  @Test
+  public void readFromReplicaSinceSkipsOlderReplicas() throws SQLException {
+    first.replicated(NOW.minusSeconds(1));
+    second.replicated(NOW);
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    ReplicaRoutingDataSource.readFromReplica(NOW.minusSeconds(2));
+    ReplicaRoutingDataSource.readFromReplica(NOW);
+    ReplicaRoutingDataSource.readFromReplica(NOW.minusSeconds(3));
+
+    assertThat(routing.getConnection()).isSameAs(secondConnection);
+    assertThat(routing.getConnection()).isSameAs(secondConnection);
+
+    ReplicaRoutingDataSource.readFromReplica(NOW.plusSeconds(1));
+    assertThat(routing.getConnection()).isSameAs(primaryConnection);
+  }
+
+  private double fallbacks() {
+    return registry.get(ReplicaRoutingDataSource.FALLBACKS).counter().count();
+  }
+
+  private double lag(String replica) {
+    return registry.get(ReplicaRoutingDataSource.LAG).tag("replica", replica).gauge().value();
+  }
+}
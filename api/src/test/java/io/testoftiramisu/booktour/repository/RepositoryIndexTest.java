@@ -0,0 +1,196 @@
+package io.testoftiramisu.booktour.repository;
+
+import io.testoftiramisu.booktour.TourApp;
+import io.testoftiramisu.booktour.domain.Difficulty;
+import io.testoftiramisu.booktour.domain.Region;
+import io.testoftiramisu.booktour.domain.Tour;
+import io.testoftiramisu.booktour.service.SqlStatementCounter;
+import org.hibernate.Cache;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Every filtering finder of the tour and rating repositories is served by an index, checked with
+ * the EXPLAIN plan of the SQL Hibernate issues for it.
+ *
+ * <p>Finders on a foreign key alone may use the index H2 creates for the constraint, so only the
+ * absence of a table scan is checked for them.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(
+    classes = TourApp.class,
+    properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+            + "io.testoftiramisu.booktour.service.SqlStatementCounter")
+public class RepositoryIndexTest {
+  private static final int TOUR_ID = 1;
+  private static final int CUSTOMER_ID = 4;
+  private static final String PACKAGE = "BC";
+
+  @Autowired private TourRepository tourRepository;
+
+  @Autowired private TourPackageRepository tourPackageRepository;
+
+  @Autowired private TourRatingRepository tourRatingRepository;
+
+  @Autowired private EntityManagerFactory entityManagerFactory;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Test
+  @DisplayName("The price column holds integers.")
+  public void priceIsAnInteger() {
+    assertThat(
+            jdbcTemplate.queryForObject(
+                "select data_type from information_schema.columns"
+                    + " where table_name = 'TOUR' and column_name = 'PRICE'",
+                Integer.class))
+        .isEqualTo(Types.INTEGER);
+    // compared as text, "75" would not be less than "100"
+    assertThat(tourRepository.findByPriceLessThan(100))
+        .extracting(Tour::getPrice)
+        .containsExactly(75);
+  }
+
+  @Test
+  public void findByTourPackageCode() {
+    assertThat(
+            plans(
+                () -> tourRepository.findByTourPackageCode(PACKAGE, PageRequest.of(0, 5)),
+                PACKAGE,
+                5))
+        .hasSize(1);
+  }
+
+  @Test
+  public void findByTourPackageCodeAndRegion() {
+    assertThat(
+            plans(
+                () -> tourRepository.findByTourPackageCodeAndRegion(PACKAGE, Region.Varies),
+                PACKAGE,
+                Region.Varies.getLabel()))
+        .hasSize(1);
+  }
+
+  @Test
+  public void lookupTour() {
+    assertThat(
+            plans(
+                () ->
+                    tourRepository.lookupTour(
+                        PACKAGE, Difficulty.Medium, Region.Central_Coast, 1000),
+                PACKAGE,
+                Difficulty.Medium.name(),
+                Region.Central_Coast.getLabel(),
+                1000))
+        .allMatch(plan -> plan.contains("TOUR_PACKAGE_CODE_REGION_DIFFICULTY_PRICE"));
+  }
+
+  @Test
+  public void findByRegion() {
+    assertThat(
+            plans(() -> tourRepository.findByRegion(Region.Varies), Region.Varies.getLabel()))
+        .allMatch(plan -> plan.contains("TOUR_REGION"));
+  }
+
+  @Test
+  public void findByDifficulty() {
+    assertThat(
+            plans(
+                () -> tourRepository.findByDifficulty(Difficulty.Easy), Difficulty.Easy.name()))
+        .allMatch(plan -> plan.contains("TOUR_DIFFICULTY"));
+  }
+
+  @Test
+  public void findByPrice() {
+    assertThat(plans(() -> tourRepository.findByPrice(75), 75))
+        .allMatch(plan -> plan.contains("TOUR_PRICE"));
+    assertThat(plans(() -> tourRepository.findByPriceLessThan(500), 500))
+        .allMatch(plan -> plan.contains("TOUR_PRICE"));
+  }
+
+  @Test
+  public void findPackageByName() {
+    assertThat(plans(() -> tourPackageRepository.findByName("Backpack Cal"), "Backpack Cal"))
+        .allMatch(plan -> plan.contains("TOUR_PACKAGE_NAME"));
+  }
+
+  @Test
+  public void findRatingsByTour() {
+    assertThat(plans(() -> tourRatingRepository.findByTourId(TOUR_ID), TOUR_ID)).hasSize(1);
+    assertThat(
+            plans(
+                () -> tourRatingRepository.findViewsByTourId(TOUR_ID, PageRequest.of(1, 1)),
+                TOUR_ID,
+                1,
+                1))
+        .as("page and count queries")
+        .hasSize(2);
+    assertThat(
+            plans(
+                () -> tourRatingRepository.findViewsByTourIdAfter(TOUR_ID, 0, PageRequest.of(0, 5)),
+                TOUR_ID,
+                0,
+                6))
+        .allMatch(plan -> plan.contains("TOUR_RATING_TOUR_ID_ID"));
+    assertThat(plans(() -> tourRatingRepository.countScoresByTourId(TOUR_ID), TOUR_ID))
+        .hasSize(1);
+  }
+
+  @Test
+  public void findRatingByTourAndCustomer() {
+    assertThat(
+            plans(
+                () -> tourRatingRepository.findByTourIdAndCustomerId(TOUR_ID, CUSTOMER_ID),
+                TOUR_ID,
+                CUSTOMER_ID))
+        .allMatch(plan -> plan.contains("MYCONSTRAINT"));
+  }
+
+  @Test
+  public void findRatingById() {
+    assertThat(plans(() -> tourRatingRepository.findViewById(1), 1))
+        .allMatch(plan -> plan.contains("PRIMARY_KEY"));
+  }
+
+  /**
+   * EXPLAIN plans of the statements a finder issues, read past the query and second-level caches.
+   *
+   * @param finder call of the finder
+   * @param parameters values of the parameters of the statements, in order, a statement binding
+   *     the first ones it needs
+   * @return plan of each statement, none of them scanning a whole table
+   */
+  private List<String> plans(Runnable finder, Object... parameters) {
+    entityManagerFactory.getCache().evictAll();
+    entityManagerFactory.getCache().unwrap(Cache.class).evictQueryRegions();
+    SqlStatementCounter.reset();
+    finder.run();
+    List<String> statements = SqlStatementCounter.statements();
+    assertThat(statements).isNotEmpty();
+    return statements.stream()
+        .map(
+            sql -> {
+              Object[] bound =
+                  Arrays.copyOf(parameters, (int) sql.chars().filter(c -> c == '?').count());
+              String plan = jdbcTemplate.queryForObject("explain " + sql, String.class, bound);
+              assertThat(plan).as(sql).doesNotContain("tableScan");
+              return plan;
+            })
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,122 @@
+package io.testoftiramisu.booktour.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SegmentLogTest {
+  /** Header and three records of 8 bytes. */
+  private static final int SEGMENT_SIZE = 8 + 3 * 16;
+
+  @TempDir Path directory;
+
+  private SegmentLog log;
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    if (log != null) {
+      log.close();
+    }
+  }
+
+  @Test
+  public void appendedRecordsAreReplayedInOrder() throws IOException {
+    log = open(0, new ArrayList<>());
+    assertThat(log.append(record(1))).isEqualTo(1);
+    assertThat(log.append(record(2))).isEqualTo(2);
+    log.close();
+
+    List<Long> replayed = new ArrayList<>();
+    log = open(0, replayed);
+
+    assertThat(replayed).containsExactly(1L, 2L);
+    assertThat(log.append(record(3))).isEqualTo(3);
+  }
+
+  @Test
+  public void fullSegmentsRollAndAreSkippedWhenReplayedAfter() throws IOException {
+    log = open(0, new ArrayList<>());
+    for (long value = 1; value <= 7; value++) {
+      log.append(record(value));
+    }
+    log.close();
+    assertThat(segments()).hasSize(3);
+
+    List<Long> replayed = new ArrayList<>();
+    log = open(5, replayed);
+
+    assertThat(replayed).containsExactly(6L, 7L);
+    assertThat(log.append(record(8))).isEqualTo(8);
+  }
+
+  @Test
+  public void tornRecordsOfTheLastSegmentAreDropped() throws IOException {
+    log = open(0, new ArrayList<>());
+    log.append(record(1));
+    log.append(record(2));
+    log.close();
+    corrupt(segments().get(0), 8 + 16 + 8);
+
+    List<Long> replayed = new ArrayList<>();
+    log = open(0, replayed);
+    assertThat(replayed).containsExactly(1L);
+    assertThat(log.append(record(3))).isEqualTo(2);
+    log.close();
+
+    replayed.clear();
+    log = open(0, replayed);
+    assertThat(replayed).containsExactly(1L, 3L);
+  }
+
+  @Test
+  public void corruptionOfAnEarlierSegmentFails() throws IOException {
+    log = open(0, new ArrayList<>());
+    for (long value = 1; value <= 4; value++) {
+      log.append(record(value));
+    }
+    log.close();
+    corrupt(segments().get(0), 8 + 8);
+
+    log = new SegmentLog(directory, SEGMENT_SIZE, true);
+    Assertions.assertThrows(IOException.class, () -> log.open(0, record -> {}));
+  }
+
+  private SegmentLog open(long after, List<Long> replayed) throws IOException {
+    SegmentLog opened = new SegmentLog(directory, SEGMENT_SIZE, true);
+    opened.open(after, record -> replayed.add(record.getLong()));
+    return opened;
+  }
+
+  private static ByteBuffer record(long value) {
+    return (ByteBuffer) ByteBuffer.allocate(Long.BYTES).putLong(value).flip();
+  }
+
+  /** Flips a byte of the content of a record. */
+  private static void corrupt(Path segment, int position) throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+      file.seek(position);
+      int value = file.read();
+      file.seek(position);
+      file.write(value ^ 0xff);
+    }
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.sorted().collect(Collectors.toList());
+    }
+  }
+}
@@ -0,0 +1,250 @@
+package io.testoftiramisu.booktour.repository;
+
+import io.testoftiramisu.booktour.TourApp;
+import io.testoftiramisu.booktour.domain.TourRating;
+import io.testoftiramisu.booktour.service.TourRatingRebalancer;
+import io.testoftiramisu.booktour.service.TourRatingService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Ratings partitioned across three H2 databases: the spring.datasource one and two extra shards,
+ * which start empty and receive the sample ratings from the first rebalancing.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(
+    webEnvironment = RANDOM_PORT,
+    classes = TourApp.class,
+    properties = {
+      "booktour.datasource.shards="
+          + ShardConfigurationTest.SHARD_1_URL
+          + ","
+          + ShardConfigurationTest.SHARD_2_URL
+    })
+public class ShardConfigurationTest {
+  static final String SHARD_1_URL = "jdbc:h2:mem:booktour-shard-1;DB_CLOSE_DELAY=-1";
+  static final String SHARD_2_URL = "jdbc:h2:mem:booktour-shard-2;DB_CLOSE_DELAY=-1";
+  private static final long ID_RANGE = 100_000_000L;
+  private static final int TOURS = 12;
+  private static final int CUSTOMER_ID = 700;
+
+  private static boolean rated;
+
+  @Autowired private TourRatingService service;
+
+  @Autowired private TourRatingRebalancer rebalancer;
+
+  @Autowired private TourRatingShards shards;
+
+  @Autowired private TransactionTemplate transactionTemplate;
+
+  @Autowired private EntityManagerFactory entityManagerFactory;
+
+  @Autowired private TestRestTemplate restTemplate;
+
+  @Autowired private DataSource dataSource;
+
+  private List<JdbcTemplate> databases;
+
+  @BeforeEach
+  public void setUp() throws SQLException {
+    databases =
+        dataSource.unwrap(ShardRoutingDataSource.class).getShards().stream()
+            .map(JdbcTemplate::new)
+            .collect(Collectors.toList());
+    rebalancer.rebalance();
+    if (!rated) {
+      for (int tourId = 1; tourId <= TOURS; tourId++) {
+        service.bulkRate(tourId, tourId % 5 + 1, new Integer[] {CUSTOMER_ID, CUSTOMER_ID + 1});
+      }
+      rated = true;
+    }
+  }
+
+  @Test
+  @DisplayName("The ratings of a tour live on its shard, numbered in the range of the shard.")
+  public void ratingsOfATourLiveOnTheirShard() {
+    assertThat(shards.getCount()).isEqualTo(3);
+    for (int shard = 0; shard < databases.size(); shard++) {
+      List<Integer> tours =
+          databases.get(shard).queryForList("select tour_id from tour_rating", Integer.class);
+      assertThat(tours).as("ratings of shard %d", shard).isNotEmpty();
+      for (int tourId : tours) {
+        assertThat(shards.shardOf(tourId)).as("shard of tour %d", tourId).isEqualTo(shard);
+      }
+    }
+    for (int tourId = 1; tourId <= TOURS; tourId++) {
+      long expected = shards.shardOf(tourId) * ID_RANGE;
+      assertThat(
+              databases
+                  .get(shards.shardOf(tourId))
+                  .queryForList(
+                      "select id from tour_rating where tour_id = ? and customer_id >= ?",
+                      Long.class,
+                      tourId,
+                      CUSTOMER_ID))
+          .as("ratings created for tour %d", tourId)
+          .hasSize(2)
+          .allMatch(id -> id > expected && id <= expected + ID_RANGE);
+      assertThat(service.countRatings(tourId)).isGreaterThanOrEqualTo(2);
+    }
+    assertThat(rebalancer.rebalance()).isZero();
+  }
+
+  @Test
+  @DisplayName("The outbox rows of a shard are numbered in the range of the shard.")
+  public void outboxRowsAreNumberedInTheRangeOfTheirShard() {
+    for (int shard = 0; shard < databases.size(); shard++) {
+      JdbcTemplate database = databases.get(shard);
+      database.update(
+          "insert into rating_outbox "
+              + "(type, tour_id, customer_id, score, previous_score, created_at) "
+              + "values ('CREATED', 1, ?, 5, -1, current_timestamp)",
+          CUSTOMER_ID);
+      long id =
+          database.queryForObject(
+              "select id from rating_outbox where customer_id = ?", Long.class, CUSTOMER_ID);
+      database.update("delete from rating_outbox where customer_id = ?", CUSTOMER_ID);
+      assertThat(id)
+          .as("outbox of shard %d", shard)
+          .isBetween(shard * ID_RANGE + 1, (shard + 1) * ID_RANGE);
+    }
+  }
+
+  @Test
+  @DisplayName("Lookups of all the ratings gather the ratings of every shard.")
+  public void lookupsOfAllRatingsGatherEveryShard() {
+    List<TourRating> all = service.lookupAll();
+    int stored =
+        databases.stream()
+            .mapToInt(db -> db.queryForObject("select count(*) from tour_rating", Integer.class))
+            .sum();
+    assertThat(all).hasSize(stored);
+
+    Page<RatingView> page =
+        service.lookupAll(PageRequest.of(1, 5, Sort.by(Sort.Direction.DESC, "score")));
+    assertThat(page.getTotalElements()).isEqualTo(stored);
+    assertThat(page.getContent())
+        .extracting(RatingView::getId)
+        .containsExactlyElementsOf(
+            all.stream()
+                .sorted(
+                    Comparator.comparing(TourRating::getScore)
+                        .reversed()
+                        .thenComparing(TourRating::getId))
+                .skip(5)
+                .limit(5)
+                .map(TourRating::getId)
+                .collect(Collectors.toList()));
+
+    assertThat(service.exportAll(rating -> {})).isEqualTo(stored);
+    int tourId = tourOf(2);
+    RatingView rating = service.lookupRatings(tourId, PageRequest.of(0, 1)).getContent().get(0);
+    assertThat(service.lookupRatingById(rating.getId()).get().getTourId()).isEqualTo(tourId);
+  }
+
+  @Test
+  @DisplayName("Rebalancing moves the ratings of a tour to its shard, keeping those found there.")
+  public void rebalancingMovesRatingsToTheirShard() {
+    int tourId = tourOf(1);
+    JdbcTemplate misplaced = databases.get(0);
+    misplaced.update(
+        "insert into tour_rating (id, tour_id, customer_id, score, comment) values (?, ?, ?, ?, ?)",
+        3 * ID_RANGE + 1,
+        tourId,
+        CUSTOMER_ID + 2,
+        3,
+        "Misplaced");
+    misplaced.update(
+        "insert into tour_rating (id, tour_id, customer_id, score, comment) values (?, ?, ?, ?, ?)",
+        3 * ID_RANGE + 2,
+        tourId,
+        CUSTOMER_ID,
+        1,
+        "Rated again on the old shard");
+    long count = service.countRatings(tourId);
+
+    assertThat(rebalancer.rebalance()).isEqualTo(1);
+
+    assertThat(misplaced.queryForList("select id from tour_rating where tour_id = ?", tourId))
+        .isEmpty();
+    assertThat(service.lookupRatingById((int) (3 * ID_RANGE + 1)).get().getComment())
+        .isEqualTo("Misplaced");
+    assertThat(service.lookupRatingById((int) (3 * ID_RANGE + 2))).isEmpty();
+    assertThat(service.countRatings(tourId)).isEqualTo(count + 1);
+    service.delete(tourId, CUSTOMER_ID + 2);
+  }
+
+  @Test
+  @DisplayName("Requests on the ratings of a tour use its shard only.")
+  public void requestsUseTheShardOfTheTour() {
+    int tourId = tourOf(2);
+    entityManagerFactory.getCache().evictAll();
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+
+    ResponseEntity<String> response =
+        restTemplate.postForEntity(
+            "/tours/" + tourId + "/ratings",
+            new HttpEntity<>("{\"customerId\":" + (CUSTOMER_ID + 3) + ",\"score\":2}\n", headers),
+            String.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(
+            databases
+                .get(2)
+                .queryForObject(
+                    "select score from tour_rating where tour_id = ? and customer_id = ?",
+                    Integer.class,
+                    tourId,
+                    CUSTOMER_ID + 3))
+        .isEqualTo(2);
+    service.delete(tourId, CUSTOMER_ID + 3);
+  }
+
+  @Test
+  @DisplayName("A transaction cannot use two shards.")
+  public void transactionUsesOneShard() {
+    Assertions.assertThrows(
+        IllegalStateException.class,
+        () ->
+            transactionTemplate.execute(
+                status -> service.countRatings(tourOf(1)) + service.countRatings(tourOf(2))));
+  }
+
+  /** First rated tour whose ratings live on a shard. */
+  private int tourOf(int shard) {
+    return IntStream.rangeClosed(1, TOURS)
+        .filter(tourId -> shards.shardOf(tourId) == shard)
+        .findFirst()
+        .getAsInt();
+  }
+}
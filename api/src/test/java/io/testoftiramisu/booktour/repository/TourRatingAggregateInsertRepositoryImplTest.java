@@ -0,0 +1,79 @@
+package io.testoftiramisu.booktour.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Concurrent first ratings of a tour, each transaction on a connection of its own. */
+public class TourRatingAggregateInsertRepositoryImplTest {
+  private static final int UNRATED_TOUR_ID = 3;
+  private static final int NOT_A_TOUR_ID = 123;
+  private static final String COUNT_SQL =
+      "select count(*) from tour_rating_aggregate where tour_id = ?";
+
+  private SingleConnectionDataSource first;
+  private SingleConnectionDataSource second;
+
+  @BeforeEach
+  public void setUp() throws SQLException {
+    String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";LOCK_TIMEOUT=10000";
+    first = new SingleConnectionDataSource(url, "sa", "", true);
+    Flyway.configure().dataSource(first).load().migrate();
+    first.getConnection().setAutoCommit(false);
+    second = new SingleConnectionDataSource(url, "sa", "", true);
+    second.getConnection().setAutoCommit(false);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    second.destroy();
+    first.destroy();
+  }
+
+  @Test
+  public void concurrentInsertWaitsForTheFirstOne() throws Exception {
+    JdbcTemplate firstTemplate = new JdbcTemplate(first);
+    new TourRatingAggregateInsertRepositoryImpl(firstTemplate).insertIfAbsent(UNRATED_TOUR_ID);
+
+    CompletableFuture<Void> concurrent =
+        CompletableFuture.runAsync(
+            () ->
+                new TourRatingAggregateInsertRepositoryImpl(new JdbcTemplate(second))
+                    .insertIfAbsent(UNRATED_TOUR_ID));
+    Thread.sleep(200);
+    assertThat(concurrent).isNotDone();
+    first.getConnection().commit();
+
+    concurrent.get(10, TimeUnit.SECONDS);
+    second.getConnection().commit();
+    assertThat(firstTemplate.queryForObject(COUNT_SQL, Integer.class, UNRATED_TOUR_ID))
+        .isEqualTo(1);
+  }
+
+  @Test
+  public void existingAggregateAndMissingTourAreLeftAlone() throws SQLException {
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(first);
+    TourRatingAggregateInsertRepositoryImpl repository =
+        new TourRatingAggregateInsertRepositoryImpl(jdbcTemplate);
+
+    repository.insertIfAbsent(1);
+    repository.insertIfAbsent(NOT_A_TOUR_ID);
+    first.getConnection().commit();
+
+    assertThat(
+            jdbcTemplate.queryForObject(
+                "select rating_count from tour_rating_aggregate where tour_id = 1", Long.class))
+        .isEqualTo(1);
+    assertThat(jdbcTemplate.queryForObject(COUNT_SQL, Integer.class, NOT_A_TOUR_ID)).isZero();
+  }
+}
@@ -0,0 +1,86 @@
+package io.testoftiramisu.booktour.repository;
+
+import io.testoftiramisu.booktour.TourApp;
+import io.testoftiramisu.booktour.domain.Tour;
+import io.testoftiramisu.booktour.domain.TourRating;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Batch inserts are split in chunks of two ratings to cover the chunk boundaries. */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = TourApp.class, properties = "booktour.ratings.batch-size=2")
+@Transactional
+public class TourRatingBatchRepositoryImplTest {
+  private static final int TOUR_ID = 1;
+  private static final int NOT_A_TOUR_ID = 123;
+
+  @Autowired private TourRatingRepository tourRatingRepository;
+  @Autowired private TourRepository tourRepository;
+
+  @Test
+  public void insertAllInChunks() {
+    Tour tour = tourRepository.findById(TOUR_ID).get();
+    List<TourRating> ratings =
+        Arrays.asList(
+            new TourRating(tour, 200, 1),
+            new TourRating(tour, 201, 2),
+            new TourRating(tour, 202, 3, "comment"),
+            new TourRating(tour, 203, 4),
+            new TourRating(tour, 204, 5));
+
+    assertThat(tourRatingRepository.insertAll(TOUR_ID, ratings)).isEmpty();
+
+    assertThat(tourRatingRepository.findByTourId(TOUR_ID)).hasSize(6);
+    assertThat(tourRatingRepository.findByTourIdAndCustomerId(TOUR_ID, 202).get().getComment())
+        .isEqualTo("comment");
+  }
+
+  @Test
+  public void insertAllReportsConflicts() {
+    Tour tour = tourRepository.findById(TOUR_ID).get();
+    TourRating existing = new TourRating(tour, 4, 1);
+    TourRating duplicate = new TourRating(tour, 300, 2);
+    List<TourRating> ratings =
+        Arrays.asList(
+            new TourRating(tour, 300, 1), existing, new TourRating(tour, 301, 3), duplicate);
+
+    assertThat(tourRatingRepository.insertAll(TOUR_ID, ratings))
+        .containsExactly(existing, duplicate);
+
+    assertThat(tourRatingRepository.findByTourId(TOUR_ID)).hasSize(3);
+  }
+
+  @Test
+  public void insertAllRejectsIncompleteRatings() {
+    Tour tour = tourRepository.findById(TOUR_ID).get();
+    List<TourRating> ratings =
+        Arrays.asList(new TourRating(tour, 400, 1), new TourRating(tour, 401, null, "no score"));
+
+    Assertions.assertThrows(
+        InvalidDataAccessApiUsageException.class,
+        () -> tourRatingRepository.insertAll(TOUR_ID, ratings));
+  }
+
+  @Test
+  public void insertAllFailsOnOtherConstraints() {
+    Tour tour = tourRepository.findById(TOUR_ID).get();
+    List<TourRating> ratings = Arrays.asList(new TourRating(tour, 500, 1));
+
+    // a missing tour violates the foreign key, it is not a customer who already rated it
+    Assertions.assertThrows(
+        DataIntegrityViolationException.class,
+        () -> tourRatingRepository.insertAll(NOT_A_TOUR_ID, ratings));
+  }
+}
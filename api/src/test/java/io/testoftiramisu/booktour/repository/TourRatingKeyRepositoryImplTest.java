@@ -0,0 +1,108 @@
+package io.testoftiramisu.booktour.repository;
+
+import io.testoftiramisu.booktour.domain.TourRatingRow;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Every write by natural key is committed, the first one to the table included, on a database of
+ * its own migrated for each test.
+ */
+public class TourRatingKeyRepositoryImplTest {
+  private static final int TOUR_ID = 1;
+  private static final int CUSTOMER_ID = 4;
+  private static final String RATING_SQL =
+      "select score, comment from tour_rating where tour_id = ? and customer_id = ?";
+
+  private SingleConnectionDataSource dataSource;
+  private JdbcTemplate jdbcTemplate;
+  private TourRatingKeyRepositoryImpl repository;
+
+  @BeforeEach
+  public void setUp() {
+    dataSource =
+        new SingleConnectionDataSource("jdbc:h2:mem:" + UUID.randomUUID(), "sa", "", true);
+    Flyway.configure().dataSource(dataSource).load().migrate();
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    repository = new TourRatingKeyRepositoryImpl(jdbcTemplate);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    dataSource.destroy();
+  }
+
+  @Test
+  public void updateRating() {
+    assertThat(repository.updateRating(TOUR_ID, CUSTOMER_ID, 2, "two"))
+        .get()
+        .extracting(TourRatingRow::getScore, TourRatingRow::getComment)
+        .containsExactly(5, "I loved it");
+
+    assertThat(rating(CUSTOMER_ID)).isEqualTo("2 two");
+    assertThat(repository.updateRating(TOUR_ID, 999, 2, "two")).isEmpty();
+  }
+
+  @Test
+  public void updateRatingReadsAMissingScoreAsNull() {
+    jdbcTemplate.update(
+        "update tour_rating set score = null where tour_id = ? and customer_id = ?",
+        TOUR_ID,
+        CUSTOMER_ID);
+
+    assertThat(repository.updateRating(TOUR_ID, CUSTOMER_ID, 2, "two"))
+        .get()
+        .extracting(TourRatingRow::getScore)
+        .isNull();
+  }
+
+  @Test
+  public void updateSomeOfRating() {
+    assertThat(repository.updateSomeOfRating(TOUR_ID, CUSTOMER_ID, 3, null))
+        .get()
+        .extracting(TourRatingRow::getScore)
+        .isEqualTo(5);
+
+    assertThat(rating(CUSTOMER_ID)).isEqualTo("3 I loved it");
+  }
+
+  @Test
+  public void mergeRating() {
+    assertThat(repository.mergeRating(TOUR_ID, CUSTOMER_ID, 1, null))
+        .get()
+        .extracting(TourRatingRow::getScore)
+        .isEqualTo(5);
+    assertThat(rating(CUSTOMER_ID)).isEqualTo("1 null");
+
+    assertThat(repository.mergeRating(TOUR_ID, 500, 4, "new")).isEmpty();
+    assertThat(rating(500)).isEqualTo("4 new");
+  }
+
+  @Test
+  public void deleteRating() {
+    assertThat(repository.deleteRating(TOUR_ID, CUSTOMER_ID)).isPresent();
+
+    assertThat(jdbcTemplate.queryForList(RATING_SQL, TOUR_ID, CUSTOMER_ID)).isEmpty();
+  }
+
+  @Test
+  public void insertRating() {
+    assertThat(repository.insertRating(TOUR_ID, 500, 4, "new")).isTrue();
+    assertThat(repository.insertRating(123, 500, 4, "new")).isFalse();
+
+    assertThat(rating(500)).isEqualTo("4 new");
+  }
+
+  private String rating(int customerId) {
+    return jdbcTemplate.queryForObject(
+        RATING_SQL, (rs, rowNum) -> rs.getInt(1) + " " + rs.getString(2), TOUR_ID, customerId);
+  }
+}
@@ -0,0 +1,95 @@
+package io.testoftiramisu.booktour.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TourRatingShardsTest {
+  @Mock private PlatformTransactionManager transactionManagerMock;
+
+  private TourRatingShards shards;
+
+  @BeforeEach
+  public void setUp() {
+    shards = new TourRatingShards(3, 2, transactionManagerMock);
+    TransactionSynchronizationManager.initSynchronization();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    shards.destroy();
+    completeTransaction();
+  }
+
+  @Test
+  public void consecutiveToursSpreadOverTheShards() {
+    Map<Integer, Long> tours =
+        IntStream.rangeClosed(1, 3000)
+            .boxed()
+            .collect(Collectors.groupingBy(shards::shardOf, Collectors.counting()));
+
+    assertThat(tours.keySet()).containsExactlyInAnyOrder(0, 1, 2);
+    assertThat(tours.values()).allMatch(count -> count > 900 && count < 1100);
+  }
+
+  @Test
+  public void transactionIsRoutedToOneShard() {
+    assertThat(TourRatingShards.currentShard()).isZero();
+
+    shards.routeShard(2);
+    shards.routeShard(2);
+
+    assertThat(TourRatingShards.currentShard()).isEqualTo(2);
+    Assertions.assertThrows(IllegalStateException.class, () -> shards.routeShard(1));
+  }
+
+  @Test
+  public void eachShardIsReadInItsOwnTransaction() {
+    when(transactionManagerMock.getTransaction(any()))
+        .thenAnswer(
+            invocation -> {
+              TransactionSynchronizationManager.initSynchronization();
+              return new SimpleTransactionStatus();
+            });
+    doAnswer(invocation -> completeTransaction()).when(transactionManagerMock).commit(any());
+
+    List<Integer> read = shards.onEachShard(TourRatingShards::currentShard);
+
+    assertThat(read).containsExactly(0, 1, 2);
+  }
+
+  @Test
+  public void singleShardReadsInTheCurrentTransaction() {
+    TourRatingShards single = new TourRatingShards(1, 2, transactionManagerMock);
+    single.routeTour(42);
+
+    assertThat(single.onEachShard(() -> 7)).containsExactly(7);
+    assertThat(TourRatingShards.currentShard()).isZero();
+  }
+
+  private static Object completeTransaction() {
+    TransactionSynchronizationManager.getSynchronizations()
+        .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+    TransactionSynchronizationManager.clear();
+    return null;
+  }
+}
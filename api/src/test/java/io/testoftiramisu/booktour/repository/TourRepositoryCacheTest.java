@@ -0,0 +1,126 @@
+package io.testoftiramisu.booktour.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.testoftiramisu.booktour.TourApp;
+import io.testoftiramisu.booktour.domain.Difficulty;
+import io.testoftiramisu.booktour.domain.Region;
+import io.testoftiramisu.booktour.domain.Tour;
+import io.testoftiramisu.booktour.domain.TourChangedEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Second-level and query cache of the tour reference data. */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {TourApp.class, TourRepositoryCacheTest.EventRecorder.class})
+public class TourRepositoryCacheTest {
+  private static final int TOUR_ID = 1;
+
+  @Autowired private TourRepository tourRepository;
+
+  @Autowired private TourPackageRepository tourPackageRepository;
+
+  @Autowired private EntityManagerFactory entityManagerFactory;
+
+  @Autowired private TransactionTemplate transactionTemplate;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Autowired private List<TourChangedEvent> events;
+
+  @Test
+  @DisplayName("Tours are served from the second-level cache and counted as hits.")
+  public void findByIdHitsTheCache() {
+    tourRepository.findById(TOUR_ID);
+    double hits = cacheRequests("hibernate.second.level.cache.requests", "hit");
+
+    tourRepository.findById(TOUR_ID);
+
+    assertThat(entityManagerFactory.getCache().contains(Tour.class, TOUR_ID)).isTrue();
+    assertThat(cacheRequests("hibernate.second.level.cache.requests", "hit"))
+        .isGreaterThan(hits);
+  }
+
+  @Test
+  @DisplayName("Finder results are served from the query cache.")
+  public void findByRegionHitsTheQueryCache() {
+    tourRepository.findByRegion(Region.Central_Coast);
+    double hits = cacheRequests("hibernate.cache.query.requests", "hit");
+
+    tourRepository.findByRegion(Region.Central_Coast);
+
+    assertThat(cacheRequests("hibernate.cache.query.requests", "hit")).isGreaterThan(hits);
+  }
+
+  @Test
+  @DisplayName("Committed tour changes are published and evict the cached results.")
+  public void committedChangesAreEvicted() {
+    assertThat(tourRepository.findByRegion(Region.Varies)).isNotNull();
+
+    Tour tour =
+        transactionTemplate.execute(
+            status ->
+                tourRepository.save(
+                    new Tour(
+                        "Cached Tour",
+                        "description",
+                        "blurb",
+                        100,
+                        "1 day",
+                        "bullets",
+                        "keywords",
+                        tourPackageRepository.findById("BC").get(),
+                        Difficulty.Easy,
+                        Region.Varies)));
+    assertThat(events).contains(new TourChangedEvent(Tour.class, tour.getId()));
+    assertThat(tourRepository.findByRegion(Region.Varies))
+        .extracting(Tour::getId)
+        .contains(tour.getId());
+
+    transactionTemplate.execute(
+        status -> {
+          tourRepository.deleteById(tour.getId());
+          return null;
+        });
+    assertThat(events.stream().filter(e -> e.getId().equals(tour.getId()))).hasSize(2);
+    assertThat(entityManagerFactory.getCache().contains(Tour.class, tour.getId())).isFalse();
+    assertThat(tourRepository.findByRegion(Region.Varies))
+        .extracting(Tour::getId)
+        .doesNotContain(tour.getId());
+  }
+
+  private double cacheRequests(String name, String result) {
+    return meterRegistry.get(name).tag("result", result).functionCounters().stream()
+        .mapToDouble(counter -> counter.count())
+        .sum();
+  }
+
+  /** Records the published tour changes. */
+  @Configuration
+  static class EventRecorder {
+    private final List<TourChangedEvent> events = new CopyOnWriteArrayList<>();
+
+    @Bean
+    List<TourChangedEvent> events() {
+      return events;
+    }
+
+    @EventListener
+    public void record(TourChangedEvent event) {
+      events.add(event);
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package io.testoftiramisu.booktour.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.testoftiramisu.booktour.domain.RatingOutboxMessage;
+import io.testoftiramisu.booktour.domain.TourRatingEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileRatingEventSinkTest {
+  private static final Instant CREATED_AT = Instant.parse("2020-01-01T10:00:00Z");
+
+  @TempDir Path directory;
+
+  @Test
+  public void batchesAreAppendedOneJsonObjectPerLine() throws IOException {
+    Path file = directory.resolve("outbox/ratings.ndjson");
+    FileRatingEventSink sink =
+        new FileRatingEventSink(
+            file,
+            new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS));
+
+    sink.publish(
+        Arrays.asList(
+            new RatingOutboxMessage(1, TourRatingEvent.created(2, 10, 5), CREATED_AT),
+            new RatingOutboxMessage(2, TourRatingEvent.updated(2, 10, 5, 3), CREATED_AT)));
+    sink.publish(
+        Collections.singletonList(
+            new RatingOutboxMessage(3, TourRatingEvent.deleted(2, 10, 3), CREATED_AT)));
+
+    assertThat(Files.readAllLines(file))
+        .containsExactly(
+            "{\"id\":1,\"type\":\"CREATED\",\"tourId\":2,\"customerId\":10,\"score\":5,"
+                + "\"previousScore\":-1,\"createdAt\":\"2020-01-01T10:00:00Z\"}",
+            "{\"id\":2,\"type\":\"UPDATED\",\"tourId\":2,\"customerId\":10,\"score\":3,"
+                + "\"previousScore\":5,\"createdAt\":\"2020-01-01T10:00:00Z\"}",
+            "{\"id\":3,\"type\":\"DELETED\",\"tourId\":2,\"customerId\":10,\"score\":3,"
+                + "\"previousScore\":-1,\"createdAt\":\"2020-01-01T10:00:00Z\"}");
+  }
+}
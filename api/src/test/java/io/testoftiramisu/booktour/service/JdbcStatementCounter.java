@@ -0,0 +1,73 @@
+package io.testoftiramisu.booktour.service;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records the SQL statements prepared on the data source, by Hibernate and by JdbcTemplate alike.
+ *
+ * <p>Registered with {@code @Import}, it wraps the data source bean.
+ */
+public class JdbcStatementCounter implements BeanPostProcessor {
+  private static final List<String> STATEMENTS = Collections.synchronizedList(new ArrayList<>());
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) {
+    if (!(bean instanceof DataSource)) {
+      return bean;
+    }
+    return new DelegatingDataSource((DataSource) bean) {
+      @Override
+      public Connection getConnection() throws SQLException {
+        return recording(super.getConnection());
+      }
+
+      @Override
+      public Connection getConnection(String username, String password) throws SQLException {
+        return recording(super.getConnection(username, password));
+      }
+    };
+  }
+
+  private static Connection recording(Connection connection) {
+    return (Connection)
+        Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class},
+            (proxy, method, args) -> {
+              if (method.getName().startsWith("prepare")) {
+                STATEMENTS.add((String) args[0]);
+              }
+              try {
+                return method.invoke(connection, args);
+              } catch (InvocationTargetException ex) {
+                throw ex.getTargetException();
+              }
+            });
+  }
+
+  /** Forgets the statements recorded so far. */
+  public static void reset() {
+    STATEMENTS.clear();
+  }
+
+  /**
+   * Statements recorded since the last reset.
+   *
+   * @return copy of the statements, in order
+   */
+  public static List<String> statements() {
+    synchronized (STATEMENTS) {
+      return new ArrayList<>(STATEMENTS);
+    }
+  }
+}
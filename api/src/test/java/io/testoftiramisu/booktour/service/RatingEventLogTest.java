@@ -0,0 +1,202 @@
+package io.testoftiramisu.booktour.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.testoftiramisu.booktour.domain.TourRatingAggregate;
+import io.testoftiramisu.booktour.domain.TourRatingEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RatingEventLogTest {
+  private static final int TOUR_ID = 1;
+  private static final int OTHER_TOUR_ID = 2;
+
+  @TempDir Path directory;
+
+  private MeterRegistry registry = new SimpleMeterRegistry();
+
+  private List<TourRatingAggregate> aggregates = new ArrayList<>();
+
+  private int baselines;
+
+  private RatingEventLog eventLog;
+
+  @AfterEach
+  public void tearDown() {
+    eventLog.stop();
+  }
+
+  @Test
+  public void eventsDeriveTheStatisticsOfTheTours() {
+    eventLog = start(100);
+
+    eventLog.record(TourRatingEvent.created(TOUR_ID, 10, 5));
+    eventLog.record(TourRatingEvent.created(TOUR_ID, 11, 3));
+    eventLog.record(TourRatingEvent.updated(TOUR_ID, 11, 3, 4));
+    eventLog.record(TourRatingEvent.created(OTHER_TOUR_ID, 10, 1));
+    eventLog.record(TourRatingEvent.deleted(OTHER_TOUR_ID, 10, 1));
+
+    TourRatingAggregate tour = eventLog.lookup(TOUR_ID).get();
+    assertThat(tour.getCount()).isEqualTo(2);
+    assertThat(tour.getAverage()).isEqualTo(4.5);
+    assertThat(eventLog.lookup(OTHER_TOUR_ID).get().getCount()).isZero();
+    assertThat(eventLog.lookup(3)).isEmpty();
+    assertThat(registry.counter(RatingEventLog.APPENDED).count()).isEqualTo(5);
+  }
+
+  @Test
+  public void ratingsCreatedBeforeTheLogAreTakenFromTheAggregates() throws IOException {
+    TourRatingAggregate aggregate = new TourRatingAggregate(TOUR_ID);
+    aggregate.add(2);
+    aggregate.add(3);
+    aggregates.add(aggregate);
+    eventLog = start(100);
+
+    eventLog.record(TourRatingEvent.updated(TOUR_ID, 10, 2, 4));
+    eventLog.record(TourRatingEvent.deleted(TOUR_ID, 11, 3));
+
+    TourRatingAggregate tour = eventLog.lookup(TOUR_ID).get();
+    assertThat(tour.getCount()).isEqualTo(1);
+    assertThat(tour.getSum()).isEqualTo(4);
+
+    // the events are replayed on the baseline, the aggregates are not read again
+    eventLog.stop();
+    Files.write(directory.resolve("snapshot.bin"), new byte[] {1, 2, 3});
+    eventLog = start(100);
+
+    assertThat(eventLog.lookup(TOUR_ID).get().getSum()).isEqualTo(4);
+    assertThat(baselines).isEqualTo(1);
+  }
+
+  @Test
+  public void eventsAreAppendedInTheOrderTheTransactionsCommit() {
+    eventLog = start(100);
+    List<TransactionSynchronization> creation =
+        inTransaction(TourRatingEvent.created(TOUR_ID, 10, 3));
+    List<TransactionSynchronization> update =
+        inTransaction(TourRatingEvent.updated(TOUR_ID, 10, 3, 5));
+    List<TransactionSynchronization> rolledBack =
+        inTransaction(TourRatingEvent.created(TOUR_ID, 11, 1));
+
+    // numbered in commit order under the aggregate lock, completed in another order
+    creation.forEach(synchronization -> synchronization.beforeCommit(false));
+    rolledBack.forEach(synchronization -> synchronization.beforeCommit(false));
+    update.forEach(synchronization -> synchronization.beforeCommit(false));
+    TransactionSynchronizationUtils.invokeAfterCompletion(
+        update, TransactionSynchronization.STATUS_COMMITTED);
+    TransactionSynchronizationUtils.invokeAfterCompletion(
+        rolledBack, TransactionSynchronization.STATUS_ROLLED_BACK);
+    assertThat(eventLog.lookup(TOUR_ID)).isEmpty();
+
+    TransactionSynchronizationUtils.invokeAfterCompletion(
+        creation, TransactionSynchronization.STATUS_COMMITTED);
+
+    TourRatingAggregate tour = eventLog.lookup(TOUR_ID).get();
+    assertThat(tour.getCount()).isEqualTo(1);
+    assertThat(tour.getSum()).isEqualTo(5);
+    assertThat(registry.counter(RatingEventLog.APPENDED).count()).isEqualTo(2);
+  }
+
+  @Test
+  public void restartReplaysTheEventsAfterTheSnapshot() throws IOException {
+    eventLog = start(2);
+    eventLog.record(TourRatingEvent.created(TOUR_ID, 10, 5));
+    eventLog.record(TourRatingEvent.created(TOUR_ID, 11, 3));
+    eventLog.record(TourRatingEvent.created(TOUR_ID, 12, 1));
+    assertThat(directory.resolve("snapshot.bin")).exists();
+    // a crash leaves the snapshot of the first two events only
+    Files.copy(directory.resolve("snapshot.bin"), directory.resolve("crashed.bin"));
+    eventLog.stop();
+    Files.move(
+        directory.resolve("crashed.bin"),
+        directory.resolve("snapshot.bin"),
+        StandardCopyOption.REPLACE_EXISTING);
+
+    eventLog = start(2);
+
+    TourRatingAggregate tour = eventLog.lookup(TOUR_ID).get();
+    assertThat(tour.getCount()).isEqualTo(3);
+    assertThat(tour.getSum()).isEqualTo(9);
+  }
+
+  @Test
+  public void invalidSnapshotIsRebuiltFromTheEvents() throws IOException {
+    eventLog = start(100);
+    eventLog.record(TourRatingEvent.created(TOUR_ID, 10, 5));
+    eventLog.record(TourRatingEvent.updated(TOUR_ID, 10, 5, 2));
+    eventLog.stop();
+    Files.write(directory.resolve("snapshot.bin"), new byte[] {1, 2, 3});
+
+    eventLog = start(100);
+
+    TourRatingAggregate tour = eventLog.lookup(TOUR_ID).get();
+    assertThat(tour.getCount()).isEqualTo(1);
+    assertThat(tour.getSum()).isEqualTo(2);
+  }
+
+  @Test
+  public void disabledLogRecordsNothing() throws IOException {
+    eventLog = log(false, 100);
+    eventLog.start();
+
+    eventLog.record(TourRatingEvent.created(TOUR_ID, 10, 5));
+
+    assertThat(eventLog.isRunning()).isFalse();
+    assertThat(eventLog.lookup(TOUR_ID)).isEmpty();
+    try (Stream<Path> files = Files.list(directory)) {
+      assertThat(files).isEmpty();
+    }
+  }
+
+  private List<TransactionSynchronization> inTransaction(TourRatingEvent event) {
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      eventLog.record(event);
+      return TransactionSynchronizationManager.getSynchronizations();
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  private RatingEventLog start(long snapshotEvery) {
+    RatingEventLog started = log(true, snapshotEvery);
+    started.start();
+    return started;
+  }
+
+  private RatingEventLog log(boolean enabled, long snapshotEvery) {
+    return new RatingEventLog(
+        registry,
+        enabled,
+        directory,
+        DataSize.ofKilobytes(4),
+        true,
+        RatingEventLog.Fsync.ALWAYS,
+        Duration.ofSeconds(1),
+        snapshotEvery,
+        () -> {
+          baselines++;
+          return aggregates;
+        },
+        Clock.fixed(Instant.parse("2020-01-01T00:00:00Z"), ZoneOffset.UTC));
+  }
+}
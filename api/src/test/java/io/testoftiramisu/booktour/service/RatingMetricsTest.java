@@ -0,0 +1,56 @@
+package io.testoftiramisu.booktour.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RatingMetricsTest {
+  private MeterRegistry registry = new SimpleMeterRegistry();
+  private RatingMetrics metrics = new RatingMetrics(registry);
+
+  @AfterEach
+  public void clearSynchronization() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  public void createdOutsideOfATransactionIsCountedAtOnce() {
+    metrics.created(2);
+
+    assertThat(created()).isEqualTo(2);
+  }
+
+  @Test
+  public void createdIsCountedOnlyOnceCommitted() {
+    TransactionSynchronizationManager.initSynchronization();
+    metrics.created(3);
+    assertThat(created()).isZero();
+
+    TransactionSynchronizationUtils.invokeAfterCommit(
+        TransactionSynchronizationManager.getSynchronizations());
+    assertThat(created()).isEqualTo(3);
+  }
+
+  @Test
+  public void createdIsNotCountedOnRollback() {
+    TransactionSynchronizationManager.initSynchronization();
+    metrics.created(3);
+
+    TransactionSynchronizationUtils.invokeAfterCompletion(
+        TransactionSynchronizationManager.getSynchronizations(),
+        TransactionSynchronization.STATUS_ROLLED_BACK);
+    assertThat(created()).isZero();
+  }
+
+  private double created() {
+    return registry.get(RatingMetrics.CREATED).counter().count();
+  }
+}
@@ -0,0 +1,140 @@
+package io.testoftiramisu.booktour.service;
+
+import io.testoftiramisu.booktour.TourApp;
+import io.testoftiramisu.booktour.domain.RatingOutboxMessage;
+import io.testoftiramisu.booktour.domain.TourRatingEvent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/** Outbox written by the rating changes, relayed on demand to an in-memory sink. */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(
+    classes = {TourApp.class, RatingOutboxIntegrationTest.SinkConfiguration.class},
+    properties = {
+      "booktour.ratings.outbox.enabled=true",
+      "booktour.ratings.outbox.relay.enabled=false",
+      "booktour.ratings.outbox.batch-size=2"
+    })
+public class RatingOutboxIntegrationTest {
+  private static final int TOUR_ID = 2;
+  private static final int CUSTOMER_ID = 800;
+
+  @Autowired private TourRatingService service;
+
+  @Autowired private TourRatingAggregateService aggregateService;
+
+  @Autowired private RatingOutboxRelay relay;
+
+  @Autowired private RecordingSink sink;
+
+  @Autowired private TransactionTemplate transactionTemplate;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @BeforeEach
+  public void setUp() {
+    jdbcTemplate.update("delete from rating_outbox");
+    jdbcTemplate.update("delete from tour_rating where customer_id >= ?", CUSTOMER_ID);
+    aggregateService.rebuild(TOUR_ID);
+    sink.published.clear();
+    sink.failing = false;
+  }
+
+  @Test
+  @DisplayName("Committed rating changes are relayed in order, then removed from the outbox.")
+  public void committedChangesAreRelayedInOrder() {
+    service.createNew(TOUR_ID, CUSTOMER_ID, 2, "ok");
+    service.update(TOUR_ID, CUSTOMER_ID, 4, "better");
+    service.rateMany(TOUR_ID, 5, new Integer[] {CUSTOMER_ID + 1, CUSTOMER_ID + 2});
+    service.delete(TOUR_ID, CUSTOMER_ID);
+
+    assertThat(relay.relay()).isEqualTo(5);
+
+    assertThat(sink.published)
+        .extracting(RatingOutboxMessage::getType, RatingOutboxMessage::getCustomerId)
+        .containsExactly(
+            tuple(TourRatingEvent.Type.CREATED, CUSTOMER_ID),
+            tuple(TourRatingEvent.Type.UPDATED, CUSTOMER_ID),
+            tuple(TourRatingEvent.Type.CREATED, CUSTOMER_ID + 1),
+            tuple(TourRatingEvent.Type.CREATED, CUSTOMER_ID + 2),
+            tuple(TourRatingEvent.Type.DELETED, CUSTOMER_ID));
+    assertThat(sink.published.get(1).getPreviousScore()).isEqualTo(2);
+    assertThat(sink.published.get(1).getScore()).isEqualTo(4);
+    assertThat(sink.published).allMatch(message -> message.getTourId() == TOUR_ID);
+    assertThat(outboxSize()).isZero();
+    assertThat(relay.relay()).isZero();
+  }
+
+  @Test
+  @DisplayName("Rating changes rolled back are not written to the outbox.")
+  public void rolledBackChangesAreNotWritten() {
+    Assertions.assertThrows(
+        IllegalStateException.class,
+        () ->
+            transactionTemplate.execute(
+                status -> {
+                  service.createNew(TOUR_ID, CUSTOMER_ID, 3, "rolled back");
+                  throw new IllegalStateException("rollback");
+                }));
+
+    assertThat(outboxSize()).isZero();
+  }
+
+  @Test
+  @DisplayName("A batch the sink failed to publish is published again.")
+  public void failedBatchIsPublishedAgain() {
+    service.rateMany(TOUR_ID, 1, new Integer[] {CUSTOMER_ID, CUSTOMER_ID + 1, CUSTOMER_ID + 2});
+    sink.failing = true;
+
+    assertThat(relay.relay()).isZero();
+    assertThat(outboxSize()).isEqualTo(3);
+
+    sink.failing = false;
+    assertThat(relay.relay()).isEqualTo(3);
+    assertThat(sink.published)
+        .extracting(RatingOutboxMessage::getCustomerId)
+        .containsExactly(CUSTOMER_ID, CUSTOMER_ID + 1, CUSTOMER_ID + 2);
+  }
+
+  private int outboxSize() {
+    return jdbcTemplate.queryForObject("select count(*) from rating_outbox", Integer.class);
+  }
+
+  /** Keeps the published changes, or fails while asked to. */
+  static class RecordingSink implements RatingEventSink {
+    private final List<RatingOutboxMessage> published = new ArrayList<>();
+    private volatile boolean failing;
+
+    @Override
+    public synchronized void publish(List<RatingOutboxMessage> messages) {
+      if (failing) {
+        throw new IllegalStateException("Sink unavailable");
+      }
+      published.addAll(messages);
+    }
+  }
+
+  @TestConfiguration
+  static class SinkConfiguration {
+    @Bean
+    RecordingSink recordingSink() {
+      return new RecordingSink();
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package io.testoftiramisu.booktour.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.testoftiramisu.booktour.domain.TourRating;
+import io.testoftiramisu.booktour.repository.TourRatingShards;
+import io.testoftiramisu.booktour.service.RatingWriteBehind.PendingRating;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class RatingWriteBehindTest {
+  @Mock private TourRatingService tourRatingServiceMock;
+  @Mock private PlatformTransactionManager transactionManagerMock;
+
+  private MeterRegistry registry = new SimpleMeterRegistry();
+  private RatingWriteBehind writeBehind;
+
+  @AfterEach
+  public void stopWriter() {
+    if (writeBehind != null) {
+      writeBehind.stop();
+    }
+  }
+
+  @Test
+  public void disabledDoesNotStart() {
+    writeBehind = writeBehind(false, 10);
+    writeBehind.start();
+
+    assertThat(writeBehind.isEnabled()).isFalse();
+    assertThat(writeBehind.isRunning()).isFalse();
+    Assertions.assertThrows(
+        RejectedExecutionException.class, () -> writeBehind.enqueue(1, 100, 5, null));
+  }
+
+  @Test
+  public void unknownTourIsRejectedBeforeQueueing() {
+    when(tourRatingServiceMock.verifyTour(99)).thenThrow(new NoSuchElementException());
+    writeBehind = writeBehind(true, 10);
+    writeBehind.start();
+
+    Assertions.assertThrows(
+        NoSuchElementException.class, () -> writeBehind.enqueue(99, 100, 5, null));
+  }
+
+  @Test
+  public void ratingWithoutScoreIsRejectedBeforeQueueing() {
+    writeBehind = writeBehind(true, 10);
+    writeBehind.start();
+
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> writeBehind.enqueue(1, 100, null, null));
+    assertThat(registry.get(RatingWriteBehind.QUEUE_DEPTH).gauge().value()).isEqualTo(0);
+  }
+
+  @Test
+  public void fullQueueRejectsThenDrainsOnStop() throws InterruptedException {
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(tourRatingServiceMock.createMany(anyInt(), anyList()))
+        .thenAnswer(
+            invocation -> {
+              writing.countDown();
+              release.await(5, TimeUnit.SECONDS);
+              return null;
+            });
+    writeBehind = writeBehind(true, 1);
+    writeBehind.start();
+
+    // the writer holds the first rating, the second fills the queue
+    writeBehind.enqueue(1, 100, 5, null);
+    assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+    writeBehind.enqueue(1, 101, 4, null);
+    Assertions.assertThrows(
+        RejectedExecutionException.class, () -> writeBehind.enqueue(1, 102, 3, null));
+    assertThat(registry.get(RatingWriteBehind.REJECTED).counter().count()).isEqualTo(1);
+    assertThat(registry.get(RatingWriteBehind.QUEUE_DEPTH).gauge().value()).isEqualTo(1);
+
+    release.countDown();
+    writeBehind.stop();
+
+    verify(tourRatingServiceMock, times(2)).createMany(eq(1), anyList());
+    assertThat(registry.get(RatingWriteBehind.QUEUE_DEPTH).gauge().value()).isEqualTo(0);
+    assertThat(registry.get(RatingWriteBehind.COMMIT).timer().count()).isEqualTo(2);
+  }
+
+  @Test
+  public void groupIsWrittenPerTourInOneTransaction() {
+    writeBehind = writeBehind(true, 10);
+
+    writeBehind.write(
+        Arrays.asList(pending(1, 100), pending(2, 100), pending(1, 101), pending(1, 100)));
+
+    verify(transactionManagerMock, times(1)).getTransaction(any());
+    verify(tourRatingServiceMock)
+        .createMany(eq(1), argThat(ratings -> customers(ratings).equals("100,101,100")));
+    verify(tourRatingServiceMock).createMany(eq(2), argThat(ratings -> ratings.size() == 1));
+  }
+
+  @Test
+  public void groupIsWrittenInOneTransactionPerShard() {
+    TourRatingShards shards = new TourRatingShards(2, 1, transactionManagerMock);
+    int other =
+        IntStream.rangeClosed(2, 10)
+            .filter(tourId -> shards.shardOf(tourId) != shards.shardOf(1))
+            .findFirst()
+            .getAsInt();
+    writeBehind = writeBehind(true, 10, shards);
+
+    writeBehind.write(Arrays.asList(pending(1, 100), pending(other, 100), pending(1, 101)));
+
+    verify(transactionManagerMock, times(2)).getTransaction(any());
+    verify(tourRatingServiceMock).createMany(eq(1), argThat(ratings -> ratings.size() == 2));
+    verify(tourRatingServiceMock).createMany(eq(other), argThat(ratings -> ratings.size() == 1));
+    shards.destroy();
+  }
+
+  @Test
+  public void failedGroupIsRetriedTourByTour() {
+    when(tourRatingServiceMock.createMany(eq(1), anyList()))
+        .thenThrow(new NoSuchElementException("Tour does not exist 1"));
+    writeBehind = writeBehind(true, 10);
+
+    writeBehind.write(Arrays.asList(pending(1, 100), pending(2, 100), pending(2, 101)));
+
+    // tour 1 fails in the group and alone, tour 2 is written alone
+    verify(tourRatingServiceMock, times(2)).createMany(eq(1), anyList());
+    verify(tourRatingServiceMock, times(1)).createMany(eq(2), anyList());
+    assertThat(registry.get(RatingWriteBehind.FAILED).counter().count()).isEqualTo(1);
+    // only the commit of tour 2 is timed
+    assertThat(registry.get(RatingWriteBehind.COMMIT).timer().count()).isEqualTo(1);
+  }
+
+  private RatingWriteBehind writeBehind(boolean enabled, int capacity) {
+    return writeBehind(enabled, capacity, new TourRatingShards(1, 1, transactionManagerMock));
+  }
+
+  private RatingWriteBehind writeBehind(
+      boolean enabled, int capacity, TourRatingShards shards) {
+    return new RatingWriteBehind(
+        tourRatingServiceMock,
+        new TransactionTemplate(transactionManagerMock),
+        shards,
+        registry,
+        enabled,
+        capacity,
+        100,
+        Duration.ofMillis(10),
+        Duration.ofSeconds(5));
+  }
+
+  private static PendingRating pending(int tourId, int customerId) {
+    return new PendingRating(tourId, new TourRating(null, customerId, 5, null));
+  }
+
+  private static String customers(List<TourRating> ratings) {
+    return ratings.stream()
+        .map(rating -> String.valueOf(rating.getCustomerId()))
+        .reduce((a, b) -> a + "," + b)
+        .orElse("");
+  }
+}
@@ -0,0 +1,38 @@
+package io.testoftiramisu.booktour.service;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records the SQL statements Hibernate prepares.
+ *
+ * <p>Registered through the hibernate.session_factory.statement_inspector property.
+ */
+public class SqlStatementCounter implements StatementInspector {
+  private static final List<String> STATEMENTS = Collections.synchronizedList(new ArrayList<>());
+
+  @Override
+  public String inspect(String sql) {
+    STATEMENTS.add(sql);
+    return sql;
+  }
+
+  /** Forgets the statements recorded so far. */
+  public static void reset() {
+    STATEMENTS.clear();
+  }
+
+  /**
+   * Statements recorded since the last reset.
+   *
+   * @return copy of the statements, in order
+   */
+  public static List<String> statements() {
+    synchronized (STATEMENTS) {
+      return new ArrayList<>(STATEMENTS);
+    }
+  }
+}
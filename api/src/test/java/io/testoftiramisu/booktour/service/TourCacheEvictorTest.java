@@ -0,0 +1,34 @@
+package io.testoftiramisu.booktour.service;
+
+import io.testoftiramisu.booktour.domain.Tour;
+import io.testoftiramisu.booktour.domain.TourChangedEvent;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TourCacheEvictorTest {
+  private static final int TOUR_ID = 1;
+
+  // the Hibernate SessionFactory is the EntityManagerFactory
+  @Mock private SessionFactory sessionFactoryMock;
+  @Mock private Cache cacheMock;
+
+  @Test
+  public void evictsEntityAndQueryResults() {
+    when(sessionFactoryMock.getCache()).thenReturn(cacheMock);
+    when(sessionFactoryMock.unwrap(SessionFactory.class)).thenReturn(sessionFactoryMock);
+    TourCacheEvictor evictor = new TourCacheEvictor(sessionFactoryMock);
+
+    evictor.evict(new TourChangedEvent(Tour.class, TOUR_ID));
+
+    verify(cacheMock).evict(Tour.class, TOUR_ID);
+    verify(cacheMock).evictDefaultQueryRegion();
+  }
+}
@@ -0,0 +1,113 @@
+package io.testoftiramisu.booktour.service;
+
+import io.testoftiramisu.booktour.domain.TourRatingAggregate;
+import io.testoftiramisu.booktour.repository.ScoreCount;
+import io.testoftiramisu.booktour.repository.TourRatingAggregateRepository;
+import io.testoftiramisu.booktour.repository.TourRatingRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TourRatingAggregateServiceTest {
+  private static final int TOUR_ID = 1;
+
+  @Mock private TourRatingAggregateRepository aggregateRepositoryMock;
+  @Mock private TourRatingRepository tourRatingRepositoryMock;
+
+  @InjectMocks private TourRatingAggregateService service;
+
+  @Test
+  public void addedCreatesMissingAggregate() {
+    when(aggregateRepositoryMock.findForUpdate(TOUR_ID)).thenReturn(Optional.empty());
+    ArgumentCaptor<TourRatingAggregate> captor = ArgumentCaptor.forClass(TourRatingAggregate.class);
+
+    service.added(TOUR_ID, 4);
+
+    verify(aggregateRepositoryMock).save(captor.capture());
+    assertThat(captor.getValue().getTourId()).isEqualTo(TOUR_ID);
+    assertThat(captor.getValue().getAverage()).isEqualTo(4.0);
+  }
+
+  @Test
+  public void changedUpdatesLockedAggregate() {
+    TourRatingAggregate aggregate = new TourRatingAggregate(TOUR_ID);
+    aggregate.add(2);
+    when(aggregateRepositoryMock.findForUpdate(TOUR_ID)).thenReturn(Optional.of(aggregate));
+
+    service.changed(TOUR_ID, 2, 5);
+
+    verify(aggregateRepositoryMock).save(aggregate);
+    assertThat(aggregate.getAverage()).isEqualTo(5.0);
+  }
+
+  @Test
+  public void changedIgnoresSameScore() {
+    service.changed(TOUR_ID, 3, 3);
+
+    verify(aggregateRepositoryMock, never()).findForUpdate(TOUR_ID);
+  }
+
+  @Test
+  public void getAverageScore() {
+    TourRatingAggregate aggregate = new TourRatingAggregate(TOUR_ID);
+    aggregate.add(2);
+    aggregate.add(3);
+    when(aggregateRepositoryMock.findById(TOUR_ID)).thenReturn(Optional.of(aggregate));
+
+    assertThat(service.getAverageScore(TOUR_ID)).isEqualTo(2.5);
+  }
+
+  @Test
+  public void rebuild() {
+    List<ScoreCount> scoreCounts =
+        Arrays.asList(scoreCount(TOUR_ID, 1, 2L), scoreCount(TOUR_ID, 4, 1L));
+    when(tourRatingRepositoryMock.countScoresByTourId(TOUR_ID)).thenReturn(scoreCounts);
+    when(aggregateRepositoryMock.findForUpdate(TOUR_ID)).thenReturn(Optional.empty());
+    when(aggregateRepositoryMock.save(any(TourRatingAggregate.class)))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+
+    TourRatingAggregate aggregate = service.rebuild(TOUR_ID);
+
+    assertThat(aggregate.getCount()).isEqualTo(3);
+    assertThat(aggregate.getSum()).isEqualTo(6);
+    assertThat(aggregate.getHistogram()).containsExactly(0, 2, 0, 0, 1, 0);
+  }
+
+  @Test
+  public void verifyAllRepairsDrift() {
+    TourRatingAggregate drifted = new TourRatingAggregate(TOUR_ID);
+    drifted.add(1);
+    List<ScoreCount> scoreCounts = Collections.singletonList(scoreCount(TOUR_ID, 5, 1L));
+    when(tourRatingRepositoryMock.countScores()).thenReturn(scoreCounts);
+    when(aggregateRepositoryMock.findAll()).thenReturn(Collections.singletonList(drifted));
+
+    assertThat(service.verifyAll()).isEqualTo(1);
+    assertThat(drifted.getAverage()).isEqualTo(5.0);
+    verify(aggregateRepositoryMock).save(drifted);
+  }
+
+  private ScoreCount scoreCount(Integer tourId, Integer score, Long total) {
+    ScoreCount scoreCount = mock(ScoreCount.class);
+    lenient().when(scoreCount.getTourId()).thenReturn(tourId);
+    when(scoreCount.getScore()).thenReturn(score);
+    when(scoreCount.getTotal()).thenReturn(total);
+    return scoreCount;
+  }
+}
@@ -2,6 +2,8 @@ package io.testoftiramisu.booktour.service;
 
 import io.testoftiramisu.booktour.TourApp;
 import io.testoftiramisu.booktour.domain.TourRating;
+import io.testoftiramisu.booktour.repository.RatingView;
+import io.testoftiramisu.booktour.repository.TourRatingRepository;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -9,9 +11,11 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Slice;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 
@@ -27,6 +31,10 @@ public class TourRatingServiceIntegrationTest {
 
   @Autowired private TourRatingService service;
 
+  @Autowired private TourRatingAggregateService aggregateService;
+
+  @Autowired private TourRatingRepository tourRatingRepository;
+
   @Test
   @DisplayName("Happy Path: should delete existing TourRating.")
   public void shouldDeleteExistedTourRating() {
@@ -85,12 +93,58 @@ public class TourRatingServiceIntegrationTest {
         });
   }
 
+  @Test
+  @DisplayName("Happy Path: bulk rating reports customers who already rated the tour.")
+  public void bulkRateReportsConflicts() {
+    int ratings = service.lookupAll().size();
+    BulkRatingResult result = service.bulkRate(TOUR_ID, 4, new Integer[] {4, 100, 101, 100});
+
+    assertThat(result.getCreated()).containsExactly(100, 101);
+    assertThat(result.getConflicts()).containsExactlyInAnyOrder(4, 100);
+    assertThat(service.lookupAll().size()).isEqualTo(ratings + 2);
+    assertThat(service.getAverageScore(TOUR_ID)).isEqualTo(13.0 / 3);
+  }
+
+  @Test
+  @DisplayName("Happy Path: export streams every rating in identifier order.")
+  public void exportAll() {
+    List<Integer> exported = new ArrayList<>();
+    long count =
+        service.exportAll(
+            rating -> {
+              assertThat(rating.getTourId()).isNotNull();
+              exported.add(rating.getId());
+            });
+
+    assertThat(count).isEqualTo(service.lookupAll().size());
+    assertThat(exported).hasSize((int) count).isSorted();
+  }
+
+  @Test
+  @DisplayName("Happy Path: keyset slices walk all the ratings of a tour in order.")
+  public void lookupRatingsAfter() {
+    service.rateMany(TOUR_ID, 4, new Integer[] {100, 101, 102, 103, 104});
+    long ratings = service.countRatings(TOUR_ID);
+
+    List<Integer> seen = new ArrayList<>();
+    Integer afterId = null;
+    Slice<RatingView> slice;
+    do {
+      slice = service.lookupRatingsAfter(TOUR_ID, afterId, 2);
+      slice.forEach(r -> seen.add(r.getId()));
+      afterId = seen.get(seen.size() - 1);
+    } while (slice.hasNext());
+
+    assertThat(seen).hasSize((int) ratings).isSorted().doesNotHaveDuplicates();
+    assertThat(ratings).isEqualTo(tourRatingRepository.findByTourId(TOUR_ID).size());
+  }
+
   @Test
   @DisplayName("Happy Path: update a Tour Rating that already in the database.")
   public void update() {
     createNewTourRating();
-    TourRating tourRating = service.update(TOUR_ID, CUSTOMER_ID, 1, "one");
-    assertThat(tourRating.getTour().getId()).isEqualTo(TOUR_ID);
+    RatingView tourRating = service.update(TOUR_ID, CUSTOMER_ID, 1, "one");
+    assertThat(tourRating.getTourId()).isEqualTo(TOUR_ID);
     assertThat(tourRating.getCustomerId()).isEqualTo(CUSTOMER_ID);
     assertThat(tourRating.getScore()).isEqualTo(1);
     assertThat(tourRating.getComment()).isEqualTo("one");
@@ -106,17 +160,42 @@ public class TourRatingServiceIntegrationTest {
   @DisplayName("Happy Path: update a Tour Rating that already in the database.")
   public void updateSome() {
     createNewTourRating();
-    TourRating tourRating = service.update(TOUR_ID, CUSTOMER_ID, 1, "one");
-    assertThat(tourRating.getTour().getId()).isEqualTo(TOUR_ID);
+    RatingView tourRating = service.updateSome(TOUR_ID, CUSTOMER_ID, 1, null);
+    assertThat(tourRating.getTourId()).isEqualTo(TOUR_ID);
     assertThat(tourRating.getCustomerId()).isEqualTo(CUSTOMER_ID);
     assertThat(tourRating.getScore()).isEqualTo(1);
-    assertThat(tourRating.getComment()).isEqualTo("one");
+    assertThat(tourRating.getComment()).isEqualTo("it was fair");
+    assertThat(service.verifyTourRating(TOUR_ID, CUSTOMER_ID).getComment())
+        .isEqualTo("it was fair");
   }
 
   @Test
   @DisplayName("Unhappy path: no Tour Rating exists where tourId = 1 and customer = 1.")
   public void updateSomeException() {
-    Assertions.assertThrows(NoSuchElementException.class, () -> service.update(1, 1, 1, "one"));
+    Assertions.assertThrows(
+        NoSuchElementException.class, () -> service.updateSome(1, 1, 1, "one"));
+  }
+
+  @Test
+  @DisplayName("Happy Path: upsert creates a Tour Rating, then replaces it.")
+  public void upsert() {
+    RatingView created = service.upsert(TOUR_ID, CUSTOMER_ID, 2, "it was fair");
+    assertThat(created.getId()).isNotNull();
+    assertThat(created.getScore()).isEqualTo(2);
+    assertThat(service.getAverageScore(TOUR_ID)).isEqualTo(3.5);
+
+    RatingView replaced = service.upsert(TOUR_ID, CUSTOMER_ID, 3, null);
+    assertThat(replaced.getId()).isEqualTo(created.getId());
+    assertThat(replaced.getComment()).isNull();
+    assertThat(service.verifyTourRating(TOUR_ID, CUSTOMER_ID).getScore()).isEqualTo(3);
+    assertThat(service.getAverageScore(TOUR_ID)).isEqualTo(4.0);
+  }
+
+  @Test
+  @DisplayName("UnHappy Path: upsert does not create ratings of a tour that does not exist.")
+  public void upsertException() {
+    Assertions.assertThrows(
+        NoSuchElementException.class, () -> service.upsert(NOT_A_TOUR_ID, CUSTOMER_ID, 2, "ok"));
   }
 
   @Test
@@ -125,6 +204,38 @@ public class TourRatingServiceIntegrationTest {
     assertThat(service.getAverageScore(TOUR_ID)).isEqualTo(5.0);
   }
 
+  @Test
+  @DisplayName("Happy Path: average score follows rating writes.")
+  public void averageScoreFollowsWrites() {
+    createNewTourRating();
+    assertThat(service.getAverageScore(TOUR_ID)).isEqualTo(3.5);
+
+    service.update(TOUR_ID, CUSTOMER_ID, 3, "better");
+    assertThat(service.getAverageScore(TOUR_ID)).isEqualTo(4.0);
+
+    service.rateMany(TOUR_ID, 1, new Integer[] {100, 101});
+    assertThat(service.getAverageScore(TOUR_ID)).isEqualTo(2.5);
+
+    service.delete(TOUR_ID, CUSTOMER_ID);
+    assertThat(service.getAverageScore(TOUR_ID)).isEqualTo(7.0 / 3);
+    assertThat(aggregateService.lookup(TOUR_ID).get().getMinScore()).isEqualTo(1);
+    assertThat(aggregateService.lookup(TOUR_ID).get().getMaxScore()).isEqualTo(5);
+  }
+
+  @Test
+  @DisplayName("Happy Path: verify repairs aggregates that drifted from the ratings.")
+  public void verifyAllRepairsDrift() {
+    assertThat(aggregateService.verifyAll()).isZero();
+
+    tourRatingRepository.save(
+        new TourRating(
+            tourRatingRepository.findByTourId(TOUR_ID).get(0).getTour(), CUSTOMER_ID, 2));
+    assertThat(service.getAverageScore(TOUR_ID)).isEqualTo(5.0);
+
+    assertThat(aggregateService.verifyAll()).isEqualTo(1);
+    assertThat(service.getAverageScore(TOUR_ID)).isEqualTo(3.5);
+  }
+
   @Test
   @DisplayName("UnHappy Path: tour with NOT_A_TOUR_ID id does not exist.")
   public void getAverageScoreException() {
@@ -0,0 +1,178 @@
+package io.testoftiramisu.booktour.service;
+
+import io.testoftiramisu.booktour.TourApp;
+import io.testoftiramisu.booktour.domain.TourRating;
+import io.testoftiramisu.booktour.repository.RatingView;
+import io.testoftiramisu.booktour.repository.TourRatingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Guards the number of SQL statements of the rating read and write paths.
+ *
+ * <p>Writes go through JdbcTemplate, which the Hibernate statement inspector does not see, they
+ * are counted on the data source instead.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(
+    classes = TourApp.class,
+    properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+            + "io.testoftiramisu.booktour.service.SqlStatementCounter")
+@Import(JdbcStatementCounter.class)
+@Transactional
+public class TourRatingServiceStatementCountTest {
+  private static final int TOUR_ID = 1;
+
+  @Autowired private TourRatingService service;
+
+  @Autowired private TourRatingRepository tourRatingRepository;
+
+  @Autowired private EntityManager entityManager;
+
+  @BeforeEach
+  public void addRatings() {
+    service.rateMany(TOUR_ID, 4, new Integer[] {100, 101, 102, 103, 104, 105});
+    entityManager.flush();
+    entityManager.clear();
+    SqlStatementCounter.reset();
+    JdbcStatementCounter.reset();
+  }
+
+  @Test
+  @DisplayName("A page of ratings costs a select and a count, the tour is cached.")
+  public void lookupRatingsPage() {
+    Page<RatingView> page = service.lookupRatings(TOUR_ID, PageRequest.of(0, 3));
+    page.forEach(RatingView::getTourId);
+
+    assertThat(page.getContent()).hasSize(3);
+    assertThat(SqlStatementCounter.statements()).hasSize(2);
+    assertThat(SqlStatementCounter.statements())
+        .noneMatch(sql -> sql.contains("description") || sql.contains("tour_package"));
+  }
+
+  @Test
+  @DisplayName("A keyset slice costs a single select, the tour is cached.")
+  public void lookupRatingsAfter() {
+    service.lookupRatingsAfter(TOUR_ID, null, 3).forEach(RatingView::getTourId);
+
+    assertThat(SqlStatementCounter.statements()).hasSize(1);
+  }
+
+  @Test
+  @DisplayName("Verifying a tour is served by the second-level cache.")
+  public void verifyTourIsCached() {
+    assertThat(service.verifyTour(TOUR_ID).getId()).isEqualTo(TOUR_ID);
+
+    assertThat(SqlStatementCounter.statements()).isEmpty();
+  }
+
+  @Test
+  @DisplayName("A rating looked up by id costs a single select.")
+  public void lookupRatingById() {
+    int id = tourRatingRepository.findByTourId(TOUR_ID).get(0).getId();
+    entityManager.clear();
+    SqlStatementCounter.reset();
+
+    assertThat(service.lookupRatingById(id)).isPresent();
+    assertThat(SqlStatementCounter.statements()).hasSize(1);
+  }
+
+  @Test
+  @DisplayName("Rating entities do not load their tour to read its identifier.")
+  public void tourIsLazy() {
+    List<TourRating> ratings = tourRatingRepository.findByTourId(TOUR_ID);
+    ratings.forEach(rating -> assertThat(rating.getTour().getId()).isEqualTo(TOUR_ID));
+
+    assertThat(ratings.size()).isGreaterThan(6);
+    assertThat(SqlStatementCounter.statements()).hasSize(1);
+  }
+
+  @Test
+  @DisplayName("Creating a rating costs a single insert, the tour is not read.")
+  public void createNew() {
+    service.createNew(TOUR_ID, 200, 3, "fine");
+
+    assertThat(ratingStatements()).hasSize(1).allMatch(sql -> sql.startsWith("insert"));
+  }
+
+  @Test
+  @DisplayName("Creating a rating of a missing tour costs the insert alone.")
+  public void createNewWithoutTour() {
+    assertThrows(NoSuchElementException.class, () -> service.createNew(999, 200, 3, "fine"));
+
+    assertThat(ratingStatements()).hasSize(1);
+  }
+
+  @Test
+  @DisplayName("Updating a rating costs a single update, the rating is not read first.")
+  public void update() {
+    assertThat(service.update(TOUR_ID, 100, 5, "great").getScore()).isEqualTo(5);
+
+    assertThat(ratingStatements()).hasSize(1);
+  }
+
+  @Test
+  @DisplayName("Updating some of a rating costs a single update.")
+  public void updateSome() {
+    assertThat(service.updateSome(TOUR_ID, 100, null, "great").getScore()).isEqualTo(4);
+
+    assertThat(ratingStatements()).hasSize(1);
+  }
+
+  @Test
+  @DisplayName("Updating a missing rating costs the update alone.")
+  public void updateNotRated() {
+    assertThrows(NoSuchElementException.class, () -> service.update(TOUR_ID, 200, 5, "great"));
+
+    assertThat(ratingStatements()).hasSize(1);
+  }
+
+  @Test
+  @DisplayName("Replacing a rating with an upsert costs a single merge.")
+  public void upsertReplaces() {
+    service.upsert(TOUR_ID, 100, 5, "great");
+
+    assertThat(ratingStatements()).hasSize(1).allMatch(sql -> sql.contains("merge"));
+  }
+
+  @Test
+  @DisplayName("Creating a rating with an upsert costs the merge and a read of its identifier.")
+  public void upsertCreates() {
+    assertThat(service.upsert(TOUR_ID, 200, 5, "great").getId()).isNotNull();
+
+    assertThat(ratingStatements()).hasSize(2);
+  }
+
+  @Test
+  @DisplayName("Deleting a rating costs a single delete, the rating is not read first.")
+  public void delete() {
+    service.delete(TOUR_ID, 100);
+
+    assertThat(ratingStatements()).hasSize(1);
+  }
+
+  /** Statements of the data source, but those of the rating aggregates. */
+  private static List<String> ratingStatements() {
+    return JdbcStatementCounter.statements().stream()
+        .filter(sql -> !sql.contains("tour_rating_aggregate"))
+        .collect(Collectors.toList());
+  }
+}
@@ -2,25 +2,44 @@ package io.testoftiramisu.booktour.service;
 
 import io.testoftiramisu.booktour.domain.Tour;
 import io.testoftiramisu.booktour.domain.TourRating;
+import io.testoftiramisu.booktour.domain.TourRatingAggregate;
+import io.testoftiramisu.booktour.domain.TourRatingEvent;
+import io.testoftiramisu.booktour.domain.TourRatingRow;
+import io.testoftiramisu.booktour.domain.TourRatingsChangedEvent;
+import io.testoftiramisu.booktour.repository.RatingView;
 import io.testoftiramisu.booktour.repository.TourRatingRepository;
+import io.testoftiramisu.booktour.repository.TourRatingShards;
 import io.testoftiramisu.booktour.repository.TourRepository;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -34,8 +53,12 @@ public class TourRatingServiceTest {
 
   @Mock private TourRepository tourRepositoryMock;
   @Mock private TourRatingRepository tourRatingRepositoryMock;
+  @Mock private TourRatingAggregateService aggregateServiceMock;
+  @Mock private RatingMetrics ratingMetricsMock;
+  @Mock private ApplicationEventPublisher publisherMock;
+  @Mock private PlatformTransactionManager transactionManagerMock;
 
-  @InjectMocks private TourRatingService service;
+  private TourRatingService service;
 
   @Mock private Tour tourMock;
   @Mock private TourRating tourRatingMock;
@@ -43,6 +66,7 @@ public class TourRatingServiceTest {
   /** Mock responses to commonly invoked methods. */
   @BeforeEach
   public void setupReturnValuesOfMockMethods() {
+    service = service(false);
     lenient().when(tourRepositoryMock.findById(TOUR_ID)).thenReturn(Optional.of(tourMock));
     lenient().when(tourMock.getId()).thenReturn(TOUR_ID);
     lenient()
@@ -51,15 +75,35 @@ public class TourRatingServiceTest {
     lenient()
         .when(tourRatingRepositoryMock.findByTourId(TOUR_ID))
         .thenReturn(Collections.singletonList(tourRatingMock));
+    lenient()
+        .when(tourRatingRepositoryMock.insertRating(eq(TOUR_ID), anyInt(), anyInt(), any()))
+        .thenReturn(true);
+  }
+
+  private TourRatingService service(boolean upsert) {
+    return new TourRatingService(
+        tourRatingRepositoryMock,
+        tourRepositoryMock,
+        aggregateServiceMock,
+        ratingMetricsMock,
+        publisherMock,
+        new TourRatingVersions(),
+        new TourRatingShards(1, 1, transactionManagerMock),
+        upsert);
+  }
+
+  private static Optional<TourRatingRow> previous(int score, String comment) {
+    return Optional.of(new TourRatingRow(TOUR_RATING_ID, TOUR_ID, CUSTOMER_ID, score, comment));
   }
 
   /** Verifies the service return value. */
   @Test
   public void lookupRatingById() {
-    when(tourRatingRepositoryMock.findById(TOUR_RATING_ID)).thenReturn(Optional.of(tourRatingMock));
+    RatingView ratingView = mock(RatingView.class);
+    when(tourRatingRepositoryMock.findViewById(TOUR_RATING_ID)).thenReturn(Optional.of(ratingView));
 
     // invoke and verify lookupRatingById
-    assertThat(service.lookupRatingById(TOUR_RATING_ID).get()).isEqualTo(tourRatingMock);
+    assertThat(service.lookupRatingById(TOUR_RATING_ID).get()).isEqualTo(ratingView);
   }
 
   @Test
@@ -70,9 +114,41 @@ public class TourRatingServiceTest {
     assertThat(service.lookupAll().get(0)).isEqualTo(tourRatingMock);
   }
 
+  @Test
+  public void lookupAllPage() {
+    Pageable pageable = mock(Pageable.class);
+    Page page = mock(Page.class);
+    when(tourRatingRepositoryMock.findAllViews(pageable)).thenReturn(page);
+
+    // invoke and verify lookupAll
+    assertThat(service.lookupAll(pageable)).isEqualTo(page);
+  }
+
+  @Test
+  public void lookupAllRefusesDeepPagesWithShards() {
+    TourRatingShards shards = new TourRatingShards(2, 1, transactionManagerMock);
+    TourRatingService sharded =
+        new TourRatingService(
+            tourRatingRepositoryMock,
+            tourRepositoryMock,
+            aggregateServiceMock,
+            ratingMetricsMock,
+            publisherMock,
+            new TourRatingVersions(),
+            shards,
+            false);
+
+    // invoke lookupAll beyond the maximum depth and verify no shard is read
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> sharded.lookupAll(PageRequest.of(Integer.MAX_VALUE / 10, 20)));
+    verify(tourRatingRepositoryMock, never()).findAllViews(any());
+    shards.destroy();
+  }
+
   @Test
   public void getAverageScore() {
-    when(tourRatingMock.getScore()).thenReturn(10);
+    when(aggregateServiceMock.getAverageScore(TOUR_ID)).thenReturn(10.0);
 
     // invoke and verify getAverageScore
     assertThat(service.getAverageScore(TOUR_ID)).isEqualTo(10.0);
@@ -83,20 +159,62 @@ public class TourRatingServiceTest {
     // create mocks of Pageable and Page (only needed in this test)
     Pageable pageable = mock(Pageable.class);
     Page page = mock(Page.class);
-    when(tourRatingRepositoryMock.findByTourId(1, pageable)).thenReturn(page);
+    when(tourRatingRepositoryMock.findViewsByTourId(1, pageable)).thenReturn(page);
 
     // invoke and verify lookupRatings
     assertThat(service.lookupRatings(TOUR_ID, pageable)).isEqualTo(page);
   }
 
+  @Test
+  public void lookupRatingsAfter() {
+    Slice page = mock(Slice.class);
+    when(tourRatingRepositoryMock.findViewsByTourIdAfter(
+            TOUR_ID, TOUR_RATING_ID, PageRequest.of(0, 10)))
+        .thenReturn(page);
+
+    // invoke and verify lookupRatingsAfter
+    assertThat(service.lookupRatingsAfter(TOUR_ID, TOUR_RATING_ID, 10)).isEqualTo(page);
+  }
+
+  @Test
+  public void countRatings() {
+    TourRatingAggregate aggregate = new TourRatingAggregate(TOUR_ID);
+    aggregate.addAll(3, 7);
+    when(aggregateServiceMock.lookup(TOUR_ID)).thenReturn(Optional.of(aggregate));
+
+    // invoke and verify countRatings
+    assertThat(service.countRatings(TOUR_ID)).isEqualTo(7);
+    assertThat(service.countRatings(TOUR_ID + 1)).isZero();
+  }
+
   /** Verifies the invocation of dependencies. */
   @Test
   public void delete() {
+    when(tourRatingRepositoryMock.deleteRating(TOUR_ID, CUSTOMER_ID))
+        .thenReturn(previous(3, "fine"));
+
     // invoke delete
-    service.delete(1, CUSTOMER_ID);
+    service.delete(TOUR_ID, CUSTOMER_ID);
+
+    // verify the rating is deleted by its key, without loading it
+    verify(tourRatingRepositoryMock, never()).findByTourIdAndCustomerId(anyInt(), anyInt());
+    verify(tourRatingRepositoryMock, never()).delete(any(TourRating.class));
 
-    // verify tourRatingRepository.delete invoked
-    verify(tourRatingRepositoryMock).delete(any(TourRating.class));
+    // verify the aggregate accounts for the removed rating
+    verify(aggregateServiceMock).removed(TOUR_ID, 3);
+    verify(publisherMock).publishEvent(new TourRatingsChangedEvent(TOUR_ID));
+    verify(publisherMock).publishEvent(TourRatingEvent.deleted(TOUR_ID, CUSTOMER_ID, 3));
+  }
+
+  @Test
+  public void deleteNotRated() {
+    when(tourRatingRepositoryMock.deleteRating(TOUR_ID, CUSTOMER_ID)).thenReturn(Optional.empty());
+
+    // invoke delete and verify nothing is accounted for
+    Assertions.assertThrows(
+        NoSuchElementException.class, () -> service.delete(TOUR_ID, CUSTOMER_ID));
+    verify(aggregateServiceMock, never()).removed(anyInt(), anyInt());
+    verify(publisherMock, never()).publishEvent(any());
   }
 
   @Test
@@ -104,52 +222,214 @@ public class TourRatingServiceTest {
     // invoke rateMany
     service.rateMany(TOUR_ID, 10, new Integer[] {CUSTOMER_ID, CUSTOMER_ID + 1});
 
-    // verify tourRatingRepository.save invoked twice
-    verify(tourRatingRepositoryMock, times(2)).save(any(TourRating.class));
+    // verify tourRatingRepository.insertAll invoked once with both ratings
+    verify(tourRatingRepositoryMock).insertAll(eq(TOUR_ID), argThat(list -> list.size() == 2));
+    verify(tourRatingRepositoryMock, never()).save(any(TourRating.class));
+
+    // verify the aggregate accounts for both ratings at once
+    verify(aggregateServiceMock).added(TOUR_ID, 10, 2);
+  }
+
+  @Test
+  public void rateManyRejectsConflicts() {
+    when(tourRatingRepositoryMock.insertAll(eq(TOUR_ID), anyList()))
+        .thenAnswer(invocation -> ((List<?>) invocation.getArgument(1)).subList(0, 1));
+
+    // invoke rateMany and verify the conflict aborts it
+    Assertions.assertThrows(
+        DataIntegrityViolationException.class,
+        () -> service.rateMany(TOUR_ID, 4, new Integer[] {CUSTOMER_ID, CUSTOMER_ID + 1}));
+  }
+
+  @Test
+  public void bulkRateReportsConflicts() {
+    when(tourRatingRepositoryMock.insertAll(eq(TOUR_ID), anyList()))
+        .thenAnswer(invocation -> ((List<?>) invocation.getArgument(1)).subList(0, 1));
+
+    // invoke bulkRate
+    BulkRatingResult result =
+        service.bulkRate(TOUR_ID, 4, new Integer[] {CUSTOMER_ID, CUSTOMER_ID + 1});
+
+    // verify the conflict is reported and only the created rating is aggregated
+    assertThat(result.getConflicts()).containsExactly(CUSTOMER_ID);
+    assertThat(result.getCreated()).containsExactly(CUSTOMER_ID + 1);
+    verify(aggregateServiceMock).added(TOUR_ID, 4, 1);
+
+    // verify both outcomes are counted
+    verify(ratingMetricsMock).created(1);
+    verify(ratingMetricsMock).conflicts(1);
+  }
+
+  @Test
+  public void createManyRejectsRatingsWithoutScore() {
+    List<TourRating> ratings =
+        Arrays.asList(
+            new TourRating(null, CUSTOMER_ID, 4),
+            new TourRating(null, CUSTOMER_ID + 1, null, "no score"));
+
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> service.createMany(TOUR_ID, ratings));
+    verify(tourRatingRepositoryMock, never()).insertAll(anyInt(), anyList());
   }
 
   @Test
   public void update() {
-    // invoke update
-    service.update(TOUR_ID, CUSTOMER_ID, 5, "great");
+    when(tourRatingRepositoryMock.updateRating(TOUR_ID, CUSTOMER_ID, 5, "great"))
+        .thenReturn(previous(2, "meh"));
+
+    // invoke update and verify the updated rating is returned
+    RatingView rating = service.update(TOUR_ID, CUSTOMER_ID, 5, "great");
+    assertThat(rating.getId()).isEqualTo(TOUR_RATING_ID);
+    assertThat(rating.getScore()).isEqualTo(5);
+    assertThat(rating.getComment()).isEqualTo("great");
 
-    // verify tourRatingRepository.save invoked once
-    verify(tourRatingRepositoryMock).save(any(TourRating.class));
+    // verify the rating is not loaded nor saved
+    verify(tourRatingRepositoryMock, never()).findByTourIdAndCustomerId(anyInt(), anyInt());
+    verify(tourRatingRepositoryMock, never()).save(any(TourRating.class));
 
-    // verify and tourRating setter methods invoked
-    verify(tourRatingMock).setComment("great");
-    verify(tourRatingMock).setScore(5);
+    // verify the aggregate accounts for the changed score
+    verify(aggregateServiceMock).changed(TOUR_ID, 2, 5);
+    verify(publisherMock).publishEvent(new TourRatingsChangedEvent(TOUR_ID));
+    verify(publisherMock).publishEvent(TourRatingEvent.updated(TOUR_ID, CUSTOMER_ID, 2, 5));
+  }
+
+  @Test
+  public void updateNotRated() {
+    when(tourRatingRepositoryMock.updateRating(TOUR_ID, CUSTOMER_ID, 5, "great"))
+        .thenReturn(Optional.empty());
+
+    // invoke update and verify it does not create the rating
+    Assertions.assertThrows(
+        NoSuchElementException.class, () -> service.update(TOUR_ID, CUSTOMER_ID, 5, "great"));
+    verify(tourRatingRepositoryMock, never()).mergeRating(any(), any(), any(), any());
+    verify(aggregateServiceMock, never()).changed(anyInt(), anyInt(), anyInt());
+  }
+
+  @Test
+  public void updateRequiresAScore() {
+    // invoke update without a score and verify no statement is run
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> service.update(TOUR_ID, CUSTOMER_ID, null, "none"));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> service(true).update(TOUR_ID, CUSTOMER_ID, null, "none"));
+    verify(tourRatingRepositoryMock, never()).updateRating(any(), any(), any(), any());
+    verify(tourRatingRepositoryMock, never()).mergeRating(any(), any(), any(), any());
+  }
+
+  @Test
+  public void updateCountsARatingWithoutScoreAsCreated() {
+    when(tourRatingRepositoryMock.updateRating(TOUR_ID, CUSTOMER_ID, 5, "great"))
+        .thenReturn(
+            Optional.of(new TourRatingRow(TOUR_RATING_ID, TOUR_ID, CUSTOMER_ID, null, null)));
+
+    // invoke update and verify the aggregate counts the score for the first time
+    assertThat(service.update(TOUR_ID, CUSTOMER_ID, 5, "great").getScore()).isEqualTo(5);
+    verify(aggregateServiceMock).added(TOUR_ID, 5);
+    verify(aggregateServiceMock, never()).changed(anyInt(), anyInt(), anyInt());
+    verify(publisherMock).publishEvent(TourRatingEvent.created(TOUR_ID, CUSTOMER_ID, 5));
   }
 
   @Test
   public void updateSome() {
-    // invoke updateSome
-    service.updateSome(TOUR_ID, CUSTOMER_ID, 1, "awful");
+    when(tourRatingRepositoryMock.updateSomeOfRating(TOUR_ID, CUSTOMER_ID, null, "awful"))
+        .thenReturn(previous(2, "meh"));
 
-    // verify tourRatingRepository.save invoked once
-    verify(tourRatingRepositoryMock).save(any(TourRating.class));
+    // invoke updateSome and verify the score is kept
+    RatingView rating = service.updateSome(TOUR_ID, CUSTOMER_ID, null, "awful");
+    assertThat(rating.getScore()).isEqualTo(2);
+    assertThat(rating.getComment()).isEqualTo("awful");
 
-    // verify and tourRating setter methods invoked
-    verify(tourRatingMock).setComment("awful");
-    verify(tourRatingMock).setScore(1);
+    // verify the aggregate sees no change of score
+    verify(aggregateServiceMock).changed(TOUR_ID, 2, 2);
   }
 
-  /** Verifies the invocation of dependencies and verifies the captured parameter values. */
   @Test
-  public void createNew() {
-    // prepare to capture a TourRating Object
-    ArgumentCaptor<TourRating> tourRatingCaptor = ArgumentCaptor.forClass(TourRating.class);
+  public void updateUpsertsReplacedRating() {
+    when(tourRatingRepositoryMock.mergeRating(TOUR_ID, CUSTOMER_ID, 5, "great"))
+        .thenReturn(previous(2, "meh"));
+
+    // invoke update in upsert mode
+    RatingView rating = service(true).update(TOUR_ID, CUSTOMER_ID, 5, "great");
 
+    // verify the replaced rating is accounted for as a change
+    assertThat(rating.getScore()).isEqualTo(5);
+    verify(tourRatingRepositoryMock, never()).updateRating(any(), any(), any(), any());
+    verify(aggregateServiceMock).changed(TOUR_ID, 2, 5);
+    verify(ratingMetricsMock, never()).created(anyLong());
+  }
+
+  @Test
+  public void updateUpsertsCreatedRating() {
+    RatingView created = mock(RatingView.class);
+    when(tourRatingRepositoryMock.mergeRating(TOUR_ID, CUSTOMER_ID, 5, "great"))
+        .thenReturn(Optional.empty());
+    when(tourRatingRepositoryMock.findViewByTourIdAndCustomerId(TOUR_ID, CUSTOMER_ID))
+        .thenReturn(Optional.of(created));
+
+    // invoke update in upsert mode
+    assertThat(service(true).update(TOUR_ID, CUSTOMER_ID, 5, "great")).isEqualTo(created);
+
+    // verify the inserted rating is accounted for as a new one
+    verify(aggregateServiceMock).added(TOUR_ID, 5);
+    verify(ratingMetricsMock).created(1);
+    verify(publisherMock).publishEvent(new TourRatingsChangedEvent(TOUR_ID));
+  }
+
+  @Test
+  public void upsertWithoutTour() {
+    when(tourRatingRepositoryMock.mergeRating(TOUR_ID, CUSTOMER_ID, 5, "great"))
+        .thenReturn(Optional.empty());
+    when(tourRatingRepositoryMock.findViewByTourIdAndCustomerId(TOUR_ID, CUSTOMER_ID))
+        .thenReturn(Optional.empty());
+
+    // invoke upsert and verify a missing tour is not found
+    Assertions.assertThrows(
+        NoSuchElementException.class, () -> service.upsert(TOUR_ID, CUSTOMER_ID, 5, "great"));
+    verify(aggregateServiceMock, never()).added(anyInt(), anyInt());
+  }
+
+  /** Verifies the invocation of dependencies. */
+  @Test
+  public void createNew() {
     // invoke createNew
     service.createNew(TOUR_ID, CUSTOMER_ID, 2, "ok");
 
-    // verify tourRatingRepository.save invoked once and capture the TourRating Object
-    verify(tourRatingRepositoryMock).save(tourRatingCaptor.capture());
+    // verify the rating is inserted by the tour identifier, the tour is not loaded
+    verify(tourRatingRepositoryMock).insertRating(TOUR_ID, CUSTOMER_ID, 2, "ok");
+    verify(tourRepositoryMock, never()).findById(anyInt());
+
+    // verify the aggregate accounts for the new rating
+    verify(aggregateServiceMock).added(TOUR_ID, 2);
+    verify(ratingMetricsMock).created(1);
+
+    // verify the cached ratings of the tour are invalidated
+    verify(publisherMock).publishEvent(new TourRatingsChangedEvent(TOUR_ID));
+    verify(publisherMock).publishEvent(TourRatingEvent.created(TOUR_ID, CUSTOMER_ID, 2));
+  }
+
+  @Test
+  public void createNewWithoutTour() {
+    when(tourRatingRepositoryMock.insertRating(TOUR_ID, CUSTOMER_ID, 2, "ok")).thenReturn(false);
+
+    // invoke createNew and verify a missing tour is not found
+    Assertions.assertThrows(
+        NoSuchElementException.class, () -> service.createNew(TOUR_ID, CUSTOMER_ID, 2, "ok"));
+    verify(aggregateServiceMock, never()).added(anyInt(), anyInt());
+    verify(ratingMetricsMock, never()).created(anyLong());
+  }
+
+  @Test
+  public void createNewCountsConflict() {
+    when(tourRatingRepositoryMock.insertRating(TOUR_ID, CUSTOMER_ID, 2, "ok"))
+        .thenThrow(new DataIntegrityViolationException("duplicate"));
 
-    // verify the attributes of the Tour Rating Object
-    assertThat(tourRatingCaptor.getValue().getTour()).isEqualTo(tourMock);
-    assertThat(tourRatingCaptor.getValue().getCustomerId()).isEqualTo(CUSTOMER_ID);
-    assertThat(tourRatingCaptor.getValue().getScore()).isEqualTo(2);
-    assertThat(tourRatingCaptor.getValue().getComment()).isEqualTo("ok");
+    // invoke createNew and verify the conflict is counted, not the rating
+    Assertions.assertThrows(
+        DataIntegrityViolationException.class,
+        () -> service.createNew(TOUR_ID, CUSTOMER_ID, 2, "ok"));
+    verify(ratingMetricsMock).conflicts(1);
+    verify(ratingMetricsMock, never()).created(anyLong());
+    verify(publisherMock, never()).publishEvent(any());
   }
 }
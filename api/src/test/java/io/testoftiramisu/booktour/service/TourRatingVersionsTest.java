@@ -0,0 +1,48 @@
+package io.testoftiramisu.booktour.service;
+
+import io.testoftiramisu.booktour.domain.Tour;
+import io.testoftiramisu.booktour.domain.TourChangedEvent;
+import io.testoftiramisu.booktour.domain.TourPackage;
+import io.testoftiramisu.booktour.domain.TourRatingsChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TourRatingVersionsTest {
+  private static final int TOUR_ID = 1;
+  private static final Instant STARTED = Instant.parse("2020-01-02T03:04:05.678Z");
+
+  private TourRatingVersions versions =
+      new TourRatingVersions(Clock.fixed(STARTED, ZoneOffset.UTC));
+
+  @Test
+  public void initialVersion() {
+    TourRatingVersions.Version version = versions.current(TOUR_ID);
+
+    assertThat(version.getNumber()).isEqualTo(0);
+    assertThat(version.getLastModified()).isEqualTo(Instant.parse("2020-01-02T03:04:05Z"));
+    assertThat(versions.eTag(TOUR_ID, version)).isEqualTo("\"k4w5b48e-1-0\"");
+  }
+
+  @Test
+  public void ratingsChangedBumpsTheirTourOnly() {
+    versions.changed(new TourRatingsChangedEvent(TOUR_ID));
+    versions.changed(new TourRatingsChangedEvent(TOUR_ID));
+
+    assertThat(versions.current(TOUR_ID).getNumber()).isEqualTo(2);
+    assertThat(versions.eTag(TOUR_ID, versions.current(TOUR_ID))).endsWith("-1-2\"");
+    assertThat(versions.current(TOUR_ID + 1).getNumber()).isEqualTo(0);
+  }
+
+  @Test
+  public void tourChangedBumpsItsRatings() {
+    versions.tourChanged(new TourChangedEvent(Tour.class, TOUR_ID));
+    versions.tourChanged(new TourChangedEvent(TourPackage.class, "BC"));
+
+    assertThat(versions.current(TOUR_ID).getNumber()).isEqualTo(1);
+  }
+}
@@ -0,0 +1,75 @@
+package io.testoftiramisu.booktour.service;
+
+import io.testoftiramisu.booktour.TourApp;
+import io.testoftiramisu.booktour.domain.Difficulty;
+import io.testoftiramisu.booktour.domain.Region;
+import io.testoftiramisu.booktour.domain.Tour;
+import io.testoftiramisu.booktour.domain.TourPackage;
+import io.testoftiramisu.booktour.repository.TourPackageRepository;
+import io.testoftiramisu.booktour.repository.TourRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Checks the search index against the repository queries it replaces. */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = TourApp.class)
+public class TourSearchIndexIntegrationTest {
+  private static final int[] PRICES = {0, 250, 500, 750, 1000, 5000};
+
+  @Autowired private TourSearchIndex index;
+
+  @Autowired private TourRepository tourRepository;
+
+  @Autowired private TourPackageRepository tourPackageRepository;
+
+  @Test
+  @DisplayName("Every difficulty and region matches the repository.")
+  public void singleAttributes() {
+    for (Difficulty difficulty : Difficulty.values()) {
+      assertThat(ids(index.search(new TourFilter(null, difficulty, null, null, null))))
+          .isEqualTo(ids(tourRepository.findByDifficulty(difficulty)));
+    }
+    for (Region region : Region.values()) {
+      assertThat(ids(index.search(new TourFilter(null, null, region, null, null))))
+          .isEqualTo(ids(tourRepository.findByRegion(region)));
+    }
+    for (int price : PRICES) {
+      assertThat(ids(index.search(new TourFilter(null, null, null, null, price - 1))))
+          .isEqualTo(ids(tourRepository.findByPriceLessThan(price)));
+    }
+  }
+
+  @Test
+  @DisplayName("Every combination of lookupTour criteria matches the repository.")
+  public void combinations() {
+    for (TourPackage tourPackage : tourPackageRepository.findAll()) {
+      String code = tourPackage.getCode();
+      for (Region region : Region.values()) {
+        assertThat(ids(index.search(new TourFilter(code, null, region, null, null))))
+            .isEqualTo(ids(tourRepository.findByTourPackageCodeAndRegion(code, region)));
+        for (Difficulty difficulty : Difficulty.values()) {
+          for (int price : PRICES) {
+            assertThat(ids(index.search(new TourFilter(code, difficulty, region, null, price))))
+                .isEqualTo(ids(tourRepository.lookupTour(code, difficulty, region, price)));
+          }
+        }
+      }
+    }
+  }
+
+  private static List<Integer> ids(Collection<Tour> tours) {
+    return new ArrayList<>(tours)
+        .stream().map(Tour::getId).sorted().collect(Collectors.toList());
+  }
+}
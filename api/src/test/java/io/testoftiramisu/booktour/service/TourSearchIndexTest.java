@@ -0,0 +1,165 @@
+package io.testoftiramisu.booktour.service;
+
+import io.testoftiramisu.booktour.domain.Difficulty;
+import io.testoftiramisu.booktour.domain.Region;
+import io.testoftiramisu.booktour.domain.Tour;
+import io.testoftiramisu.booktour.domain.TourChangedEvent;
+import io.testoftiramisu.booktour.domain.TourPackage;
+import io.testoftiramisu.booktour.repository.TourRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TourSearchIndexTest {
+  private static final TourPackage BC = new TourPackage("BC", "Backpack Cal");
+  private static final TourPackage CC = new TourPackage("CC", "California Calm");
+
+  @Mock private TourRepository tourRepositoryMock;
+
+  private TourSearchIndex index;
+
+  private Tour bigSur = tour(1, BC, Difficulty.Medium, Region.Central_Coast, 750);
+  private Tour desert = tour(2, CC, Difficulty.Easy, Region.Southern_California, 250);
+  private Tour redwoods = tour(3, BC, Difficulty.Difficult, Region.Northern_California, 900);
+  private Tour coast = tour(4, CC, Difficulty.Medium, Region.Central_Coast, 250);
+
+  @BeforeEach
+  public void setupCatalog() {
+    index = new TourSearchIndex(tourRepositoryMock, Duration.ofHours(1));
+    when(tourRepositoryMock.findAll()).thenReturn(Arrays.asList(redwoods, coast, bigSur, desert));
+  }
+
+  @Test
+  public void emptyFilterMatchesEveryTourInIdentifierOrder() {
+    assertThat(index.search(filter(null, null, null, null, null)))
+        .containsExactly(bigSur, desert, redwoods, coast);
+  }
+
+  @Test
+  public void singleCriterion() {
+    assertThat(index.search(filter(null, Difficulty.Medium, null, null, null)))
+        .containsExactly(bigSur, coast);
+    assertThat(index.search(filter(null, null, Region.Southern_California, null, null)))
+        .containsExactly(desert);
+    assertThat(index.search(filter("BC", null, null, null, null)))
+        .containsExactly(bigSur, redwoods);
+  }
+
+  @Test
+  public void combinedCriteriaIntersect() {
+    assertThat(index.search(filter("CC", Difficulty.Medium, Region.Central_Coast, null, 300)))
+        .containsExactly(coast);
+    assertThat(index.search(filter("BC", null, Region.Central_Coast, null, null)))
+        .containsExactly(bigSur);
+    assertThat(index.search(filter("BC", Difficulty.Easy, null, null, null))).isEmpty();
+    assertThat(index.search(filter("XX", null, null, null, null))).isEmpty();
+  }
+
+  @Test
+  public void priceBoundsAreInclusive() {
+    assertThat(index.search(filter(null, null, null, 250, 250))).containsExactly(desert, coast);
+    assertThat(index.search(filter(null, null, null, 251, 900)))
+        .containsExactly(bigSur, redwoods);
+    assertThat(index.search(filter(null, null, null, null, 249))).isEmpty();
+    assertThat(index.search(filter(null, null, null, 901, null))).isEmpty();
+    assertThat(index.search(filter(null, null, null, 800, 700))).isEmpty();
+  }
+
+  @Test
+  public void rebuildsOnlyAfterAChange() {
+    index.search(filter(null, null, null, null, null));
+    index.search(filter(null, null, null, null, null));
+    verify(tourRepositoryMock, times(1)).findAll();
+
+    when(tourRepositoryMock.findAll()).thenReturn(Collections.singletonList(desert));
+    index.tourChanged(new TourChangedEvent(Tour.class, 2));
+
+    assertThat(index.search(filter(null, null, null, null, null))).containsExactly(desert);
+    verify(tourRepositoryMock, times(2)).findAll();
+  }
+
+  @Test
+  public void failedRebuildIsRetriedByTheNextSearch() {
+    index.search(filter(null, null, null, null, null));
+    when(tourRepositoryMock.findAll())
+        .thenThrow(new QueryTimeoutException("timeout"))
+        .thenReturn(Collections.singletonList(desert));
+    index.tourChanged(new TourChangedEvent(Tour.class, 2));
+
+    Assertions.assertThrows(
+        QueryTimeoutException.class, () -> index.search(filter(null, null, null, null, null)));
+    assertThat(index.search(filter(null, null, null, null, null))).containsExactly(desert);
+    verify(tourRepositoryMock, times(3)).findAll();
+  }
+
+  @Test
+  public void concurrentFirstSearchWaitsForTheFirstRebuild() throws Exception {
+    CountDownLatch reading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(tourRepositoryMock.findAll())
+        .thenAnswer(
+            invocation -> {
+              reading.countDown();
+              release.await(10, TimeUnit.SECONDS);
+              return Arrays.asList(bigSur, desert);
+            });
+    TourFilter all = filter(null, null, null, null, null);
+
+    CompletableFuture<List<Tour>> first = CompletableFuture.supplyAsync(() -> index.search(all));
+    assertThat(reading.await(10, TimeUnit.SECONDS)).isTrue();
+    CompletableFuture<List<Tour>> second = CompletableFuture.supplyAsync(() -> index.search(all));
+    Thread.sleep(200);
+    assertThat(second).isNotDone();
+    release.countDown();
+
+    assertThat(first.get(10, TimeUnit.SECONDS)).containsExactly(bigSur, desert);
+    assertThat(second.get(10, TimeUnit.SECONDS)).containsExactly(bigSur, desert);
+    verify(tourRepositoryMock, times(1)).findAll();
+  }
+
+  @Test
+  public void rebuildsOnceTooOld() {
+    index = new TourSearchIndex(tourRepositoryMock, Duration.ZERO);
+
+    index.search(filter(null, null, null, null, null));
+    index.search(filter(null, null, null, null, null));
+
+    verify(tourRepositoryMock, times(2)).findAll();
+  }
+
+  private static TourFilter filter(
+      String code, Difficulty difficulty, Region region, Integer minPrice, Integer maxPrice) {
+    return new TourFilter(code, difficulty, region, minPrice, maxPrice);
+  }
+
+  private static Tour tour(
+      int id, TourPackage tourPackage, Difficulty difficulty, Region region, int price) {
+    Tour tour = mock(Tour.class);
+    lenient().when(tour.getId()).thenReturn(id);
+    lenient().when(tour.getTourPackage()).thenReturn(tourPackage);
+    lenient().when(tour.getDifficulty()).thenReturn(difficulty);
+    lenient().when(tour.getRegion()).thenReturn(region);
+    lenient().when(tour.getPrice()).thenReturn(price);
+    return tour;
+  }
+}
@@ -0,0 +1,128 @@
+package io.testoftiramisu.booktour.service;
+
+import io.testoftiramisu.booktour.domain.Tour;
+import io.testoftiramisu.booktour.domain.TourChangedEvent;
+import io.testoftiramisu.booktour.domain.TourPackage;
+import io.testoftiramisu.booktour.repository.TourRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TourTextIndexTest {
+  @Mock private TourRepository tourRepositoryMock;
+
+  private TourTextIndex index;
+
+  private Tour bigSur =
+      tour(
+          1,
+          "Big Sur Retreat",
+          "Hiking, National Parks, Big Sur",
+          "The greatest meeting of land and sea.");
+  private Tour hotSprings =
+      tour(
+          2,
+          "Hot Springs Getaway",
+          "Hot Springs, Relaxation",
+          "Soak in the springs after a day of hiking.");
+  private Tour wine =
+      tour(3, "Wine Tasting", "Wine, Food", "Taste the wines of the Central Coast, near Big Sur.");
+
+  @BeforeEach
+  public void setupCatalog() {
+    index = new TourTextIndex(tourRepositoryMock);
+    when(tourRepositoryMock.findAll()).thenReturn(Arrays.asList(bigSur, hotSprings, wine));
+    index.rebuild();
+  }
+
+  @Test
+  public void tokenize() {
+    assertThat(TourTextIndex.tokenize("Hiking, National Parks & the Big-Sur 3-day tour"))
+        .containsExactly("hiking", "national", "parks", "big", "sur", "3", "day", "tour");
+    assertThat(TourTextIndex.tokenize(null)).isEmpty();
+    assertThat(TourTextIndex.tokenize(" , the ")).isEmpty();
+  }
+
+  @Test
+  public void titleAndKeywordsOutrankDescription() {
+    assertThat(tourIds("big sur")).containsExactly(1, 3);
+    assertThat(tourIds("hiking")).containsExactly(1, 2);
+    assertThat(tourIds("springs")).containsExactly(2);
+  }
+
+  @Test
+  public void anyTermMatchesAndMoreTermsRankHigher() {
+    assertThat(tourIds("WINE hiking")).containsExactlyInAnyOrder(1, 2, 3);
+    assertThat(tourIds("wine big sur").get(0)).isEqualTo(3);
+  }
+
+  @Test
+  public void noMatch() {
+    assertThat(index.search("snowboard", 10)).isEmpty();
+    assertThat(index.search("", 10)).isEmpty();
+    assertThat(index.search("the of", 10)).isEmpty();
+  }
+
+  @Test
+  public void limit() {
+    assertThat(index.search("hiking wine", 2)).hasSize(2);
+  }
+
+  @Test
+  public void reindexesChangedTourOnly() {
+    Tour renamed = tour(3, "Snowboard Camp", "Snow", "Lessons on the slopes.");
+    when(tourRepositoryMock.findById(3)).thenReturn(Optional.of(renamed));
+
+    index.tourChanged(new TourChangedEvent(Tour.class, 3));
+
+    assertThat(tourIds("wine")).isEmpty();
+    assertThat(tourIds("snowboard")).containsExactly(3);
+    assertThat(tourIds("big sur")).containsExactly(1);
+    verify(tourRepositoryMock).findById(3);
+  }
+
+  @Test
+  public void removesDeletedTour() {
+    when(tourRepositoryMock.findById(1)).thenReturn(Optional.empty());
+
+    index.tourChanged(new TourChangedEvent(Tour.class, 1));
+
+    assertThat(tourIds("hiking")).containsExactly(2);
+  }
+
+  @Test
+  public void ignoresPackageChanges() {
+    index.tourChanged(new TourChangedEvent(TourPackage.class, "BC"));
+
+    assertThat(tourIds("hiking")).containsExactly(1, 2);
+  }
+
+  private List<Integer> tourIds(String query) {
+    return index.search(query, 10).stream()
+        .map(TourTextIndex.Hit::getTourId)
+        .collect(Collectors.toList());
+  }
+
+  private static Tour tour(int id, String title, String keywords, String description) {
+    Tour tour = mock(Tour.class);
+    lenient().when(tour.getId()).thenReturn(id);
+    lenient().when(tour.getTitle()).thenReturn(title);
+    lenient().when(tour.getKeywords()).thenReturn(keywords);
+    lenient().when(tour.getDescription()).thenReturn(description);
+    return tour;
+  }
+}
@@ -0,0 +1,63 @@
+package io.testoftiramisu.booktour.web;
+
+import io.testoftiramisu.booktour.TourApp;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/** Scrape the Prometheus endpoint after a few rating requests. */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = RANDOM_PORT, classes = TourApp.class)
+public class PrometheusEndpointTest {
+  private static final int TOUR_ID = 2;
+  private static final int CUSTOMER_ID = 4242;
+
+  @Autowired private TestRestTemplate restTemplate;
+
+  @Test
+  public void scrape() {
+    restTemplate.postForEntity(
+        "/tours/" + TOUR_ID + "/ratings",
+        new RatingDto(5, "Great tour", CUSTOMER_ID),
+        Void.class);
+    restTemplate.getForEntity("/tours/" + TOUR_ID + "/ratings/average", String.class);
+    restTemplate.getForEntity("/ratings/999999", String.class);
+
+    ResponseEntity<String> response =
+        restTemplate.getForEntity("/actuator/prometheus", String.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getBody())
+        // per endpoint, with percentiles and histogram buckets
+        .contains(
+            "http_server_requests_seconds{exception=\"None\",method=\"GET\","
+                + "outcome=\"SUCCESS\",status=\"200\",uri=\"/tours/{tourId}/ratings/average\","
+                + "quantile=\"0.99\",}")
+        .contains("http_server_requests_seconds_bucket{")
+        // per service method and repository query
+        .contains(
+            "booktour_service_seconds_count{class=\"TourRatingService\",exception=\"none\","
+                + "method=\"getAverageScore\",}")
+        .contains("booktour_service_seconds{class=\"TourRatingService\"")
+        .contains(
+            "booktour_repository_seconds_count{exception=\"none\",method=\"findById\","
+                + "repository=\"TourRepository\",}")
+        // business counters
+        .contains("booktour_ratings_created_total")
+        .contains("booktour_ratings_conflicts_total")
+        .contains("booktour_ratings_not_found_total 1.0")
+        // connection pool and Hibernate statistics
+        .contains("hikaricp_connections_active")
+        .contains("hibernate_query_executions_total")
+        .contains("hibernate_entities_loads_total")
+        .contains("hibernate_second_level_cache_requests_total");
+  }
+}
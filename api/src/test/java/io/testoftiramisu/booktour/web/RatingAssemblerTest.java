@@ -1,20 +1,26 @@
 package io.testoftiramisu.booktour.web;
 
-import io.testoftiramisu.booktour.domain.Tour;
-import io.testoftiramisu.booktour.domain.TourRating;
+import io.testoftiramisu.booktour.repository.RatingView;
+import io.testoftiramisu.booktour.repository.TourRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.rest.webmvc.support.RepositoryEntityLinks;
-import org.springframework.hateoas.Link;
+import org.springframework.hateoas.server.LinkBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.net.URI;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyInt;
-import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -27,24 +33,55 @@ public class RatingAssemblerTest {
   private static final String COMMENT = "comment";
 
   @Mock private RepositoryEntityLinks entityLinksMock;
+  @Mock private LinkBuilder toursLinkMock;
   @InjectMocks private RatingAssembler assembler;
 
+  @BeforeEach
+  public void bindRequest() {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ratings");
+    request.setServerName("booktour.example");
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    when(entityLinksMock.linkFor(TourRepository.class)).thenReturn(toursLinkMock);
+    when(toursLinkMock.toUri()).thenReturn(URI.create("http://booktour.example/tours"));
+  }
+
+  @AfterEach
+  public void unbindRequest() {
+    RequestContextHolder.resetRequestAttributes();
+  }
+
   @Test
-  public void toResource() {
-    TourRating tourRatingMock = mock(TourRating.class);
-    Tour tourMock = mock(Tour.class);
-    Link linkMock = mock(Link.class);
+  public void toResourceFromProjection() {
+    RatingView ratingViewMock = mock(RatingView.class);
 
-    when(tourRatingMock.getComment()).thenReturn(COMMENT);
-    when(tourRatingMock.getScore()).thenReturn(SCORE);
-    when(tourRatingMock.getCustomerId()).thenReturn(CUSTOMER_ID);
-    when(tourRatingMock.getId()).thenReturn(RATING_ID);
-    when(tourRatingMock.getTour()).thenReturn(tourMock);
-    when(entityLinksMock.linkToItemResource(any(Class.class), anyInt())).thenReturn(linkMock);
-    when(linkMock.withRel(anyString())).thenReturn(linkMock);
+    when(ratingViewMock.getComment()).thenReturn(COMMENT);
+    when(ratingViewMock.getScore()).thenReturn(SCORE);
+    when(ratingViewMock.getCustomerId()).thenReturn(CUSTOMER_ID);
+    when(ratingViewMock.getId()).thenReturn(RATING_ID);
+    when(ratingViewMock.getTourId()).thenReturn(TOUR_ID);
 
-    RatingDto dto = assembler.toModel(tourRatingMock);
+    RatingDto dto = assembler.toModel(ratingViewMock);
 
     assertThat(dto.getLinks()).hasSize(2);
+    assertThat(dto.getRequiredLink("self").getHref())
+        .isEqualTo("http://booktour.example/ratings/" + RATING_ID);
+    assertThat(dto.getRequiredLink("tour").getHref())
+        .isEqualTo("http://booktour.example/tours/" + TOUR_ID);
+    assertThat(dto.getCustomerId()).isEqualTo(CUSTOMER_ID);
+    assertThat(dto.getComment()).isEqualTo(COMMENT);
+  }
+
+  @Test
+  public void resolvesLinksOncePerRequest() {
+    RatingView ratingViewMock = mock(RatingView.class);
+    when(ratingViewMock.getId()).thenReturn(RATING_ID, RATING_ID + 1);
+    when(ratingViewMock.getTourId()).thenReturn(TOUR_ID);
+
+    RatingDto first = assembler.toModel(ratingViewMock);
+    RatingDto second = assembler.toModel(ratingViewMock);
+
+    verify(entityLinksMock, times(1)).linkFor(TourRepository.class);
+    assertThat(first.getRequiredLink("self").getHref()).endsWith("/ratings/" + RATING_ID);
+    assertThat(second.getRequiredLink("self").getHref()).endsWith("/ratings/" + (RATING_ID + 1));
   }
 }
@@ -1,8 +1,9 @@
 package io.testoftiramisu.booktour.web;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import io.testoftiramisu.booktour.TourApp;
-import io.testoftiramisu.booktour.domain.Tour;
-import io.testoftiramisu.booktour.domain.TourRating;
+import io.testoftiramisu.booktour.repository.RatingView;
 import io.testoftiramisu.booktour.service.TourRatingService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,16 +14,26 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.hateoas.CollectionModel;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.PagedModel;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 
@@ -47,39 +58,114 @@ public class RatingControllerTest {
 
   @MockBean private TourRatingService tourRatingServiceMock;
 
-  @Mock private TourRating tourRatingMock;
-
-  @Mock private Tour tourMock;
+  @Mock private RatingView ratingViewMock;
 
   @Autowired private TestRestTemplate restTemplate;
 
   @BeforeEach
   public void setupReturnValuesOfMockMethods() {
-    when(tourRatingMock.getTour()).thenReturn(tourMock);
-    when(tourMock.getId()).thenReturn(TOUR_ID);
-    when(tourRatingMock.getComment()).thenReturn(COMMENT);
-    when(tourRatingMock.getScore()).thenReturn(SCORE);
-    when(tourRatingMock.getCustomerId()).thenReturn(CUSTOMER_ID);
+    when(ratingViewMock.getId()).thenReturn(RATING_ID);
+    when(ratingViewMock.getTourId()).thenReturn(TOUR_ID);
+    when(ratingViewMock.getComment()).thenReturn(COMMENT);
+    when(ratingViewMock.getScore()).thenReturn(SCORE);
+    when(ratingViewMock.getCustomerId()).thenReturn(CUSTOMER_ID);
   }
 
-  /** HTTP GET /ratings */
+  /** HTTP GET /ratings?page={page}&size={size} */
   @Test
   public void getRatings() {
-    when(tourRatingServiceMock.lookupAll())
-        .thenReturn(Arrays.asList(tourRatingMock, tourRatingMock, tourRatingMock));
+    when(tourRatingServiceMock.lookupAll(PageRequest.of(1, 3)))
+        .thenReturn(
+            new PageImpl<>(
+                Arrays.asList(ratingViewMock, ratingViewMock, ratingViewMock),
+                PageRequest.of(1, 3),
+                10));
 
-    ResponseEntity<CollectionModel<RatingDto>> response =
+    ResponseEntity<PagedModel<RatingDto>> response =
         restTemplate.exchange(
-            RATINGS_URL, HttpMethod.GET, null, createParameterizedTypeReference());
+            RATINGS_URL + "?page=1&size=3",
+            HttpMethod.GET,
+            null,
+            createParameterizedTypeReference());
 
     assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
     assertThat(response.getBody()).hasSize(3);
+    assertThat(response.getBody().getMetadata().getTotalElements()).isEqualTo(10);
+    assertThat(response.getBody().getNextLink()).isPresent();
+  }
+
+  /** HTTP GET /ratings?page={page}&size={size} beyond the deepest page */
+  @Test
+  public void getRatingsTooDeep() {
+    when(tourRatingServiceMock.lookupAll(PageRequest.of(5000, 3)))
+        .thenThrow(new IllegalArgumentException("too deep"));
+
+    ResponseEntity<String> response =
+        restTemplate.getForEntity(RATINGS_URL + "?page=5000&size=3", String.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+  }
+
+  /** HTTP GET /ratings/export as a JSON array */
+  @Test
+  public void exportRatingsAsJsonArray() {
+    stubExport();
+
+    ResponseEntity<String> response =
+        restTemplate.getForEntity(RATINGS_URL + "/export", String.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getBody())
+        .isEqualTo(
+            "[{\"id\":1,\"tourId\":999,\"customerId\":1000,\"score\":3,\"comment\":\"comment\"}"
+                + ",{\"id\":2,\"tourId\":999,\"customerId\":1001,\"score\":3}]");
+  }
+
+  /** HTTP GET /ratings/export of a rating stored without score */
+  @Test
+  public void exportRatingsWithoutScore() {
+    RatingView unscored = ratingView(3, CUSTOMER_ID + 2, null);
+    when(unscored.getScore()).thenReturn(null);
+    when(tourRatingServiceMock.exportAll(any()))
+        .thenAnswer(
+            invocation -> {
+              Consumer<RatingView> consumer = invocation.getArgument(0);
+              consumer.accept(unscored);
+              consumer.accept(ratingView(4, CUSTOMER_ID + 3, null));
+              return 2L;
+            });
+
+    ResponseEntity<String> response =
+        restTemplate.getForEntity(RATINGS_URL + "/export", String.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getBody())
+        .isEqualTo(
+            "[{\"id\":3,\"tourId\":999,\"customerId\":1002}"
+                + ",{\"id\":4,\"tourId\":999,\"customerId\":1003,\"score\":3}]");
+  }
+
+  /** HTTP GET /ratings/export as newline delimited JSON */
+  @Test
+  public void exportRatingsAsNdjson() {
+    stubExport();
+    HttpHeaders headers = new HttpHeaders();
+    headers.setAccept(Collections.singletonList(MediaType.valueOf("application/x-ndjson")));
+
+    ResponseEntity<String> response =
+        restTemplate.exchange(
+            RATINGS_URL + "/export", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getHeaders().getContentType().toString())
+        .startsWith("application/x-ndjson");
+    assertThat(response.getBody().split("\n")).hasSize(2);
   }
 
   /** HTTP GET /ratings/{id} */
   @Test
   public void getOne() {
-    when(tourRatingServiceMock.lookupRatingById(RATING_ID)).thenReturn(Optional.of(tourRatingMock));
+    when(tourRatingServiceMock.lookupRatingById(RATING_ID)).thenReturn(Optional.of(ratingViewMock));
 
     ResponseEntity<RatingDto> response =
         restTemplate.getForEntity(RATINGS_URL + "/" + RATING_ID, RatingDto.class);
@@ -90,15 +176,112 @@ public class RatingControllerTest {
     assertThat(response.getBody().getScore()).isEqualTo(SCORE);
   }
 
+  /** HTTP GET /ratings?page={page}&size={size} as application/cbor */
+  @Test
+  public void getRatingRecords() throws Exception {
+    RatingView second = ratingView(2, CUSTOMER_ID + 1, null);
+    when(tourRatingServiceMock.lookupAll(PageRequest.of(1, 2)))
+        .thenReturn(
+            new PageImpl<>(Arrays.asList(ratingViewMock, second), PageRequest.of(1, 2), 10));
+
+    ResponseEntity<byte[]> response = getCbor(RATINGS_URL + "?page=1&size=2");
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_CBOR);
+    RatingRecordPage page =
+        new ObjectMapper(new CBORFactory()).readValue(response.getBody(), RatingRecordPage.class);
+    assertThat(page.getRatings()).hasSize(2);
+    assertThat(page.getRatings().get(0).getId()).isEqualTo(RATING_ID);
+    assertThat(page.getRatings().get(0).getTourId()).isEqualTo(TOUR_ID);
+    assertThat(page.getRatings().get(0).getComment()).isEqualTo(COMMENT);
+    assertThat(page.getRatings().get(1).getComment()).isNull();
+    assertThat(page.getPage().getNumber()).isEqualTo(1);
+    assertThat(page.getPage().getTotalElements()).isEqualTo(10);
+  }
+
+  /** HTTP GET /ratings/{id} as application/cbor */
+  @Test
+  public void getOneRecord() throws Exception {
+    when(tourRatingServiceMock.lookupRatingById(RATING_ID)).thenReturn(Optional.of(ratingViewMock));
+
+    ResponseEntity<byte[]> response = getCbor(RATINGS_URL + "/" + RATING_ID);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    RatingRecord rating =
+        new ObjectMapper(new CBORFactory()).readValue(response.getBody(), RatingRecord.class);
+    assertThat(rating.getCustomerId()).isEqualTo(CUSTOMER_ID);
+    assertThat(rating.getScore()).isEqualTo(SCORE);
+  }
+
+  /** HTTP GET /ratings/{id} accepting anything still returns HAL */
+  @Test
+  public void getOneAcceptingAnything() {
+    when(tourRatingServiceMock.lookupRatingById(RATING_ID)).thenReturn(Optional.of(ratingViewMock));
+    HttpHeaders headers = new HttpHeaders();
+    headers.setAccept(Collections.singletonList(MediaType.ALL));
+
+    ResponseEntity<String> response =
+        restTemplate.exchange(
+            RATINGS_URL + "/" + RATING_ID, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getHeaders().getContentType()).isEqualTo(MediaTypes.HAL_JSON);
+    assertThat(response.getBody()).contains("\"_links\"");
+  }
+
+  /** HTTP GET /ratings/{id} preferring JSON over application/cbor returns HAL */
+  @Test
+  public void getOnePreferringJson() {
+    when(tourRatingServiceMock.lookupRatingById(RATING_ID)).thenReturn(Optional.of(ratingViewMock));
+    HttpHeaders headers = new HttpHeaders();
+    headers.setAccept(MediaType.parseMediaTypes("application/cbor;q=0.5, application/json"));
+
+    ResponseEntity<String> response =
+        restTemplate.exchange(
+            RATINGS_URL + "/" + RATING_ID, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getHeaders().getContentType()).isNotEqualTo(MediaType.APPLICATION_CBOR);
+    assertThat(response.getBody()).contains("\"score\":" + SCORE);
+  }
+
+  private ResponseEntity<byte[]> getCbor(String url) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setAccept(Collections.singletonList(MediaType.APPLICATION_CBOR));
+    return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+  }
+
+  /** Stubs an export of two ratings. */
+  private void stubExport() {
+    when(tourRatingServiceMock.exportAll(any()))
+        .thenAnswer(
+            invocation -> {
+              Consumer<RatingView> consumer = invocation.getArgument(0);
+              consumer.accept(ratingView(1, CUSTOMER_ID, COMMENT));
+              consumer.accept(ratingView(2, CUSTOMER_ID + 1, null));
+              return 2L;
+            });
+  }
+
+  private static RatingView ratingView(int id, int customerId, String comment) {
+    RatingView view = mock(RatingView.class);
+    when(view.getId()).thenReturn(id);
+    when(view.getTourId()).thenReturn(TOUR_ID);
+    when(view.getCustomerId()).thenReturn(customerId);
+    when(view.getScore()).thenReturn(SCORE);
+    when(view.getComment()).thenReturn(comment);
+    return view;
+  }
+
   /**
    * Fixes NullPointerException during compilation of Generic ParameterizedTypeReference.
    *
    * <p>javac can't tell during speculative attribution if a diamond expression is creating an
    * anonymous inner class or not.
    *
-   * @return parameterized type reference of <CollectionModel<RatingDto>> type
+   * @return parameterized type reference of <PagedModel<RatingDto>> type
    */
-  private ParameterizedTypeReference<CollectionModel<RatingDto>>
+  private ParameterizedTypeReference<PagedModel<RatingDto>>
       createParameterizedTypeReference() {
     return new ParameterizedTypeReference<>() {};
   }
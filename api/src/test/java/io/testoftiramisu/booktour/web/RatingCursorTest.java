@@ -0,0 +1,37 @@
+package io.testoftiramisu.booktour.web;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Rating Cursor tests. */
+public class RatingCursorTest {
+
+  @Test
+  public void roundTrip() {
+    String token = RatingCursor.encode(1, 42);
+
+    assertThat(token).doesNotContain("42");
+    assertThat(RatingCursor.decode(1, token)).isEqualTo(42);
+  }
+
+  @Test
+  public void emptyTokenStartsFromTheFirstRating() {
+    assertThat(RatingCursor.decode(1, "")).isNull();
+    assertThat(RatingCursor.decode(1, null)).isNull();
+  }
+
+  @Test
+  public void rejectsTokenOfAnotherTour() {
+    String token = RatingCursor.encode(1, 42);
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> RatingCursor.decode(2, token));
+  }
+
+  @Test
+  public void rejectsMalformedToken() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> RatingCursor.decode(1, "%%"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> RatingCursor.decode(1, "YWJj"));
+  }
+}
@@ -22,8 +22,10 @@ public class RatingDtoTest {
     dto.setComment("comment");
     dto.setCustomerId(2);
     dto.setScore(1);
+    dto.setTourId(3);
 
     assertThat(dto.getScore()).isEqualTo(1);
+    assertThat(dto.getTourId()).isEqualTo(3);
     assertThat(dto.getComment()).isEqualTo("comment");
     assertThat(dto.getCustomerId()).isEqualTo(2);
   }
@@ -0,0 +1,105 @@
+package io.testoftiramisu.booktour.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.testoftiramisu.booktour.domain.TourRating;
+import io.testoftiramisu.booktour.service.BulkRatingResult;
+import io.testoftiramisu.booktour.service.TourRatingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class RatingIngestionTest {
+  private static final int TOUR_ID = 999;
+
+  @Mock private TourRatingService serviceMock;
+
+  private RatingIngestion ingestion;
+
+  @BeforeEach
+  public void setUp() {
+    ingestion =
+        new RatingIngestion(
+            serviceMock,
+            Validation.buildDefaultValidatorFactory().getValidator(),
+            new ObjectMapper(),
+            2);
+  }
+
+  @Test
+  public void ingestInChunks() throws Exception {
+    when(serviceMock.createMany(eq(TOUR_ID), anyList()))
+        .thenReturn(
+            new BulkRatingResult(Collections.emptyList(), Collections.singletonList(2)),
+            new BulkRatingResult(Collections.emptyList(), Collections.emptyList()));
+
+    String output =
+        ingest(
+            "{\"customerId\":1,\"score\":5,\"comment\":\"great\"}\n"
+                + "{\"customerId\":2,\"score\":4,\"tourId\":999}\n"
+                + "\n"
+                + "{\"customerId\":3,\"score\":3}\n");
+
+    ArgumentCaptor<List<TourRating>> captor = ArgumentCaptor.forClass(List.class);
+    verify(serviceMock, times(2)).createMany(eq(TOUR_ID), captor.capture());
+    assertThat(captor.getAllValues().get(0)).hasSize(2);
+    assertThat(captor.getAllValues().get(0).get(0).getComment()).isEqualTo("great");
+    assertThat(captor.getAllValues().get(1)).hasSize(1);
+
+    assertThat(output.split("\n"))
+        .containsExactly(
+            "{\"line\":1,\"customerId\":1,\"status\":\"CREATED\",\"message\":null}",
+            "{\"line\":2,\"customerId\":2,\"status\":\"CONFLICT\",\"message\":null}",
+            "{\"line\":4,\"customerId\":3,\"status\":\"CREATED\",\"message\":null}",
+            "{\"created\":2,\"conflicts\":1,\"invalid\":0}");
+  }
+
+  @Test
+  public void reportInvalidLines() throws Exception {
+    when(serviceMock.createMany(eq(TOUR_ID), anyList()))
+        .thenReturn(new BulkRatingResult(Collections.emptyList(), Collections.emptyList()));
+
+    String output =
+        ingest(
+            "not json\n"
+                + "{\"customerId\":1,\"score\":9}\n"
+                + "{\"customerId\":2,\"score\":4,\"tourId\":1}\n"
+                + "{\"customerId\":3}\n"
+                + "{\"customerId\":4,\"score\":1}\n"
+                + "{\"customerId\":4,\"score\":2}\n");
+
+    String[] lines = output.split("\n");
+    assertThat(lines).hasSize(7);
+    assertThat(lines[0]).startsWith("{\"line\":1,\"customerId\":null,\"status\":\"INVALID\"");
+    assertThat(lines[1]).contains("score must be less than or equal to 5");
+    assertThat(lines[2]).contains("tourId 1 does not match tour 999");
+    assertThat(lines[3]).contains("score must not be null");
+    assertThat(lines[4]).contains("\"status\":\"CREATED\"");
+    assertThat(lines[5]).contains("customerId 4 is repeated in the same chunk");
+    assertThat(lines[6]).isEqualTo("{\"created\":1,\"conflicts\":0,\"invalid\":5}");
+  }
+
+  private String ingest(String body) throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ingestion.ingest(
+        TOUR_ID, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), output);
+    return output.toString(StandardCharsets.UTF_8);
+  }
+}
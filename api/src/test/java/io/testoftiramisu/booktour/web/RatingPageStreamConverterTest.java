@@ -0,0 +1,100 @@
+package io.testoftiramisu.booktour.web;
+
+import io.testoftiramisu.booktour.TourApp;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.PagedModel;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Pages of ratings streamed by RatingPageStreamConverter match the HAL message converter. */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = TourApp.class)
+public class RatingPageStreamConverterTest {
+  private static final String RATINGS = "http://localhost/tours/1/ratings";
+
+  @Autowired private RatingPageStreamConverter converter;
+
+  @Autowired
+  @Qualifier("requestMappingHandlerAdapter")
+  private RequestMappingHandlerAdapter handlerAdapter;
+
+  @Test
+  public void writesPageAsHal() throws Exception {
+    RatingDto withComment = rating(5, "Great views", 4242);
+    RatingDto withoutComment = rating(3, null, 4243);
+    RatingDto withEmptyComment = rating(1, "", 4244);
+    withEmptyComment.setTourId(1);
+    withEmptyComment.add(new Link("http://localhost/tours/2", "tour"));
+    PagedModel<RatingDto> page =
+        new PagedModel<>(
+            Arrays.asList(withComment, withoutComment, withEmptyComment),
+            new PagedModel.PageMetadata(3, 1, 10, 4),
+            new Link(RATINGS + "?page=0&size=3", IanaLinkRelations.FIRST),
+            new Link(RATINGS + "?page=1&size=3", IanaLinkRelations.SELF),
+            new Link(RATINGS + "{?page,size,sort}", "search"));
+
+    assertThat(stream(page)).isEqualTo(hal(page));
+  }
+
+  @Test
+  public void writesEmptyPageAsHal() throws Exception {
+    PagedModel<RatingDto> page =
+        new PagedModel<>(
+            Collections.emptyList(),
+            new PagedModel.PageMetadata(20, 0, 0, 0),
+            new Link(RATINGS + "?page=0&size=20", IanaLinkRelations.SELF));
+
+    assertThat(stream(page)).isEqualTo(hal(page));
+  }
+
+  @Test
+  public void writesOnlyPagesOfRatings() {
+    assertThat(converter.canWrite(RatingPageStream.class, MediaTypes.HAL_JSON)).isTrue();
+    assertThat(converter.canWrite(RatingPageStream.class, MediaType.APPLICATION_JSON)).isTrue();
+    assertThat(converter.canWrite(PagedModel.class, MediaTypes.HAL_JSON)).isFalse();
+    assertThat(converter.canRead(RatingPageStream.class, MediaTypes.HAL_JSON)).isFalse();
+  }
+
+  private static RatingDto rating(int score, String comment, int customerId) {
+    RatingDto rating = new RatingDto(score, comment, customerId);
+    rating.add(new Link("http://localhost/ratings/" + customerId, IanaLinkRelations.SELF));
+    rating.add(new Link("http://localhost/tours/1", "tour"));
+    return rating;
+  }
+
+  private String stream(PagedModel<RatingDto> page) throws Exception {
+    MockHttpOutputMessage output = new MockHttpOutputMessage();
+    converter.write(new RatingPageStream(page), MediaTypes.HAL_JSON, output);
+    return output.getBodyAsString();
+  }
+
+  /** Renders the page with the HAL message converter of the MVC endpoints. */
+  @SuppressWarnings("unchecked")
+  private String hal(PagedModel<RatingDto> page) throws Exception {
+    HttpMessageConverter<Object> hal =
+        (HttpMessageConverter<Object>)
+            handlerAdapter.getMessageConverters().stream()
+                .filter(c -> !(c instanceof RatingPageStreamConverter))
+                .filter(c -> c.canWrite(PagedModel.class, MediaTypes.HAL_JSON))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No HAL message converter"));
+    MockHttpOutputMessage output = new MockHttpOutputMessage();
+    hal.write(page, MediaTypes.HAL_JSON, output);
+    return output.getBodyAsString();
+  }
+}
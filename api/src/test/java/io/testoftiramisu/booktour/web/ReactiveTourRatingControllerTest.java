@@ -0,0 +1,320 @@
+package io.testoftiramisu.booktour.web;
+
+import io.testoftiramisu.booktour.TourApp;
+import io.testoftiramisu.booktour.domain.TourRatingRow;
+import io.testoftiramisu.booktour.repository.ReactiveTourRatingRepository;
+import io.testoftiramisu.booktour.service.ReactiveTourRatingService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Invoke the reactive Controllers via HTTP, against the R2DBC repository.
+ *
+ * <p>Every test rates its own tour, so the tests do not depend on each other.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(
+    webEnvironment = RANDOM_PORT,
+    classes = TourApp.class,
+    properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles("reactive")
+public class ReactiveTourRatingControllerTest {
+  private static final int NOT_A_TOUR_ID = 123;
+
+  @Autowired private WebTestClient webClient;
+
+  @Autowired private ReactiveTourRatingService service;
+
+  @Autowired private ReactiveTourRatingRepository repository;
+
+  /** HTTP POST then GET /tours/{tourId}/ratings */
+  @Test
+  public void createThenStreamPage() {
+    create(11, 4242, 4, "Great views");
+    create(11, 4243, 2, "Too long");
+
+    webClient
+        .get()
+        .uri("/tours/11/ratings?page=0&size=10")
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBody()
+        .jsonPath("$.length()")
+        .isEqualTo(2)
+        .jsonPath("$[0].customerId")
+        .isEqualTo(4242)
+        .jsonPath("$[0].comment")
+        .isEqualTo("Great views")
+        .jsonPath("$[1].score")
+        .isEqualTo(2);
+
+    webClient
+        .get()
+        .uri("/tours/11/ratings?page=1&size=1")
+        .exchange()
+        .expectBody()
+        .jsonPath("$.length()")
+        .isEqualTo(1)
+        .jsonPath("$[0].customerId")
+        .isEqualTo(4243);
+  }
+
+  /** HTTP GET /tours/{tourId}/ratings as newline delimited JSON */
+  @Test
+  public void streamPageAsNdjson() {
+    create(12, 4242, 5, null);
+    create(12, 4243, 3, null);
+
+    String ratings =
+        webClient
+            .get()
+            .uri("/tours/12/ratings")
+            .accept(MediaType.valueOf(TourRatingController.APPLICATION_NDJSON))
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBody(String.class)
+            .returnResult()
+            .getResponseBody();
+
+    String[] lines = ratings.split("\n");
+    assertThat(lines).hasSize(2);
+    assertThat(lines[0]).startsWith("{\"score\":5,\"customerId\":4242,");
+    assertThat(lines[1]).contains("\"customerId\":4243,\"_links\":{\"self\":");
+  }
+
+  /** HTTP GET /tours/{tourId}/ratings/average, updated by PUT, PATCH and DELETE */
+  @Test
+  public void averageFollowsWrites() {
+    create(13, 4242, 4, null);
+    create(13, 4243, 2, null);
+    assertAverage(13, "3.0");
+
+    webClient
+        .put()
+        .uri("/tours/13/ratings")
+        .bodyValue(new RatingDto(5, "Better", 4243))
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBody()
+        .jsonPath("$.comment")
+        .isEqualTo("Better");
+    assertAverage(13, "4.5");
+
+    webClient
+        .patch()
+        .uri("/tours/13/ratings")
+        .bodyValue(new RatingDto(3, null, 4243))
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBody()
+        .jsonPath("$.comment")
+        .isEqualTo("Better");
+    assertAverage(13, "3.5");
+
+    webClient.delete().uri("/tours/13/ratings/4243").exchange().expectStatus().isOk();
+    assertAverage(13, "4.0");
+  }
+
+  /** HTTP PUT, PATCH and DELETE of ratings stored without score, which are not counted */
+  @Test
+  public void ratingsWithoutScore() {
+    repository.save(new TourRatingRow(17, 4242, null, "No score")).block();
+    repository.save(new TourRatingRow(17, 4243, null, "No score either")).block();
+    create(17, 4244, 2, null);
+    assertAverage(17, "2.0");
+
+    webClient
+        .patch()
+        .uri("/tours/17/ratings")
+        .bodyValue(new RatingDto(null, "Still no score", 4242))
+        .exchange()
+        .expectStatus()
+        .isOk();
+    assertAverage(17, "2.0");
+
+    webClient
+        .put()
+        .uri("/tours/17/ratings")
+        .bodyValue(new RatingDto(4, "Scored", 4242))
+        .exchange()
+        .expectStatus()
+        .isOk();
+    assertAverage(17, "3.0");
+
+    webClient.delete().uri("/tours/17/ratings/4243").exchange().expectStatus().isOk();
+    assertAverage(17, "3.0");
+  }
+
+  /** Concurrent updates of a rating each replace the score the previous one left */
+  @Test
+  public void concurrentUpdatesKeepTheAverage() {
+    create(18, 4242, 0, null);
+    create(18, 4243, 5, null);
+
+    Flux.range(1, 20)
+        .flatMap(i -> service.update(18, 4242, i % 2 == 0 ? 0 : 4, "Update " + i))
+        .then()
+        .block(Duration.ofSeconds(30));
+
+    int score = service.lookupRatings(18, 0, 10).blockFirst().getScore();
+    assertThat(score).isIn(0, 4);
+    assertAverage(18, score == 0 ? "2.5" : "4.5");
+  }
+
+  /** HTTP POST /tours/{tourId}/ratings/{score}?customers= */
+  @Test
+  public void createMany() {
+    webClient
+        .post()
+        .uri("/tours/14/ratings/3?customers=4242,4243,4244")
+        .exchange()
+        .expectStatus()
+        .isCreated();
+
+    assertAverage(14, "3.0");
+    webClient
+        .get()
+        .uri("/tours/14/ratings")
+        .exchange()
+        .expectBody()
+        .jsonPath("$.length()")
+        .isEqualTo(3)
+        .jsonPath("$[0].comment")
+        .isEqualTo("Fair");
+  }
+
+  /** HTTP GET /ratings/{id} and /ratings/export */
+  @Test
+  public void lookupAndExport() {
+    create(15, 4242, 1, "Rainy");
+
+    String[] self = new String[1];
+    webClient
+        .get()
+        .uri("/tours/15/ratings")
+        .exchange()
+        .expectBody()
+        .jsonPath("$[0]._links.self.href")
+        .value(href -> self[0] = (String) href);
+    webClient
+        .get()
+        .uri(self[0])
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBody()
+        .jsonPath("$.comment")
+        .isEqualTo("Rainy")
+        .jsonPath("$._links.tour.href")
+        .value(href -> assertThat((String) href).endsWith("/tours/15"));
+
+    String export =
+        webClient
+            .get()
+            .uri("/ratings/export")
+            .accept(MediaType.valueOf(TourRatingController.APPLICATION_NDJSON))
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBody(String.class)
+            .returnResult()
+            .getResponseBody();
+    assertThat(export)
+        .contains("\"tourId\":15,\"customerId\":4242,\"score\":1,\"comment\":\"Rainy\"}\n");
+  }
+
+  /** HTTP POST of a rating the customer already gave, one at a time or in bulk */
+  @Test
+  public void duplicateRatingsConflict() {
+    create(16, 4242, 4, "Great views");
+
+    webClient
+        .post()
+        .uri("/tours/16/ratings")
+        .bodyValue(new RatingDto(2, "Changed my mind", 4242))
+        .exchange()
+        .expectStatus()
+        .isEqualTo(HttpStatus.CONFLICT);
+    webClient
+        .post()
+        .uri("/tours/16/ratings/3?customers=4243,4242")
+        .exchange()
+        .expectStatus()
+        .isEqualTo(HttpStatus.CONFLICT);
+    assertAverage(16, "4.0");
+  }
+
+  @Test
+  public void unknownTourOrRating() {
+    webClient
+        .post()
+        .uri("/tours/" + NOT_A_TOUR_ID + "/ratings")
+        .bodyValue(new RatingDto(3, null, 4242))
+        .exchange()
+        .expectStatus()
+        .isNotFound();
+    webClient
+        .get()
+        .uri("/tours/" + NOT_A_TOUR_ID + "/ratings")
+        .exchange()
+        .expectStatus()
+        .isNotFound();
+    webClient.get().uri("/ratings/999999").exchange().expectStatus().isNotFound();
+    webClient.delete().uri("/tours/6/ratings/4242").exchange().expectStatus().isNotFound();
+  }
+
+  @Test
+  public void invalidRequests() {
+    webClient
+        .post()
+        .uri("/tours/6/ratings")
+        .bodyValue(new RatingDto(6, null, 4242))
+        .exchange()
+        .expectStatus()
+        .isBadRequest();
+    webClient
+        .get()
+        .uri("/tours/6/ratings?size=0")
+        .exchange()
+        .expectStatus()
+        .isEqualTo(HttpStatus.BAD_REQUEST);
+  }
+
+  private void create(int tourId, int customerId, int score, String comment) {
+    webClient
+        .post()
+        .uri("/tours/" + tourId + "/ratings")
+        .bodyValue(new RatingDto(score, comment, customerId))
+        .exchange()
+        .expectStatus()
+        .isCreated();
+  }
+
+  private void assertAverage(int tourId, String average) {
+    webClient
+        .get()
+        .uri("/tours/" + tourId + "/ratings/average")
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBody(String.class)
+        .isEqualTo("{\"average\":" + average + "}");
+  }
+}
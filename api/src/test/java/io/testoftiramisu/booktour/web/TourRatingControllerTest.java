@@ -1,8 +1,11 @@
 package io.testoftiramisu.booktour.web;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import io.testoftiramisu.booktour.TourApp;
-import io.testoftiramisu.booktour.domain.Tour;
-import io.testoftiramisu.booktour.domain.TourRating;
+import io.testoftiramisu.booktour.repository.RatingView;
+import io.testoftiramisu.booktour.service.BulkRatingResult;
 import io.testoftiramisu.booktour.service.TourRatingService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
@@ -17,17 +20,30 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.Collections;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 
@@ -53,19 +69,16 @@ public class TourRatingControllerTest {
 
   @MockBean private TourRatingService serviceMock;
 
-  @Mock private TourRating tourRatingMock;
-
-  @Mock private Tour tourMock;
+  @Mock private RatingView ratingViewMock;
 
   private RatingDto ratingDto = new RatingDto(SCORE, COMMENT, CUSTOMER_ID);
 
   @BeforeEach
   public void setupReturnValuesOfMockMethods() {
-    when(tourRatingMock.getComment()).thenReturn(COMMENT);
-    when(tourRatingMock.getScore()).thenReturn(SCORE);
-    when(tourRatingMock.getCustomerId()).thenReturn(CUSTOMER_ID);
-    when(tourRatingMock.getTour()).thenReturn(tourMock);
-    when(tourMock.getId()).thenReturn(TOUR_ID);
+    when(ratingViewMock.getComment()).thenReturn(COMMENT);
+    when(ratingViewMock.getScore()).thenReturn(SCORE);
+    when(ratingViewMock.getCustomerId()).thenReturn(CUSTOMER_ID);
+    when(ratingViewMock.getTourId()).thenReturn(TOUR_ID);
   }
 
   /** HTTP POST /tours/{tourId}/ratings */
@@ -76,6 +89,24 @@ public class TourRatingControllerTest {
     verify(this.serviceMock).createNew(TOUR_ID, CUSTOMER_ID, SCORE, COMMENT);
   }
 
+  @Test
+  public void createAndReplaceRequireAScore() {
+    RatingDto withoutScore = new RatingDto(null, COMMENT, CUSTOMER_ID);
+
+    assertThat(
+            restTemplate
+                .postForEntity(TOUR_RATINGS_URL, withoutScore, String.class)
+                .getStatusCode())
+        .isEqualTo(HttpStatus.BAD_REQUEST);
+    assertThat(
+            restTemplate
+                .exchange(
+                    TOUR_RATINGS_URL, HttpMethod.PUT, new HttpEntity<>(withoutScore), String.class)
+                .getStatusCode())
+        .isEqualTo(HttpStatus.BAD_REQUEST);
+    verifyNoInteractions(serviceMock);
+  }
+
   /** HTTP DELETE /tours/{tourId}/ratings */
   @Test
   public void delete() throws Exception {
@@ -93,11 +124,59 @@ public class TourRatingControllerTest {
     verify(serviceMock).rateMany(TOUR_ID, SCORE, new Integer[] {CUSTOMER_ID});
   }
 
+  /** HTTP POST /tours/{tourId}/ratings/{score}/bulk?customers={ids..} */
+  @Test
+  public void bulkRate() throws Exception {
+    when(serviceMock.bulkRate(TOUR_ID, SCORE, new Integer[] {CUSTOMER_ID, CUSTOMER_ID + 1}))
+        .thenReturn(
+            new BulkRatingResult(
+                Collections.singletonList(CUSTOMER_ID + 1),
+                Collections.singletonList(CUSTOMER_ID)));
+
+    ResponseEntity<String> response =
+        restTemplate.postForEntity(
+            TOUR_RATINGS_URL
+                + "/"
+                + SCORE
+                + "/bulk?customers="
+                + CUSTOMER_ID
+                + ","
+                + (CUSTOMER_ID + 1),
+            null,
+            String.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getBody()).isEqualTo("{\"created\":[1001],\"conflicts\":[1000]}");
+  }
+
+  /** HTTP POST /tours/{tourId}/ratings with an application/x-ndjson body */
+  @Test
+  public void ingestTourRatings() throws Exception {
+    when(serviceMock.createMany(eq(TOUR_ID), anyList()))
+        .thenReturn(new BulkRatingResult(Collections.emptyList(), Collections.emptyList()));
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.valueOf("application/x-ndjson"));
+    String body =
+        "{\"customerId\":" + CUSTOMER_ID + ",\"score\":" + SCORE + "}\n{\"customerId\":1}\n";
+
+    ResponseEntity<String> response =
+        restTemplate.postForEntity(
+            TOUR_RATINGS_URL, new HttpEntity<>(body, headers), String.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getHeaders().getContentType().toString())
+        .startsWith("application/x-ndjson");
+    String[] lines = response.getBody().split("\n");
+    assertThat(lines).hasSize(3);
+    assertThat(lines[2]).isEqualTo("{\"created\":1,\"conflicts\":0,\"invalid\":1}");
+    verify(serviceMock).createMany(eq(TOUR_ID), anyList());
+  }
+
   /** HTTP GET /tours/{tourId}/ratings */
   @Test
   public void getAllRatingsForTour() throws Exception {
-    List<TourRating> listOfTourRatings = Collections.singletonList(tourRatingMock);
-    Page<TourRating> page = new PageImpl(listOfTourRatings, PageRequest.of(0, 10), 1);
+    List<RatingView> listOfTourRatings = Collections.singletonList(ratingViewMock);
+    Page<RatingView> page = new PageImpl<>(listOfTourRatings, PageRequest.of(0, 10), 1);
     when(serviceMock.lookupRatings(anyInt(), any(Pageable.class))).thenReturn(page);
 
     ResponseEntity<String> response = restTemplate.getForEntity(TOUR_RATINGS_URL, String.class);
@@ -106,6 +185,99 @@ public class TourRatingControllerTest {
     verify(serviceMock).lookupRatings(anyInt(), any(Pageable.class));
   }
 
+  /** HTTP GET /tours/{tourId}/ratings accepting gzip */
+  @Test
+  public void getAllRatingsForTourCompressed() throws Exception {
+    List<RatingView> listOfTourRatings = Collections.nCopies(100, ratingViewMock);
+    Page<RatingView> page = new PageImpl<>(listOfTourRatings, PageRequest.of(0, 100), 100);
+    when(serviceMock.lookupRatings(anyInt(), any(Pageable.class))).thenReturn(page);
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+
+    ResponseEntity<byte[]> response =
+        restTemplate.exchange(
+            TOUR_RATINGS_URL, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+    JsonNode ratings;
+    try (InputStream body = new GZIPInputStream(new ByteArrayInputStream(response.getBody()))) {
+      ratings = new ObjectMapper().readTree(body).at("/_embedded/ratingDtoes");
+    }
+    assertThat(ratings.size()).isEqualTo(100);
+    assertThat(ratings.get(99).get("customerId").asInt()).isEqualTo(CUSTOMER_ID);
+  }
+
+  /** HTTP GET /tours/{tourId}/ratings as application/cbor */
+  @Test
+  public void getRatingRecordsForTour() throws Exception {
+    Page<RatingView> page =
+        new PageImpl<>(Collections.singletonList(ratingViewMock), PageRequest.of(0, 10), 1);
+    when(serviceMock.lookupRatings(anyInt(), any(Pageable.class))).thenReturn(page);
+    HttpHeaders headers = new HttpHeaders();
+    headers.setAccept(Collections.singletonList(MediaType.APPLICATION_CBOR));
+
+    ResponseEntity<byte[]> response =
+        restTemplate.exchange(
+            TOUR_RATINGS_URL, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getHeaders().getETag()).endsWith("-cbor\"");
+    assertThat(response.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT);
+    RatingRecordPage records =
+        new ObjectMapper(new CBORFactory()).readValue(response.getBody(), RatingRecordPage.class);
+    assertThat(records.getRatings()).hasSize(1);
+    assertThat(records.getRatings().get(0).getCustomerId()).isEqualTo(CUSTOMER_ID);
+    assertThat(records.getPage().getTotalElements()).isEqualTo(1);
+  }
+
+  /** HTTP GET /tours/{tourId}/ratings/average as application/cbor */
+  @Test
+  public void getAverageAsCbor() throws Exception {
+    when(serviceMock.getAverageScore(TOUR_ID)).thenReturn(3.2);
+    HttpHeaders headers = new HttpHeaders();
+    headers.setAccept(Collections.singletonList(MediaType.APPLICATION_CBOR));
+
+    ResponseEntity<byte[]> response =
+        restTemplate.exchange(
+            TOUR_RATINGS_URL + "/average", HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+
+    assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_CBOR);
+    JsonNode average = new ObjectMapper(new CBORFactory()).readTree(response.getBody());
+    assertThat(average.get("average").asDouble()).isEqualTo(3.2);
+  }
+
+  /** HTTP GET /tours/{tourId}/ratings?cursor={token}&size={size}&count=true */
+  @Test
+  public void getRatingsForTourAfter() throws Exception {
+    when(ratingViewMock.getId()).thenReturn(7);
+    Slice<RatingView> slice =
+        new SliceImpl<>(Collections.singletonList(ratingViewMock), PageRequest.of(0, 1), true);
+    when(serviceMock.lookupRatingsAfter(TOUR_ID, 5, 1)).thenReturn(slice);
+    when(serviceMock.countRatings(TOUR_ID)).thenReturn(12L);
+
+    ResponseEntity<String> response =
+        restTemplate.getForEntity(
+            TOUR_RATINGS_URL + "?cursor=" + RatingCursor.encode(TOUR_ID, 5) + "&size=1&count=true",
+            String.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getBody())
+        .contains("\"next\"")
+        .contains("cursor=" + RatingCursor.encode(TOUR_ID, 7))
+        .contains("\"page\":{\"size\":1,\"totalElements\":12}");
+  }
+
+  /** HTTP GET /tours/{tourId}/ratings?cursor={token} of another tour */
+  @Test
+  public void getRatingsForTourAfterRejectsForeignCursor() throws Exception {
+    ResponseEntity<String> response =
+        restTemplate.getForEntity(
+            TOUR_RATINGS_URL + "?cursor=" + RatingCursor.encode(TOUR_ID + 1, 5), String.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+  }
+
   /** HTTP GET /tours/{tourId}/ratings/average */
   @Test
   public void getAverage() throws Exception {
@@ -118,10 +290,38 @@ public class TourRatingControllerTest {
     assertThat(response.getBody()).isEqualTo("{\"average\":3.2}");
   }
 
+  /** Conditional HTTP GET /tours/{tourId}/ratings/average */
+  @Test
+  public void getAverageNotModified() throws Exception {
+    when(serviceMock.getAverageScore(TOUR_ID)).thenReturn(3.2);
+
+    ResponseEntity<String> response =
+        restTemplate.getForEntity(TOUR_RATINGS_URL + "/average", String.class);
+    String eTag = response.getHeaders().getETag();
+    assertThat(eTag).startsWith("W/\"").endsWith("-" + TOUR_ID + "-0\"");
+    assertThat(response.getHeaders().getLastModified()).isPositive();
+    assertThat(response.getHeaders().getCacheControl()).isEqualTo("max-age=0, must-revalidate");
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setIfNoneMatch(eTag);
+    response =
+        restTemplate.exchange(
+            TOUR_RATINGS_URL + "/average",
+            HttpMethod.GET,
+            new HttpEntity<>(headers),
+            String.class);
+
+    // answered from the validator alone, the service is not invoked again
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    assertThat(response.getHeaders().getETag()).isEqualTo(eTag);
+    assertThat(response.getBody()).isNull();
+    verify(serviceMock, times(1)).getAverageScore(TOUR_ID);
+  }
+
   /** HTTP PUT /tours/{tourId}/ratings */
   @Test
   public void updateWithPut() throws Exception {
-    when(serviceMock.update(TOUR_ID, CUSTOMER_ID, SCORE, COMMENT)).thenReturn(tourRatingMock);
+    when(serviceMock.update(TOUR_ID, CUSTOMER_ID, SCORE, COMMENT)).thenReturn(ratingViewMock);
 
     restTemplate.put(TOUR_RATINGS_URL, ratingDto);
 
@@ -139,7 +339,7 @@ public class TourRatingControllerTest {
   @Test
   @Disabled
   public void updateWithPatch() {
-    when(serviceMock.updateSome(TOUR_ID, CUSTOMER_ID, SCORE, COMMENT)).thenReturn(tourRatingMock);
+    when(serviceMock.updateSome(TOUR_ID, CUSTOMER_ID, SCORE, COMMENT)).thenReturn(ratingViewMock);
 
     restTemplate.patchForObject(TOUR_RATINGS_URL, ratingDto, RatingDto.class);
 
@@ -0,0 +1,61 @@
+package io.testoftiramisu.booktour.web;
+
+import io.testoftiramisu.booktour.TourApp;
+import io.testoftiramisu.booktour.repository.TourRatingRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/** Invoke POST /tours/{tourId}/ratings via HTTP in write-behind mode. */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(
+    webEnvironment = RANDOM_PORT,
+    classes = TourApp.class,
+    properties = {
+      "booktour.ratings.write-behind.enabled=true",
+      "booktour.ratings.write-behind.window=10ms"
+    })
+public class TourRatingWriteBehindTest {
+  private static final int TOUR_ID = 3;
+  private static final int CUSTOMER_ID = 5150;
+
+  @Autowired private TestRestTemplate restTemplate;
+
+  @Autowired private TourRatingRepository tourRatingRepository;
+
+  @Test
+  public void acceptedThenWritten() throws InterruptedException {
+    ResponseEntity<Void> response =
+        restTemplate.postForEntity(
+            "/tours/" + TOUR_ID + "/ratings",
+            new RatingDto(4, "Queued", CUSTOMER_ID),
+            Void.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+    for (int i = 0; i < 50; i++) {
+      if (tourRatingRepository.findByTourIdAndCustomerId(TOUR_ID, CUSTOMER_ID).isPresent()) {
+        break;
+      }
+      Thread.sleep(100);
+    }
+    assertThat(tourRatingRepository.findByTourIdAndCustomerId(TOUR_ID, CUSTOMER_ID))
+        .hasValueSatisfying(rating -> assertThat(rating.getComment()).isEqualTo("Queued"));
+  }
+
+  @Test
+  public void unknownTourIsNotQueued() {
+    ResponseEntity<String> response =
+        restTemplate.postForEntity(
+            "/tours/999999/ratings", new RatingDto(4, null, CUSTOMER_ID), String.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+  }
+}
@@ -0,0 +1,93 @@
+package io.testoftiramisu.booktour.web;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.testoftiramisu.booktour.TourApp;
+import io.testoftiramisu.booktour.domain.Difficulty;
+import io.testoftiramisu.booktour.domain.Region;
+import io.testoftiramisu.booktour.repository.TourRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/** Invoke the search endpoint via HTTP, against the seeded catalog. */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = RANDOM_PORT, classes = TourApp.class)
+public class TourSearchControllerTest {
+
+  @Autowired private TestRestTemplate restTemplate;
+
+  @Autowired private TourRepository tourRepository;
+
+  /** HTTP GET /tours/filter?code={code}&region={region} */
+  @Test
+  public void filter() {
+    int expected = tourRepository.findByTourPackageCodeAndRegion("BC", Region.Central_Coast).size();
+
+    ResponseEntity<String> response =
+        restTemplate.getForEntity("/tours/filter?code=BC&region=Central_Coast", String.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(expected).isPositive();
+    assertThat(response.getBody().split("\"title\"")).hasSize(expected + 1);
+    assertThat(response.getBody()).contains("\"tourPackage\"");
+  }
+
+  /** HTTP GET /tours/filter?difficulty={difficulty}&maxPrice={maxPrice} */
+  @Test
+  public void filterWithoutMatch() {
+    ResponseEntity<String> response =
+        restTemplate.getForEntity(
+            "/tours/filter?difficulty=" + Difficulty.Difficult + "&maxPrice=0", String.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getBody()).doesNotContain("\"title\"");
+  }
+
+  /** HTTP GET /tours/filter?region={unknown} */
+  @Test
+  public void filterRejectsUnknownRegion() {
+    ResponseEntity<String> response =
+        restTemplate.getForEntity("/tours/filter?region=Mars", String.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+  }
+
+  /** HTTP GET /tours/search?q={query} */
+  @Test
+  public void search() throws Exception {
+    ResponseEntity<String> response =
+        restTemplate.getForEntity("/tours/search?q=big sur retreat&size=5", String.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    JsonNode tours = new ObjectMapper().readTree(response.getBody()).at("/_embedded/tours");
+    assertThat(tours.size()).isBetween(1, 5);
+    assertThat(tours.get(0).get("title").asText()).isEqualTo("Big Sur Retreat");
+  }
+
+  /** HTTP GET /tours/search?q={query}&size={size} */
+  @Test
+  public void searchRejectsTooLargePage() {
+    ResponseEntity<String> response =
+        restTemplate.getForEntity("/tours/search?q=hiking&size=1000", String.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+  }
+
+  /** HTTP GET /tours/search still lists the repository finders. */
+  @Test
+  public void searchWithoutQueryListsFinders() {
+    ResponseEntity<String> response = restTemplate.getForEntity("/tours/search", String.class);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getBody()).contains("findByKeywordsContains");
+  }
+}
@@ -0,0 +1,40 @@
+package io.testoftiramisu.booktour.web;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class VirtualThreadConfigurationTest {
+  private static final boolean VIRTUAL_THREADS = Runtime.version().feature() >= 21;
+
+  @Test
+  public void runsTasksOnVirtualThreads() throws Exception {
+    assumeTrue(VIRTUAL_THREADS, "virtual threads need Java 21");
+    ExecutorService executor = VirtualThreadConfiguration.newVirtualThreadPerTaskExecutor();
+
+    Object virtual =
+        executor
+            .submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()))
+            .get(5, TimeUnit.SECONDS);
+
+    assertThat(virtual).isEqualTo(true);
+    executor.shutdown();
+  }
+
+  @Test
+  public void failsFastWithoutVirtualThreads() {
+    assumeFalse(VIRTUAL_THREADS, "virtual threads are available");
+
+    IllegalStateException ex =
+        Assertions.assertThrows(
+            IllegalStateException.class,
+            VirtualThreadConfiguration::newVirtualThreadPerTaskExecutor);
+    assertThat(ex.getMessage()).contains("Java 21");
+  }
+}